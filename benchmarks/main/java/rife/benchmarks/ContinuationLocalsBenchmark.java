@@ -0,0 +1,102 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rife.continuations.CloneableContinuable;
+import rife.continuations.ContinuationConfigInstrument;
+import rife.continuations.basic.BasicContinuableClassLoader;
+import rife.continuations.basic.BasicContinuableRunner;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the continuations instrumentation on a tight loop
+ * that runs in between pauses, comparing the capture of the local variables
+ * on every store with their capture when the continuation pauses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContinuationLocalsBenchmark {
+    private static final int ITERATIONS = 10000;
+
+    public static class LoopContinuable implements CloneableContinuable {
+        private long result_;
+
+        public void execute() {
+            while (true) {
+                var sum = 0L;
+                for (var i = 0; i < ITERATIONS; i++) {
+                    sum += i ^ (sum >>> 3);
+                }
+                result_ = sum;
+                pause();
+            }
+        }
+
+        public void pause() {
+            // replaced by the instrumentation
+        }
+
+        public Object clone()
+        throws CloneNotSupportedException {
+            return super.clone();
+        }
+    }
+
+    public static class LoopConfig implements ContinuationConfigInstrument {
+        private final boolean captureLocalsOnPause_;
+
+        LoopConfig(boolean captureLocalsOnPause) {
+            captureLocalsOnPause_ = captureLocalsOnPause;
+        }
+
+        public String getContinuableMarkerInterfaceName() {
+            return "rife.continuations.CloneableContinuable";
+        }
+
+        public String getEntryMethodName() {
+            return "execute";
+        }
+
+        public String getEntryMethodDescriptor() {
+            return "()V";
+        }
+
+        public String getPauseMethodName() {
+            return "pause";
+        }
+
+        public boolean captureLocalsOnPause() {
+            return captureLocalsOnPause_;
+        }
+    }
+
+    @Param({"false", "true"})
+    boolean captureLocalsOnPause;
+
+    BasicContinuableRunner runner_;
+    String continuationId_;
+
+    @Setup(Level.Iteration)
+    public void setup()
+    throws Throwable {
+        var config = new LoopConfig(captureLocalsOnPause);
+        runner_ = new BasicContinuableRunner(config, null, new BasicContinuableClassLoader(config));
+        runner_.setCloneContinuations(false);
+        continuationId_ = runner_.start(LoopContinuable.class.getName());
+    }
+
+    @Benchmark
+    public String resumeLoop()
+    throws Throwable {
+        continuationId_ = runner_.resume(continuationId_);
+        return continuationId_;
+    }
+}
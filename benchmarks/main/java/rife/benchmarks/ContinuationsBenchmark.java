@@ -0,0 +1,69 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rife.engine.Context;
+import rife.engine.Element;
+import rife.engine.Site;
+import rife.engine.SpecialParameters;
+import rife.test.MockConversation;
+import rife.test.MockRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of pausing and resuming continuations in the web engine.
+ * <p>
+ * This requires the RIFE2 agent, which is set up by the {@code benchmark}
+ * build command.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContinuationsBenchmark {
+    public static class CounterElement implements Element {
+        public void process(Context c) {
+            var total = 0;
+            while (true) {
+                c.print(c.continuationId());
+                c.pause();
+                total += c.parameterInt("value", 1);
+                if (total < 0) {
+                    break;
+                }
+            }
+            c.print(String.valueOf(total));
+        }
+    }
+
+    MockConversation conversation_;
+    String continuationId_;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        conversation_ = new MockConversation(new Site() {
+            public void setup() {
+                get("/counter", CounterElement.class);
+            }
+        });
+        continuationId_ = conversation_.doRequest("http://localhost/counter").getText();
+    }
+
+    @Benchmark
+    public String startAndPause() {
+        return conversation_.doRequest("http://localhost/counter").getText();
+    }
+
+    @Benchmark
+    public String resumeAndPause() {
+        continuationId_ = conversation_.doRequest("http://localhost/counter",
+            new MockRequest().parameter(SpecialParameters.CONT_ID, continuationId_).parameter("value", "1")).getText();
+        return continuationId_;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rife.engine.Router;
+import rife.engine.Site;
+import rife.test.MockConversation;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FiltersBenchmark {
+    @Param({"0", "5", "20"})
+    int filters;
+
+    MockConversation conversation_;
+
+    @Setup
+    public void setup() {
+        conversation_ = new MockConversation(new Site() {
+            public void setup() {
+                for (var i = 0; i < filters; i++) {
+                    final var name = "filter" + i;
+                    before(c -> c.setAttribute(name, Boolean.TRUE));
+                }
+                for (var i = 0; i < filters; i++) {
+                    final var name = "filter" + i;
+                    after(c -> c.removeAttribute(name));
+                }
+                group("/group", new Router() {
+                    public void setup() {
+                        before(c -> c.setAttribute("group", Boolean.TRUE));
+                        get("/route", c -> c.print("grouped"));
+                    }
+                });
+                get("/route", c -> c.print("route"));
+            }
+        });
+    }
+
+    @Benchmark
+    public String filteredRoute() {
+        return conversation_.doRequest("http://localhost/route").getText();
+    }
+
+    @Benchmark
+    public String filteredGroupRoute() {
+        return conversation_.doRequest("http://localhost/group/route").getText();
+    }
+}
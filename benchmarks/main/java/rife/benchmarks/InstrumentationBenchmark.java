@@ -0,0 +1,207 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import rife.asm.ClassWriter;
+import rife.asm.Opcodes;
+import rife.instrument.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.instrument.IllegalClassFormatException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of instrumenting a large set of generated classes
+ * during the startup of an application, comparing the individual agent
+ * transformers with the combined pipeline, and the interface detection
+ * with and without the memoized class hierarchy.
+ * <p>
+ * The generated classes consist of continuable elements that pause, and
+ * of beans that extend a chain of base classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class InstrumentationBenchmark {
+    // the generated classes are outside of the rife package, which is excluded
+    private static final String PACKAGE = "com/example/generated/";
+    private static final int BASE_DEPTH = 5;
+
+    @Param({"2000"})
+    int classCount;
+
+    GeneratedClassLoader loader_;
+    List<String> names_;
+
+    static class GeneratedClassLoader extends ClassLoader implements ClassBytesProvider {
+        private final Map<String, byte[]> classes_ = new HashMap<>();
+
+        GeneratedClassLoader() {
+            super(InstrumentationBenchmark.class.getClassLoader());
+        }
+
+        public InputStream getResourceAsStream(String name) {
+            var bytes = classes_.get(name.substring(0, name.length() - ".class".length()));
+            if (bytes != null) {
+                return new ByteArrayInputStream(bytes);
+            }
+            return super.getResourceAsStream(name);
+        }
+
+        public byte[] getClassBytes(String className, boolean reloadAutomatically)
+        throws ClassNotFoundException {
+            var bytes = classes_.get(className.replace('.', '/'));
+            if (null == bytes) {
+                throw new ClassNotFoundException(className);
+            }
+            return bytes;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        loader_ = new GeneratedClassLoader();
+
+        var base = "java/lang/Object";
+        for (var i = 0; i < BASE_DEPTH; i++) {
+            var name = PACKAGE + "Base" + i;
+            // only the deepest base class implements the detected interface
+            loader_.classes_.put(name, generateBean(name, base, 0 == i ? "rife/validation/MetaDataBeanAware" : null));
+            base = name;
+        }
+
+        for (var i = 0; i < classCount; i++) {
+            var name = PACKAGE + (i % 2 == 0 ? "Element" : "Bean") + i;
+            if (i % 2 == 0) {
+                loader_.classes_.put(name, generateElement(name));
+            } else {
+                loader_.classes_.put(name, generateBean(name, base, null));
+            }
+        }
+
+        names_ = loader_.classes_.keySet().stream().sorted().toList();
+    }
+
+    private static byte[] generateElement(String name) {
+        var writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", new String[]{"rife/engine/Element"});
+        generateConstructor(writer, "java/lang/Object");
+
+        var process = writer.visitMethod(Opcodes.ACC_PUBLIC, "process", "(Lrife/engine/Context;)V", null, new String[]{"java/lang/Exception"});
+        process.visitCode();
+        process.visitVarInsn(Opcodes.ALOAD, 1);
+        process.visitLdcInsn("before");
+        process.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "rife/engine/Context", "print", "(Ljava/lang/Object;)V", false);
+        process.visitVarInsn(Opcodes.ALOAD, 1);
+        process.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "rife/engine/Context", "pause", "()V", false);
+        process.visitVarInsn(Opcodes.ALOAD, 1);
+        process.visitLdcInsn("after");
+        process.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "rife/engine/Context", "print", "(Ljava/lang/Object;)V", false);
+        process.visitInsn(Opcodes.RETURN);
+        process.visitMaxs(0, 0);
+        process.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static byte[] generateBean(String name, String superName, String interfaceName) {
+        var writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, superName, interfaceName == null ? null : new String[]{interfaceName});
+        generateConstructor(writer, superName);
+
+        for (var property : new String[]{"first", "second", "third"}) {
+            writer.visitField(Opcodes.ACC_PRIVATE, property, "Ljava/lang/String;", null, null).visitEnd();
+
+            var getter = writer.visitMethod(Opcodes.ACC_PUBLIC, "get" + property, "()Ljava/lang/String;", null, null);
+            getter.visitCode();
+            getter.visitVarInsn(Opcodes.ALOAD, 0);
+            getter.visitFieldInsn(Opcodes.GETFIELD, name, property, "Ljava/lang/String;");
+            getter.visitInsn(Opcodes.ARETURN);
+            getter.visitMaxs(0, 0);
+            getter.visitEnd();
+
+            var setter = writer.visitMethod(Opcodes.ACC_PUBLIC, "set" + property, "(Ljava/lang/String;)V", null, null);
+            setter.visitCode();
+            setter.visitVarInsn(Opcodes.ALOAD, 0);
+            setter.visitVarInsn(Opcodes.ALOAD, 1);
+            setter.visitFieldInsn(Opcodes.PUTFIELD, name, property, "Ljava/lang/String;");
+            setter.visitInsn(Opcodes.RETURN);
+            setter.visitMaxs(0, 0);
+            setter.visitEnd();
+        }
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void generateConstructor(ClassWriter writer, String superName) {
+        var constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+    }
+
+    @Benchmark
+    public void separateTransformers(Blackhole blackhole)
+    throws IllegalClassFormatException {
+        // this is how the agent registered its transformers before they
+        // were combined, each one performs its own checks and analysis
+        var transformers = new RifeTransformer[]{
+            new InitialTransformer(),
+            new EngineContinuationsTransformer(),
+            new WorkflowContinuationsTransformer(),
+            new MetaDataTransformer(),
+            new LazyLoadTransformer(),
+            new FinalTransformer()};
+        for (var name : names_) {
+            var bytes = loader_.classes_.get(name);
+            for (var transformer : transformers) {
+                bytes = transformer.transform(loader_, name, null, null, bytes);
+            }
+            blackhole.consume(bytes);
+        }
+    }
+
+    @Benchmark
+    public void combinedTransformer(Blackhole blackhole)
+    throws IllegalClassFormatException {
+        var transformer = RifeAgent.createTransformer();
+        for (var name : names_) {
+            blackhole.consume(transformer.transform(loader_, name, null, null, loader_.classes_.get(name)));
+        }
+    }
+
+    @Benchmark
+    public void interfaceDetectionUncached(Blackhole blackhole)
+    throws ClassNotFoundException {
+        var detector = new ClassInterfaceDetector(loader_, "rife/validation/MetaDataBeanAware");
+        for (var name : names_) {
+            blackhole.consume(detector.detect(loader_.classes_.get(name), true));
+        }
+    }
+
+    @Benchmark
+    public void interfaceDetectionMemoized(Blackhole blackhole)
+    throws ClassNotFoundException {
+        ClassHierarchy.instance(loader_).clear();
+        var detector = new ClassInterfaceDetector(loader_, "rife/validation/MetaDataBeanAware");
+        for (var name : names_) {
+            blackhole.consume(detector.detect(loader_.classes_.get(name), false));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rife.engine.Context;
+import rife.engine.Element;
+import rife.engine.Site;
+import rife.engine.annotations.Parameter;
+import rife.test.MockConversation;
+import rife.test.MockRequest;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParametersBenchmark {
+    public static class AnnotatedElement implements Element {
+        @Parameter String name;
+        @Parameter int count;
+        @Parameter long id;
+        @Parameter boolean flag;
+        @Parameter double ratio;
+        @Parameter("alias") String aliased;
+
+        public void process(Context c) {
+            c.print(name + count + id + flag + ratio + aliased);
+        }
+    }
+
+    MockConversation conversation_;
+    MockRequest request_;
+
+    @Setup
+    public void setup() {
+        conversation_ = new MockConversation(new Site() {
+            public void setup() {
+                get("/annotated", AnnotatedElement.class);
+                get("/manual", c -> c.print(c.parameter("name") + c.parameterInt("count") + c.parameterLong("id") +
+                    c.parameterBoolean("flag") + c.parameterDouble("ratio") + c.parameter("alias")));
+            }
+        });
+        request_ = new MockRequest()
+            .parameter("name", "value")
+            .parameter("count", "12")
+            .parameter("id", "123456789")
+            .parameter("flag", "true")
+            .parameter("ratio", "0.75")
+            .parameter("alias", "aliased");
+    }
+
+    @Benchmark
+    public String annotatedInjection() {
+        return conversation_.doRequest("http://localhost/annotated", request_).getText();
+    }
+
+    @Benchmark
+    public String contextLookup() {
+        return conversation_.doRequest("http://localhost/manual", request_).getText();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rife.engine.PathInfoHandling;
+import rife.engine.Site;
+import rife.test.MockConversation;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathInfoBenchmark {
+    MockConversation conversation_;
+
+    @Setup
+    public void setup() {
+        conversation_ = new MockConversation(new Site() {
+            public void setup() {
+                get("/archive", PathInfoHandling.MAP(
+                    m -> m.p("year", "\\d{4}").s().p("month", "\\d{2}").s().p("slug"),
+                    m -> m.p("year", "\\d{4}").s().p("month", "\\d{2}"),
+                    m -> m.t("tag").s().p("tag")), c -> c.print(c.parameter("year") + c.parameter("month") + c.parameter("slug") + c.parameter("tag")));
+                get("/capture", PathInfoHandling.CAPTURE, c -> c.print(c.pathInfo()));
+            }
+        });
+    }
+
+    @Benchmark
+    public String mapFirstMapping() {
+        return conversation_.doRequest("http://localhost/archive/2023/04/some-article").getText();
+    }
+
+    @Benchmark
+    public String mapLastMapping() {
+        return conversation_.doRequest("http://localhost/archive/tag/java").getText();
+    }
+
+    @Benchmark
+    public String capture() {
+        return conversation_.doRequest("http://localhost/capture/some/deeper/path").getText();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rife.engine.Site;
+import rife.test.MockConversation;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+    @Param({"10", "100", "1000"})
+    int routes;
+
+    MockConversation conversation_;
+    String firstUrl_;
+    String lastUrl_;
+    String missingUrl_;
+
+    @Setup
+    public void setup() {
+        conversation_ = new MockConversation(new Site() {
+            public void setup() {
+                for (var i = 0; i < routes; i++) {
+                    final var text = "route" + i;
+                    get("/section" + (i % 10) + "/route" + i, c -> c.print(text));
+                }
+                fallback(c -> c.print("fallback"));
+            }
+        });
+        firstUrl_ = "http://localhost/section0/route0";
+        lastUrl_ = "http://localhost/section" + ((routes - 1) % 10) + "/route" + (routes - 1);
+        missingUrl_ = "http://localhost/section0/missing/deeper/path";
+    }
+
+    @Benchmark
+    public String staticRouteFirst() {
+        return conversation_.doRequest(firstUrl_).getText();
+    }
+
+    @Benchmark
+    public String staticRouteLast() {
+        return conversation_.doRequest(lastUrl_).getText();
+    }
+
+    @Benchmark
+    public String fallbackRoute() {
+        return conversation_.doRequest(missingUrl_).getText();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rife.engine.Route;
+import rife.engine.Site;
+import rife.test.MockConversation;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateBenchmark {
+    @Param({"10", "100"})
+    int rows;
+
+    MockConversation conversation_;
+
+    @Setup
+    public void setup() {
+        conversation_ = new MockConversation(new Site() {
+            Route detail;
+
+            public void setup() {
+                detail = get("/detail", c -> c.print(c.parameter("id")));
+                get("/listing", c -> {
+                    var t = c.template("benchmarks.listing");
+                    for (var i = 0; i < rows; i++) {
+                        t.setValue("id", i);
+                        t.setValueEncoded("title", "Item <" + i + "> & more");
+                        t.setValue("link", c.urlFor(detail).param("id", i));
+                        t.appendBlock("rows", "row");
+                    }
+                    c.print(t);
+                });
+                get("/text", c -> {
+                    var t = c.template("benchmarks.listing");
+                    t.setValue("rows", "no rows");
+                    c.print(t);
+                });
+            }
+        });
+    }
+
+    @Benchmark
+    public String listing() {
+        return conversation_.doRequest("http://localhost/listing").getText();
+    }
+
+    @Benchmark
+    public String plain() {
+        return conversation_.doRequest("http://localhost/text").getText();
+    }
+}
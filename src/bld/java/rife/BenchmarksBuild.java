@@ -0,0 +1,45 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife;
+
+import rife.bld.Project;
+
+import java.io.File;
+import java.util.List;
+
+public class BenchmarksBuild extends Project {
+    public BenchmarksBuild(Rife2Build mainBuild) {
+        pkg = "rife";
+        name = "Benchmarks";
+        mainClass = "org.openjdk.jmh.Main";
+        version = version(1,0,0);
+
+        javaRelease = 17;
+
+        srcDirectory = new File(workDirectory(), "benchmarks");
+        buildMainDirectory = new File(buildDirectory(), "main_benchmarks");
+        buildTestDirectory = new File(buildDirectory(), "test_benchmarks");
+        libCompileDirectory = libTestDirectory();
+        libStandaloneDirectory = libTestDirectory();
+
+        var results_file = new File(new File(buildDirectory(), "benchmarks"), "results.json");
+
+        compileOperation()
+            .compileMainClasspath(mainBuild.buildMainDirectory().getAbsolutePath())
+            .compileOptions()
+                .modulePath(mainBuild.buildMainDirectory());
+        runOperation()
+            .classpath(mainBuild.testsBadgeOperation.classpath())
+            .classpath(mainBuild.buildMainDirectory().getAbsolutePath())
+            .runOptions(List.of("-rf", "json", "-rff", results_file.getAbsolutePath()))
+            .javaOptions().javaAgent(new File(buildDistDirectory(), mainBuild.jarAgentOperation.destinationFileName()));
+    }
+
+    public void run()
+    throws Exception {
+        new File(buildDirectory(), "benchmarks").mkdirs();
+        super.run();
+    }
+}
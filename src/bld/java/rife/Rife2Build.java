@@ -32,6 +32,7 @@ public class Rife2Build extends AbstractRife2Build {
 
         var imagej_version = version("1.54m");
         var jetty_version = version(12,0,16);
+        var jmh_version = version(1,37);
         var jsoup_version = version(1,18,3);
         var tomcat_version = version(11,0,0);
 
@@ -47,7 +48,9 @@ public class Rife2Build extends AbstractRife2Build {
             .include(dependency("org.jsoup", "jsoup", jsoup_version))
             .include(dependency("org.eclipse.jetty.ee10", "jetty-ee10", jetty_version))
             .include(dependency("org.eclipse.jetty.ee10", "jetty-ee10-servlet", jetty_version))
-            .include(dependency("net.imagej", "ij", imagej_version).excludeSources());
+            .include(dependency("net.imagej", "ij", imagej_version).excludeSources())
+            .include(dependency("org.openjdk.jmh", "jmh-core", jmh_version))
+            .include(dependency("org.openjdk.jmh", "jmh-generator-annprocess", jmh_version));
 
         var core_directory = new File(workDirectory(), "core");
         var core_src_directory = new File(core_directory, "src");
@@ -155,6 +158,7 @@ public class Rife2Build extends AbstractRife2Build {
                 new PublishArtifact(jarContinuationsOperation.destinationFile(), "agent-continuations", "jar"));
 
         examples = new ExamplesBuild(this);
+        benchmarks = new BenchmarksBuild(this);
     }
 
     @Override
@@ -269,6 +273,23 @@ public class Rife2Build extends AbstractRife2Build {
         examples.run();
     }
 
+    final BenchmarksBuild benchmarks;
+
+    @BuildCommand(value = "compile-benchmarks", summary = "Compiles the RIFE2 JMH benchmarks")
+    public void compileBenchmarks()
+    throws Exception {
+        compile();
+        benchmarks.compile();
+    }
+
+    @BuildCommand(value = "benchmark", summary = "Runs the RIFE2 JMH benchmarks and writes the JSON results")
+    public void benchmark()
+    throws Exception {
+        jarAgent();
+        benchmarks.compile();
+        benchmarks.run();
+    }
+
     public static void main(String[] args)
     throws Exception {
         new Rife2Build().start(args);
@@ -23,8 +23,13 @@ import rife.validation.Constrained;
 import rife.validation.ConstrainedProperty;
 import rife.validation.ConstrainedUtils;
 
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -70,14 +75,18 @@ import java.util.logging.Logger;
  * @since 1.0
  */
 public class ContentQueryManager<T> extends GenericQueryManagerDelegate<T> implements Cloneable {
+    private static final long INSERT_LOCK_TIMEOUT = 30000;
+
     private final Class class_;
     private final Class backendClass_;
     private final DbQueryManager dbQueryManager_;
     private final ContentManager contentManager_;
 
     private String repository_ = null;
+    private boolean deferAutoRetrieved_ = false;
 
     private final ThreadLocal<T> deletedBean_ = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> restoringBatch_ = new ThreadLocal<>();
 
     /**
      * Creates a new {@code ContentQueryManager} instance for a specific
@@ -197,6 +206,39 @@ public class ContentQueryManager<T> extends GenericQueryManagerDelegate<T> imple
         return repository_;
     }
 
+    /**
+     * Sets whether the content of properties with an {@code autoRetrieved}
+     * constraint should not be retrieved when beans are restored.
+     * <p>This is useful when restoring listings of which the content is
+     * only needed for some beans. The content can then be retrieved for
+     * those beans, in batch, with {@link #restoreAutoRetrievedContent}.
+     *
+     * @param flag {@code true} if the retrieval should be deferred; or
+     *             {@code false} if the content should be retrieved when the
+     *             beans are restored
+     * @return this {@code ContentQueryManager}
+     * @see #isAutoRetrievedDeferred
+     * @since 1.9.2
+     */
+    public ContentQueryManager<T> deferAutoRetrieved(boolean flag) {
+        deferAutoRetrieved_ = flag;
+
+        return this;
+    }
+
+    /**
+     * Indicates whether the retrieval of the content of properties with an
+     * {@code autoRetrieved} constraint is deferred.
+     *
+     * @return {@code true} if the retrieval is deferred; or
+     * <p>{@code false} otherwise
+     * @see #deferAutoRetrieved
+     * @since 1.9.2
+     */
+    public boolean isAutoRetrievedDeferred() {
+        return deferAutoRetrieved_;
+    }
+
     /**
      * Returns the {@code ContentManager} that is used to store and
      * retrieve the content.
@@ -328,6 +370,32 @@ public class ContentQueryManager<T> extends GenericQueryManagerDelegate<T> imple
      * @since 1.0
      */
     public boolean storeEmptyContent(final T bean, String propertyName) {
+        return storePropertyContent(bean, propertyName, null);
+    }
+
+    /**
+     * Stores the content of a certain bean property from a stream, without
+     * having to set the data on the bean and save it.
+     * <p>This makes it possible to store large content that has been
+     * received separately, for instance through a
+     * {@link rife.cmf.elements.ResumableUpload}, without holding it in memory.
+     *
+     * @param bean         the bean instance that contains the property
+     * @param propertyName the name of the property whose content has to be
+     *                     stored in the database
+     * @param data         the stream with the content data
+     * @return {@code true} if the content was stored successfully;
+     * or
+     * <p>{@code false} otherwise
+     * @since 1.9.2
+     */
+    public boolean storeContent(final T bean, String propertyName, InputStream data) {
+        if (null == data) throw new IllegalArgumentException("data can't be null");
+
+        return storePropertyContent(bean, propertyName, data);
+    }
+
+    private boolean storePropertyContent(final T bean, String propertyName, Object data) {
         if (null == bean) throw new IllegalArgumentException("constrained can't be null");
         if (null == propertyName) throw new IllegalArgumentException("propertyName can't be null");
         if (propertyName.isEmpty()) throw new IllegalArgumentException("propertyName can't be empty");
@@ -352,11 +420,13 @@ public class ContentQueryManager<T> extends GenericQueryManagerDelegate<T> imple
         }
 
         try {
-            var content = new Content(property.getMimeType(), null)
+            var content = new Content(property.getMimeType(), data)
                 .fragment(property.isFragment())
                 .name(property.getName())
-                .attributes(property.getContentAttributes())
-                .cachedLoadedData(property.getCachedLoadedData());
+                .attributes(property.getContentAttributes());
+            if (null == data) {
+                content.cachedLoadedData(property.getCachedLoadedData());
+            }
 
             return contentManager_.storeContent(buildCmfPath(constrained, id, property.getPropertyName()),
                 content,
@@ -383,6 +453,85 @@ public class ContentQueryManager<T> extends GenericQueryManagerDelegate<T> imple
      * @since 1.0
      */
     public int save(final T bean)
+    throws DatabaseException {
+        // the save is done in a tracked transaction, so that the insert
+        // locks of the ordinals are held until the new rows are committed
+        if (!ContentTransaction.isActive()) {
+            return inTransaction(new DbTransactionUser<>() {
+                public Integer useTransaction()
+                throws InnerClassException {
+                    return save(bean);
+                }
+            });
+        }
+
+        for (var entry : getInsertOrdinals(bean).entrySet()) {
+            var ordinals = entry.getValue();
+            if (ordinals.isInsertLockHeldByCurrentThread()) {
+                continue;
+            }
+
+            // a timeout fails the save and rolls back the transaction, which
+            // releases the database locks that another thread might be
+            // waiting for while it holds this insert lock
+            try {
+                if (!ordinals.lockInsert(INSERT_LOCK_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    throw new OrdinalInsertLockTimeoutException(class_, entry.getKey(), INSERT_LOCK_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DatabaseException(e);
+            }
+            ContentTransaction.afterCompletion(ordinals::unlockInsert);
+        }
+
+        return _save(bean);
+    }
+
+    /**
+     * Executes a transaction user in a transaction of this manager.
+     * <p>The insert locks of the ordinal properties that are obtained by
+     * {@link #save saving} new beans inside the transaction are held until
+     * the transaction has been committed or rolled back. Beans with ordinal
+     * properties that are saved together inside a larger transaction should
+     * be saved inside this method, otherwise the insert locks are released
+     * when {@code save} returns, before the new rows are committed.
+     * <p>This is also the case when the transaction is started with
+     * {@link DbQueryManager#inTransaction} and this method is only used
+     * inside it, the insert locks are then released when this method
+     * returns since the JDBC transaction's completion can't be tracked.
+     * <p>The insert locks only serialize the saves within this JVM,
+     * concurrent inserts from other processes can still obtain the same
+     * ordinal.
+     *
+     * @param user the transaction user that will be executed
+     * @return the result of the transaction user
+     * @see ContentTransaction
+     * @see OrdinalManager#lockInsert
+     * @since 1.9.2
+     */
+    public <ResultType> ResultType inTransaction(DbTransactionUser<ResultType, Object> user)
+    throws DatabaseException {
+        return ContentTransaction.execute(dbQueryManager_, user);
+    }
+
+    private SortedMap<String, OrdinalManager> getInsertOrdinals(T bean) {
+        var insert_ordinals = new TreeMap<String, OrdinalManager>();
+        if (getIdentifierValue(bean) < 0) {
+            var constrained = ConstrainedUtils.makeConstrainedInstance(bean);
+            if (constrained != null) {
+                for (var property : constrained.getConstrainedProperties()) {
+                    if (property.isOrdinal()) {
+                        var ordinals = new OrdinalManager(getDatasource(), getTable(), property.getPropertyName());
+                        insert_ordinals.put(property.getPropertyName(), ordinals);
+                    }
+                }
+            }
+        }
+        return insert_ordinals;
+    }
+
+    private int _save(final T bean)
     throws DatabaseException {
         return dbQueryManager_.inTransaction(new DbTransactionUser<Integer, Object>() {
             public Integer useTransaction()
@@ -498,7 +647,19 @@ public class ContentQueryManager<T> extends GenericQueryManagerDelegate<T> imple
      */
     public List<T> restore()
     throws DatabaseException {
-        return super.restore();
+        List<T> beans;
+        restoringBatch_.set(Boolean.TRUE);
+        try {
+            beans = super.restore();
+        } finally {
+            restoringBatch_.remove();
+        }
+
+        if (!deferAutoRetrieved_) {
+            restoreAutoRetrievedContent(beans);
+        }
+
+        return beans;
     }
 
     /**
@@ -514,7 +675,68 @@ public class ContentQueryManager<T> extends GenericQueryManagerDelegate<T> imple
      */
     public List<T> restore(RestoreQuery query)
     throws DatabaseException {
-        return super.restore(query);
+        List<T> beans;
+        restoringBatch_.set(Boolean.TRUE);
+        try {
+            beans = super.restore(query);
+        } finally {
+            restoringBatch_.remove();
+        }
+
+        if (!deferAutoRetrieved_) {
+            restoreAutoRetrievedContent(beans);
+        }
+
+        return beans;
+    }
+
+    /**
+     * Retrieves the content of the properties with an {@code autoRetrieved}
+     * constraint for several beans at once.
+     * <p>The content of all the beans is looked up in a few queries instead
+     * of several queries per bean and property. This is automatically used
+     * when lists of beans are restored, unless the retrieval has been
+     * {@link #deferAutoRetrieved deferred}.
+     *
+     * @param beans the beans whose content should be retrieved
+     * @since 1.9.2
+     */
+    public void restoreAutoRetrievedContent(Collection<T> beans)
+    throws DatabaseException {
+        if (null == beans || beans.isEmpty()) {
+            return;
+        }
+
+        record Target<T>(T bean, String propertyName) {
+        }
+
+        // collect the locations of all the auto-retrieved content
+        var targets = new LinkedHashMap<String, Target<T>>();
+        for (var bean : beans) {
+            var constrained = ConstrainedUtils.makeConstrainedInstance(bean);
+            if (constrained != null) {
+                var id = getIdentifierValue(bean);
+                for (var property : constrained.getConstrainedProperties()) {
+                    if (property.hasMimeType() &&
+                        property.isAutoRetrieved()) {
+                        targets.put(buildCmfPath(constrained, id, property.getPropertyName()), new Target<>(bean, property.getPropertyName()));
+                    }
+                }
+            }
+        }
+
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        contentManager_.useContentDataBatch(targets.keySet(), (location, contentData) -> {
+            var target = targets.get(location);
+            try {
+                BeanUtils.setPropertyValue(target.bean(), target.propertyName(), contentData);
+            } catch (BeanUtilsException | ContentManagerException e) {
+                throw new DatabaseException(e);
+            }
+        });
     }
 
     private void restoreContent(int objectId, final T bean) {
@@ -550,22 +772,25 @@ public class ContentQueryManager<T> extends GenericQueryManagerDelegate<T> imple
      */
     public boolean delete(final int objectId)
     throws DatabaseException {
-        Boolean result = dbQueryManager_.inTransaction(() -> {
-            var bean = restore(objectId);
-            if (null == bean) {
-                return false;
-            }
+        Boolean result = inTransaction(new DbTransactionUser<>() {
+            public Boolean useTransaction()
+            throws InnerClassException {
+                var bean = restore(objectId);
+                if (null == bean) {
+                    return false;
+                }
 
-            deletedBean_.set(bean);
-            try {
-                if (super.delete(objectId)) {
-                    return true;
+                deletedBean_.set(bean);
+                try {
+                    if (ContentQueryManager.super.delete(objectId)) {
+                        return true;
+                    }
+                } finally {
+                    deletedBean_.set(null);
                 }
-            } finally {
-                deletedBean_.set(null);
-            }
 
-            return false;
+                return false;
+            }
         });
 
         return null != result && result;
@@ -833,6 +1058,12 @@ public class ContentQueryManager<T> extends GenericQueryManagerDelegate<T> imple
         }
 
         public void restored(T bean) {
+            // lists of beans retrieve their content in batch after being restored
+            if (deferAutoRetrieved_ ||
+                restoringBatch_.get() != null) {
+                return;
+            }
+
             restoreContent(getIdentifierValue(bean), bean);
         }
 
@@ -52,6 +52,20 @@ public interface ContentStore {
     boolean remove()
     throws ContentManagerException;
 
+    /**
+     * Upgrades a content store that was installed by an earlier version.
+     * <p>Content stores that are already up-to-date are left untouched.
+     *
+     * @return {@code true} if the content store was upgraded; or
+     * <p>{@code false} if it was already up-to-date.
+     * @throws ContentManagerException if an unexpected error occurred
+     * @since 1.9.2
+     */
+    default boolean upgrade()
+    throws ContentManagerException {
+        return false;
+    }
+
     /**
      * Returns the collection of mime types that the content store supports.
      *
@@ -150,6 +164,31 @@ public interface ContentStore {
     <ResultType> ResultType useContentDataResult(int id, ContentDataUser<ResultType> user)
     throws ContentManagerException;
 
+    /**
+     * Use the data of several content ids.
+     * <p>Implementations can retrieve the data of all the ids in a few
+     * round trips to the back-end, instead of one or more per id.
+     * <p>Some content data will only be available during the call to the
+     * content user due to their volatile nature (certain streams for instance).
+     * Therefore, one has to be careful when trying to move the data that is
+     * provided to the content user outside of it. The behaviour is undefined.
+     *
+     * @param ids  the ids of the content whose data will be used
+     * @param user the content user instance that will be called to use
+     *             content data, together with its id
+     * @throws ContentManagerException if an unexpected error occurred
+     * @since 1.9.2
+     */
+    default void useContentDataBatch(Collection<Integer> ids, ContentDataBatchUser<Integer> user)
+    throws ContentManagerException {
+        if (null == ids) throw new IllegalArgumentException("ids can't be null");
+        if (null == user) throw new IllegalArgumentException("user can't be null");
+
+        for (var id : ids) {
+            useContentData(id, contentData -> user.useContentData(id, contentData));
+        }
+    }
+
     /**
      * Checks whether content data is available for a certain content id.
      *
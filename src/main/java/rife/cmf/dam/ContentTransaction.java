@@ -0,0 +1,206 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam;
+
+import rife.database.DbQueryManager;
+import rife.database.DbTransactionUser;
+import rife.database.exceptions.DatabaseException;
+import rife.tools.ExceptionUtils;
+import rife.tools.InnerClassException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the outermost transaction that the content management framework
+ * starts in the current thread, so that actions can be deferred until it
+ * has been committed or rolled back.
+ * <p>This is used to release the ordinal insert locks and to invalidate
+ * cached content info only once the modifications are visible to other
+ * connections. Actions can also be limited to a commit or a rollback, which
+ * makes it possible to only delete files once the database no longer refers
+ * to them, or to clean up files that were written for changes that were
+ * rolled back. Transactions that are started
+ * outside of the content management framework can't be tracked, when they
+ * wrap the storage of content, they should be started with
+ * {@link #execute} instead.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see ContentQueryManager#inTransaction
+ * @since 1.9.2
+ */
+public final class ContentTransaction {
+    private static final ThreadLocal<ContentTransaction> ACTIVE = new ThreadLocal<>();
+
+    private enum Outcome {
+        ANY, COMMIT, ROLLBACK
+    }
+
+    private record Action(Runnable runnable, Outcome outcome) {
+    }
+
+    private final List<Action> completionActions_ = new ArrayList<>();
+    private boolean committed_ = false;
+    private boolean nested_ = false;
+
+    private ContentTransaction() {
+    }
+
+    /**
+     * Executes a transaction user in a transaction that is tracked until it
+     * has been completed.
+     * <p>When a tracked transaction is already active in the current thread,
+     * the transaction user simply joins it.
+     * <p>The transaction is considered to be rolled back when the transaction
+     * user throws an exception, including the one that is thrown by
+     * {@link DbTransactionUser#rollback}, or when the commit fails.
+     *
+     * @param manager the query manager that will start the transaction
+     * @param user    the transaction user that will be executed
+     * @return the result of the transaction user
+     * @since 1.9.2
+     */
+    public static <ResultType> ResultType execute(DbQueryManager manager, DbTransactionUser<ResultType, Object> user)
+    throws DatabaseException {
+        if (null == manager) throw new IllegalArgumentException("manager can't be null");
+        if (null == user) throw new IllegalArgumentException("user can't be null");
+
+        if (ACTIVE.get() != null) {
+            return manager.inTransaction(user);
+        }
+
+        var transaction = new ContentTransaction();
+        // when an untracked transaction is already running, this one simply
+        // joins it and completes before the changes are committed
+        transaction.nested_ = manager.getConnection().isTransactionValidForThread();
+        ACTIVE.set(transaction);
+        try {
+            // a failing commit rolls the transaction back as well
+            var result = manager.inTransaction(new DbTransactionUser<ResultType, Object>() {
+                public int getTransactionIsolation() {
+                    return user.getTransactionIsolation();
+                }
+
+                public ResultType useTransaction()
+                throws InnerClassException {
+                    var user_result = user.useTransaction();
+                    transaction.committed_ = true;
+                    return user_result;
+                }
+            });
+            return result;
+        } catch (RuntimeException | Error e) {
+            transaction.committed_ = false;
+            throw e;
+        } finally {
+            ACTIVE.remove();
+            transaction.complete();
+        }
+    }
+
+    /**
+     * Indicates whether a tracked transaction is active in the current
+     * thread.
+     *
+     * @return {@code true} if a tracked transaction is active; or
+     * <p>{@code false} otherwise
+     * @since 1.9.2
+     */
+    public static boolean isActive() {
+        return ACTIVE.get() != null;
+    }
+
+    /**
+     * Indicates whether the tracked transaction of the current thread was
+     * started inside a transaction that isn't tracked.
+     * <p>The completion actions of such a transaction run before the
+     * changes are committed by the outer transaction.
+     *
+     * @return {@code true} if the tracked transaction is nested inside an
+     * untracked transaction; or
+     * <p>{@code false} otherwise
+     * @since 1.9.2
+     */
+    public static boolean isNestedInUntrackedTransaction() {
+        var transaction = ACTIVE.get();
+        return transaction != null && transaction.nested_;
+    }
+
+    /**
+     * Runs an action once the tracked transaction of the current thread has
+     * been completed, or immediately when no tracked transaction is active.
+     * <p>The actions are run in the reverse order of their registration.
+     *
+     * @param action the action that will be run
+     * @since 1.9.2
+     */
+    public static void afterCompletion(Runnable action) {
+        if (null == action) throw new IllegalArgumentException("action can't be null");
+
+        register(action, Outcome.ANY);
+    }
+
+    /**
+     * Runs an action once the tracked transaction of the current thread has
+     * been committed, or immediately when no tracked transaction is active.
+     * <p>The action is discarded when the transaction is rolled back.
+     *
+     * @param action the action that will be run
+     * @see #afterCompletion
+     * @since 1.9.2
+     */
+    public static void afterCommit(Runnable action) {
+        if (null == action) throw new IllegalArgumentException("action can't be null");
+
+        register(action, Outcome.COMMIT);
+    }
+
+    /**
+     * Runs an action once the tracked transaction of the current thread has
+     * been rolled back.
+     * <p>When no tracked transaction is active, the action is discarded since
+     * it can't be known whether the changes will be committed.
+     *
+     * @param action the action that will be run
+     * @see #afterCompletion
+     * @since 1.9.2
+     */
+    public static void afterRollback(Runnable action) {
+        if (null == action) throw new IllegalArgumentException("action can't be null");
+
+        var transaction = ACTIVE.get();
+        if (transaction != null) {
+            transaction.completionActions_.add(new Action(action, Outcome.ROLLBACK));
+        }
+    }
+
+    private static void register(Runnable action, Outcome outcome) {
+        var transaction = ACTIVE.get();
+        if (null == transaction) {
+            action.run();
+        } else {
+            transaction.completionActions_.add(new Action(action, outcome));
+        }
+    }
+
+    private void complete() {
+        var skipped = committed_ ? Outcome.ROLLBACK : Outcome.COMMIT;
+
+        // all the actions have to run, even when one of them fails
+        for (var i = completionActions_.size() - 1; i >= 0; i--) {
+            var action = completionActions_.get(i);
+            if (action.outcome() == skipped) {
+                continue;
+            }
+
+            try {
+                action.runnable().run();
+            } catch (RuntimeException e) {
+                Logger.getLogger("rife.cmf").severe(ExceptionUtils.getExceptionStackTrace(e));
+            }
+        }
+    }
+}
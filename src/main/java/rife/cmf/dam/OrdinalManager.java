@@ -4,6 +4,7 @@
  */
 package rife.cmf.dam;
 
+import rife.cmf.dam.ordinalmanagers.DatabaseOrdinalsFactory;
 import rife.database.*;
 import rife.database.queries.Select;
 import rife.database.queries.Update;
@@ -12,6 +13,9 @@ import rife.tools.ExceptionUtils;
 import rife.tools.InnerClassException;
 
 import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 /**
@@ -45,6 +49,13 @@ import java.util.logging.Logger;
  * level methods: {@link #free(int) free}, {@link #update(int, int) update},
  * {@link #tighten() tighten} and {@link #obtainInsertOrdinal()
  * obtainInsertOrdinal}.
+ * <p>When the ordinal column isn't part of a unique index, freeing and
+ * tightening ordinals is done with set-based statements instead of updating
+ * the rows one by one. With a unique index, the rows are updated one by one
+ * in an order that never produces duplicate ordinals. Concurrent inserts in
+ * the same JVM can be serialized with the {@link #lockInsert insert lock}
+ * so that they don't obtain the same ordinal. This lock isn't shared with
+ * other processes that insert rows in the same table.
  *
  * @author Geert Bevin (gbevin[remove] at uwyn dot com)
  * @since 1.0
@@ -59,6 +70,16 @@ public class OrdinalManager implements Cloneable {
      */
     public static final Direction DOWN = Direction.DOWN;
 
+    private record InsertLockKey(Datasource datasource, String table, String ordinalColumn) {
+    }
+
+    private static final class InsertLock {
+        private final ReentrantLock lock_ = new ReentrantLock();
+        private int users_ = 0;
+    }
+
+    private static final ConcurrentHashMap<InsertLockKey, InsertLock> INSERT_LOCKS = new ConcurrentHashMap<>();
+
     private final Datasource datasource_;
     private final DbQueryManager dbQueryManager_;
     private final String table_;
@@ -66,11 +87,16 @@ public class OrdinalManager implements Cloneable {
     private String restrictColumn_;
 
     private final Update freeMoveOrdinal_;
+    private final Update freeOrdinals_;
     private final Select getFinalOrdinal_;
     private final Select getOrdinals_;
+    private final Select countDuplicateOrdinals_;
     private Select getFinalOrdinalRestricted_ = null;
     private Update freeMoveOrdinalRestricted_ = null;
+    private Update freeOrdinalsRestricted_ = null;
     private Select getOrdinalsRestricted_ = null;
+    private Select countDuplicateOrdinalsRestricted_ = null;
+    private volatile Boolean uniqueOrdinals_ = null;
 
     /**
      * Creates a new {@code OrdinalManager} that manages ordinals
@@ -107,11 +133,22 @@ public class OrdinalManager implements Cloneable {
             .whereParameter(ordinalColumn_, "current", "=")
             .fieldParameter(ordinalColumn_, "new");
 
+        freeOrdinals_ = new Update(datasource);
+        freeOrdinals_
+            .table(table_)
+            .fieldCustom(ordinalColumn_, ordinalColumn_ + " + 1")
+            .whereParameter(ordinalColumn_, "first", ">=");
+
         getOrdinals_ = new Select(datasource);
         getOrdinals_
             .field(ordinalColumn_)
             .from(table_)
             .orderBy(ordinalColumn_, Select.ASC);
+
+        countDuplicateOrdinals_ = new Select(datasource);
+        countDuplicateOrdinals_
+            .fieldCustom("COUNT(*) - COUNT(DISTINCT " + ordinalColumn_ + ")")
+            .from(table_);
     }
 
     /**
@@ -148,6 +185,13 @@ public class OrdinalManager implements Cloneable {
             .whereParameterAnd(ordinalColumn_, "current", "=")
             .fieldParameter(ordinalColumn_, "new");
 
+        freeOrdinalsRestricted_ = new Update(datasource_);
+        freeOrdinalsRestricted_
+            .table(table_)
+            .fieldCustom(ordinalColumn_, ordinalColumn_ + " + 1")
+            .whereParameter(restrictColumn_, "=")
+            .whereParameterAnd(ordinalColumn_, "first", ">=");
+
         getOrdinalsRestricted_ = new Select(datasource_);
         getOrdinalsRestricted_
             .field(ordinalColumn_)
@@ -155,6 +199,11 @@ public class OrdinalManager implements Cloneable {
             .whereParameter(restrictColumn_, "=")
             .orderBy(ordinalColumn_, Select.ASC);
 
+        countDuplicateOrdinalsRestricted_ = new Select(datasource_);
+        countDuplicateOrdinalsRestricted_
+            .fieldCustom("COUNT(*) - COUNT(DISTINCT " + ordinalColumn_ + ")")
+            .from(table_)
+            .whereParameter(restrictColumn_, "=");
     }
 
     /**
@@ -189,6 +238,93 @@ public class OrdinalManager implements Cloneable {
         return restrictColumn_;
     }
 
+    /**
+     * Obtains the lock that serializes the insertion of new rows for the
+     * ordinal column of this {@code OrdinalManager}.
+     * <p>The lock is shared by all the {@code OrdinalManager} instances
+     * that manage the same ordinal column of the same table in the same
+     * datasource. It should be held from the moment that an ordinal is
+     * obtained with {@link #obtainInsertOrdinal()} until the outermost
+     * transaction that inserts the new row has been committed, otherwise
+     * concurrent inserts can obtain the same ordinal.
+     * <p>The lock is reentrant, each successful call has to be matched by a
+     * call to {@link #unlockInsert()}. It's local to this JVM and isn't safe
+     * for inserts that are done concurrently by several processes.
+     *
+     * @param timeout the maximum time to wait for the lock
+     * @param unit    the unit of the timeout
+     * @return {@code true} if the lock was obtained; or
+     * <p>{@code false} if the timeout elapsed
+     * @throws InterruptedException if the current thread was interrupted
+     * while waiting
+     * @see ContentQueryManager#save
+     * @see ContentQueryManager#inTransaction
+     * @since 1.9.2
+     */
+    public boolean lockInsert(long timeout, TimeUnit unit)
+    throws InterruptedException {
+        var key = getInsertLockKey();
+        var insert_lock = INSERT_LOCKS.compute(key, (k, lock) -> {
+            if (null == lock) lock = new InsertLock();
+            lock.users_++;
+            return lock;
+        });
+
+        var locked = false;
+        try {
+            locked = insert_lock.lock_.tryLock(timeout, unit);
+        } finally {
+            if (!locked) {
+                releaseInsertLock(key);
+            }
+        }
+        return locked;
+    }
+
+    /**
+     * Releases the insert lock that was obtained with {@link #lockInsert}.
+     *
+     * @throws IllegalMonitorStateException if the current thread doesn't
+     * hold the insert lock
+     * @since 1.9.2
+     */
+    public void unlockInsert() {
+        var key = getInsertLockKey();
+        var insert_lock = INSERT_LOCKS.get(key);
+        if (null == insert_lock || !insert_lock.lock_.isHeldByCurrentThread()) {
+            throw new IllegalMonitorStateException("the insert lock isn't held by the current thread");
+        }
+
+        insert_lock.lock_.unlock();
+        releaseInsertLock(key);
+    }
+
+    /**
+     * Indicates whether the current thread holds the insert lock.
+     *
+     * @return {@code true} if the current thread holds the insert lock; or
+     * <p>{@code false} otherwise
+     * @see #lockInsert
+     * @since 1.9.2
+     */
+    public boolean isInsertLockHeldByCurrentThread() {
+        var insert_lock = INSERT_LOCKS.get(getInsertLockKey());
+        return insert_lock != null && insert_lock.lock_.isHeldByCurrentThread();
+    }
+
+    static int countInsertLocks() {
+        return INSERT_LOCKS.size();
+    }
+
+    private InsertLockKey getInsertLockKey() {
+        return new InsertLockKey(datasource_, table_, ordinalColumn_);
+    }
+
+    private static void releaseInsertLock(InsertLockKey key) {
+        // the lock is removed once no thread holds it or waits for it
+        INSERT_LOCKS.computeIfPresent(key, (k, lock) -> --lock.users_ == 0 ? null : lock);
+    }
+
     /**
      * Moves the position of a row with a specific ordinal within the entire
      * table.
@@ -468,6 +604,14 @@ public class OrdinalManager implements Cloneable {
                 return false;
             }
 
+            if (!hasUniqueOrdinals()) {
+                dbQueryManager_.executeUpdate(freeOrdinals_, s -> s
+                    .setInt("first", ordinal));
+                return true;
+            }
+
+            // the rows are moved starting from the last one, so that an
+            // ordinal is always free before another row takes it
             int last_ordinal = dbQueryManager_.executeGetFirstInt(getFinalOrdinal_);
 
             for (int i = last_ordinal; i >= ordinal; i--) {
@@ -523,6 +667,13 @@ public class OrdinalManager implements Cloneable {
                 return false;
             }
 
+            if (!hasUniqueOrdinals()) {
+                dbQueryManager_.executeUpdate(freeOrdinalsRestricted_, s ->
+                    s.setLong(restrictColumn_, restrictId)
+                        .setInt("first", ordinal));
+                return true;
+            }
+
             int last_ordinal = dbQueryManager_.executeGetFirstInt(getFinalOrdinalRestricted_, s ->
                 s.setLong(restrictColumn_, restrictId));
 
@@ -607,7 +758,19 @@ public class OrdinalManager implements Cloneable {
      * @since 1.0
      */
     public boolean tighten() {
-        dbQueryManager_.inTransaction(() -> dbQueryManager_.executeQuery(getOrdinals_, new TightenResultSetHandler()));
+        dbQueryManager_.inTransaction(() -> {
+            // duplicate ordinals can't be renumbered by matching them, they
+            // are handled one row at a time instead, as well as ordinals that
+            // can collide while they're renumbered
+            if (hasUniqueOrdinals() ||
+                dbQueryManager_.executeGetFirstInt(countDuplicateOrdinals_) > 0) {
+                dbQueryManager_.executeQuery(getOrdinals_, new TightenResultSetHandler());
+            } else {
+                DatabaseOrdinalsFactory.instance(datasource_).tighten(table_, ordinalColumn_, null, 0);
+            }
+
+            return true;
+        });
 
         return true;
     }
@@ -651,9 +814,35 @@ public class OrdinalManager implements Cloneable {
             }
         };
 
-        dbQueryManager_.inTransaction(() -> dbQueryManager_.executeQuery(getOrdinalsRestricted_, handler));
+        Boolean result = dbQueryManager_.inTransaction(() -> {
+            if (hasUniqueOrdinals() ||
+                dbQueryManager_.executeGetFirstInt(countDuplicateOrdinalsRestricted_, s ->
+                    s.setLong(restrictColumn_, restrictId)) > 0) {
+                dbQueryManager_.executeQuery(getOrdinalsRestricted_, handler);
+                return handler.isTightened();
+            }
+
+            if (!dbQueryManager_.executeHasResultRows(getOrdinalsRestricted_, s ->
+                s.setLong(restrictColumn_, restrictId))) {
+                return false;
+            }
 
-        return handler.isTightened();
+            DatabaseOrdinalsFactory.instance(datasource_).tighten(table_, ordinalColumn_, restrictColumn_, restrictId);
+            return true;
+        });
+
+        return null != result && result;
+    }
+
+    private boolean hasUniqueOrdinals() {
+        // set-based statements update the rows in an arbitrary order, which
+        // can temporarily duplicate ordinals
+        var unique = uniqueOrdinals_;
+        if (null == unique) {
+            unique = DatabaseOrdinalsFactory.instance(datasource_).isUniqueColumn(table_, ordinalColumn_);
+            uniqueOrdinals_ = unique;
+        }
+        return unique;
     }
 
     /**
@@ -667,6 +856,8 @@ public class OrdinalManager implements Cloneable {
      *  0 |       1 | another one
      *  1 |       2 | this is yet an article</pre>
      * <p>Will return the value {@code 3}.
+     * <p>The {@link #lockInsert insert lock} should be held until the
+     * new row is committed when rows can be inserted concurrently.
      *
      * @return the requested ordinal; or
      * <p>{@code 0} if no ordinals are present within the table yet
@@ -696,6 +887,8 @@ public class OrdinalManager implements Cloneable {
      *  4 |          3 |       0 | our latest article
      *  6 |          3 |       1 | important one</pre>
      * <p>Will return the value {@code 2}.
+     * <p>The {@link #lockInsert insert lock} should be held until the
+     * new row is committed when rows can be inserted concurrently.
      *
      * @param restrictId the id by which to restrict with
      * @return the requested ordinal; or
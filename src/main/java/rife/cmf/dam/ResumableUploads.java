@@ -0,0 +1,380 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Stages uploads that are received in several parts, so that interrupted
+ * uploads can be resumed from the last received byte.
+ * <p>Each upload is staged in its own file in a directory, together with
+ * the declared length and metadata of the upload. The offset of an upload
+ * is the size of its staged file, which makes it survive restarts. Once
+ * all the data has been received, the upload can be
+ * {@link #commit committed} to a content property of a bean, the staged
+ * data is then streamed into the content store.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see rife.cmf.elements.ResumableUpload
+ * @since 1.9.2
+ */
+public class ResumableUploads {
+    public static final Duration DEFAULT_EXPIRATION = Duration.ofDays(1);
+
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{32}");
+    private static final String DATA_SUFFIX = ".upload";
+    private static final String INFO_SUFFIX = ".info";
+    private static final String PROPERTY_LENGTH = "length";
+    private static final String PROPERTY_METADATA = "metadata.";
+
+    /**
+     * A staged upload.
+     *
+     * @param id       the unique identifier of the upload
+     * @param length   the total length of the upload in bytes
+     * @param offset   the number of bytes that have been received
+     * @param metadata the metadata that was provided when the upload was
+     *                 created
+     * @since 1.9.2
+     */
+    public record Upload(String id, long length, long offset, Map<String, String> metadata) {
+        /**
+         * Indicates whether all the data of the upload has been received.
+         *
+         * @return {@code true} if the upload is complete; or
+         * {@code false} otherwise
+         * @since 1.9.2
+         */
+        public boolean isComplete() {
+            return offset == length;
+        }
+    }
+
+    private final Path directory_;
+    private final ConcurrentHashMap<String, ReentrantLock> locks_ = new ConcurrentHashMap<>();
+    private long maximumLength_ = -1;
+    private Duration expiration_ = DEFAULT_EXPIRATION;
+
+    /**
+     * Creates a new staging area for resumable uploads.
+     *
+     * @param directory the directory in which the uploads are staged
+     * @since 1.9.2
+     */
+    public ResumableUploads(File directory) {
+        if (null == directory) throw new IllegalArgumentException("directory can't be null");
+
+        directory_ = directory.toPath();
+        try {
+            Files.createDirectories(directory_);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("directory '" + directory + "' can't be used to stage uploads", e);
+        }
+    }
+
+    /**
+     * Sets the maximum length of an upload.
+     *
+     * @param length the maximum length in bytes; or
+     *               {@code -1} if the length isn't limited
+     * @return this {@code ResumableUploads} instance
+     * @since 1.9.2
+     */
+    public ResumableUploads maximumLength(long length) {
+        maximumLength_ = length;
+        return this;
+    }
+
+    /**
+     * Retrieves the maximum length of an upload.
+     *
+     * @return the maximum length in bytes; or
+     * {@code -1} if the length isn't limited
+     * @since 1.9.2
+     */
+    public long maximumLength() {
+        return maximumLength_;
+    }
+
+    /**
+     * Sets the duration after which uploads that haven't received any data
+     * are {@link #purgeExpired() purged}.
+     *
+     * @param expiration the expiration duration
+     * @return this {@code ResumableUploads} instance
+     * @since 1.9.2
+     */
+    public ResumableUploads expiration(Duration expiration) {
+        if (null == expiration) throw new IllegalArgumentException("expiration can't be null");
+
+        expiration_ = expiration;
+        return this;
+    }
+
+    /**
+     * Retrieves the duration after which uploads that haven't received any
+     * data are purged.
+     *
+     * @return the expiration duration
+     * @since 1.9.2
+     */
+    public Duration expiration() {
+        return expiration_;
+    }
+
+    /**
+     * Creates a new upload.
+     *
+     * @param length   the total length of the upload in bytes
+     * @param metadata the metadata of the upload; or
+     *                 {@code null} if there's no metadata
+     * @return the created upload
+     * @throws IOException when the upload couldn't be staged
+     * @since 1.9.2
+     */
+    public Upload create(long length, Map<String, String> metadata)
+    throws IOException {
+        if (length < 0) throw new IllegalArgumentException("length can't be negative");
+        if (maximumLength_ >= 0 && length > maximumLength_) throw new IllegalArgumentException("length can't be larger than " + maximumLength_);
+
+        if (null == metadata) {
+            metadata = Collections.emptyMap();
+        }
+
+        var id = UUID.randomUUID().toString().replace("-", "");
+
+        var info = new Properties();
+        info.setProperty(PROPERTY_LENGTH, String.valueOf(length));
+        for (var entry : metadata.entrySet()) {
+            info.setProperty(PROPERTY_METADATA + entry.getKey(), entry.getValue());
+        }
+
+        // the info file is written last, it marks the upload as existing
+        Files.createFile(dataFile(id));
+        var tmp = Files.createTempFile(directory_, ".", null);
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp)) {
+                info.store(writer, null);
+            }
+            Files.move(tmp, infoFile(id), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        return new Upload(id, length, 0, Collections.unmodifiableMap(new LinkedHashMap<>(metadata)));
+    }
+
+    /**
+     * Retrieves an upload.
+     *
+     * @param id the identifier of the upload
+     * @return the upload; or
+     * {@code null} if the upload doesn't exist
+     * @throws IOException when the staged upload couldn't be read
+     * @since 1.9.2
+     */
+    public Upload get(String id)
+    throws IOException {
+        if (!isValidId(id)) {
+            return null;
+        }
+
+        var info_file = infoFile(id);
+        var data_file = dataFile(id);
+        if (!Files.exists(info_file) || !Files.exists(data_file)) {
+            return null;
+        }
+
+        var info = new Properties();
+        try (Reader reader = Files.newBufferedReader(info_file)) {
+            info.load(reader);
+        }
+
+        var metadata = new LinkedHashMap<String, String>();
+        for (var name : info.stringPropertyNames()) {
+            if (name.startsWith(PROPERTY_METADATA)) {
+                metadata.put(name.substring(PROPERTY_METADATA.length()), info.getProperty(name));
+            }
+        }
+
+        return new Upload(id, Long.parseLong(info.getProperty(PROPERTY_LENGTH)), Files.size(data_file), Collections.unmodifiableMap(metadata));
+    }
+
+    /**
+     * Appends data to an upload.
+     * <p>The data is written to the staged file while it's being received,
+     * when the stream is interrupted all the bytes that were received are
+     * kept and the upload can be resumed from the new offset.
+     *
+     * @param id     the identifier of the upload
+     * @param offset the offset at which the data starts, it has to be the
+     *               current offset of the upload
+     * @param data   the stream with the data
+     * @return the upload after the data was appended; or
+     * {@code null} if the upload doesn't exist
+     * @throws IllegalStateException when the offset doesn't match the
+     *                               upload, or when another append for the same upload is in progress
+     * @throws IOException           when an error occurred while receiving or staging the data
+     * @since 1.9.2
+     */
+    public Upload append(String id, long offset, InputStream data)
+    throws IOException {
+        if (null == data) throw new IllegalArgumentException("data can't be null");
+
+        var upload = get(id);
+        if (null == upload) {
+            return null;
+        }
+
+        var lock = locks_.computeIfAbsent(id, k -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            throw new IllegalStateException("upload '" + id + "' is already receiving data");
+        }
+        try {
+            try (var channel = FileChannel.open(dataFile(id), StandardOpenOption.WRITE)) {
+                var position = channel.size();
+                if (position != offset) {
+                    throw new IllegalStateException("upload '" + id + "' is at offset " + position + " instead of " + offset);
+                }
+
+                var in = Channels.newChannel(data);
+                var remaining = upload.length() - position;
+                try {
+                    while (remaining > 0) {
+                        var count = channel.transferFrom(in, position, remaining);
+                        if (count <= 0) {
+                            break;
+                        }
+                        position += count;
+                        remaining -= count;
+                    }
+                } finally {
+                    channel.force(false);
+                }
+
+                if (0 == remaining && data.read() != -1) {
+                    throw new IllegalStateException("upload '" + id + "' received more than " + upload.length() + " bytes");
+                }
+
+                return new Upload(id, upload.length(), position, upload.metadata());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the data of a complete upload as the content of a bean
+     * property and removes the upload from the staging area.
+     *
+     * @param id           the identifier of the upload
+     * @param manager      the content query manager of the bean
+     * @param bean         the bean that the content belongs to, it should
+     *                     already have been saved
+     * @param propertyName the name of the content property
+     * @param <T>          the type of the bean
+     * @return {@code true} if the content was stored; or
+     * {@code false} otherwise
+     * @throws IllegalStateException when the upload isn't complete
+     * @throws IOException           when the staged data couldn't be read
+     * @since 1.9.2
+     */
+    public <T> boolean commit(String id, ContentQueryManager<T> manager, T bean, String propertyName)
+    throws IOException {
+        if (null == manager) throw new IllegalArgumentException("manager can't be null");
+
+        var upload = get(id);
+        if (null == upload) {
+            return false;
+        }
+        if (!upload.isComplete()) {
+            throw new IllegalStateException("upload '" + id + "' isn't complete");
+        }
+
+        boolean result;
+        try (var data = Files.newInputStream(dataFile(id))) {
+            result = manager.storeContent(bean, propertyName, data);
+        }
+
+        if (result) {
+            delete(id);
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes an upload from the staging area.
+     *
+     * @param id the identifier of the upload
+     * @return {@code true} if the upload was removed; or
+     * {@code false} if it didn't exist
+     * @throws IOException when the staged files couldn't be deleted
+     * @since 1.9.2
+     */
+    public boolean delete(String id)
+    throws IOException {
+        if (!isValidId(id)) {
+            return false;
+        }
+
+        var result = Files.deleteIfExists(infoFile(id));
+        Files.deleteIfExists(dataFile(id));
+        locks_.remove(id);
+        return result;
+    }
+
+    /**
+     * Removes the uploads that didn't receive any data during the
+     * {@link #expiration() expiration} duration.
+     *
+     * @return the number of uploads that were removed
+     * @throws IOException when the staging directory couldn't be read
+     * @since 1.9.2
+     */
+    public int purgeExpired()
+    throws IOException {
+        var expired = System.currentTimeMillis() - expiration_.toMillis();
+        var result = 0;
+        try (var files = Files.list(directory_)) {
+            for (var file : files.toList()) {
+                var name = file.getFileName().toString();
+                if (name.endsWith(DATA_SUFFIX) &&
+                    Files.getLastModifiedTime(file).toMillis() < expired &&
+                    delete(name.substring(0, name.length() - DATA_SUFFIX.length()))) {
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isValidId(String id) {
+        return id != null && ID_PATTERN.matcher(id).matches();
+    }
+
+    private Path dataFile(String id) {
+        return directory_.resolve(id + DATA_SUFFIX);
+    }
+
+    private Path infoFile(String id) {
+        return directory_.resolve(id + INFO_SUFFIX);
+    }
+}
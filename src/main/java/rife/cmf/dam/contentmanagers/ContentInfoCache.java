@@ -0,0 +1,386 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.contentmanagers;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caches the {@link DatabaseContentInfo} of content locations so that
+ * serving and rendering content doesn't query the content info, attributes
+ * and properties each time.
+ * <p>The cache is bounded and evicts the least recently used locations when
+ * it's full. Storing or deleting content invalidates all the cached
+ * locations that can resolve to the modified path, either directly or
+ * through the name of the content. The locations are indexed by the paths
+ * they can resolve to, so that an invalidation doesn't have to scan the
+ * whole cache.
+ * <p>When several nodes share the same database, an
+ * {@link InvalidationNotifier} can be provided to propagate the
+ * invalidations to the other nodes, which should apply them with
+ * {@link #applyInvalidation(String, String)}.
+ * <p>Copies of the content info are cached and returned, so that callers
+ * can't modify the cached instances.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see DatabaseContent#contentInfoCache(ContentInfoCache)
+ * @since 1.9.2
+ */
+public class ContentInfoCache {
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+    /**
+     * Notifies other nodes of content that was modified.
+     *
+     * @since 1.9.2
+     */
+    @FunctionalInterface
+    public interface InvalidationNotifier {
+        /**
+         * Called after content was stored or deleted on this node.
+         *
+         * @param repository the repository of the modified content
+         * @param path       the path of the modified content
+         * @since 1.9.2
+         */
+        void invalidated(String repository, String path);
+    }
+
+    private final int maximumSize_;
+    private final ReentrantLock lock_ = new ReentrantLock();
+    private final LinkedHashMap<ContentLocation, DatabaseContentInfo> entries_;
+    private final Map<String, Map<String, Set<ContentLocation>>> index_ = new HashMap<>();
+    private final AtomicLong hits_ = new AtomicLong();
+    private final AtomicLong misses_ = new AtomicLong();
+    private long generation_ = 0;
+    private InvalidationNotifier notifier_ = null;
+
+    /**
+     * Creates a new content info cache with the default maximum size.
+     *
+     * @since 1.9.2
+     */
+    public ContentInfoCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a new content info cache.
+     *
+     * @param maximumSize the maximum number of locations that are cached
+     * @since 1.9.2
+     */
+    public ContentInfoCache(int maximumSize) {
+        if (maximumSize <= 0) throw new IllegalArgumentException("maximumSize should be greater than 0");
+
+        maximumSize_ = maximumSize;
+        entries_ = new LinkedHashMap<>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<ContentLocation, DatabaseContentInfo> eldest) {
+                if (size() > maximumSize_) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Sets the notifier that propagates invalidations to other nodes.
+     *
+     * @param notifier the invalidation notifier; or
+     *                 {@code null} if invalidations are only local
+     * @return this {@code ContentInfoCache} instance
+     * @since 1.9.2
+     */
+    public ContentInfoCache notifier(InvalidationNotifier notifier) {
+        notifier_ = notifier;
+        return this;
+    }
+
+    /**
+     * Retrieves the maximum number of locations that are cached.
+     *
+     * @return the maximum size
+     * @since 1.9.2
+     */
+    public int getMaximumSize() {
+        return maximumSize_;
+    }
+
+    /**
+     * Retrieves the cached content info of a location.
+     *
+     * @param location the location of the content
+     * @return a copy of the cached content info; or
+     * {@code null} if the location isn't cached
+     * @since 1.9.2
+     */
+    public DatabaseContentInfo get(ContentLocation location) {
+        DatabaseContentInfo result;
+        lock_.lock();
+        try {
+            result = entries_.get(location);
+        } finally {
+            lock_.unlock();
+        }
+
+        if (null == result) {
+            misses_.incrementAndGet();
+            return null;
+        }
+
+        hits_.incrementAndGet();
+        return copy(result);
+    }
+
+    /**
+     * Retrieves the current generation of the cache, it changes each time
+     * content is invalidated.
+     * <p>The generation should be obtained before the content info is read
+     * from the database, and provided when it's {@link #put put} in the
+     * cache. This prevents content info that was read before an
+     * invalidation from being cached afterwards.
+     *
+     * @return the current generation
+     * @since 1.9.2
+     */
+    public long getGeneration() {
+        lock_.lock();
+        try {
+            return generation_;
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    /**
+     * Caches the content info of a location.
+     *
+     * @param location    the location of the content
+     * @param contentInfo the content info to cache, a copy of it is stored
+     * @param generation  the generation of the cache before the content info
+     *                    was read
+     * @return {@code true} if the content info was cached; or
+     * {@code false} if content was invalidated in the meantime
+     * @since 1.9.2
+     */
+    public boolean put(ContentLocation location, DatabaseContentInfo contentInfo, long generation) {
+        if (null == location) throw new IllegalArgumentException("location can't be null");
+        if (null == contentInfo) throw new IllegalArgumentException("contentInfo can't be null");
+
+        lock_.lock();
+        try {
+            if (generation != generation_) {
+                return false;
+            }
+
+            var previous = entries_.remove(location);
+            if (previous != null) {
+                unindex(location, previous);
+            }
+
+            var cached = copy(contentInfo);
+            entries_.put(location, cached);
+            index(location, cached);
+            return true;
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    private static Set<String> resolvedPaths(ContentLocation location, DatabaseContentInfo contentInfo) {
+        // a location resolves to the content at its path, or to the
+        // content at its parent path with its last segment as name
+        var result = new HashSet<String>(3);
+        var location_path = location.path();
+        result.add(location_path);
+        var slash_index = location_path.lastIndexOf('/');
+        if (slash_index >= 0) {
+            result.add(location_path.substring(0, slash_index));
+        }
+        if (contentInfo.getPath() != null) {
+            result.add(contentInfo.getPath());
+        }
+        return result;
+    }
+
+    private void index(ContentLocation location, DatabaseContentInfo contentInfo) {
+        var paths = index_.computeIfAbsent(location.repository(), k -> new HashMap<>());
+        for (var path : resolvedPaths(location, contentInfo)) {
+            paths.computeIfAbsent(path, k -> new HashSet<>()).add(location);
+        }
+    }
+
+    private void unindex(ContentLocation location, DatabaseContentInfo contentInfo) {
+        var paths = index_.get(location.repository());
+        if (null == paths) {
+            return;
+        }
+
+        for (var path : resolvedPaths(location, contentInfo)) {
+            var locations = paths.get(path);
+            if (locations != null) {
+                locations.remove(location);
+                if (locations.isEmpty()) {
+                    paths.remove(path);
+                }
+            }
+        }
+        if (paths.isEmpty()) {
+            index_.remove(location.repository());
+        }
+    }
+
+    private static DatabaseContentInfo copy(DatabaseContentInfo contentInfo) {
+        var result = new DatabaseContentInfo();
+        result.setContentId(contentInfo.getContentId());
+        result.setPath(contentInfo.getPath());
+        result.setVersion(contentInfo.getVersion());
+        result.setMimeType(contentInfo.getMimeType());
+        result.setFragment(contentInfo.isFragment());
+        result.setName(contentInfo.getName());
+        if (contentInfo.getCreated() != null) {
+            result.setCreated((Timestamp) contentInfo.getCreated().clone());
+        }
+        if (contentInfo.getAttributes() != null) {
+            result.setAttributes(new LinkedHashMap<>(contentInfo.getAttributes()));
+        }
+        result.setSize(contentInfo.getSize());
+        if (contentInfo.getProperties() != null) {
+            result.setProperties(new LinkedHashMap<>(contentInfo.getProperties()));
+        }
+        return result;
+    }
+
+    /**
+     * Invalidates the locations that can resolve to modified content and
+     * notifies the other nodes.
+     *
+     * @param repository the repository of the modified content
+     * @param path       the path of the modified content
+     * @since 1.9.2
+     */
+    public void invalidate(String repository, String path) {
+        applyInvalidation(repository, path);
+
+        var notifier = notifier_;
+        if (notifier != null) {
+            notifier.invalidated(repository, path);
+        }
+    }
+
+    /**
+     * Invalidates the locations that can resolve to modified content,
+     * without notifying the other nodes.
+     * <p>This should be used to apply invalidations that were received
+     * from other nodes.
+     *
+     * @param repository the repository of the modified content
+     * @param path       the path of the modified content
+     * @since 1.9.2
+     */
+    public void applyInvalidation(String repository, String path) {
+        if (null == repository) throw new IllegalArgumentException("repository can't be null");
+        if (null == path) throw new IllegalArgumentException("path can't be null");
+
+        lock_.lock();
+        try {
+            generation_++;
+
+            var paths = index_.get(repository);
+            if (null == paths) {
+                return;
+            }
+            var locations = paths.get(path);
+            if (null == locations) {
+                return;
+            }
+
+            for (var location : new ArrayList<>(locations)) {
+                var content_info = entries_.remove(location);
+                if (content_info != null) {
+                    unindex(location, content_info);
+                }
+            }
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    /**
+     * Removes all the cached content info.
+     *
+     * @since 1.9.2
+     */
+    public void clear() {
+        lock_.lock();
+        try {
+            generation_++;
+            entries_.clear();
+            index_.clear();
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of cached locations.
+     *
+     * @return the number of cached locations
+     * @since 1.9.2
+     */
+    public int size() {
+        lock_.lock();
+        try {
+            return entries_.size();
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of lookups that were found in the cache.
+     *
+     * @return the number of hits
+     * @since 1.9.2
+     */
+    public long getHits() {
+        return hits_.get();
+    }
+
+    /**
+     * Retrieves the number of lookups that weren't found in the cache.
+     *
+     * @return the number of misses
+     * @since 1.9.2
+     */
+    public long getMisses() {
+        return misses_.get();
+    }
+
+    /**
+     * Retrieves the ratio of lookups that were found in the cache.
+     *
+     * @return the hit rate between {@code 0} and {@code 1}; or
+     * {@code 0} if no lookups happened yet
+     * @since 1.9.2
+     */
+    public double getHitRate() {
+        var hits = hits_.get();
+        var total = hits + misses_.get();
+        if (0 == total) {
+            return 0;
+        }
+        return (double) hits / total;
+    }
+}
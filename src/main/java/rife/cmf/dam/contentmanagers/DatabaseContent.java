@@ -7,18 +7,29 @@ package rife.cmf.dam.contentmanagers;
 import rife.cmf.Content;
 import rife.cmf.ContentRepository;
 import rife.cmf.MimeType;
+import rife.cmf.dam.ContentDataBatchUser;
 import rife.cmf.dam.ContentDataUser;
 import rife.cmf.dam.ContentDataUserWithoutResult;
 import rife.cmf.dam.ContentManager;
 import rife.cmf.dam.ContentStore;
+import rife.cmf.dam.ContentTransaction;
 import rife.cmf.dam.contentmanagers.exceptions.InstallContentErrorException;
 import rife.cmf.dam.contentmanagers.exceptions.RemoveContentErrorException;
+import rife.cmf.dam.contentmanagers.exceptions.StoreImageVariantsErrorException;
 import rife.cmf.dam.contentmanagers.exceptions.UnknownContentRepositoryException;
 import rife.cmf.dam.contentmanagers.exceptions.UnsupportedMimeTypeException;
+import rife.cmf.dam.contentmanagers.exceptions.UntrackedTransactionException;
 import rife.cmf.dam.contentstores.DatabaseImageStoreFactory;
 import rife.cmf.dam.contentstores.DatabaseRawStoreFactory;
 import rife.cmf.dam.contentstores.DatabaseTextStoreFactory;
 import rife.cmf.dam.exceptions.ContentManagerException;
+import rife.cmf.format.ImageDerivatives;
+import rife.cmf.format.ImageFormatter;
+import rife.cmf.format.ImageVariant;
+import rife.cmf.format.exceptions.FormatException;
+import rife.cmf.format.exceptions.UnreadableDataFormatException;
+import rife.cmf.loader.ImageContentLoader;
+import rife.cmf.loader.LoadedContent;
 import rife.cmf.transform.ContentTransformer;
 import rife.database.Datasource;
 import rife.database.DbQueryManager;
@@ -28,18 +39,36 @@ import rife.database.exceptions.DatabaseException;
 import rife.database.queries.*;
 import rife.engine.Context;
 import rife.engine.Route;
+import rife.tools.Convert;
+import rife.tools.ExceptionUtils;
 import rife.tools.InnerClassException;
 
+import java.awt.Image;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Logger;
 
 public abstract class DatabaseContent extends DbQueryManager implements ContentManager {
+    /**
+     * The maximum number of locations that are looked up with a single query
+     * when content data is used in batch.
+     *
+     * @since 1.9.2
+     */
+    public static final int BATCH_SIZE = 100;
+
     protected final ArrayList<ContentStore> stores_;
     protected final HashMap<MimeType, ContentStore> mimeMapping_;
+    private ContentInfoCache contentInfoCache_ = null;
 
     public DatabaseContent(Datasource datasource) {
         super(datasource);
@@ -57,6 +86,69 @@ public abstract class DatabaseContent extends DbQueryManager implements ContentM
         }
     }
 
+    /**
+     * Registers a content store that will handle the content data of all
+     * the mime types it supports, replacing the store that previously
+     * handled them.
+     * <p>This makes it possible to keep the data of certain mime types
+     * outside the database, for instance with a
+     * {@link rife.cmf.dam.contentstores.FileContentStore}. The content info
+     * is still stored by this content manager.
+     * <p>Stores should be registered before the content manager is installed
+     * and used, since the registered stores are installed and removed
+     * together with the content manager.
+     *
+     * @param store the content store to register
+     * @return this {@code DatabaseContent} instance
+     * @since 1.9.2
+     */
+    public DatabaseContent contentStore(ContentStore store) {
+        if (null == store) throw new IllegalArgumentException("store can't be null");
+
+        if (!stores_.contains(store)) {
+            stores_.add(store);
+        }
+        for (var mime_type : store.getSupportedMimeTypes()) {
+            mimeMapping_.put(mime_type, store);
+        }
+
+        return this;
+    }
+
+    /**
+     * Sets the cache that holds the content info of the locations that were
+     * looked up, this avoids querying the content info, attributes and
+     * properties each time content is served or rendered.
+     * <p>The cached locations are invalidated when content is stored or
+     * deleted through this content manager, and again once the transaction
+     * of a {@link ContentTransaction} has been completed. Only the latter
+     * invalidation is propagated to the other nodes. Content info that is
+     * read inside a tracked transaction isn't cached, and content can't be
+     * modified inside an untracked transaction while a cache is set, since
+     * the invalidation would happen before the changes are committed.
+     *
+     * @param cache the content info cache; or
+     *              {@code null} if content info shouldn't be cached
+     * @return this {@code DatabaseContent} instance
+     * @since 1.9.2
+     */
+    public DatabaseContent contentInfoCache(ContentInfoCache cache) {
+        contentInfoCache_ = cache;
+        return this;
+    }
+
+    /**
+     * Retrieves the cache that holds the content info of the locations that
+     * were looked up.
+     *
+     * @return the content info cache; or
+     * {@code null} if content info isn't cached
+     * @since 1.9.2
+     */
+    public ContentInfoCache getContentInfoCache() {
+        return contentInfoCache_;
+    }
+
     public abstract DatabaseContentInfo getContentInfo(String location)
     throws ContentManagerException;
 
@@ -90,6 +182,31 @@ public abstract class DatabaseContent extends DbQueryManager implements ContentM
         return true;
     }
 
+    /**
+     * Upgrades the registered content stores that were installed by an
+     * earlier version.
+     * <p>This should be called once before content is stored or retrieved
+     * in a database that was installed by an earlier version, stores that
+     * are already up-to-date are left untouched.
+     *
+     * @return {@code true} if any of the content stores was upgraded; or
+     * <p>{@code false} if they were all already up-to-date
+     * @throws ContentManagerException if an unexpected error occurred
+     * @see ContentStore#upgrade()
+     * @since 1.9.2
+     */
+    public boolean upgrade()
+    throws ContentManagerException {
+        var result = false;
+        for (var store : stores_) {
+            if (store.upgrade()) {
+                result = true;
+            }
+        }
+
+        return result;
+    }
+
     protected boolean _remove(DropSequence dropSequenceContentRepository, DropSequence dropSequenceContentInfo,
                               DropTable dropTableContentRepository, DropTable dropTableContentInfo, DropTable dropTableContentAttribute, DropTable dropTableContentProperty)
     throws ContentManagerException {
@@ -181,10 +298,15 @@ public abstract class DatabaseContent extends DbQueryManager implements ContentM
 
         Boolean result = null;
 
+        applyContentInfoInvalidation(split_location);
         try {
-            result = inTransaction(new DbTransactionUser<>() {
+            // the transaction is tracked, so that content stores can defer
+            // the modifications that can't be rolled back
+            result = ContentTransaction.execute(this, new DbTransactionUser<>() {
                 public Boolean useTransaction()
                 throws InnerClassException {
+                    checkTrackedTransaction(location);
+
                     // get new content id
                     final var id = executeGetFirstInt(getContentId);
 
@@ -255,29 +377,147 @@ public abstract class DatabaseContent extends DbQueryManager implements ContentM
             throw (ContentManagerException) e.getCause();
         }
 
-        return result != null && result;
+        if (result != null && result) {
+            invalidateContentInfoAfterCompletion(split_location);
+            storeImageVariants(location, content);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Derives and stores the image variants that were declared for stored
+     * content through the {@link ImageFormatter.ContentAttribute#VARIANTS}
+     * content attribute.
+     * <p>The variants are derived from the decoded original image and stored
+     * at their own location next to the content, they can be retrieved and
+     * served like any other content. They're deleted together with the
+     * content.
+     *
+     * @param location the location of the stored content
+     * @param content  the content that was stored
+     * @throws ContentManagerException if an unexpected error occurred
+     * @see ImageVariant#location(String)
+     * @since 1.9.2
+     */
+    protected void storeImageVariants(String location, Content content)
+    throws ContentManagerException {
+        if (!content.hasAttribute(ImageFormatter.ContentAttribute.VARIANTS) ||
+            !(content.getData() instanceof byte[] data)) {
+            return;
+        }
+
+        final List<ImageVariant> variants;
+        final Image source;
+        try {
+            variants = ImageVariant.parse(content.getAttribute(ImageFormatter.ContentAttribute.VARIANTS));
+            if (variants.isEmpty()) {
+                return;
+            }
+
+            // reuse the image that was decoded by the formatter
+            var cached = content.getCachedLoadedData();
+            if (cached instanceof LoadedContent<?> loaded && loaded.data() instanceof Image image) {
+                source = image;
+            } else if (cached instanceof Image image) {
+                source = image;
+            } else {
+                var errors = new HashSet<String>();
+                var loaded = new ImageContentLoader().load(data, false, errors);
+                if (null == loaded) {
+                    throw new UnreadableDataFormatException(content.getMimeType(), errors);
+                }
+                source = loaded.data();
+            }
+        } catch (FormatException e) {
+            throw new StoreImageVariantsErrorException(location, e);
+        }
+
+        var hidpi = Convert.toBoolean(content.getAttribute(ImageFormatter.ContentAttribute.HIDPI), true);
+
+        if (Convert.toBoolean(content.getAttribute(ImageFormatter.ContentAttribute.VARIANTS_ASYNC), false)) {
+            // the variants are only derived once the original has been committed,
+            // and aren't stored when the original was deleted in the meantime
+            ContentTransaction.afterCommit(() -> ImageDerivatives.instance().derive(source, content.getMimeType(), variants)
+                .thenAccept(derivatives -> {
+                    if (getContentInfo(location) != null) {
+                        storeImageDerivatives(location, content, derivatives, hidpi);
+                    }
+                })
+                .exceptionally(e -> {
+                    Logger.getLogger("rife.cmf").severe(ExceptionUtils.getExceptionStackTrace(e));
+                    return null;
+                }));
+            return;
+        }
+
+        var derived = ImageDerivatives.instance().derive(source, content.getMimeType(), variants);
+
+        // store on the calling thread, so that an active transaction is used
+        final List<ImageDerivatives.Derivative> derivatives;
+        try {
+            derivatives = derived.join();
+        } catch (CompletionException e) {
+            throw new StoreImageVariantsErrorException(location, e.getCause());
+        }
+        storeImageDerivatives(location, content, derivatives, hidpi);
     }
 
-    protected boolean _deleteContent(final Select getContentInfo, final Delete deleteContentInfo, final Delete deleteContentAttributes, final Delete deleteContentProperties, String location)
+    private void storeImageDerivatives(String location, Content content, List<ImageDerivatives.Derivative> derivatives, boolean hidpi)
+    throws ContentManagerException {
+        for (var derivative : derivatives) {
+            var variant_content = new Content(content.getMimeType(), derivative.data())
+                .fragment(content.isFragment())
+                .name(content.getName())
+                .attribute("unformatted", true)
+                .property(ImageFormatter.CmfProperty.WIDTH, derivative.width())
+                .property(ImageFormatter.CmfProperty.HEIGHT, derivative.height())
+                .property(ImageFormatter.CmfProperty.HIDPI, hidpi);
+            storeContent(derivative.variant().location(location), variant_content, null);
+        }
+    }
+
+    protected boolean _deleteContent(final Select getContentInfo, final Select getContentAttributes, final Delete deleteContentInfo, final Delete deleteContentAttributes, final Delete deleteContentProperties, final String location)
     throws ContentManagerException {
         final var split_location = ContentLocation.split(location);
 
         assert getContentInfo != null;
+        assert getContentAttributes != null;
         assert deleteContentInfo != null;
         assert deleteContentAttributes != null;
         assert deleteContentProperties != null;
 
         Boolean result = null;
 
+        applyContentInfoInvalidation(split_location);
         try {
-            result = inTransaction(new DbTransactionUser<>() {
+            result = ContentTransaction.execute(this, new DbTransactionUser<>() {
                 public Boolean useTransaction()
                 throws InnerClassException {
-                    return executeFetchAll(getContentInfo, new DbRowProcessor() {
+                    checkTrackedTransaction(location);
+
+                    final var variant_locations = new LinkedHashSet<String>();
+                    var deleted = executeFetchAll(getContentInfo, new DbRowProcessor() {
                         public boolean processRow(ResultSet resultSet)
                         throws SQLException {
                             final var content_id = resultSet.getInt("contentId");
 
+                            // the image variants of each version are deleted with it
+                            var processor_attributes = new ContentAttributesProcessor();
+                            executeFetchAll(getContentAttributes, processor_attributes, s ->
+                                s.setInt("contentId", content_id));
+                            var attributes = processor_attributes.getAttributes();
+                            if (attributes != null) {
+                                try {
+                                    for (var variant : ImageVariant.parse(attributes.get(ImageFormatter.ContentAttribute.VARIANTS))) {
+                                        variant_locations.add(variant.location(location));
+                                    }
+                                } catch (FormatException e) {
+                                    // the declaration was validated when the content was stored
+                                }
+                            }
+
                             var mimetype = MimeType.getMimeType(resultSet.getString("mimeType"));
 
                             var store = mimeMapping_.get(mimetype);
@@ -299,13 +539,60 @@ public abstract class DatabaseContent extends DbQueryManager implements ContentM
                         }
                     }, s -> s.setString("repository", split_location.repository())
                         .setString("path", split_location.path()));
+
+                    if (deleted) {
+                        for (var variant_location : variant_locations) {
+                            deleteContent(variant_location);
+                        }
+                    }
+
+                    return deleted;
                 }
             });
         } catch (InnerClassException e) {
             throw (ContentManagerException) e.getCause();
         }
 
-        return result != null && result;
+        if (result != null && result) {
+            invalidateContentInfoAfterCompletion(split_location);
+            return true;
+        }
+
+        return false;
+    }
+
+    private void checkTrackedTransaction(String location) {
+        // the invalidation of an untracked transaction would happen before
+        // the commit, which lets other threads cache the old content info
+        if (contentInfoCache_ != null && ContentTransaction.isNestedInUntrackedTransaction()) {
+            throw new UntrackedTransactionException(location);
+        }
+    }
+
+    private void invalidateContentInfoAfterCompletion(ContentLocation location) {
+        // the content info is invalidated locally before the modification,
+        // so that the transaction doesn't retrieve the previous content info,
+        // and again once the modification is visible to other connections,
+        // which is the only invalidation that is propagated to other nodes
+        var cache = contentInfoCache_;
+        if (cache != null) {
+            ContentTransaction.afterCompletion(() -> cache.invalidate(location.repository(), location.path()));
+        }
+    }
+
+    private void applyContentInfoInvalidation(ContentLocation location) {
+        var cache = contentInfoCache_;
+        if (cache != null) {
+            cache.applyInvalidation(location.repository(), location.path());
+        }
+    }
+
+    private DatabaseContentInfo getCachedContentInfo(ContentLocation location) {
+        var cache = contentInfoCache_;
+        if (null == cache) {
+            return null;
+        }
+        return cache.get(location);
     }
 
     record PathParts(String pathPart, String namePart) {
@@ -352,12 +639,102 @@ public abstract class DatabaseContent extends DbQueryManager implements ContentM
         return store.useContentDataResult(content_info.getContentId(), user);
     }
 
+    /**
+     * Creates the query that retrieves the content info of all the versions
+     * of several paths in one repository.
+     * <p>The query should have a {@code repository} parameter and
+     * parameters named {@code path0} up to the number of paths.
+     *
+     * @param count the number of paths
+     * @return the query; or
+     * <p>{@code null} if content info can't be retrieved in batch, the data
+     * of each location is then used individually
+     * @since 1.9.2
+     */
+    protected Select createContentInfoBatchQuery(int count) {
+        return null;
+    }
+
+    protected void _useContentDataBatch(Collection<String> locations, ContentDataBatchUser<String> user)
+    throws ContentManagerException {
+        if (null == locations) throw new IllegalArgumentException("locations can't be null");
+        if (null == user) throw new IllegalArgumentException("user can't be null");
+
+        if (locations.isEmpty()) {
+            return;
+        }
+
+        // group the locations by repository
+        var repositories = new LinkedHashMap<String, Map<String, String>>();
+        for (var location : locations) {
+            var split_location = ContentLocation.split(location);
+            repositories.computeIfAbsent(split_location.repository(), k -> new LinkedHashMap<>())
+                .put(split_location.path(), location);
+        }
+
+        // retrieve the latest content info of all the paths, grouped by content store
+        var store_contents = new LinkedHashMap<ContentStore, Map<Integer, String>>();
+        for (var repository : repositories.entrySet()) {
+            var paths = new ArrayList<>(repository.getValue().keySet());
+            for (var start = 0; start < paths.size(); start += BATCH_SIZE) {
+                final var batch = paths.subList(start, Math.min(start + BATCH_SIZE, paths.size()));
+                var retrieve_content_infos = createContentInfoBatchQuery(batch.size());
+                if (null == retrieve_content_infos) {
+                    for (var path : batch) {
+                        final var location = repository.getValue().get(path);
+                        useContentData(location, contentData -> user.useContentData(location, contentData));
+                    }
+                    continue;
+                }
+
+                var content_infos = executeFetchAllBeans(retrieve_content_infos, DatabaseContentInfo.class, s -> {
+                    s.setString("repository", repository.getKey());
+                    for (var i = 0; i < batch.size(); i++) {
+                        s.setString("path" + i, batch.get(i));
+                    }
+                });
+
+                var latest = new HashMap<String, DatabaseContentInfo>();
+                for (var content_info : content_infos) {
+                    var existing = latest.get(content_info.getPath());
+                    if (null == existing ||
+                        existing.getVersion() < content_info.getVersion()) {
+                        latest.put(content_info.getPath(), content_info);
+                    }
+                }
+
+                for (var content_info : latest.values()) {
+                    var mime_type = MimeType.getMimeType(content_info.getMimeType());
+                    var store = mimeMapping_.get(mime_type);
+                    if (null == store) {
+                        throw new UnsupportedMimeTypeException(mime_type);
+                    }
+
+                    store_contents.computeIfAbsent(store, k -> new LinkedHashMap<>())
+                        .put(content_info.getContentId(), repository.getValue().get(content_info.getPath()));
+                }
+            }
+        }
+
+        // use the data of each store in batch
+        for (var store_content : store_contents.entrySet()) {
+            var ids = store_content.getValue();
+            store_content.getKey().useContentDataBatch(ids.keySet(), (id, contentData) ->
+                user.useContentData(ids.get(id), contentData));
+        }
+    }
+
     private DatabaseContentInfo retrieveDatabaseContentInfo(Select retrieveContent, String location) {
         final var split_location = ContentLocation.split(location);
         final var path_parts = PathParts.split(split_location.path());
 
         assert retrieveContent != null;
 
+        var cached = getCachedContentInfo(split_location);
+        if (cached != null) {
+            return cached;
+        }
+
         return executeFetchFirstBean(retrieveContent, DatabaseContentInfo.class, s ->
             s.setString("repository", split_location.repository())
                 .setString("path", split_location.path())
@@ -372,11 +749,14 @@ public abstract class DatabaseContent extends DbQueryManager implements ContentM
 
         assert retrieveContent != null;
 
-        var content_info = executeFetchFirstBean(retrieveContent, DatabaseContentInfo.class, s ->
-            s.setString("repository", split_location.repository())
-                .setString("path", split_location.path())
-                .setString("pathpart", path_parts.pathPart())
-                .setString("namepart", path_parts.namePart()));
+        var content_info = getCachedContentInfo(split_location);
+        if (null == content_info) {
+            content_info = executeFetchFirstBean(retrieveContent, DatabaseContentInfo.class, s ->
+                s.setString("repository", split_location.repository())
+                    .setString("path", split_location.path())
+                    .setString("pathpart", path_parts.pathPart())
+                    .setString("namepart", path_parts.namePart()));
+        }
 
         if (null == content_info) {
             return false;
@@ -400,6 +780,16 @@ public abstract class DatabaseContent extends DbQueryManager implements ContentM
         assert getContentAttributes != null;
         assert getContentProperties != null;
 
+        final var cache = contentInfoCache_;
+        var generation = 0L;
+        if (cache != null) {
+            var cached = cache.get(split_location);
+            if (cached != null) {
+                return cached;
+            }
+            generation = cache.getGeneration();
+        }
+
         final var content_info = executeFetchFirstBean(getContentInfo, DatabaseContentInfo.class, s ->
             s.setString("repository", split_location.repository())
                 .setString("path", split_location.path())
@@ -428,12 +818,40 @@ public abstract class DatabaseContent extends DbQueryManager implements ContentM
 
             // retrieve the content size
             content_info.setSize(store.getSize(content_info.getContentId()));
+
+            // content info that is read inside a transaction could be
+            // uncommitted or rolled back later, it's not cached
+            if (cache != null && !ContentTransaction.isActive()) {
+                cache.put(split_location, content_info, generation);
+            }
         }
 
         return content_info;
     }
 
+    /**
+     * Serves content data, resizing images on demand when the request
+     * parameters ask for it.
+     *
+     * @param context  an active web engine context
+     * @param location the location of the content
+     * @param resizing the image resizing configuration; or
+     *                 {@code null} if images should be served as they're stored
+     * @throws ContentManagerException if an unexpected error occurred
+     * @see ImageResizing
+     * @since 1.9.2
+     */
+    public void serveContentData(Context context, String location, ImageResizing resizing)
+    throws ContentManagerException {
+        _serveContentData(context, location, resizing);
+    }
+
     protected void _serveContentData(Context context, final String location)
+    throws ContentManagerException {
+        _serveContentData(context, location, null);
+    }
+
+    protected void _serveContentData(Context context, final String location, ImageResizing resizing)
     throws ContentManagerException {
         if (null == context) throw new IllegalArgumentException("context can't be null.");
 
@@ -464,6 +882,18 @@ public abstract class DatabaseContent extends DbQueryManager implements ContentM
             throw new UnsupportedMimeTypeException(mime_type);
         }
 
+        // determine whether a resized image was requested
+        ImageResizing.Request resize_request = null;
+        if (resizing != null &&
+            mime_type.getIdentifier().startsWith("image/")) {
+            try {
+                resize_request = resizing.request(context);
+            } catch (IllegalArgumentException e) {
+                context.setStatus(Context.SC_BAD_REQUEST);
+                return;
+            }
+        }
+
         // set cache headers
         long if_modified_since = context.headerDate("If-Modified-Since");
         var last_modified = content_info.getCreated();
@@ -475,17 +905,115 @@ public abstract class DatabaseContent extends DbQueryManager implements ContentM
         }
 
         // set general headers
-        context.setContentType(store.getContentType(content_info));
+        if (resize_request != null && resize_request.mimeType() != null) {
+            context.setContentType(resize_request.mimeType().toString());
+        } else {
+            context.setContentType(store.getContentType(content_info));
+        }
         if (content_info.hasName()) {
-            context.addHeader("Content-Disposition", "inline; filename=" + content_info.getName());
+            var name = content_info.getName();
+            if (resize_request != null && resize_request.mimeType() != null && resize_request.mimeType() != mime_type) {
+                name = convertFilename(name, resize_request.mimeType());
+            }
+            context.addHeader("Content-Disposition", "inline; filename=" + name);
         }
         context.addHeader("Cache-Control", "must-revalidate");
         context.addDateHeader("Expires", System.currentTimeMillis() + 60 * 60 * 1000);
         context.addDateHeader("Last-Modified", last_modified_timestamp);
 
+        if (resize_request != null) {
+            serveResizedImage(context, store, content_info, mime_type, resizing, resize_request);
+            return;
+        }
+
         store.serveContentData(context, content_info.getContentId());
     }
 
+    static String convertFilename(String name, MimeType mimeType) {
+        // the extension has to match the format the image was converted to
+        var identifier = mimeType.getIdentifier();
+        var extension = identifier.substring(identifier.indexOf('/') + 1);
+        var dot_index = name.lastIndexOf('.');
+        if (dot_index > 0) {
+            name = name.substring(0, dot_index);
+        }
+        return name + "." + extension;
+    }
+
+    private void serveResizedImage(Context context, ContentStore store, DatabaseContentInfo contentInfo, MimeType mimeType, ImageResizing resizing, ImageResizing.Request request)
+    throws ContentManagerException {
+        final var id = contentInfo.getContentId();
+        final var target_mime_type = request.mimeType() != null ? request.mimeType() : mimeType;
+        final var identifier = target_mime_type.getIdentifier();
+
+        // each stored version has its own id, which invalidates older cached images
+        var key = id + "-" + request.width() + "x" + request.height() + "." + identifier.substring(identifier.indexOf('/') + 1);
+
+        final ImageResizing.Renderer renderer = target -> {
+            var data = store.useContentDataResult(id, contentData -> contentData instanceof byte[] bytes ? bytes : null);
+            if (null == data) {
+                return false;
+            }
+
+            var content = new Content(target_mime_type, data);
+            if (request.width() >= 0) {
+                content.attribute(ImageFormatter.ContentAttribute.WIDTH, request.width());
+            }
+            if (request.height() >= 0) {
+                content.attribute(ImageFormatter.ContentAttribute.HEIGHT, request.height());
+            }
+
+            try {
+                Files.write(target, new ImageFormatter().format(content, null));
+            } catch (FormatException e) {
+                throw new IOException(e);
+            }
+            return true;
+        };
+
+        try {
+            var file = resizing.obtain(key, renderer);
+            if (null == file) {
+                context.defer();
+                return;
+            }
+
+            FileChannel opened;
+            try {
+                opened = FileChannel.open(file, StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                // the image was evicted in the meantime
+                file = resizing.obtain(key, renderer);
+                if (null == file) {
+                    context.defer();
+                    return;
+                }
+                opened = FileChannel.open(file, StandardOpenOption.READ);
+            }
+
+            try (var channel = opened) {
+                var size = channel.size();
+                context.setContentLength((int) size);
+
+                // output the content
+                try {
+                    var os = context.outputStream();
+                    var out = Channels.newChannel(os);
+                    var position = 0L;
+                    while (position < size) {
+                        position += channel.transferTo(position, size - position, out);
+                    }
+                    os.flush();
+                } catch (IOException e) {
+                    // don't do anything, the client has probably disconnected
+                }
+            }
+        } catch (IOException e) {
+            Logger.getLogger("rife.cmf").severe(ExceptionUtils.getExceptionStackTrace(e));
+            context.setStatus(Context.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
     protected String _getContentForHtml(String location, Context context, Route route)
     throws ContentManagerException {
         DatabaseContentInfo content_info = null;
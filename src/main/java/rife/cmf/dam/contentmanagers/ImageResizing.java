@@ -0,0 +1,386 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.contentmanagers;
+
+import rife.cmf.MimeType;
+import rife.engine.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Resizes images on demand when they're served, according to the
+ * {@code width}, {@code height} and {@code format} request parameters.
+ * <p>Only the dimensions and formats that have been whitelisted are
+ * accepted, to prevent clients from making the server render an unbounded
+ * number of variants.
+ * <p>The resized images are stored in a disk cache that is bounded by the
+ * total number of bytes of the stored files and evicts the least recently
+ * used files when it grows beyond that size. Concurrent requests for the
+ * same missing variant are coalesced, only the first request renders it
+ * while the others wait for it to be stored.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see rife.cmf.elements.ServeContent#imageResizing(ImageResizing)
+ * @since 1.9.2
+ */
+public class ImageResizing {
+    public static final String PARAMETER_WIDTH = "width";
+    public static final String PARAMETER_HEIGHT = "height";
+    public static final String PARAMETER_FORMAT = "format";
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * A request for a resized image.
+     *
+     * @param width    the requested width; or {@code -1} if it should be
+     *                 derived from the height
+     * @param height   the requested height; or {@code -1} if it should be
+     *                 derived from the width
+     * @param mimeType the requested format; or {@code null} if the format
+     *                 of the original image should be used
+     * @since 1.9.2
+     */
+    public record Request(int width, int height, MimeType mimeType) {
+    }
+
+    /**
+     * Renders a resized image to a file.
+     *
+     * @since 1.9.2
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        /**
+         * Renders the resized image.
+         *
+         * @param file the file to write the resized image to
+         * @return {@code true} if the image was rendered; or
+         * {@code false} if it couldn't be rendered
+         * @throws IOException when an error occurred while writing the file
+         * @since 1.9.2
+         */
+        boolean render(Path file)
+        throws IOException;
+    }
+
+    private final Path directory_;
+    private final Set<Integer> widths_ = new HashSet<>();
+    private final Set<Integer> heights_ = new HashSet<>();
+    private final Map<String, MimeType> formats_ = new HashMap<>();
+
+    private final ReentrantLock lock_ = new ReentrantLock();
+    private final LinkedHashMap<String, Long> entries_ = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inFlight_ = new ConcurrentHashMap<>();
+    private long size_ = 0;
+    private long maximumSize_ = DEFAULT_MAXIMUM_SIZE;
+
+    /**
+     * Creates a new image resizing configuration.
+     * <p>Resized images that are already present in the cache directory
+     * are reused.
+     *
+     * @param directory the directory in which the resized images are cached
+     * @since 1.9.2
+     */
+    public ImageResizing(File directory) {
+        if (null == directory) throw new IllegalArgumentException("directory can't be null");
+
+        directory_ = directory.toPath();
+        try {
+            Files.createDirectories(directory_);
+            try (var files = Files.list(directory_)) {
+                var existing = files.filter(Files::isRegularFile)
+                    .sorted(Comparator.comparingLong(f -> f.toFile().lastModified()))
+                    .toList();
+                for (var file : existing) {
+                    var name = file.getFileName().toString();
+                    if (name.startsWith(".")) {
+                        Files.deleteIfExists(file);
+                    } else {
+                        entries_.put(name, Files.size(file));
+                        size_ += Files.size(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("directory '" + directory + "' can't be used as an image cache", e);
+        }
+    }
+
+    /**
+     * Adds widths that can be requested.
+     *
+     * @param widths the allowed widths
+     * @return this {@code ImageResizing} instance
+     * @since 1.9.2
+     */
+    public ImageResizing widths(int... widths) {
+        for (var width : widths) {
+            widths_.add(width);
+        }
+        return this;
+    }
+
+    /**
+     * Adds heights that can be requested.
+     *
+     * @param heights the allowed heights
+     * @return this {@code ImageResizing} instance
+     * @since 1.9.2
+     */
+    public ImageResizing heights(int... heights) {
+        for (var height : heights) {
+            heights_.add(height);
+        }
+        return this;
+    }
+
+    /**
+     * Adds image formats that can be requested. The {@code format} parameter
+     * is the subtype of the mime type, for instance {@code png} for
+     * {@link MimeType#IMAGE_PNG}.
+     *
+     * @param mimeTypes the allowed image mime types
+     * @return this {@code ImageResizing} instance
+     * @since 1.9.2
+     */
+    public ImageResizing formats(MimeType... mimeTypes) {
+        for (var mime_type : mimeTypes) {
+            var identifier = mime_type.getIdentifier();
+            formats_.put(identifier.substring(identifier.indexOf('/') + 1), mime_type);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes of resized images that the disk
+     * cache will hold.
+     *
+     * @param size the maximum size in bytes
+     * @return this {@code ImageResizing} instance
+     * @since 1.9.2
+     */
+    public ImageResizing maximumSize(long size) {
+        lock_.lock();
+        try {
+            maximumSize_ = size;
+            evict();
+        } finally {
+            lock_.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Retrieves the maximum number of bytes of resized images that the disk
+     * cache will hold.
+     *
+     * @return the maximum size in bytes
+     * @since 1.9.2
+     */
+    public long maximumSize() {
+        return maximumSize_;
+    }
+
+    /**
+     * Retrieves the number of bytes of resized images that the disk cache
+     * currently holds.
+     *
+     * @return the size in bytes
+     * @since 1.9.2
+     */
+    public long size() {
+        lock_.lock();
+        try {
+            return size_;
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the resize request from the parameters of the context.
+     *
+     * @param context the active context
+     * @return the resize request; or
+     * {@code null} if no resizing was requested
+     * @throws IllegalArgumentException when the requested dimensions or
+     *                                  format haven't been allowed
+     * @since 1.9.2
+     */
+    public Request request(Context context) {
+        return request(context.parameter(PARAMETER_WIDTH), context.parameter(PARAMETER_HEIGHT), context.parameter(PARAMETER_FORMAT));
+    }
+
+    /**
+     * Retrieves the resize request from parameter values.
+     *
+     * @param widthValue  the requested width; or {@code null} if it wasn't provided
+     * @param heightValue the requested height; or {@code null} if it wasn't provided
+     * @param formatValue the requested format; or {@code null} if it wasn't provided
+     * @return the resize request; or
+     * {@code null} if no resizing was requested
+     * @throws IllegalArgumentException when the requested dimensions or
+     *                                  format haven't been allowed
+     * @since 1.9.2
+     */
+    public Request request(String widthValue, String heightValue, String formatValue) {
+        if (null == widthValue && null == heightValue && null == formatValue) {
+            return null;
+        }
+
+        var width = -1;
+        var height = -1;
+        MimeType mime_type = null;
+        try {
+            if (widthValue != null) {
+                width = Integer.parseInt(widthValue);
+                if (!widths_.contains(width)) throw new IllegalArgumentException("width " + width + " isn't allowed");
+            }
+            if (heightValue != null) {
+                height = Integer.parseInt(heightValue);
+                if (!heights_.contains(height)) throw new IllegalArgumentException("height " + height + " isn't allowed");
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid image dimensions", e);
+        }
+        if (formatValue != null) {
+            mime_type = formats_.get(formatValue);
+            if (null == mime_type) throw new IllegalArgumentException("format '" + formatValue + "' isn't allowed");
+        }
+
+        return new Request(width, height, mime_type);
+    }
+
+    /**
+     * Obtains a resized image from the cache, rendering it if it's missing.
+     *
+     * @param key      the unique key of the resized image, it's used as the
+     *                 name of the cached file
+     * @param renderer the renderer that will be used if the image is missing
+     * @return the cached file of the resized image; or
+     * {@code null} if the image couldn't be rendered
+     * @throws IOException when an error occurred while rendering the image
+     * @since 1.9.2
+     */
+    public Path obtain(String key, Renderer renderer)
+    throws IOException {
+        var file = directory_.resolve(key);
+
+        lock_.lock();
+        try {
+            if (entries_.get(key) != null) {
+                return file;
+            }
+        } finally {
+            lock_.unlock();
+        }
+
+        var future = new CompletableFuture<Path>();
+        var existing = inFlight_.putIfAbsent(key, future);
+        if (existing != null) {
+            // another request is rendering the same image
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io_exception) {
+                    throw io_exception;
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
+        Path result = null;
+        try {
+            var tmp = Files.createTempFile(directory_, ".", null);
+            try {
+                if (renderer.render(tmp)) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    put(key, Files.size(file));
+                    result = file;
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+
+            return result;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight_.remove(key, future);
+            future.complete(result);
+        }
+    }
+
+    /**
+     * Removes all the resized images from the cache.
+     *
+     * @since 1.9.2
+     */
+    public void clear() {
+        lock_.lock();
+        try {
+            for (var key : entries_.keySet()) {
+                delete(key);
+            }
+            entries_.clear();
+            size_ = 0;
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    private void put(String key, long size) {
+        lock_.lock();
+        try {
+            // images that are larger than the cache are not tracked,
+            // they're overwritten each time they're rendered
+            if (size > maximumSize_) {
+                return;
+            }
+
+            var previous = entries_.put(key, size);
+            if (previous != null) {
+                size_ -= previous;
+            }
+            size_ += size;
+            evict();
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    private void evict() {
+        var it = entries_.entrySet().iterator();
+        while (size_ > maximumSize_ && it.hasNext()) {
+            var entry = it.next();
+            delete(entry.getKey());
+            size_ -= entry.getValue();
+            it.remove();
+        }
+    }
+
+    private void delete(String key) {
+        try {
+            Files.deleteIfExists(directory_.resolve(key));
+        } catch (IOException e) {
+            // the file will be overwritten when it's rendered again
+        }
+    }
+}
@@ -6,6 +6,7 @@ package rife.cmf.dam.contentmanagers.databasedrivers;
 
 import rife.cmf.Content;
 import rife.cmf.ContentRepository;
+import rife.cmf.dam.ContentDataBatchUser;
 import rife.cmf.dam.ContentDataUser;
 import rife.cmf.dam.ContentDataUserWithoutResult;
 import rife.cmf.dam.contentmanagers.DatabaseContent;
@@ -21,6 +22,8 @@ import rife.database.queries.*;
 import rife.engine.Context;
 import rife.engine.Route;
 
+import java.util.Collection;
+
 public class generic extends DatabaseContent {
     protected CreateSequence createSequenceContentRepository_;
     protected CreateSequence createSequenceContentInfo_;
@@ -216,6 +219,27 @@ public class generic extends DatabaseContent {
             .whereParameter("contentId", "=");
     }
 
+    protected Select createContentInfoBatchQuery(int count) {
+        var query = new Select(getDatasource())
+            .from(RifeConfig.cmf().getTableContentInfo())
+            .join(RifeConfig.cmf().getTableContentRepository())
+            .field(RifeConfig.cmf().getTableContentInfo() + ".*")
+            .where(RifeConfig.cmf().getTableContentInfo() + ".repositoryId = " + RifeConfig.cmf().getTableContentRepository() + ".repositoryId")
+            .whereParameterAnd(RifeConfig.cmf().getTableContentRepository() + ".name", "repository", "=");
+
+        var paths = query.startWhereAnd();
+        for (var i = 0; i < count; i++) {
+            if (0 == i) {
+                paths.whereParameter("path", "path" + i, "=");
+            } else {
+                paths.whereParameterOr("path", "path" + i, "=");
+            }
+        }
+        paths.end();
+
+        return query;
+    }
+
     public boolean install()
     throws ContentManagerException {
         boolean result = _install(createSequenceContentRepository_, createSequenceContentInfo_,
@@ -258,7 +282,7 @@ public class generic extends DatabaseContent {
 
     public boolean deleteContent(String location)
     throws ContentManagerException {
-        return _deleteContent(getContentInfo_, deleteContentInfo_, deleteContentAttributes_, deleteContentProperties_, location);
+        return _deleteContent(getContentInfo_, getContentAttributes_, deleteContentInfo_, deleteContentAttributes_, deleteContentProperties_, location);
     }
 
     public void useContentData(String location, ContentDataUserWithoutResult user)
@@ -271,6 +295,11 @@ public class generic extends DatabaseContent {
         return _useContentDataResult(getLatestContentInfo_, location, user);
     }
 
+    public void useContentDataBatch(Collection<String> locations, ContentDataBatchUser<String> user)
+    throws ContentManagerException {
+        _useContentDataBatch(locations, user);
+    }
+
     public boolean hasContentData(String location)
     throws ContentManagerException {
         return _hasContentData(getLatestContentInfo_, location);
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.contentmanagers.exceptions;
+
+import rife.cmf.dam.exceptions.ContentManagerException;
+
+import java.io.Serial;
+
+public class StoreImageVariantsErrorException extends ContentManagerException {
+    @Serial private static final long serialVersionUID = -1938806124785210346L;
+
+    private final String location_;
+
+    public StoreImageVariantsErrorException(String location, Throwable cause) {
+        super("Unexpected error while storing the image variants of the content at location '" + location + "'.", cause);
+
+        location_ = location;
+    }
+
+    public String getLocation() {
+        return location_;
+    }
+}
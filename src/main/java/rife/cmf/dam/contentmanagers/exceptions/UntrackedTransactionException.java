@@ -0,0 +1,25 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.contentmanagers.exceptions;
+
+import rife.cmf.dam.exceptions.ContentManagerException;
+
+import java.io.Serial;
+
+public class UntrackedTransactionException extends ContentManagerException {
+    @Serial private static final long serialVersionUID = 5273619058120413582L;
+
+    private final String location_;
+
+    public UntrackedTransactionException(String location) {
+        super("The content at location '" + location + "' can't be modified inside a transaction that isn't tracked while its content info is cached, the transaction should be started through ContentTransaction.execute.");
+
+        location_ = location;
+    }
+
+    public String getLocation() {
+        return location_;
+    }
+}
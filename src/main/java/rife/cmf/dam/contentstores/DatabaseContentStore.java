@@ -5,6 +5,7 @@
 package rife.cmf.dam.contentstores;
 
 import rife.cmf.MimeType;
+import rife.cmf.dam.ContentDataBatchUser;
 import rife.cmf.dam.ContentStore;
 import rife.cmf.dam.contentstores.exceptions.*;
 import rife.cmf.dam.exceptions.ContentManagerException;
@@ -21,12 +22,18 @@ import rife.tools.ExceptionUtils;
 import java.io.OutputStream;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 import java.util.logging.Logger;
 
 public abstract class DatabaseContentStore extends DbQueryManager implements ContentStore {
+    /**
+     * The maximum number of content ids whose data is retrieved with a
+     * single query when content data is used in batch.
+     *
+     * @since 1.9.2
+     */
+    public static final int BATCH_SIZE = 100;
+
     private final List<MimeType> mimeTypes_ = new ArrayList<>();
 
     public DatabaseContentStore(Datasource datasource) {
@@ -138,6 +145,54 @@ public abstract class DatabaseContentStore extends DbQueryManager implements Con
         }
     }
 
+    protected void _useContentDataBatch(String table, Collection<Integer> ids, ContentDataBatchUser<Integer> user)
+    throws ContentManagerException {
+        if (null == table) throw new IllegalArgumentException("table can't be null");
+        if (null == ids) throw new IllegalArgumentException("ids can't be null");
+        if (null == user) throw new IllegalArgumentException("user can't be null");
+
+        var all_ids = new ArrayList<>(ids);
+        for (var start = 0; start < all_ids.size(); start += BATCH_SIZE) {
+            var batch = all_ids.subList(start, Math.min(start + BATCH_SIZE, all_ids.size()));
+
+            // the ids are integers, they can safely be part of the SQL
+            var retrieve_contents = new Select(getDatasource())
+                .from(table)
+                .field("contentId")
+                .field("content")
+                .where("contentId IN (" + joinIds(batch) + ")");
+
+            var contents = new HashMap<Integer, Object>();
+            try {
+                executeFetchAll(retrieve_contents, resultSet ->
+                    contents.put(resultSet.getInt("contentId"), readContentColumn(resultSet)));
+            } catch (DatabaseException e) {
+                throw new UseContentDataErrorException(batch.get(0), e);
+            }
+
+            // content without data row is provided as null, like when it's used individually
+            for (var id : batch) {
+                user.useContentData(id, contents.get(id));
+            }
+        }
+    }
+
+    static String joinIds(List<Integer> ids) {
+        var result = new StringBuilder();
+        for (var id : ids) {
+            if (id < 0) throw new IllegalArgumentException("id must be positive");
+
+            if (!result.isEmpty()) {
+                result.append(',');
+            }
+            result.append(id.intValue());
+        }
+        return result.toString();
+    }
+
+    protected abstract Object readContentColumn(ResultSet resultSet)
+    throws SQLException;
+
     protected abstract void outputContentColumn(ResultSet resultSet, OutputStream os)
     throws SQLException;
 }
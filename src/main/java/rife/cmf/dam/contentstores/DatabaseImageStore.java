@@ -69,6 +69,10 @@ public abstract class DatabaseImageStore extends DatabaseContentStore {
         if (null == context) throw new IllegalArgumentException("context can't be null.");
         if (null == route) throw new IllegalArgumentException("route can't be null.");
 
+        return getImageTag(info, context, route);
+    }
+
+    static String getImageTag(ContentInfo info, Context context, Route route) {
         var result = new StringBuilder();
         result.append("<img src=\"")
             .append(StringUtils.encodeHtml(context.urlFor(route).pathInfo(info.getPath()).toString()))
@@ -224,6 +228,11 @@ public abstract class DatabaseImageStore extends DatabaseContentStore {
         }
     }
 
+    protected Object readContentColumn(ResultSet resultSet)
+    throws SQLException {
+        return resultSet.getBytes("content");
+    }
+
     protected void outputContentColumn(ResultSet resultSet, OutputStream os)
     throws SQLException {
         var is = resultSet.getBinaryStream("content");
@@ -7,6 +7,7 @@ package rife.cmf.dam.contentstores;
 import rife.cmf.Content;
 import rife.cmf.ContentInfo;
 import rife.cmf.MimeType;
+import rife.cmf.dam.ContentDataBatchUser;
 import rife.cmf.dam.ContentDataUser;
 import rife.cmf.dam.ContentDataUserWithoutResult;
 import rife.cmf.dam.ContentStore;
@@ -27,15 +28,49 @@ import rife.tools.FileUtils;
 import rife.tools.InnerClassException;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.logging.Logger;
 
+/**
+ * Stores raw content data in database chunks.
+ * <p>When {@link #deduplicate(boolean) deduplication} is enabled, the data
+ * is spooled to a temporary file while it's hashed, and content with the
+ * same data as previously stored content only keeps a reference to the
+ * chunks of that content, which tracks how many contents share its
+ * chunks. The chunks of duplicate data are thus never written. Without
+ * deduplication, the data is hashed while its chunks are being stored. Deleting content data releases its reference and the chunks are
+ * only removed when they're not referenced anymore. When the content that
+ * holds shared chunks is deleted, they're handed over to one of the
+ * contents that reference them.
+ * <p>Content stores that were installed before the data references were
+ * introduced need to be {@link #upgrade() upgraded} before they're used.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.0
+ */
 public abstract class DatabaseRawStore extends DbQueryManager implements ContentStore {
+    public static final int DEFAULT_CHUNK_SIZE = 65535;
+    public static final int DEFAULT_BATCH_SIZE = 16;
+    public static final String HASH_ALGORITHM = "SHA-256";
+
     private final List<MimeType> mimeTypes_ = new ArrayList<>();
+    private int chunkSize_ = DEFAULT_CHUNK_SIZE;
+    private int batchSize_ = DEFAULT_BATCH_SIZE;
+    private boolean deduplicate_ = true;
 
     public DatabaseRawStore(Datasource datasource) {
         super(datasource);
@@ -75,7 +110,7 @@ public abstract class DatabaseRawStore extends DbQueryManager implements Content
         return "";
     }
 
-    protected boolean _install(CreateTable createTableContentInfo, CreateTable createTableContentChunk)
+    protected boolean _install(CreateTable createTableContentInfo, CreateTable createTableContentChunk, String createIndexContentHash)
     throws ContentManagerException {
         assert createTableContentInfo != null;
         assert createTableContentChunk != null;
@@ -83,6 +118,9 @@ public abstract class DatabaseRawStore extends DbQueryManager implements Content
         try {
             executeUpdate(createTableContentInfo);
             executeUpdate(createTableContentChunk);
+            if (createIndexContentHash != null) {
+                executeUpdate(createIndexContentHash);
+            }
         } catch (DatabaseException e) {
             throw new InstallContentStoreErrorException(e);
         }
@@ -90,6 +128,63 @@ public abstract class DatabaseRawStore extends DbQueryManager implements Content
         return true;
     }
 
+    protected boolean _upgrade(String infoTable, String[] addReferenceColumns, Update initializeReferences, String[] requireReferenceColumns, String createIndexContentHash)
+    throws ContentManagerException {
+        assert infoTable != null;
+        assert addReferenceColumns != null;
+        assert initializeReferences != null;
+        assert requireReferenceColumns != null;
+
+        try {
+            if (hasColumn(infoTable, "dataId")) {
+                return false;
+            }
+
+            for (var add_column : addReferenceColumns) {
+                executeUpdate(add_column);
+            }
+
+            // each existing content owns its chunks, the content hash
+            // remains empty and existing data is thus never deduplicated
+            executeUpdate(initializeReferences);
+
+            // the columns can only be required once they've been initialized,
+            // this makes the structure identical to a new installation
+            for (var require_column : requireReferenceColumns) {
+                executeUpdate(require_column);
+            }
+
+            if (createIndexContentHash != null) {
+                executeUpdate(createIndexContentHash);
+            }
+        } catch (DatabaseException e) {
+            throw new UpgradeContentStoreErrorException(e);
+        }
+
+        return true;
+    }
+
+    private boolean hasColumn(String table, String column) {
+        try {
+            var metadata = getConnection().getMetaData();
+
+            // databases store unquoted identifiers in different cases
+            for (var name : new LinkedHashSet<>(List.of(table, table.toUpperCase(), table.toLowerCase()))) {
+                try (var columns = metadata.getColumns(null, null, name, null)) {
+                    while (columns.next()) {
+                        if (column.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException(e);
+        }
+
+        return false;
+    }
+
     protected boolean _remove(DropTable dropTableContentInfo, DropTable dropTableContentChunk)
     throws ContentManagerException {
         assert dropTableContentInfo != null;
@@ -104,10 +199,16 @@ public abstract class DatabaseRawStore extends DbQueryManager implements Content
         return true;
     }
 
-    protected boolean _deleteContentData(final Delete deleteContentInfo, final Delete deleteContentChunk, final int id)
+    protected boolean _deleteContentData(final Select retrieveReference, final Update releaseReference, final Select retrieveNextOwner, final Update moveContentChunks, final Update moveReferences, final Update updateReferenceCount, final Delete deleteContentInfo, final Delete deleteContentChunk, final int id)
     throws ContentManagerException {
         if (id < 0) throw new IllegalArgumentException("id must be positive");
 
+        assert retrieveReference != null;
+        assert releaseReference != null;
+        assert retrieveNextOwner != null;
+        assert moveContentChunks != null;
+        assert moveReferences != null;
+        assert updateReferenceCount != null;
         assert deleteContentInfo != null;
         assert deleteContentChunk != null;
 
@@ -115,8 +216,45 @@ public abstract class DatabaseRawStore extends DbQueryManager implements Content
 
         try {
             result = inTransaction(() -> {
-                if (executeUpdate(deleteContentChunk, s -> s.setInt("contentId", id)) == 0) {
-                    return false;
+                // release the reference to the chunks, the update locks the
+                // row that holds the reference count until the transaction
+                // ends, the select that retrieves the reference doesn't lock it
+                final var data_id = new int[]{-1};
+                while (true) {
+                    if (!executeFetchFirst(retrieveReference, resultSet -> data_id[0] = resultSet.getInt("dataId"), s -> s.setInt("contentId", id))) {
+                        return false;
+                    }
+
+                    if (executeUpdate(releaseReference, s -> s.setInt("contentId", data_id[0])) != 0) {
+                        break;
+                    }
+
+                    // the owner of the chunks was deleted after the reference
+                    // was retrieved, which handed them over to another content
+                    // and moved the reference, it's retrieved again
+                }
+
+                if (data_id[0] == id) {
+                    final var references = new int[]{0};
+                    executeFetchFirst(retrieveReference, resultSet -> references[0] = resultSet.getInt("refCount"), s -> s.setInt("contentId", id));
+                    if (0 == references[0]) {
+                        executeUpdate(deleteContentChunk, s -> s.setInt("contentId", id));
+                    } else {
+                        // other contents still use the chunks, hand them over
+                        // to the oldest one
+                        final var owner = executeGetFirstInt(retrieveNextOwner, s -> s
+                            .setInt("dataId", id)
+                            .setInt("ownerId", id));
+                        executeUpdate(moveContentChunks, s -> s
+                            .setInt("ownerId", owner)
+                            .setInt("contentId", id));
+                        executeUpdate(moveReferences, s -> s
+                            .setInt("ownerId", owner)
+                            .setInt("dataId", id));
+                        executeUpdate(updateReferenceCount, s -> s
+                            .setInt("refCount", references[0])
+                            .setInt("contentId", owner));
+                    }
                 }
 
                 return executeUpdate(deleteContentInfo, s -> s.setInt("contentId", id)) != 0;
@@ -154,7 +292,7 @@ public abstract class DatabaseRawStore extends DbQueryManager implements Content
         }
     }
 
-    protected boolean _storeContentData(final Insert storeContentInfo, final Insert storeContentChunk, final int id, Content content, ContentTransformer transformer)
+    protected boolean _storeContentData(final Insert storeContentInfo, final Insert storeContentChunk, final Select retrieveDuplicate, final Update addReference, final int id, Content content, ContentTransformer transformer)
     throws ContentManagerException {
         if (id < 0) throw new IllegalArgumentException("id must be positive");
         if (content != null &&
@@ -165,6 +303,8 @@ public abstract class DatabaseRawStore extends DbQueryManager implements Content
 
         assert storeContentInfo != null;
         assert storeContentChunk != null;
+        assert retrieveDuplicate != null;
+        assert addReference != null;
 
         final InputStream typed_data;
 
@@ -195,20 +335,33 @@ public abstract class DatabaseRawStore extends DbQueryManager implements Content
             }
         }
 
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new StoreContentDataErrorException(id, e);
+        }
+
+        if (deduplicate_ && typed_data != null) {
+            return storeDeduplicatedContentData(storeContentInfo, storeContentChunk, retrieveDuplicate, addReference, id, typed_data, digest);
+        }
+
+        // hash the data while its chunks are stored
+        final var hashed_data = typed_data == null ? null : new DigestInputStream(typed_data, digest);
+
         // store the data
         try {
             Boolean success = inTransaction(new DbTransactionUser<>() {
                 public Object useTransaction()
                 throws InnerClassException {
                     try {
-                        final var size = storeChunks(storeContentChunk, id, typed_data);
+                        final var size = storeChunks(storeContentChunk, id, hashed_data);
                         if (size < 0) {
                             rollback();
                         }
 
-                        if (executeUpdate(storeContentInfo, s ->
-                            s.setInt("contentId", id)
-                                .setInt("contentSize", size)) <= 0) {
+                        final var hash = hashed_data == null ? null : HexFormat.of().formatHex(digest.digest());
+                        if (!insertContentInfo(storeContentInfo, id, size, hash, id)) {
                             rollback();
                         }
                     } catch (IOException e) {
@@ -227,75 +380,300 @@ public abstract class DatabaseRawStore extends DbQueryManager implements Content
         }
     }
 
-    protected int storeChunks(Insert storeContentChunk, final int id, InputStream data)
-    throws IOException {
-        class Scope {
-            int size = 0;
-            int length = -1;
-            int ordinal = 0;
-            byte[] buffer = null;
-        }
-        final var scope = new Scope();
+    private boolean storeDeduplicatedContentData(final Insert storeContentInfo, final Insert storeContentChunk, final Select retrieveDuplicate, final Update addReference, final int id, InputStream data, MessageDigest digest)
+    throws ContentManagerException {
+        // the data is hashed before its chunks are stored, so that they're
+        // never written when identical data already exists
+        Path spool = null;
+        try {
+            spool = Files.createTempFile("rifecmf", ".raw");
+            final int size;
+            try (var os = Files.newOutputStream(spool)) {
+                size = (int) new DigestInputStream(data, digest).transferTo(os);
+            }
+            final var hash = HexFormat.of().formatHex(digest.digest());
 
-        if (data != null) {
-            scope.buffer = new byte[65535];
-            while ((scope.length = data.read(scope.buffer)) != -1) {
-                scope.size += scope.length;
-
-                if (executeUpdate(storeContentChunk, s ->
-                    s.setInt("contentId", id)
-                        .setInt("ordinal", scope.ordinal)
-                        .setBinaryStream("chunk", new ByteArrayInputStream(scope.buffer), scope.length)) <= 0) {
-                    return -1;
+            final var spooled_data = spool;
+            Boolean success = inTransaction(new DbTransactionUser<>() {
+                public Object useTransaction()
+                throws InnerClassException {
+                    try {
+                        final var data_id = size > 0 ? referenceDuplicate(retrieveDuplicate, addReference, id, hash, size) : id;
+                        if (data_id == id) {
+                            try (var is = Files.newInputStream(spooled_data)) {
+                                if (storeChunks(storeContentChunk, id, is) < 0) {
+                                    rollback();
+                                }
+                            }
+                        }
+
+                        if (!insertContentInfo(storeContentInfo, id, size, hash, data_id)) {
+                            rollback();
+                        }
+                    } catch (IOException e) {
+                        throwException(e);
+                    }
+
+                    return true;
                 }
+            });
 
-                scope.ordinal++;
+            return null != success && success;
+        } catch (InnerClassException e) {
+            throw new StoreContentDataErrorException(id, e.getCause());
+        } catch (IOException | DatabaseException e) {
+            throw new StoreContentDataErrorException(id, e);
+        } finally {
+            if (spool != null) {
+                try {
+                    Files.deleteIfExists(spool);
+                } catch (IOException e) {
+                    Logger.getLogger("rife.cmf").warning(ExceptionUtils.getExceptionStackTrace(e));
+                }
             }
         }
+    }
+
+    private boolean insertContentInfo(Insert storeContentInfo, final int id, final int size, final String hash, final int dataId) {
+        return executeUpdate(storeContentInfo, s ->
+            s.setInt("contentId", id)
+                .setInt("contentSize", size)
+                .setString("contentHash", hash)
+                .setInt("dataId", dataId)
+                .setInt("refCount", dataId == id ? 1 : 0)) > 0;
+    }
+
+    private int referenceDuplicate(Select retrieveDuplicate, Update addReference, final int id, final String hash, final int size) {
+        // only a reference that could be added to existing chunks makes them
+        // shared, the chunks could be deleted concurrently otherwise
+        final var duplicate = executeGetFirstInt(retrieveDuplicate, s -> s
+            .setString("contentHash", hash)
+            .setInt("contentSize", size));
+        if (duplicate < 0 ||
+            duplicate == id ||
+            executeUpdate(addReference, s -> s.setInt("contentId", duplicate)) <= 0) {
+            return id;
+        }
+
+        return duplicate;
+    }
+
+    /**
+     * Sets whether content data that is identical to previously stored
+     * content data should share its chunks.
+     *
+     * @param deduplicate {@code true} if identical content data should be
+     *                    deduplicated; or {@code false} otherwise
+     * @return this {@code DatabaseRawStore} instance
+     * @since 1.9.2
+     */
+    public DatabaseRawStore deduplicate(boolean deduplicate) {
+        deduplicate_ = deduplicate;
+        return this;
+    }
 
-        return scope.size;
+    /**
+     * Indicates whether content data that is identical to previously stored
+     * content data shares its chunks.
+     *
+     * @return {@code true} if identical content data is deduplicated; or
+     * {@code false} otherwise
+     * @since 1.9.2
+     */
+    public boolean isDeduplicating() {
+        return deduplicate_;
+    }
+
+    /**
+     * Sets the maximum number of bytes of each chunk that content data is
+     * split into when it's stored.
+     *
+     * @param size the chunk size in bytes
+     * @return this {@code DatabaseRawStore} instance
+     * @since 1.9.2
+     */
+    public DatabaseRawStore chunkSize(int size) {
+        if (size <= 0) throw new IllegalArgumentException("size should be greater than 0");
+
+        chunkSize_ = size;
+        return this;
+    }
+
+    /**
+     * Retrieves the maximum number of bytes of each chunk that content data
+     * is split into when it's stored.
+     *
+     * @return the chunk size in bytes
+     * @since 1.9.2
+     */
+    public int getChunkSize() {
+        return chunkSize_;
+    }
+
+    /**
+     * Sets the number of chunks that are sent together to the database
+     * when content data is stored.
+     *
+     * @param size the number of chunks in each batch
+     * @return this {@code DatabaseRawStore} instance
+     * @since 1.9.2
+     */
+    public DatabaseRawStore batchSize(int size) {
+        if (size <= 0) throw new IllegalArgumentException("size should be greater than 0");
+
+        batchSize_ = size;
+        return this;
+    }
+
+    /**
+     * Retrieves the number of chunks that are sent together to the
+     * database when content data is stored.
+     *
+     * @return the number of chunks in each batch
+     * @since 1.9.2
+     */
+    public int getBatchSize() {
+        return batchSize_;
+    }
+
+    protected int storeChunks(Insert storeContentChunk, final int id, InputStream data)
+    throws IOException {
+        return storeChunks(storeContentChunk, id, data, true);
     }
 
     protected int storeChunksNoStream(Insert storeContentChunk, final int id, InputStream data)
     throws IOException {
-        class Scope {
-            int size = 0;
-            int length = -1;
-            int ordinal = 0;
-            byte[] buffer = null;
-            byte[] buffer_swp = null;
-        }
-        final var scope = new Scope();
+        return storeChunks(storeContentChunk, id, data, false);
+    }
+
+    private int storeChunks(Insert storeContentChunk, final int id, InputStream data, boolean stream)
+    throws IOException {
+        var size = 0;
 
         if (data != null) {
-            scope.buffer = new byte[65535];
-            while ((scope.length = data.read(scope.buffer)) != -1) {
-                scope.size += scope.length;
-
-                if (scope.length < scope.buffer.length) {
-                    var new_buffer = new byte[scope.length];
-                    System.arraycopy(scope.buffer, 0, new_buffer, 0, scope.length);
-                    scope.buffer_swp = scope.buffer;
-                    scope.buffer = new_buffer;
+            var ordinal = 0;
+            var batch = new ArrayList<byte[]>(batchSize_);
+            var buffer = new byte[chunkSize_];
+            int length;
+            while ((length = data.readNBytes(buffer, 0, buffer.length)) > 0) {
+                size += length;
+
+                // each chunk of a batch needs its own data since it's
+                // only sent when the batch is executed
+                batch.add(Arrays.copyOf(buffer, length));
+                if (batch.size() >= batchSize_) {
+                    if (!storeChunkBatch(storeContentChunk, id, ordinal, batch, stream)) {
+                        return -1;
+                    }
+                    ordinal += batch.size();
+                    batch.clear();
+                }
+            }
+
+            if (!batch.isEmpty() &&
+                !storeChunkBatch(storeContentChunk, id, ordinal, batch, stream)) {
+                return -1;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Stores a batch of consecutive chunks of content data.
+     * <p>By default, this uses JDBC batching of the chunk insert query.
+     * Drivers can override this to use a more efficient bulk insertion
+     * mechanism of their database.
+     *
+     * @param storeContentChunk the query that inserts a single chunk
+     * @param id                the id of the content
+     * @param firstOrdinal      the ordinal of the first chunk in the batch
+     * @param chunks            the data of the chunks
+     * @param stream            {@code true} if the chunk data should be provided
+     *                          as a stream; or {@code false} if it should be provided
+     *                          as bytes
+     * @return {@code true} if all the chunks were stored; or
+     * <p>{@code false} otherwise
+     * @since 1.9.2
+     */
+    protected boolean storeChunkBatch(Insert storeContentChunk, final int id, final int firstOrdinal, final List<byte[]> chunks, final boolean stream) {
+        if (1 == chunks.size()) {
+            final var chunk = chunks.get(0);
+            return executeUpdate(storeContentChunk, s -> {
+                s.setInt("contentId", id)
+                    .setInt("ordinal", firstOrdinal);
+                if (stream) {
+                    s.setBinaryStream("chunk", new ByteArrayInputStream(chunk), chunk.length);
+                } else {
+                    s.setBytes("chunk", chunk);
                 }
+            }) > 0;
+        }
 
-                if (executeUpdate(storeContentChunk, s ->
-                    s.setInt("contentId", id)
-                        .setInt("ordinal", scope.ordinal)
-                        .setBytes("chunk", scope.buffer)) <= 0) {
-                    return -1;
+        Boolean result = reserveConnection(connection -> {
+            try (var statement = connection.getPreparedStatement(storeContentChunk)) {
+                for (var i = 0; i < chunks.size(); i++) {
+                    var chunk = chunks.get(i);
+                    statement
+                        .setInt("contentId", id)
+                        .setInt("ordinal", firstOrdinal + i);
+                    if (stream) {
+                        statement.setBinaryStream("chunk", new ByteArrayInputStream(chunk), chunk.length);
+                    } else {
+                        statement.setBytes("chunk", chunk);
+                    }
+                    statement.addBatch();
                 }
 
-                if (scope.buffer_swp != null) {
-                    scope.buffer = scope.buffer_swp;
-                    scope.buffer_swp = null;
+                for (var count : statement.executeBatch()) {
+                    if (count != Statement.SUCCESS_NO_INFO && count <= 0) {
+                        return false;
+                    }
                 }
+                return true;
+            }
+        });
+
+        return null != result && result;
+    }
 
-                scope.ordinal++;
+    /**
+     * Stores a batch of consecutive chunks of content data with a single
+     * multi-row insert statement, this can be used by drivers of databases
+     * that support it.
+     *
+     * @param chunkTable   the name of the table that contains the chunks
+     * @param id           the id of the content
+     * @param firstOrdinal the ordinal of the first chunk in the batch
+     * @param chunks       the data of the chunks
+     * @return {@code true} if all the chunks were stored; or
+     * <p>{@code false} otherwise
+     * @since 1.9.2
+     */
+    protected boolean storeChunkRows(String chunkTable, final int id, final int firstOrdinal, final List<byte[]> chunks) {
+        var sql = new StringBuilder("INSERT INTO ")
+            .append(chunkTable)
+            .append(" (contentId, ordinal, chunk) VALUES ");
+        for (var i = 0; i < chunks.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
             }
+            sql.append("(?, ?, ?)");
         }
 
-        return scope.size;
+        Integer result = reserveConnection(connection -> {
+            try (var statement = connection.getPreparedStatement(sql.toString())) {
+                var index = 1;
+                for (var i = 0; i < chunks.size(); i++) {
+                    statement.setInt(index++, id);
+                    statement.setInt(index++, firstOrdinal + i);
+                    statement.setBytes(index++, chunks.get(i));
+                }
+                return statement.executeUpdate();
+            }
+        });
+
+        return null != result && result == chunks.size();
     }
 
     protected void _useContentData(Select retrieveContentChunks, final int id, ContentDataUserWithoutResult user)
@@ -348,6 +726,55 @@ public abstract class DatabaseRawStore extends DbQueryManager implements Content
         }
     }
 
+    protected void _useContentDataBatch(String infoTable, String chunkTable, Collection<Integer> ids, ContentDataBatchUser<Integer> user)
+    throws ContentManagerException {
+        if (null == infoTable) throw new IllegalArgumentException("infoTable can't be null");
+        if (null == chunkTable) throw new IllegalArgumentException("chunkTable can't be null");
+        if (null == ids) throw new IllegalArgumentException("ids can't be null");
+        if (null == user) throw new IllegalArgumentException("user can't be null");
+
+        var all_ids = new ArrayList<>(ids);
+        for (var start = 0; start < all_ids.size(); start += DatabaseContentStore.BATCH_SIZE) {
+            var batch = all_ids.subList(start, Math.min(start + DatabaseContentStore.BATCH_SIZE, all_ids.size()));
+
+            // the ids are integers, they can safely be part of the SQL,
+            // the chunks are retrieved through the data reference of each content
+            var retrieve_chunks = new Select(getDatasource())
+                .from(infoTable)
+                .join(chunkTable)
+                .field(infoTable + ".contentId")
+                .field(chunkTable + ".chunk")
+                .where(chunkTable + ".contentId = " + infoTable + ".dataId")
+                .whereAnd(infoTable + ".contentId IN (" + DatabaseContentStore.joinIds(batch) + ")")
+                .orderBy(infoTable + ".contentId")
+                .orderBy(chunkTable + ".ordinal");
+
+            // the chunks of each content are collected in memory, this is only
+            // intended for content that is retrieved in its entirety anyway
+            var contents = new HashMap<Integer, ByteArrayOutputStream>();
+            try {
+                executeFetchAll(retrieve_chunks, resultSet -> {
+                    var chunk = resultSet.getBytes("chunk");
+                    var content = contents.computeIfAbsent(resultSet.getInt("contentId"), k -> new ByteArrayOutputStream());
+                    if (chunk != null) {
+                        content.writeBytes(chunk);
+                    }
+                });
+            } catch (DatabaseException e) {
+                throw new UseContentDataErrorException(batch.get(0), e);
+            }
+
+            for (var id : batch) {
+                var content = contents.get(id);
+                if (null == content) {
+                    user.useContentData(id, null);
+                } else {
+                    user.useContentData(id, new ByteArrayInputStream(content.toByteArray()));
+                }
+            }
+        }
+    }
+
     protected DbPreparedStatement getStreamPreparedStatement(Query query, DbConnection connection) {
         var statement = connection.getPreparedStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, ResultSet.CLOSE_CURSORS_AT_COMMIT);
         statement.setFetchDirection(ResultSet.FETCH_FORWARD);
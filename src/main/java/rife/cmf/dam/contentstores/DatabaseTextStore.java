@@ -25,9 +25,11 @@ import rife.tools.Convert;
 import rife.tools.StringUtils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
@@ -64,7 +66,8 @@ public abstract class DatabaseTextStore extends DatabaseContentStore {
         if (id < 0) throw new IllegalArgumentException("id must be positive");
         if (content != null &&
             content.getData() != null &&
-            !(content.getData() instanceof String)) throw new IllegalArgumentException("the content data must be of type String");
+            !(content.getData() instanceof String) &&
+            !(content.getData() instanceof InputStream)) throw new IllegalArgumentException("the content data must be of type String or InputStream");
 
         assert storeContent != null;
 
@@ -85,6 +88,8 @@ public abstract class DatabaseTextStore extends DatabaseContentStore {
                 } catch (FormatException e) {
                     throw new StoreContentDataErrorException(id, e);
                 }
+            } else if (content.getData() instanceof InputStream stream) {
+                return storeContent(storeContent, id, stream);
             } else {
                 typed_data = (String) content.getData();
             }
@@ -116,6 +121,42 @@ public abstract class DatabaseTextStore extends DatabaseContentStore {
         }
     }
 
+    protected boolean storeContent(Insert storeContent, final int id, final InputStream data)
+    throws ContentManagerException {
+        // the text is spooled to a temporary file, so that its size and length
+        // are known without having to hold it in memory
+        try {
+            var spool = Files.createTempFile("rifecmf", ".txt");
+            try {
+                final int size;
+                try (var os = Files.newOutputStream(spool)) {
+                    size = (int) data.transferTo(os);
+                }
+
+                var length = 0;
+                try (var reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8)) {
+                    var buffer = new char[8192];
+                    int count;
+                    while ((count = reader.read(buffer)) != -1) {
+                        length += count;
+                    }
+                }
+
+                final var char_length = length;
+                try (var reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8)) {
+                    return executeUpdate(storeContent, s ->
+                        s.setInt("contentId", id)
+                            .setInt("contentSize", size)
+                            .setCharacterStream("content", reader, char_length)) > 0;
+                }
+            } finally {
+                Files.deleteIfExists(spool);
+            }
+        } catch (IOException | DatabaseException e) {
+            throw new StoreContentDataErrorException(id, e);
+        }
+    }
+
     protected void _useContentData(Select retrieveContent, final int id, ContentDataUserWithoutResult user)
     throws ContentManagerException {
         if (id < 0) throw new IllegalArgumentException("id must be positive");
@@ -161,6 +202,11 @@ public abstract class DatabaseTextStore extends DatabaseContentStore {
         });
     }
 
+    protected Object readContentColumn(ResultSet resultSet)
+    throws SQLException {
+        return resultSet.getString("content");
+    }
+
     protected void outputContentColumn(ResultSet resultSet, OutputStream os)
     throws SQLException {
         var text_reader = resultSet.getCharacterStream("content");
@@ -0,0 +1,538 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.contentstores;
+
+import rife.cmf.Content;
+import rife.cmf.ContentInfo;
+import rife.cmf.MimeType;
+import rife.cmf.dam.ContentDataUser;
+import rife.cmf.dam.ContentDataUserWithoutResult;
+import rife.cmf.dam.ContentStore;
+import rife.cmf.dam.ContentTransaction;
+import rife.cmf.dam.contentstores.exceptions.*;
+import rife.cmf.dam.exceptions.ContentManagerException;
+import rife.cmf.format.Formatter;
+import rife.cmf.format.exceptions.FormatException;
+import rife.cmf.transform.ContentTransformer;
+import rife.config.RifeConfig;
+import rife.engine.Context;
+import rife.engine.Route;
+import rife.tools.Convert;
+import rife.tools.ExceptionUtils;
+import rife.tools.FileUtils;
+import rife.tools.StringUtils;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Content store that keeps the content data as files in a directory of
+ * the local filesystem, while the content info stays in the database of
+ * the content manager.
+ * <p>The data files are content-addressed by the SHA-256 hash of their
+ * bytes, identical data that is stored for several content ids is only
+ * written once and is only deleted when no content id refers to it anymore.
+ * <p>The store handles all the mime types it's created with, and can be
+ * registered with a content manager through
+ * {@link rife.cmf.dam.contentmanagers.DatabaseContent#contentStore(ContentStore)}
+ * so that the data of those mime types is stored on the filesystem instead
+ * of in the database.
+ * <p>When the content manager stores or deletes content in a
+ * {@link ContentTransaction}, data that is no longer referred to is only
+ * deleted once the transaction has been committed, and data that was written
+ * during the transaction is deleted again when it's rolled back. Outside of a
+ * tracked transaction, the files are modified immediately.
+ * <p>Content data is served by transferring the file channel to a channel
+ * that writes to the response output stream, the file is thus never loaded
+ * in memory as a whole.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public class FileContentStore implements ContentStore {
+    private static final String DIR_BLOBS = "blobs";
+    private static final String DIR_LINKS = "links";
+    private static final String DIR_REFS = "refs";
+    private static final String DIR_TMP = "tmp";
+
+    private enum Kind {
+        TEXT, BYTES, STREAM
+    }
+
+    private record Reference(String hash, Kind kind, int size) {
+        static Reference parse(String value) {
+            var parts = value.trim().split(" ");
+            return new Reference(parts[0], Kind.valueOf(parts[1]), Integer.parseInt(parts[2]));
+        }
+
+        String format() {
+            return hash + " " + kind.name() + " " + size;
+        }
+    }
+
+    private final Path directory_;
+    private final List<MimeType> mimeTypes_ = new ArrayList<>();
+    private final ReentrantLock lock_ = new ReentrantLock();
+
+    /**
+     * Creates a new file content store.
+     *
+     * @param directory the directory in which the content data will be stored
+     * @param mimeTypes the mime types whose content data will be stored
+     * @since 1.9.2
+     */
+    public FileContentStore(File directory, MimeType... mimeTypes) {
+        if (null == directory) throw new IllegalArgumentException("directory can't be null");
+        if (null == mimeTypes || 0 == mimeTypes.length) throw new IllegalArgumentException("mimeTypes can't be empty");
+
+        directory_ = directory.toPath();
+        mimeTypes_.addAll(Arrays.asList(mimeTypes));
+    }
+
+    /**
+     * Retrieves the directory in which the content data is stored.
+     *
+     * @return the directory of this store
+     * @since 1.9.2
+     */
+    public File getDirectory() {
+        return directory_.toFile();
+    }
+
+    public Collection<MimeType> getSupportedMimeTypes() {
+        return mimeTypes_;
+    }
+
+    public String getContentType(ContentInfo contentInfo) {
+        var mimeType = MimeType.getMimeType(contentInfo.getMimeType());
+        if (!getSupportedMimeTypes().contains(mimeType)) {
+            return null;
+        }
+
+        var attributes = contentInfo.getAttributes();
+        if (attributes != null) {
+            if (attributes.containsKey("content-type")) {
+                return attributes.get("content-type");
+            }
+        }
+        if (MimeType.RAW == mimeType) {
+            if (contentInfo.hasName()) {
+                return RifeConfig.Mime.getMimeType(FileUtils.getExtension(contentInfo.getName()));
+            }
+            return null;
+        }
+        if (MimeType.APPLICATION_XHTML == mimeType ||
+            MimeType.TEXT_PLAIN == mimeType ||
+            MimeType.TEXT_XML == mimeType) {
+            return mimeType + "; charset=UTF-8";
+        }
+
+        return mimeType.toString();
+    }
+
+    public String getContentForHtml(int id, ContentInfo info, Context context, Route route)
+    throws ContentManagerException {
+        var mime_type = info.getMimeType();
+        if (MimeType.APPLICATION_XHTML.toString().equals(mime_type) ||
+            MimeType.TEXT_PLAIN.toString().equals(mime_type)) {
+            return useContentDataResult(id, contentData -> {
+                if (!(contentData instanceof String text)) {
+                    return "";
+                }
+
+                if (MimeType.APPLICATION_XHTML.toString().equals(mime_type)) {
+                    return text;
+                }
+                return StringUtils.encodeHtml(text);
+            });
+        }
+
+        if (mime_type != null && mime_type.startsWith("image/")) {
+            if (null == context) throw new IllegalArgumentException("context can't be null.");
+            if (null == route) throw new IllegalArgumentException("route can't be null.");
+
+            return DatabaseImageStore.getImageTag(info, context, route);
+        }
+
+        return "";
+    }
+
+    public boolean install()
+    throws ContentManagerException {
+        if (Files.exists(directory_.resolve(DIR_REFS))) {
+            throw new InstallContentStoreErrorException(new FileAlreadyExistsException(directory_.resolve(DIR_REFS).toString()));
+        }
+
+        try {
+            Files.createDirectories(directory_.resolve(DIR_BLOBS));
+            Files.createDirectories(directory_.resolve(DIR_LINKS));
+            Files.createDirectories(directory_.resolve(DIR_REFS));
+            Files.createDirectories(directory_.resolve(DIR_TMP));
+        } catch (IOException e) {
+            throw new InstallContentStoreErrorException(e);
+        }
+
+        return true;
+    }
+
+    public boolean remove()
+    throws ContentManagerException {
+        if (!Files.exists(directory_.resolve(DIR_REFS))) {
+            throw new RemoveContentStoreErrorException(new NoSuchFileException(directory_.resolve(DIR_REFS).toString()));
+        }
+
+        lock_.lock();
+        try {
+            for (var name : List.of(DIR_REFS, DIR_LINKS, DIR_BLOBS, DIR_TMP)) {
+                deleteTree(directory_.resolve(name));
+            }
+        } catch (IOException e) {
+            throw new RemoveContentStoreErrorException(e);
+        } finally {
+            lock_.unlock();
+        }
+
+        return true;
+    }
+
+    public boolean storeContentData(int id, Content content, ContentTransformer transformer)
+    throws ContentManagerException {
+        if (id < 0) throw new IllegalArgumentException("id must be positive");
+        if (content != null &&
+            content.getData() != null &&
+            !(content.getData() instanceof InputStream) &&
+            !(content.getData() instanceof byte[]) &&
+            !(content.getData() instanceof String))
+            throw new IllegalArgumentException("the content data must be of type InputStream, byte[] or String");
+
+        Object typed_data = null;
+        if (content != null &&
+            content.getData() != null) {
+            if (MimeType.RAW == content.getMimeType() &&
+                content.getData() instanceof byte[] bytes) {
+                var cloned_content = content.clone();
+                cloned_content.setData(new ByteArrayInputStream(bytes));
+                cloned_content.setCachedLoadedData(null);
+                content = cloned_content;
+            }
+
+            Formatter formatter = null;
+            if (!Convert.toBoolean(content.getAttribute("unformatted"), false)) {
+                formatter = getFormatter(content.getMimeType(), content.isFragment());
+            }
+
+            if (formatter != null) {
+                try {
+                    typed_data = formatter.format(content, transformer);
+                } catch (FormatException e) {
+                    throw new StoreContentDataErrorException(id, e);
+                }
+            } else {
+                typed_data = content.getData();
+            }
+        }
+
+        try {
+            var tmp = Files.createTempFile(directory_.resolve(DIR_TMP), "content", null);
+            try {
+                final Kind kind;
+                final int size;
+                final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                try (var os = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)), digest)) {
+                    if (typed_data instanceof String text) {
+                        kind = Kind.TEXT;
+                        size = text.length();
+                        os.write(text.getBytes(StandardCharsets.UTF_8));
+                    } else if (typed_data instanceof byte[] bytes) {
+                        kind = Kind.BYTES;
+                        size = bytes.length;
+                        os.write(bytes);
+                    } else if (typed_data instanceof InputStream stream) {
+                        kind = Kind.STREAM;
+                        size = (int) stream.transferTo(os);
+                    } else {
+                        kind = Kind.STREAM;
+                        size = 0;
+                    }
+                }
+
+                var hash = HexFormat.of().formatHex(digest.digest());
+                link(id, new Reference(hash, kind, size), tmp);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new StoreContentDataErrorException(id, e);
+        }
+
+        return true;
+    }
+
+    public boolean deleteContentData(int id)
+    throws ContentManagerException {
+        if (id < 0) throw new IllegalArgumentException("id must be positive");
+
+        final Reference reference;
+        lock_.lock();
+        try {
+            reference = readReference(id);
+            if (null == reference) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw new DeleteContentDataErrorException(id, e);
+        } finally {
+            lock_.unlock();
+        }
+
+        // the data stays available until the deletion is committed
+        ContentTransaction.afterCommit(() -> {
+            lock_.lock();
+            try {
+                if (reference.equals(readReference(id))) {
+                    unlink(id, reference);
+                    Files.delete(refPath(id));
+                }
+            } catch (IOException e) {
+                throw new DeleteContentDataErrorException(id, e);
+            } finally {
+                lock_.unlock();
+            }
+        });
+
+        return true;
+    }
+
+    public void useContentData(int id, ContentDataUserWithoutResult user)
+    throws ContentManagerException {
+        if (null == user) throw new IllegalArgumentException("user can't be null");
+
+        useContentDataResult(id, contentData -> {
+            user.useContentData(contentData);
+            return null;
+        });
+    }
+
+    public <ResultType> ResultType useContentDataResult(int id, ContentDataUser<ResultType> user)
+    throws ContentManagerException {
+        if (id < 0) throw new IllegalArgumentException("id must be positive");
+        if (null == user) throw new IllegalArgumentException("user can't be null");
+
+        try {
+            var reference = readReference(id);
+            if (null == reference) {
+                return user.useContentData(null);
+            }
+
+            var blob = blobPath(reference.hash());
+            switch (reference.kind()) {
+                case TEXT -> {
+                    return user.useContentData(Files.readString(blob, StandardCharsets.UTF_8));
+                }
+                case BYTES -> {
+                    return user.useContentData(Files.readAllBytes(blob));
+                }
+                default -> {
+                    try (var data = new BufferedInputStream(Files.newInputStream(blob))) {
+                        return user.useContentData(data);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UseContentDataErrorException(id, e);
+        }
+    }
+
+    public boolean hasContentData(int id)
+    throws ContentManagerException {
+        if (id < 0) throw new IllegalArgumentException("id must be positive");
+
+        try {
+            var reference = readReference(id);
+            return reference != null && reference.size() > 0;
+        } catch (IOException e) {
+            throw new HasContentDataErrorException(id, e);
+        }
+    }
+
+    public int getSize(int id)
+    throws ContentManagerException {
+        if (id < 0) throw new IllegalArgumentException("id must be positive");
+
+        try {
+            var reference = readReference(id);
+            if (null == reference) {
+                return -1;
+            }
+            return reference.size();
+        } catch (IOException e) {
+            throw new RetrieveSizeErrorException(id, e);
+        }
+    }
+
+    public void serveContentData(Context context, int id)
+    throws ContentManagerException {
+        if (null == context) throw new IllegalArgumentException("context can't be null");
+
+        if (id < 0) {
+            context.defer();
+            return;
+        }
+
+        try {
+            var reference = readReference(id);
+            if (null == reference) {
+                context.defer();
+                return;
+            }
+
+            try (var channel = FileChannel.open(blobPath(reference.hash()), StandardOpenOption.READ)) {
+                var size = channel.size();
+                context.setContentLength((int) size);
+
+                // output the content
+                try {
+                    var os = context.outputStream();
+                    var target = Channels.newChannel(os);
+                    var position = 0L;
+                    while (position < size) {
+                        position += channel.transferTo(position, size - position, target);
+                    }
+                    os.flush();
+                } catch (IOException e) {
+                    // don't do anything, the client has probably disconnected
+                }
+            }
+        } catch (IOException e) {
+            Logger.getLogger("rife.cmf").severe(ExceptionUtils.getExceptionStackTrace(e));
+            context.setStatus(Context.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private void link(int id, Reference reference, Path data)
+    throws IOException {
+        lock_.lock();
+        try {
+            var previous = readReference(id);
+
+            // identical data is only stored once
+            var blob = blobPath(reference.hash());
+            if (!Files.exists(blob)) {
+                Files.createDirectories(blob.getParent());
+                Files.move(data, blob, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            var links = directory_.resolve(DIR_LINKS).resolve(reference.hash());
+            Files.createDirectories(links);
+            var link = links.resolve(String.valueOf(id));
+            if (!Files.exists(link)) {
+                Files.createFile(link);
+            }
+
+            Files.writeString(refPath(id), reference.format(), StandardCharsets.UTF_8);
+
+            // the previous data is only released once the new reference has
+            // been committed, and the new data is released again when it's
+            // rolled back
+            if (previous != null && !previous.hash().equals(reference.hash())) {
+                ContentTransaction.afterCommit(() -> release(id, previous));
+            }
+            ContentTransaction.afterRollback(() -> restore(id, reference, previous));
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    private void release(int id, Reference reference) {
+        lock_.lock();
+        try {
+            unlink(id, reference);
+        } catch (IOException e) {
+            throw new StoreContentDataErrorException(id, e);
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    private void restore(int id, Reference reference, Reference previous) {
+        lock_.lock();
+        try {
+            if (!reference.equals(readReference(id))) {
+                return;
+            }
+
+            if (null == previous) {
+                Files.delete(refPath(id));
+            } else {
+                Files.writeString(refPath(id), previous.format(), StandardCharsets.UTF_8);
+            }
+            if (null == previous || !previous.hash().equals(reference.hash())) {
+                unlink(id, reference);
+            }
+        } catch (IOException e) {
+            throw new StoreContentDataErrorException(id, e);
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    private void unlink(int id, Reference reference)
+    throws IOException {
+        var links = directory_.resolve(DIR_LINKS).resolve(reference.hash());
+        Files.deleteIfExists(links.resolve(String.valueOf(id)));
+
+        // only delete the data when no other content refers to it
+        try (var remaining = Files.list(links)) {
+            if (remaining.findAny().isPresent()) {
+                return;
+            }
+        } catch (NoSuchFileException e) {
+            // the links have already been removed
+        }
+
+        Files.deleteIfExists(links);
+        Files.deleteIfExists(blobPath(reference.hash()));
+    }
+
+    private Reference readReference(int id)
+    throws IOException {
+        try {
+            return Reference.parse(Files.readString(refPath(id), StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private Path refPath(int id) {
+        return directory_.resolve(DIR_REFS).resolve(String.valueOf(id));
+    }
+
+    private Path blobPath(String hash) {
+        return directory_.resolve(DIR_BLOBS).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static void deleteTree(Path path)
+    throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (var paths = Files.walk(path)) {
+            var sorted = paths.sorted(Comparator.reverseOrder()).toList();
+            for (var p : sorted) {
+                Files.delete(p);
+            }
+        }
+    }
+}
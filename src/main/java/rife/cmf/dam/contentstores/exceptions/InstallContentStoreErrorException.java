@@ -7,6 +7,7 @@ package rife.cmf.dam.contentstores.exceptions;
 import rife.cmf.dam.exceptions.ContentManagerException;
 import rife.database.exceptions.DatabaseException;
 
+import java.io.IOException;
 import java.io.Serial;
 
 public class InstallContentStoreErrorException extends ContentManagerException {
@@ -15,4 +16,8 @@ public class InstallContentStoreErrorException extends ContentManagerException {
     public InstallContentStoreErrorException(DatabaseException cause) {
         super("Can't install the content store database structure.", cause);
     }
+
+    public InstallContentStoreErrorException(IOException cause) {
+        super("Can't install the content store directory structure.", cause);
+    }
 }
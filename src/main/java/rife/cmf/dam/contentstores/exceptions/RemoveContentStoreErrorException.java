@@ -7,6 +7,7 @@ package rife.cmf.dam.contentstores.exceptions;
 import rife.cmf.dam.exceptions.ContentManagerException;
 import rife.database.exceptions.DatabaseException;
 
+import java.io.IOException;
 import java.io.Serial;
 
 public class RemoveContentStoreErrorException extends ContentManagerException {
@@ -15,4 +16,8 @@ public class RemoveContentStoreErrorException extends ContentManagerException {
     public RemoveContentStoreErrorException(DatabaseException cause) {
         super("Can't remove the content store database structure.", cause);
     }
+
+    public RemoveContentStoreErrorException(IOException cause) {
+        super("Can't remove the content store directory structure.", cause);
+    }
 }
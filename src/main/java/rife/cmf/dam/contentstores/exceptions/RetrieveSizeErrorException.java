@@ -7,6 +7,7 @@ package rife.cmf.dam.contentstores.exceptions;
 import rife.cmf.dam.exceptions.ContentManagerException;
 import rife.database.exceptions.DatabaseException;
 
+import java.io.IOException;
 import java.io.Serial;
 
 public class RetrieveSizeErrorException extends ContentManagerException {
@@ -20,6 +21,12 @@ public class RetrieveSizeErrorException extends ContentManagerException {
         id_ = id;
     }
 
+    public RetrieveSizeErrorException(int id, IOException cause) {
+        super("Unexpected error while retrieving the size of the content with the id '" + id + "'.", cause);
+
+        id_ = id;
+    }
+
     public int getId() {
         return id_;
     }
@@ -0,0 +1,18 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.contentstores.exceptions;
+
+import rife.cmf.dam.exceptions.ContentManagerException;
+import rife.database.exceptions.DatabaseException;
+
+import java.io.Serial;
+
+public class UpgradeContentStoreErrorException extends ContentManagerException {
+    @Serial private static final long serialVersionUID = -2364089114573328170L;
+
+    public UpgradeContentStoreErrorException(DatabaseException cause) {
+        super("Can't upgrade the content store database structure.", cause);
+    }
+}
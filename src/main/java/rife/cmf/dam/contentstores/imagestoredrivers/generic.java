@@ -5,6 +5,7 @@
 package rife.cmf.dam.contentstores.imagestoredrivers;
 
 import rife.cmf.Content;
+import rife.cmf.dam.ContentDataBatchUser;
 import rife.cmf.dam.ContentDataUser;
 import rife.cmf.dam.ContentDataUserWithoutResult;
 import rife.cmf.dam.contentstores.DatabaseImageStore;
@@ -16,6 +17,7 @@ import rife.database.queries.*;
 import rife.engine.Context;
 
 import java.sql.Blob;
+import java.util.Collection;
 
 public class generic extends DatabaseImageStore {
     protected CreateTable createTableContent_;
@@ -98,6 +100,11 @@ public class generic extends DatabaseImageStore {
         return _useContentDataResult(retrieveContent_, id, user);
     }
 
+    public void useContentDataBatch(Collection<Integer> ids, ContentDataBatchUser<Integer> user)
+    throws ContentManagerException {
+        _useContentDataBatch(RifeConfig.cmf().getTableContentStoreImage(), ids, user);
+    }
+
     public int getSize(int id)
     throws ContentManagerException {
         return _getSize(retrieveSize_, id);
@@ -4,19 +4,30 @@
  */
 package rife.cmf.dam.contentstores.rawstoredrivers;
 
+import rife.config.RifeConfig;
 import rife.database.Datasource;
 import rife.database.queries.Insert;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 
 public class com_mysql_cj_jdbc_Driver extends generic {
     public com_mysql_cj_jdbc_Driver(Datasource datasource) {
         super(datasource);
+
+        requireReferenceColumns_ = new String[]{
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " MODIFY dataId INT NOT NULL",
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " MODIFY refCount INT NOT NULL"};
     }
 
     protected int storeChunks(Insert storeContentChunk, final int id, InputStream data)
     throws IOException {
         return storeChunksNoStream(storeContentChunk, id, data);
     }
+
+    protected boolean storeChunkBatch(Insert storeContentChunk, final int id, final int firstOrdinal, final List<byte[]> chunks, final boolean stream) {
+        // a multi-row insert sends the whole batch in a single round trip
+        return storeChunkRows(RifeConfig.cmf().getTableContentStoreRawChunk(), id, firstOrdinal, chunks);
+    }
 }
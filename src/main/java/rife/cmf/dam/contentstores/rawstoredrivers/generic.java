@@ -5,6 +5,7 @@
 package rife.cmf.dam.contentstores.rawstoredrivers;
 
 import rife.cmf.Content;
+import rife.cmf.dam.ContentDataBatchUser;
 import rife.cmf.dam.ContentDataUser;
 import rife.cmf.dam.ContentDataUserWithoutResult;
 import rife.cmf.dam.contentstores.DatabaseRawStore;
@@ -16,14 +17,27 @@ import rife.database.queries.*;
 import rife.engine.Context;
 
 import java.sql.Blob;
+import java.util.Collection;
 
 public class generic extends DatabaseRawStore {
     protected CreateTable createTableContentInfo_;
     protected CreateTable createTableContentChunk_;
+    protected String createIndexContentHash_;
+    protected String[] addReferenceColumns_;
+    protected Update initializeReferences_;
+    protected String[] requireReferenceColumns_;
     protected DropTable dropTableContentInfo_;
     protected DropTable dropTableContentChunk_;
     protected Insert storeContentInfo_;
     protected Delete deleteContentInfo_;
+    protected Select retrieveDuplicate_;
+    protected Update addReference_;
+    protected Select retrieveReference_;
+    protected Update releaseReference_;
+    protected Select retrieveNextOwner_;
+    protected Update moveContentChunks_;
+    protected Update moveReferences_;
+    protected Update updateReferenceCount_;
     protected Select retrieveSize_;
     protected Select hasContentData_;
     protected Insert storeContentChunk_;
@@ -37,6 +51,9 @@ public class generic extends DatabaseRawStore {
             .table(RifeConfig.cmf().getTableContentStoreRawInfo())
             .column("contentId", int.class, CreateTable.NOTNULL)
             .column("contentSize", int.class, CreateTable.NOTNULL)
+            .column("contentHash", String.class, 64, CreateTable.NULL)
+            .column("dataId", int.class, CreateTable.NOTNULL)
+            .column("refCount", int.class, CreateTable.NOTNULL)
             .primaryKey(("PK_" + RifeConfig.cmf().getTableContentStoreRawInfo()).toUpperCase(), "contentId")
             .foreignKey(("FK_" + RifeConfig.cmf().getTableContentStoreRawInfo()).toUpperCase(), RifeConfig.cmf().getTableContentInfo(), "contentId", "contentId");
 
@@ -48,6 +65,24 @@ public class generic extends DatabaseRawStore {
             .primaryKey(("PK_" + RifeConfig.cmf().getTableContentStoreRawChunk()).toUpperCase(), new String[]{"contentId", "ordinal"})
             .foreignKey(("FK_" + RifeConfig.cmf().getTableContentStoreRawChunk()).toUpperCase(), RifeConfig.cmf().getTableContentInfo(), "contentId", "contentId");
 
+        createIndexContentHash_ = "CREATE INDEX " + ("IDX_" + RifeConfig.cmf().getTableContentStoreRawInfo()).toUpperCase() +
+            " ON " + RifeConfig.cmf().getTableContentStoreRawInfo() + " (contentHash)";
+
+        addReferenceColumns_ = new String[]{
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " ADD COLUMN contentHash VARCHAR(64)",
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " ADD COLUMN dataId INTEGER",
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " ADD COLUMN refCount INTEGER"};
+
+        initializeReferences_ = new Update(getDatasource())
+            .table(RifeConfig.cmf().getTableContentStoreRawInfo())
+            .fieldCustom("dataId", "contentId")
+            .fieldCustom("refCount", "1")
+            .where("dataId IS NULL");
+
+        requireReferenceColumns_ = new String[]{
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " ALTER COLUMN dataId SET NOT NULL",
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " ALTER COLUMN refCount SET NOT NULL"};
+
         dropTableContentInfo_ = new DropTable(getDatasource())
             .table(RifeConfig.cmf().getTableContentStoreRawInfo());
 
@@ -57,12 +92,62 @@ public class generic extends DatabaseRawStore {
         storeContentInfo_ = new Insert(getDatasource())
             .into(RifeConfig.cmf().getTableContentStoreRawInfo())
             .fieldParameter("contentId")
-            .fieldParameter("contentSize");
+            .fieldParameter("contentSize")
+            .fieldParameter("contentHash")
+            .fieldParameter("dataId")
+            .fieldParameter("refCount");
 
         deleteContentInfo_ = new Delete(getDatasource())
             .from(RifeConfig.cmf().getTableContentStoreRawInfo())
             .whereParameter("contentId", "=");
 
+        retrieveDuplicate_ = new Select(getDatasource())
+            .from(RifeConfig.cmf().getTableContentStoreRawInfo())
+            .field("contentId")
+            .whereParameter("contentHash", "=")
+            .whereParameterAnd("contentSize", "=")
+            .whereAnd("contentId = dataId")
+            .orderBy("contentId");
+
+        addReference_ = new Update(getDatasource())
+            .table(RifeConfig.cmf().getTableContentStoreRawInfo())
+            .fieldCustom("refCount", "refCount + 1")
+            .whereParameter("contentId", "=")
+            .whereAnd("refCount", ">", 0);
+
+        retrieveReference_ = new Select(getDatasource())
+            .from(RifeConfig.cmf().getTableContentStoreRawInfo())
+            .field("dataId")
+            .field("refCount")
+            .whereParameter("contentId", "=");
+
+        releaseReference_ = new Update(getDatasource())
+            .table(RifeConfig.cmf().getTableContentStoreRawInfo())
+            .fieldCustom("refCount", "refCount - 1")
+            .whereParameter("contentId", "=");
+
+        retrieveNextOwner_ = new Select(getDatasource())
+            .from(RifeConfig.cmf().getTableContentStoreRawInfo())
+            .field("contentId")
+            .whereParameter("dataId", "=")
+            .whereParameterAnd("contentId", "ownerId", "!=")
+            .orderBy("contentId");
+
+        moveContentChunks_ = new Update(getDatasource())
+            .table(RifeConfig.cmf().getTableContentStoreRawChunk())
+            .fieldParameter("contentId", "ownerId")
+            .whereParameter("contentId", "=");
+
+        moveReferences_ = new Update(getDatasource())
+            .table(RifeConfig.cmf().getTableContentStoreRawInfo())
+            .fieldParameter("dataId", "ownerId")
+            .whereParameter("dataId", "=");
+
+        updateReferenceCount_ = new Update(getDatasource())
+            .table(RifeConfig.cmf().getTableContentStoreRawInfo())
+            .fieldParameter("refCount")
+            .whereParameter("contentId", "=");
+
         retrieveSize_ = new Select(getDatasource())
             .from(RifeConfig.cmf().getTableContentStoreRawInfo())
             .field("contentSize")
@@ -86,14 +171,21 @@ public class generic extends DatabaseRawStore {
 
         retrieveContentChunks_ = new Select(getDatasource())
             .from(RifeConfig.cmf().getTableContentStoreRawChunk())
-            .field("chunk")
-            .whereParameter("contentId", "=")
-            .orderBy("ordinal");
+            .join(RifeConfig.cmf().getTableContentStoreRawInfo())
+            .field(RifeConfig.cmf().getTableContentStoreRawChunk() + ".chunk")
+            .where(RifeConfig.cmf().getTableContentStoreRawChunk() + ".contentId = " + RifeConfig.cmf().getTableContentStoreRawInfo() + ".dataId")
+            .whereParameter(RifeConfig.cmf().getTableContentStoreRawInfo() + ".contentId", "contentId", "=")
+            .orderBy(RifeConfig.cmf().getTableContentStoreRawChunk() + ".ordinal");
     }
 
     public boolean install()
     throws ContentManagerException {
-        return _install(createTableContentInfo_, createTableContentChunk_);
+        return _install(createTableContentInfo_, createTableContentChunk_, createIndexContentHash_);
+    }
+
+    public boolean upgrade()
+    throws ContentManagerException {
+        return _upgrade(RifeConfig.cmf().getTableContentStoreRawInfo(), addReferenceColumns_, initializeReferences_, requireReferenceColumns_, createIndexContentHash_);
     }
 
     public boolean remove()
@@ -103,12 +195,12 @@ public class generic extends DatabaseRawStore {
 
     public boolean storeContentData(int id, Content content, ContentTransformer transformer)
     throws ContentManagerException {
-        return _storeContentData(storeContentInfo_, storeContentChunk_, id, content, transformer);
+        return _storeContentData(storeContentInfo_, storeContentChunk_, retrieveDuplicate_, addReference_, id, content, transformer);
     }
 
     public boolean deleteContentData(int id)
     throws ContentManagerException {
-        return _deleteContentData(deleteContentInfo_, deleteContentChunk_, id);
+        return _deleteContentData(retrieveReference_, releaseReference_, retrieveNextOwner_, moveContentChunks_, moveReferences_, updateReferenceCount_, deleteContentInfo_, deleteContentChunk_, id);
     }
 
     public void useContentData(int id, ContentDataUserWithoutResult user)
@@ -121,6 +213,11 @@ public class generic extends DatabaseRawStore {
         return _useContentDataResult(retrieveContentChunks_, id, user);
     }
 
+    public void useContentDataBatch(Collection<Integer> ids, ContentDataBatchUser<Integer> user)
+    throws ContentManagerException {
+        _useContentDataBatch(RifeConfig.cmf().getTableContentStoreRawInfo(), RifeConfig.cmf().getTableContentStoreRawChunk(), ids, user);
+    }
+
     public int getSize(int id)
     throws ContentManagerException {
         return _getSize(retrieveSize_, id);
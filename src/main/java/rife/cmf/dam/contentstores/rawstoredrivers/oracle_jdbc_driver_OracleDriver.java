@@ -4,6 +4,7 @@
  */
 package rife.cmf.dam.contentstores.rawstoredrivers;
 
+import rife.config.RifeConfig;
 import rife.database.Datasource;
 import rife.database.DbConnection;
 import rife.database.DbPreparedStatement;
@@ -14,6 +15,15 @@ import java.sql.ResultSet;
 public class oracle_jdbc_driver_OracleDriver extends generic {
     public oracle_jdbc_driver_OracleDriver(Datasource datasource) {
         super(datasource);
+
+        addReferenceColumns_ = new String[]{
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " ADD contentHash VARCHAR2(64)",
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " ADD dataId NUMBER(10)",
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " ADD refCount NUMBER(10)"};
+
+        requireReferenceColumns_ = new String[]{
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " MODIFY dataId NOT NULL",
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " MODIFY refCount NOT NULL"};
     }
 
     protected DbPreparedStatement getStreamPreparedStatement(Query query, DbConnection connection) {
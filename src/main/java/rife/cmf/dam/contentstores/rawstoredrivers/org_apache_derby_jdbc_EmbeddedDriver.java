@@ -21,6 +21,9 @@ public class org_apache_derby_jdbc_EmbeddedDriver extends generic {
             .table(RifeConfig.cmf().getTableContentStoreRawInfo())
             .column("contentId", int.class, CreateTable.NOTNULL)
             .column("contentSize", int.class, CreateTable.NOTNULL)
+            .column("contentHash", String.class, 64, CreateTable.NULL)
+            .column("dataId", int.class, CreateTable.NOTNULL)
+            .column("refCount", int.class, CreateTable.NOTNULL)
             .primaryKey("PK_CONTENTRAW", "contentId")
             .foreignKey("FK_CONTENTRAW", RifeConfig.cmf().getTableContentInfo(), "contentId", "contentId");
 
@@ -31,6 +34,10 @@ public class org_apache_derby_jdbc_EmbeddedDriver extends generic {
             .column("chunk", Blob.class)
             .primaryKey("PK_CONTENTCHUNK", new String[]{"contentId", "ordinal"})
             .foreignKey("FK_CONTENTCHUNK", RifeConfig.cmf().getTableContentInfo(), "contentId", "contentId");
+
+        requireReferenceColumns_ = new String[]{
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " ALTER COLUMN dataId NOT NULL",
+            "ALTER TABLE " + RifeConfig.cmf().getTableContentStoreRawInfo() + " ALTER COLUMN refCount NOT NULL"};
     }
 
     protected int storeChunks(Insert storeContentChunk, final int id, InputStream data)
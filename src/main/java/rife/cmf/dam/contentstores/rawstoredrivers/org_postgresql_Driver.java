@@ -4,18 +4,29 @@
  */
 package rife.cmf.dam.contentstores.rawstoredrivers;
 
+import rife.cmf.dam.ContentDataBatchUser;
 import rife.cmf.dam.ContentDataUser;
 import rife.cmf.dam.ContentDataUserWithoutResult;
 import rife.cmf.dam.exceptions.ContentManagerException;
+import rife.config.RifeConfig;
 import rife.database.Datasource;
+import rife.database.queries.Insert;
 import rife.database.queries.Select;
 import rife.engine.Context;
 
+import java.util.Collection;
+import java.util.List;
+
 public class org_postgresql_Driver extends generic {
     public org_postgresql_Driver(Datasource datasource) {
         super(datasource);
     }
 
+    protected boolean storeChunkBatch(Insert storeContentChunk, final int id, final int firstOrdinal, final List<byte[]> chunks, final boolean stream) {
+        // a multi-row insert sends the whole batch in a single round trip
+        return storeChunkRows(RifeConfig.cmf().getTableContentStoreRawChunk(), id, firstOrdinal, chunks);
+    }
+
     protected void _useContentData(final Select retrieveContentChunks, final int id, final ContentDataUserWithoutResult user)
     throws ContentManagerException {
         inTransaction(() -> super._useContentData(retrieveContentChunks, id, user));
@@ -26,6 +37,11 @@ public class org_postgresql_Driver extends generic {
         return inTransaction(() -> super._useContentDataResult(retrieveContentChunks, id, user));
     }
 
+    protected void _useContentDataBatch(final String infoTable, final String chunkTable, final Collection<Integer> ids, final ContentDataBatchUser<Integer> user)
+    throws ContentManagerException {
+        inTransaction(() -> super._useContentDataBatch(infoTable, chunkTable, ids, user));
+    }
+
     protected void _serveContentData(final Select retrieveContentChunks, final Context context, final int id)
     throws ContentManagerException {
         inTransaction(() -> super._serveContentData(retrieveContentChunks, context, id));
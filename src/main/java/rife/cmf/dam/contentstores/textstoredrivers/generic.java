@@ -5,6 +5,7 @@
 package rife.cmf.dam.contentstores.textstoredrivers;
 
 import rife.cmf.Content;
+import rife.cmf.dam.ContentDataBatchUser;
 import rife.cmf.dam.ContentDataUser;
 import rife.cmf.dam.ContentDataUserWithoutResult;
 import rife.cmf.dam.contentstores.DatabaseTextStore;
@@ -15,6 +16,8 @@ import rife.database.Datasource;
 import rife.database.queries.*;
 import rife.engine.Context;
 
+import java.util.Collection;
+
 public class generic extends DatabaseTextStore {
     protected CreateTable createTableContent_;
     protected DropTable dropTableContent_;
@@ -96,6 +99,11 @@ public class generic extends DatabaseTextStore {
         return _useContentDataResult(retrieveContent_, id, user);
     }
 
+    public void useContentDataBatch(Collection<Integer> ids, ContentDataBatchUser<Integer> user)
+    throws ContentManagerException {
+        _useContentDataBatch(RifeConfig.cmf().getTableContentStoreText(), ids, user);
+    }
+
     public int getSize(int id)
     throws ContentManagerException {
         return _getSize(retrieveSize_, id);
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.exceptions;
+
+import java.io.Serial;
+
+public class OrdinalInsertLockTimeoutException extends ContentManagerException {
+    @Serial private static final long serialVersionUID = 2871563910247568322L;
+
+    private final Class beanClass_;
+    private final String property_;
+    private final long timeout_;
+
+    public OrdinalInsertLockTimeoutException(Class beanClass, String property, long timeout) {
+        super("The insert lock of the ordinal property '" + property + "' of bean '" + beanClass.getName() + "' couldn't be obtained within " + timeout + " milliseconds.");
+
+        beanClass_ = beanClass;
+        property_ = property;
+        timeout_ = timeout;
+    }
+
+    public Class getBeanClass() {
+        return beanClass_;
+    }
+
+    public String getProperty() {
+        return property_;
+    }
+
+    public long getTimeout() {
+        return timeout_;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.ordinalmanagers;
+
+import rife.database.Datasource;
+import rife.database.DbQueryManager;
+import rife.database.exceptions.DatabaseException;
+
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Provides the database-specific statements that an
+ * {@link rife.cmf.dam.OrdinalManager} uses to renumber all the ordinals
+ * of a range at once.
+ * <p>These statements update the rows in an order that's decided by the
+ * database, they're only safe when the ordinal column isn't part of a
+ * unique index.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public abstract class DatabaseOrdinals extends DbQueryManager {
+    protected DatabaseOrdinals(Datasource datasource) {
+        super(datasource);
+    }
+
+    /**
+     * Indicates whether a column is part of a unique index of a table.
+     * <p>When this can't be determined, the column is considered to be
+     * unique.
+     *
+     * @param table  the name of the table
+     * @param column the name of the column
+     * @return {@code true} if the column is part of a unique index; or
+     * <p>{@code false} otherwise
+     * @since 1.9.2
+     */
+    public boolean isUniqueColumn(String table, String column) {
+        if (null == table) throw new IllegalArgumentException("table can't be null");
+        if (null == column) throw new IllegalArgumentException("column can't be null");
+
+        try {
+            var metadata = getConnection().getMetaData();
+
+            // databases store unquoted identifiers in different cases
+            for (var name : new LinkedHashSet<>(List.of(table, table.toUpperCase(), table.toLowerCase()))) {
+                try (var indexes = metadata.getIndexInfo(null, null, name, true, true)) {
+                    while (indexes.next()) {
+                        if (column.equalsIgnoreCase(indexes.getString("COLUMN_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        } catch (SQLException | DatabaseException e) {
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Renumbers the distinct ordinals of a range with a single statement,
+     * so that they start at {@code 0} and don't have any gaps.
+     *
+     * @param table          the name of the table
+     * @param ordinalColumn  the name of the ordinal column
+     * @param restrictColumn the name of the restricting column; or
+     *                       {@code null} if the ordinals of the entire table are renumbered
+     * @param restrictId     the value of the restricting column
+     * @since 1.9.2
+     */
+    public abstract void tighten(String table, String ordinalColumn, String restrictColumn, long restrictId);
+}
@@ -0,0 +1,19 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.ordinalmanagers;
+
+import rife.database.Datasource;
+import rife.database.DbQueryManagerCache;
+import rife.database.DbQueryManagerFactory;
+
+public abstract class DatabaseOrdinalsFactory extends DbQueryManagerFactory {
+    public static final String MANAGER_PACKAGE_NAME = DatabaseOrdinalsFactory.class.getPackage().getName() + ".databasedrivers.";
+
+    private static final DbQueryManagerCache cache_ = new DbQueryManagerCache();
+
+    public static DatabaseOrdinals instance(Datasource datasource) {
+        return (DatabaseOrdinals) instance(MANAGER_PACKAGE_NAME, cache_, datasource);
+    }
+}
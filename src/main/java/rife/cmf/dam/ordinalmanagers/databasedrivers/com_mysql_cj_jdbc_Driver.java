@@ -0,0 +1,31 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.ordinalmanagers.databasedrivers;
+
+import rife.database.Datasource;
+
+public class com_mysql_cj_jdbc_Driver extends generic {
+    public com_mysql_cj_jdbc_Driver(Datasource datasource) {
+        super(datasource);
+    }
+
+    public void tighten(String table, String ordinalColumn, String restrictColumn, long restrictId) {
+        // MySQL can't select from the table that's being updated in a
+        // subquery, the numbered rows are joined instead
+        var restriction = "";
+        var restriction_outer = "";
+        if (restrictColumn != null) {
+            restriction = " WHERE " + restrictColumn + " = " + restrictId;
+            restriction_outer = " AND " + table + "." + restrictColumn + " = " + restrictId;
+        }
+
+        executeUpdate("UPDATE " + table +
+            " JOIN (SELECT " + ordinalColumn + " AS old_ordinal, ROW_NUMBER() OVER (ORDER BY " + ordinalColumn + ") - 1 AS new_ordinal" +
+            " FROM " + table + restriction + ") r" +
+            " ON " + table + "." + ordinalColumn + " = r.old_ordinal" +
+            " SET " + table + "." + ordinalColumn + " = r.new_ordinal" +
+            " WHERE " + table + "." + ordinalColumn + " <> r.new_ordinal" + restriction_outer);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.ordinalmanagers.databasedrivers;
+
+import rife.cmf.dam.ordinalmanagers.DatabaseOrdinals;
+import rife.database.Datasource;
+import rife.database.queries.Update;
+
+public class generic extends DatabaseOrdinals {
+    public generic(Datasource datasource) {
+        super(datasource);
+    }
+
+    public void tighten(String table, String ordinalColumn, String restrictColumn, final long restrictId) {
+        // the ordinals are distinct, the new ordinal of a row is the number
+        // of rows that come before it
+        var restriction = "";
+        if (restrictColumn != null) {
+            restriction = " AND o." + restrictColumn + " = " + table + "." + restrictColumn;
+        }
+
+        var tighten = new Update(getDatasource())
+            .table(table)
+            .fieldCustom(ordinalColumn, "(SELECT COUNT(*) FROM " + table + " o " +
+                "WHERE o." + ordinalColumn + " < " + table + "." + ordinalColumn + restriction + ")");
+        if (null == restrictColumn) {
+            executeUpdate(tighten);
+        } else {
+            tighten.whereParameter(restrictColumn, "=");
+            executeUpdate(tighten, s -> s.setLong(restrictColumn, restrictId));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.ordinalmanagers.databasedrivers;
+
+import rife.database.Datasource;
+
+public class org_postgresql_Driver extends generic {
+    public org_postgresql_Driver(Datasource datasource) {
+        super(datasource);
+    }
+
+    public void tighten(String table, String ordinalColumn, String restrictColumn, long restrictId) {
+        // the window function numbers the rows in one pass, instead of
+        // counting the preceding rows for each of them
+        var restriction = "";
+        var restriction_outer = "";
+        if (restrictColumn != null) {
+            restriction = " WHERE " + restrictColumn + " = " + restrictId;
+            restriction_outer = " AND " + table + "." + restrictColumn + " = " + restrictId;
+        }
+
+        executeUpdate("UPDATE " + table +
+            " SET " + ordinalColumn + " = r.new_ordinal" +
+            " FROM (SELECT " + ordinalColumn + " AS old_ordinal, ROW_NUMBER() OVER (ORDER BY " + ordinalColumn + ") - 1 AS new_ordinal" +
+            " FROM " + table + restriction + ") r" +
+            " WHERE " + table + "." + ordinalColumn + " = r.old_ordinal" +
+            " AND " + table + "." + ordinalColumn + " <> r.new_ordinal" + restriction_outer);
+    }
+}
@@ -0,0 +1,10 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+
+/**
+ * Provides the database support for ordinal management.
+ * @since 1.9.2
+ */
+package rife.cmf.dam.ordinalmanagers;
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.elements;
+
+import rife.cmf.dam.ResumableUploads;
+import rife.engine.Context;
+import rife.engine.Element;
+import rife.engine.RequestMethod;
+import rife.tools.ExceptionUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Receives large content in several requests with a protocol that is
+ * compatible with the core of the <a href="https://tus.io/protocols/resumable-upload">tus</a>
+ * resumable upload protocol and its creation and termination extensions.
+ * <p>The element should be registered for all request methods with its
+ * path info captured, for instance:
+ * <pre>route("/upload", PathInfoHandling.CAPTURE, new ResumableUpload(uploads, completion));</pre>
+ * <ul>
+ * <li>{@code POST} creates an upload with the length of the
+ * {@code Upload-Length} header and returns its location,
+ * <li>{@code HEAD} on the location returns the current {@code Upload-Offset},
+ * <li>{@code PATCH} on the location appends the request body at the
+ * {@code Upload-Offset}, the body is streamed directly to the staged upload,
+ * <li>{@code DELETE} on the location removes the upload.
+ * </ul>
+ * <p>Once all the data of an upload has been received, the
+ * {@link Completion} is called, it typically
+ * {@link ResumableUploads#commit commits} the upload to a content property
+ * of a bean.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see ResumableUploads
+ * @since 1.9.2
+ */
+public class ResumableUpload implements Element {
+    public static final String TUS_VERSION = "1.0.0";
+    public static final String CONTENT_TYPE_OFFSET_OCTET_STREAM = "application/offset+octet-stream";
+
+    public static final String HEADER_TUS_RESUMABLE = "Tus-Resumable";
+    public static final String HEADER_TUS_VERSION = "Tus-Version";
+    public static final String HEADER_TUS_EXTENSION = "Tus-Extension";
+    public static final String HEADER_TUS_MAX_SIZE = "Tus-Max-Size";
+    public static final String HEADER_UPLOAD_LENGTH = "Upload-Length";
+    public static final String HEADER_UPLOAD_OFFSET = "Upload-Offset";
+    public static final String HEADER_UPLOAD_METADATA = "Upload-Metadata";
+
+    /**
+     * Handles uploads once all their data has been received.
+     *
+     * @since 1.9.2
+     */
+    @FunctionalInterface
+    public interface Completion {
+        /**
+         * Called when all the data of an upload has been received.
+         *
+         * @param c      the context of the request that received the last data
+         * @param upload the complete upload
+         * @throws Exception when an error occurred while handling the upload
+         * @since 1.9.2
+         */
+        void completed(Context c, ResumableUploads.Upload upload)
+        throws Exception;
+    }
+
+    private final ResumableUploads uploads_;
+    private final Completion completion_;
+
+    public ResumableUpload(ResumableUploads uploads, Completion completion) {
+        if (null == uploads) throw new IllegalArgumentException("uploads can't be null");
+        if (null == completion) throw new IllegalArgumentException("completion can't be null");
+
+        uploads_ = uploads;
+        completion_ = completion;
+    }
+
+    public void process(Context c)
+    throws Exception {
+        c.setHeader(HEADER_TUS_RESUMABLE, TUS_VERSION);
+
+        var method = c.method();
+        if (RequestMethod.OPTIONS == method) {
+            c.setHeader(HEADER_TUS_VERSION, TUS_VERSION);
+            c.setHeader(HEADER_TUS_EXTENSION, "creation,termination");
+            if (uploads_.maximumLength() >= 0) {
+                c.setHeader(HEADER_TUS_MAX_SIZE, String.valueOf(uploads_.maximumLength()));
+            }
+            c.setStatus(Context.SC_NO_CONTENT);
+            return;
+        }
+
+        // get the upload id from the path info
+        var id = c.pathInfo();
+        if (id != null && id.startsWith("/")) {
+            id = id.substring(1);
+        }
+        if (id != null && id.isEmpty()) {
+            id = null;
+        }
+
+        try {
+            if (null == id) {
+                if (RequestMethod.POST == method) {
+                    create(c);
+                } else {
+                    c.defer();
+                }
+                return;
+            }
+
+            switch (method) {
+                case HEAD -> offset(c, id);
+                case PATCH -> append(c, id);
+                case DELETE -> {
+                    if (uploads_.delete(id)) {
+                        c.setStatus(Context.SC_NO_CONTENT);
+                    } else {
+                        c.setStatus(Context.SC_NOT_FOUND);
+                    }
+                }
+                default -> c.defer();
+            }
+        } catch (IOException e) {
+            Logger.getLogger("rife.cmf").severe(ExceptionUtils.getExceptionStackTrace(e));
+            c.setStatus(Context.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private void create(Context c)
+    throws Exception {
+        long length;
+        Map<String, String> metadata;
+        try {
+            length = Long.parseLong(c.header(HEADER_UPLOAD_LENGTH));
+            metadata = parseMetadata(c.header(HEADER_UPLOAD_METADATA));
+        } catch (IllegalArgumentException e) {
+            c.setStatus(Context.SC_BAD_REQUEST);
+            return;
+        }
+
+        if (uploads_.maximumLength() >= 0 &&
+            length > uploads_.maximumLength()) {
+            c.setStatus(Context.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+
+        ResumableUploads.Upload upload;
+        try {
+            upload = uploads_.create(length, metadata);
+        } catch (IllegalArgumentException e) {
+            c.setStatus(Context.SC_BAD_REQUEST);
+            return;
+        }
+
+        c.setHeader("Location", c.urlFor(c.route()).pathInfo(upload.id()).toString());
+        c.setStatus(Context.SC_CREATED);
+
+        if (upload.isComplete()) {
+            completion_.completed(c, upload);
+        }
+    }
+
+    private void offset(Context c, String id)
+    throws IOException {
+        var upload = uploads_.get(id);
+        if (null == upload) {
+            c.setStatus(Context.SC_NOT_FOUND);
+            return;
+        }
+
+        c.setHeader("Cache-Control", "no-store");
+        c.setHeader(HEADER_UPLOAD_OFFSET, String.valueOf(upload.offset()));
+        c.setHeader(HEADER_UPLOAD_LENGTH, String.valueOf(upload.length()));
+        c.setStatus(Context.SC_NO_CONTENT);
+    }
+
+    private void append(Context c, String id)
+    throws Exception {
+        var content_type = c.request().getContentType();
+        if (null == content_type ||
+            !content_type.startsWith(CONTENT_TYPE_OFFSET_OCTET_STREAM)) {
+            c.setStatus(Context.SC_UNSUPPORTED_MEDIA_TYPE);
+            return;
+        }
+
+        long offset;
+        try {
+            offset = Long.parseLong(c.header(HEADER_UPLOAD_OFFSET));
+        } catch (NumberFormatException e) {
+            c.setStatus(Context.SC_BAD_REQUEST);
+            return;
+        }
+
+        ResumableUploads.Upload upload;
+        try {
+            upload = uploads_.append(id, offset, c.bodyAsStream());
+        } catch (IllegalStateException e) {
+            c.setStatus(Context.SC_CONFLICT);
+            return;
+        }
+        if (null == upload) {
+            c.setStatus(Context.SC_NOT_FOUND);
+            return;
+        }
+
+        c.setHeader(HEADER_UPLOAD_OFFSET, String.valueOf(upload.offset()));
+        c.setStatus(Context.SC_NO_CONTENT);
+
+        if (upload.isComplete()) {
+            completion_.completed(c, upload);
+        }
+    }
+
+    private static Map<String, String> parseMetadata(String header) {
+        var result = new LinkedHashMap<String, String>();
+        if (null == header || header.isBlank()) {
+            return result;
+        }
+
+        // the metadata consists of comma separated keys with base64 encoded values
+        var decoder = Base64.getDecoder();
+        for (var pair : header.split(",")) {
+            pair = pair.trim();
+            if (pair.isEmpty()) {
+                continue;
+            }
+
+            var space = pair.indexOf(' ');
+            if (-1 == space) {
+                result.put(pair, "");
+            } else {
+                result.put(pair.substring(0, space), new String(decoder.decode(pair.substring(space + 1).trim()), StandardCharsets.UTF_8));
+            }
+        }
+
+        return result;
+    }
+}
@@ -5,7 +5,9 @@
 package rife.cmf.elements;
 
 import rife.cmf.dam.ContentManager;
+import rife.cmf.dam.contentmanagers.DatabaseContent;
 import rife.cmf.dam.contentmanagers.DatabaseContentFactory;
+import rife.cmf.dam.contentmanagers.ImageResizing;
 import rife.cmf.dam.exceptions.ContentManagerException;
 import rife.database.Datasource;
 import rife.engine.Context;
@@ -19,6 +21,7 @@ import java.util.logging.Logger;
 public class ServeContent implements Element {
     private final Datasource datasource_;
     private final String repositoryName_;
+    private ImageResizing imageResizing_ = null;
 
     public ServeContent(Datasource datasource) {
         if (null == datasource) throw new IllegalArgumentException("datasource can't be null");
@@ -34,6 +37,21 @@ public class ServeContent implements Element {
         repositoryName_ = repositoryName;
     }
 
+    /**
+     * Enables the on-demand resizing of images through the {@code width},
+     * {@code height} and {@code format} request parameters.
+     *
+     * @param resizing the image resizing configuration; or
+     *                 {@code null} to serve images as they're stored
+     * @return this {@code ServeContent} instance
+     * @see ImageResizing
+     * @since 1.9.2
+     */
+    public ServeContent imageResizing(ImageResizing resizing) {
+        imageResizing_ = resizing;
+        return this;
+    }
+
     public void process(Context c)
     throws Exception {
         // retrieve and output the content that corresponds to the path info
@@ -64,7 +82,12 @@ public class ServeContent implements Element {
             // serve the content for the path, if the path is valid
             if (content_path != null &&
                 !content_path.equals("/")) {
-                manager.serveContentData(c, content_path);
+                if (imageResizing_ != null &&
+                    manager instanceof DatabaseContent database_content) {
+                    database_content.serveContentData(c, content_path, imageResizing_);
+                } else {
+                    manager.serveContentData(c, content_path);
+                }
                 return;
             }
         } catch (ContentManagerException e) {
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.format;
+
+import rife.cmf.MimeType;
+import rife.cmf.format.exceptions.FormatException;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Derives the {@link ImageVariant variants} of an image.
+ * <p>The image is only decoded once, the scaling happens in progressive
+ * halving steps that are shared by all the variants, and the final scaling
+ * and encoding of each variant happens in parallel on a bounded pool of
+ * threads.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public class ImageDerivatives {
+    private static final ImageDerivatives DEFAULT = new ImageDerivatives(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * An encoded variant of an image.
+     *
+     * @param variant the variant that was derived
+     * @param width   the width of the encoded image
+     * @param height  the height of the encoded image
+     * @param data    the encoded image data
+     * @since 1.9.2
+     */
+    public record Derivative(ImageVariant variant, int width, int height, byte[] data) {
+    }
+
+    private final ForkJoinPool pool_;
+
+    /**
+     * Retrieves the shared instance that uses as many threads as there are
+     * available processors.
+     *
+     * @return the shared {@code ImageDerivatives} instance
+     * @since 1.9.2
+     */
+    public static ImageDerivatives instance() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates a new instance with its own pool of threads.
+     *
+     * @param parallelism the maximum number of variants that are encoded
+     *                    at the same time
+     * @since 1.9.2
+     */
+    public ImageDerivatives(int parallelism) {
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism should be greater than 0");
+
+        pool_ = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Derives variants of an image.
+     *
+     * @param source   the decoded original image
+     * @param mimeType the mime type that the variants should be encoded in
+     * @param variants the variants to derive
+     * @return a future that completes with the derivatives, in the same
+     * order as the variants
+     * @since 1.9.2
+     */
+    public CompletableFuture<List<Derivative>> derive(Image source, MimeType mimeType, List<ImageVariant> variants) {
+        if (null == source) throw new IllegalArgumentException("source can't be null");
+        if (null == mimeType) throw new IllegalArgumentException("mimeType can't be null");
+        if (null == variants) throw new IllegalArgumentException("variants can't be null");
+
+        var image_type = ImageFormatter.getImageType(mimeType);
+        var orig_width = source.getWidth(null);
+        var orig_height = source.getHeight(null);
+
+        var sizes = new ArrayList<Dimension>(variants.size());
+        var smallest_edge = Integer.MAX_VALUE;
+        for (var variant : variants) {
+            var size = ImageFormatter.fitDimensions(orig_width, orig_height, variant.width(), variant.height());
+            sizes.add(size);
+            smallest_edge = Math.min(smallest_edge, Math.max(size.width, size.height));
+        }
+
+        // compute the halving steps once for all the variants, each variant
+        // is then scaled from the smallest step that is still large enough
+        var steps = new ArrayList<Image>();
+        steps.add(source);
+        var step = source;
+        while (!variants.isEmpty() &&
+               smallest_edge / (double) longestEdge(step) < 0.5) {
+            step = ImageFormatter.scaleImage(step, 0.5, image_type);
+            steps.add(step);
+        }
+
+        var futures = new ArrayList<CompletableFuture<Derivative>>(variants.size());
+        for (var i = 0; i < variants.size(); i++) {
+            var variant = variants.get(i);
+            var size = sizes.get(i);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                var base = steps.get(baseStep(steps, Math.max(size.width, size.height)));
+                var scaled = ImageFormatter.scaleImage(base, size.width, size.height, image_type);
+                try {
+                    return new Derivative(variant, scaled.getWidth(), scaled.getHeight(), ImageFormatter.encode(scaled, mimeType));
+                } catch (FormatException e) {
+                    throw new CompletionException(e);
+                }
+            }, pool_));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenApply(v -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Waits for all the variants that are being derived, and the actions
+     * that depend on them, to be finished.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the time unit of the timeout
+     * @return {@code true} if all the work finished; or
+     * {@code false} if the timeout elapsed
+     * @since 1.9.2
+     */
+    public boolean awaitQuiescence(long timeout, TimeUnit unit) {
+        return pool_.awaitQuiescence(timeout, unit);
+    }
+
+    static int baseStep(List<Image> steps, int edge) {
+        // the steps get smaller, use the smallest one that doesn't have to
+        // be upscaled to reach the edge of the variant
+        var base = 0;
+        for (var i = 1; i < steps.size(); i++) {
+            if (longestEdge(steps.get(i)) < edge) {
+                break;
+            }
+            base = i;
+        }
+        return base;
+    }
+
+    private static int longestEdge(Image image) {
+        return Math.max(image.getWidth(null), image.getHeight(null));
+    }
+}
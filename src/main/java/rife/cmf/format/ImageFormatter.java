@@ -47,6 +47,17 @@ import java.util.Set;
  * &quot;height&quot; attributes take precedence if set, and this attribute will be ignored.
  * </td>
  * </tr>
+ * <tr>
+ * <td>{@code variants}</td>
+ * <td>Declares named variants of the image that are derived from the
+ * original data and stored next to it, see {@link ImageVariant#parse(String)}
+ * for the format and {@link ImageDerivatives} for how they're produced.</td>
+ * </tr>
+ * <tr>
+ * <td>{@code variantsAsync}</td>
+ * <td>When {@code true}, the storing of the content doesn't wait for the
+ * variants to be stored.</td>
+ * </tr>
  * </table>
  *
  * @author Geert Bevin (gbevin[remove] at uwyn dot com)
@@ -59,6 +70,8 @@ public class ImageFormatter implements Formatter<byte[], Image> {
         public static final String HEIGHT = "height";
         public static final String LONGEST_EDGE_LENGTH = "longestEdgeLength";
         public static final String HIDPI = "hidpi";
+        public static final String VARIANTS = "variants";
+        public static final String VARIANTS_ASYNC = "variantsAsync";
     }
 
     public static final class CmfProperty {
@@ -99,15 +112,15 @@ public class ImageFormatter implements Formatter<byte[], Image> {
             }
 
             data = loaded.data();
+
+            // keep the decoded image around for the derivation of the variants
+            content.setCachedLoadedData(loaded);
         }
 
         boolean was_transformed = false;
 
         // determine image type
-        var image_type = BufferedImage.TYPE_INT_ARGB;
-        if (content.getMimeType() == MimeType.IMAGE_JPEG) {
-            image_type = BufferedImage.TYPE_INT_RGB;
-        }
+        var image_type = getImageType(content.getMimeType());
 
         // perform additional conversions according to the provided attributes
         boolean hidpi = true;
@@ -174,27 +187,12 @@ public class ImageFormatter implements Formatter<byte[], Image> {
                 var orig_width = data.getWidth(null);
                 var orig_height = data.getHeight(null);
 
-                // ensure that the aspect is preserved at all times
-                if (width >= 0 && height >= 0) {
-                    var width_ratio = ((double) orig_width) / width;
-                    var height_ratio = ((double) orig_height) / height;
-                    if (width_ratio > height_ratio) {
-                        height = -1;
-                    } else if (width_ratio < height_ratio) {
-                        width = -1;
-                    }
-                }
-                if (height == -1) {
-                    height = (int) (((double) (orig_height * width) / orig_width) + 0.5);
-                }
-                if (width == -1) {
-                    width = (int) ((((double) orig_width * height) / orig_height) + 0.5);
-                }
+                var size = fitDimensions(orig_width, orig_height, width, height);
 
                 // only rescale when the dimensions are actually different
-                if ((width >= 0 && width != orig_width) ||
-                    (height >= 0 && height != orig_height)) {
-                    data = progressiveScaling(data, Math.max(width, height), image_type);
+                if (size.width != orig_width ||
+                    size.height != orig_height) {
+                    data = progressiveScaling(data, Math.max(size.width, size.height), image_type);
                     was_transformed = true;
                 }
             }
@@ -229,23 +227,56 @@ public class ImageFormatter implements Formatter<byte[], Image> {
             .property(CmfProperty.HIDPI, hidpi);
 
         // write it out as the correct mimetype
+        return encode(buffer, content.getMimeType());
+    }
+
+    static int getImageType(MimeType mimeType) {
+        if (mimeType == MimeType.IMAGE_JPEG) {
+            return BufferedImage.TYPE_INT_RGB;
+        }
+        return BufferedImage.TYPE_INT_ARGB;
+    }
+
+    static Dimension fitDimensions(int origWidth, int origHeight, int width, int height) {
+        // ensure that the aspect is preserved at all times
+        if (width >= 0 && height >= 0) {
+            var width_ratio = ((double) origWidth) / width;
+            var height_ratio = ((double) origHeight) / height;
+            if (width_ratio > height_ratio) {
+                height = -1;
+            } else if (width_ratio < height_ratio) {
+                width = -1;
+            }
+        }
+        if (height == -1) {
+            height = (int) (((double) (origHeight * width) / origWidth) + 0.5);
+        }
+        if (width == -1) {
+            width = (int) ((((double) origWidth * height) / origHeight) + 0.5);
+        }
+
+        return new Dimension(width, height);
+    }
+
+    static byte[] encode(BufferedImage buffer, MimeType mimeType)
+    throws FormatException {
         var bytes_out = new ByteArrayOutputStream();
         var buffered_out = new BufferedOutputStream(bytes_out);
 
         try {
             // retrieve a supported writer
-            var writers = ImageIO.getImageWritersByMIMEType(content.getMimeType().getIdentifier());
+            var writers = ImageIO.getImageWritersByMIMEType(mimeType.getIdentifier());
             ImageWriter writer = null;
             ImageWriteParam write_param = null;
             if (writers.hasNext()) {
                 writer = writers.next();
             }
             if (null == writer) {
-                throw new UnsupportedTargetMimeTypeException(content.getMimeType());
+                throw new UnsupportedTargetMimeTypeException(mimeType);
             }
             var image_out = ImageIO.createImageOutputStream(buffered_out);
             writer.setOutput(image_out);
-            if (content.getMimeType() == MimeType.IMAGE_JPEG) {
+            if (mimeType == MimeType.IMAGE_JPEG) {
                 write_param = writer.getDefaultWriteParam();
                 write_param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
                 write_param.setCompressionQuality(0.85f);
@@ -262,7 +293,7 @@ public class ImageFormatter implements Formatter<byte[], Image> {
         return bytes_out.toByteArray();
     }
 
-    private static BufferedImage progressiveScaling(Image before, double longestSideLength, int imageType) {
+    static BufferedImage progressiveScaling(Image before, double longestSideLength, int imageType) {
         if (before == null) {
             return null;
         }
@@ -280,16 +311,20 @@ public class ImageFormatter implements Formatter<byte[], Image> {
         return scaleImage(before, ratio, imageType);
     }
 
-    private static BufferedImage scaleImage(Image image, double ratio, int imageType) {
+    static BufferedImage scaleImage(Image image, double ratio, int imageType) {
         var scaled_width = (int) (image.getWidth(null) * ratio + 0.5);
         var scaled_height = (int) (image.getHeight(null) * ratio + 0.5);
-        var scaled_image = new BufferedImage(scaled_width, scaled_height, imageType);
+        return scaleImage(image, scaled_width, scaled_height, imageType);
+    }
+
+    static BufferedImage scaleImage(Image image, int scaledWidth, int scaledHeight, int imageType) {
+        var scaled_image = new BufferedImage(scaledWidth, scaledHeight, imageType);
         var g2 = scaled_image.createGraphics();
         g2.setComposite(AlphaComposite.Src);
         g2.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_QUALITY);
         g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
         g2.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
-        g2.drawImage(image, 0, 0, scaled_width, scaled_height, null);
+        g2.drawImage(image, 0, 0, scaledWidth, scaledHeight, null);
         g2.dispose();
         return scaled_image;
     }
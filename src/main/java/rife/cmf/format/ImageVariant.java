@@ -0,0 +1,94 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.format;
+
+import rife.cmf.format.exceptions.FormatException;
+import rife.cmf.format.exceptions.InvalidImageVariantException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A named variant of an image that is derived from the original image data
+ * and stored next to it.
+ * <p>The aspect ratio of the original image is always preserved, when
+ * both a width and a height are provided, the image is scaled to fit
+ * within them.
+ *
+ * @param name   the name of the variant, which is appended to the location
+ *               of the original content
+ * @param width  the width of the variant; or {@code -1} if it should be
+ *               derived from the height
+ * @param height the height of the variant; or {@code -1} if it should be
+ *               derived from the width
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see ImageDerivatives
+ * @since 1.9.2
+ */
+public record ImageVariant(String name, int width, int height) {
+    public ImageVariant {
+        if (null == name) throw new IllegalArgumentException("name can't be null");
+        if (name.isEmpty()) throw new IllegalArgumentException("name can't be empty");
+        if (name.contains("/")) throw new IllegalArgumentException("name can't contain a slash");
+        if (width < 0 && height < 0) throw new IllegalArgumentException("either width or height should be provided");
+    }
+
+    /**
+     * Retrieves the location of this variant for the location of the
+     * original content.
+     *
+     * @param location the location of the original content
+     * @return the location of this variant
+     * @since 1.9.2
+     */
+    public String location(String location) {
+        return location + "/" + name;
+    }
+
+    /**
+     * Parses the declaration of image variants, as provided through the
+     * {@link ImageFormatter.ContentAttribute#VARIANTS} content attribute.
+     * <p>The variants are separated by semicolons and have the format
+     * {@code name=WIDTHxHEIGHT}, where either the width or the height can
+     * be omitted. For instance: {@code thumbnail=120x120;medium=640x;tall=x1200}.
+     *
+     * @param declaration the variants declaration
+     * @return the list of parsed variants
+     * @throws FormatException when the declaration is invalid
+     * @since 1.9.2
+     */
+    public static List<ImageVariant> parse(String declaration)
+    throws FormatException {
+        var result = new ArrayList<ImageVariant>();
+        if (null == declaration) {
+            return result;
+        }
+
+        for (var part : declaration.split(";")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+
+            var equals = part.indexOf('=');
+            var times = part.indexOf('x', equals + 1);
+            if (equals <= 0 || times < 0) {
+                throw new InvalidImageVariantException(part, null);
+            }
+
+            try {
+                var width = part.substring(equals + 1, times).trim();
+                var height = part.substring(times + 1).trim();
+                result.add(new ImageVariant(part.substring(0, equals).trim(),
+                    width.isEmpty() ? -1 : Integer.parseInt(width),
+                    height.isEmpty() ? -1 : Integer.parseInt(height)));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidImageVariantException(part, e);
+            }
+        }
+
+        return result;
+    }
+}
@@ -13,11 +13,14 @@ import rife.cmf.loader.XhtmlContentLoader;
 import rife.cmf.transform.ContentTransformer;
 import rife.tools.StringUtils;
 
+import java.io.InputStream;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
  * Formats raw {@code Content} data as valid Xhtml.
+ * <p>The data can be provided as a {@code String} or as a UTF-8 encoded
+ * {@code InputStream}, streams are validated while they're being read.
  * <p>No content attributes are supported:
  *
  * @author Geert Bevin (gbevin[remove] at uwyn dot com)
@@ -27,7 +30,8 @@ import java.util.Set;
 public class XhtmlFormatter implements Formatter<String, String> {
     public String format(Content content, ContentTransformer<String> transformer)
     throws FormatException {
-        if (!(content.getData() instanceof String)) {
+        if (!(content.getData() instanceof String) &&
+            !(content.getData() instanceof InputStream)) {
             throw new InvalidContentDataTypeException(this, content.getMimeType(), String.class, content.getData().getClass());
         }
 
@@ -46,7 +50,7 @@ public class XhtmlFormatter implements Formatter<String, String> {
         }
 
         if (null == data) {
-            // get an image
+            // load the xhtml, a stream is validated while it's being read
             Set<String> errors = new HashSet<>();
             loaded = new XhtmlContentLoader().load(content.getData(), content.isFragment(), errors);
             if (null == loaded) {
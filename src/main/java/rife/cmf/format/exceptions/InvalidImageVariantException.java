@@ -0,0 +1,23 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.format.exceptions;
+
+import java.io.Serial;
+
+public class InvalidImageVariantException extends FormatException {
+    @Serial private static final long serialVersionUID = 4529917240137208863L;
+
+    private final String declaration_;
+
+    public InvalidImageVariantException(String declaration, Throwable cause) {
+        super("Invalid image variant declaration '" + declaration + "'", cause);
+
+        declaration_ = declaration;
+    }
+
+    public String getDeclaration() {
+        return declaration_;
+    }
+}
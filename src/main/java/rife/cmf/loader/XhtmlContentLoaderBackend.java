@@ -6,6 +6,9 @@ package rife.cmf.loader;
 
 import rife.cmf.dam.exceptions.ContentManagerException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
 
 /**
@@ -34,11 +37,41 @@ public abstract class XhtmlContentLoaderBackend implements ContentLoaderBackend<
     protected abstract LoadedContent<String> loadFromString(String data, boolean fragment, Set<String> errors)
     throws ContentManagerException;
 
+    /**
+     * Loads the data from a UTF-8 encoded input stream.
+     * <p>By default the stream is read into a string which is then loaded
+     * with {@link #loadFromString}, back-ends that are able to validate the
+     * data while it's being read should override this method.
+     *
+     * @param data     the raw data that has to be loaded
+     * @param fragment {@code true} if the raw data is a fragment; or
+     *                 <p>{@code false} if the raw data is a complete document or file
+     * @param errors   a set to which possible error messages will be added
+     * @return an instance of the {@code LoadedContent} as XHTML as a {@code String}; or
+     * <p>{@code null} if the raw data couldn't be loaded
+     *
+     * @since 1.9.2
+     */
+    protected LoadedContent<String> loadFromStream(InputStream data, boolean fragment, Set<String> errors)
+    throws ContentManagerException {
+        try {
+            return loadFromString(new String(data.readAllBytes(), StandardCharsets.UTF_8), fragment, errors);
+        } catch (IOException e) {
+            if (errors != null) {
+                errors.add(e.getMessage());
+            }
+            return null;
+        }
+    }
+
     public LoadedContent<String> load(Object data, boolean fragment, Set<String> errors)
     throws ContentManagerException {
         if (data instanceof String str) {
             return loadFromString(str, fragment, errors);
         }
+        if (data instanceof InputStream stream) {
+            return loadFromStream(stream, fragment, errors);
+        }
 
         return null;
     }
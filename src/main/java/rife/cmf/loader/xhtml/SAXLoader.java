@@ -22,36 +22,152 @@ import rife.xml.exceptions.XmlErrorException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
-import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Set;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SAXLoader extends XhtmlContentLoaderBackend {
+    private static final String FRAGMENT_MARKER = "\u0000fragment\u0000";
+    private static final int MAXIMUM_POOLED_PARSERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final SAXParserFactory PARSER_FACTORY;
+    private static final BlockingQueue<SAXParser> PARSERS = new ArrayBlockingQueue<>(MAXIMUM_POOLED_PARSERS);
+    private static final ConcurrentHashMap<String, byte[]> ENTITIES = new ConcurrentHashMap<>();
+    private static final XmlEntityResolver ENTITY_RESOLVER = new XmlEntityResolver(ResourceFinderClasspath.instance())
+        .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd", "/dtd/cmf/xhtml1-transitional.dtd")
+        .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd", "/dtd/cmf/xhtml1-strict.dtd")
+        .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml1-frameset.dtd", "/dtd/cmf/xhtml1-frameset.dtd")
+        .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml-lat1.ent", "/dtd/cmf/xhtml-lat1.ent")
+        .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml-symbol.ent", "/dtd/cmf/xhtml-symbol.ent")
+        .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml-special.ent", "/dtd/cmf/xhtml-special.ent")
+        .restrictToCatalog(true);
+
+    static {
+        PARSER_FACTORY = SAXParserFactory.newInstance();
+        PARSER_FACTORY.setValidating(true);
+    }
+
     public LoadedContent<String> loadFromString(String data, boolean fragment, Set<String> errors)
     throws ContentManagerException {
-        return new LoaderDelegate().load(data, fragment, errors);
+        Reader reader;
+        if (fragment) {
+            reader = new FragmentReader(Container.PREFIX, data, Container.SUFFIX);
+        } else {
+            reader = new StringReader(data);
+        }
+
+        if (!new LoaderDelegate().validate(new InputSource(reader), fragment, errors)) {
+            return null;
+        }
+
+        return new LoadedContent<>(MimeType.APPLICATION_XHTML, data);
+    }
+
+    public LoadedContent<String> loadFromStream(InputStream data, boolean fragment, Set<String> errors)
+    throws ContentManagerException {
+        // the data is collected while it's being validated, so that it
+        // only has to be read once
+        var collected = new ByteArrayOutputStream();
+        InputStream stream = new CollectingInputStream(data, collected);
+        if (fragment) {
+            stream = new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream(Container.PREFIX.getBytes(StandardCharsets.UTF_8)),
+                stream,
+                new ByteArrayInputStream(Container.SUFFIX.getBytes(StandardCharsets.UTF_8)))));
+        }
+
+        var source = new InputSource(stream);
+        if (fragment) {
+            source.setEncoding(StandardCharsets.UTF_8.name());
+        }
+        if (!new LoaderDelegate().validate(source, fragment, errors)) {
+            return null;
+        }
+
+        try {
+            // read whatever the parser didn't need to consume
+            data.transferTo(collected);
+        } catch (IOException e) {
+            if (errors != null) {
+                errors.add(e.getMessage());
+            }
+            return null;
+        }
+
+        return new LoadedContent<>(MimeType.APPLICATION_XHTML, collected.toString(StandardCharsets.UTF_8));
     }
 
     public boolean isBackendPresent() {
         return true;
     }
 
+    // the container template is only split when it's first needed, the class
+    // initialization guarantees that both parts are visible to all threads
+    private static class Container {
+        private static final String PREFIX;
+        private static final String SUFFIX;
+
+        static {
+            var t = TemplateFactory.HTML.get("cmf.container.template");
+            t.setValue("fragment", FRAGMENT_MARKER);
+            var content = t.getContent();
+            var index = content.indexOf(FRAGMENT_MARKER);
+            PREFIX = content.substring(0, index);
+            SUFFIX = content.substring(index + FRAGMENT_MARKER.length());
+        }
+    }
+
+    private static SAXParser obtainParser() {
+        var parser = PARSERS.poll();
+        if (parser != null) {
+            return parser;
+        }
+
+        try {
+            return PARSER_FACTORY.newSAXParser();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new XmlErrorException("The parser factory '" + PARSER_FACTORY.getClass().getName() + "' doesn't support validation.", e);
+        }
+    }
+
+    private static void releaseParser(SAXParser parser) {
+        try {
+            parser.reset();
+        } catch (UnsupportedOperationException e) {
+            // parsers that can't be reset aren't reused
+            return;
+        }
+        PARSERS.offer(parser);
+    }
+
     private static class LoaderDelegate extends DefaultHandler {
         private final XmlErrorRedirector errorRedirector_ = new LoggingErrorRedirector();
-        private final XmlEntityResolver entityResolver_ = new XmlEntityResolver(ResourceFinderClasspath.instance())
-            .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd", "/dtd/cmf/xhtml1-transitional.dtd")
-            .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd", "/dtd/cmf/xhtml1-strict.dtd")
-            .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml1-frameset.dtd", "/dtd/cmf/xhtml1-frameset.dtd")
-            .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml-lat1.ent", "/dtd/cmf/xhtml-lat1.ent")
-            .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml-symbol.ent", "/dtd/cmf/xhtml-symbol.ent")
-            .addToCatalog("http://www.w3.org/TR/xhtml1/DTD/xhtml-special.ent", "/dtd/cmf/xhtml-special.ent")
-            .restrictToCatalog(true);
 
         public InputSource resolveEntity(String publicId, String systemId) {
-            return entityResolver_.resolveEntity(publicId, systemId);
+            // the DTDs and entities are only read once
+            var entity = ENTITIES.get(systemId);
+            if (null == entity) {
+                var source = ENTITY_RESOLVER.resolveEntity(publicId, systemId);
+                if (null == source ||
+                    null == source.getByteStream()) {
+                    return source;
+                }
+
+                try (var stream = source.getByteStream()) {
+                    entity = stream.readAllBytes();
+                } catch (IOException e) {
+                    throw new XmlErrorException(e);
+                }
+                ENTITIES.put(systemId, entity);
+            }
+
+            var source = new InputSource(new ByteArrayInputStream(entity));
+            source.setPublicId(publicId);
+            source.setSystemId(systemId);
+            return source;
         }
 
         public void warning(SAXParseException e) {
@@ -66,38 +182,12 @@ public class SAXLoader extends XhtmlContentLoaderBackend {
             errorRedirector_.error(e);
         }
 
-        public LoadedContent<String> load(String data, boolean fragment, Set<String> errors)
-        throws ContentManagerException {
-            var complete_page = data;
-
-            if (fragment) {
-                var t = TemplateFactory.HTML.get("cmf.container.template");
-                t.setValue("fragment", data);
-                complete_page = t.getContent();
-            }
-
-            Reader reader = new StringReader(complete_page);
-
+        boolean validate(InputSource source, boolean fragment, Set<String> errors) {
             var sax_parse_exception = false;
             try {
-                var inputsource = new InputSource(reader);
-
-                SAXParser parser = null;
-
-                try {
-                    parser = SAXParserFactory.newInstance().newSAXParser();
-                } catch (ParserConfigurationException | SAXException e) {
-                    throw new XmlErrorException(e);
-                }
-
-                try {
-                    parser.getXMLReader().setFeature("http://xml.org/sax/features/validation", true);
-                } catch (SAXException e) {
-                    throw new XmlErrorException("The parser '" + parser.getClass().getName() + "' doesn't support validation.", e);
-                }
-
+                var parser = obtainParser();
                 try {
-                    parser.parse(inputsource, this);
+                    parser.parse(source, this);
                 } catch (SAXParseException e) {
                     sax_parse_exception = true;
                     if (errors != null) {
@@ -112,6 +202,8 @@ public class SAXLoader extends XhtmlContentLoaderBackend {
                     }
                 } catch (IOException e) {
                     throw new XmlErrorException(e);
+                } finally {
+                    releaseParser(parser);
                 }
 
                 if (errors != null) {
@@ -126,18 +218,14 @@ public class SAXLoader extends XhtmlContentLoaderBackend {
                 if (errors != null) {
                     errors.add(e.getMessage());
                 }
-                return null;
+                return false;
             }
 
-            if (sax_parse_exception ||
+            return !(sax_parse_exception ||
                 (errors != null &&
                     !errors.isEmpty()) ||
                 (errorRedirector_.hasErrors() ||
-                    errorRedirector_.hasFatalErrors())) {
-                return null;
-            }
-
-            return new LoadedContent<>(MimeType.APPLICATION_XHTML, data);
+                    errorRedirector_.hasFatalErrors()));
         }
 
         private Collection<String> formatExceptions(boolean fragment, Collection<SAXParseException> exceptions) {
@@ -194,4 +282,70 @@ public class SAXLoader extends XhtmlContentLoaderBackend {
             return formatted.toString();
         }
     }
+
+    private static class CollectingInputStream extends FilterInputStream {
+        private final OutputStream collected_;
+
+        CollectingInputStream(InputStream in, OutputStream collected) {
+            super(in);
+            collected_ = collected;
+        }
+
+        public int read()
+        throws IOException {
+            var b = super.read();
+            if (b != -1) {
+                collected_.write(b);
+            }
+            return b;
+        }
+
+        public int read(byte[] b, int off, int len)
+        throws IOException {
+            var count = super.read(b, off, len);
+            if (count > 0) {
+                collected_.write(b, off, count);
+            }
+            return count;
+        }
+
+        public void close() {
+            // the parser shouldn't close the data stream, it's
+            // read further after the validation
+        }
+    }
+
+    private static class FragmentReader extends Reader {
+        private final String[] parts_;
+        private int part_ = 0;
+        private int position_ = 0;
+
+        FragmentReader(String... parts) {
+            parts_ = parts;
+        }
+
+        public int read(char[] buffer, int offset, int length) {
+            if (0 == length) {
+                return 0;
+            }
+
+            while (part_ < parts_.length &&
+                   position_ >= parts_[part_].length()) {
+                part_++;
+                position_ = 0;
+            }
+            if (part_ >= parts_.length) {
+                return -1;
+            }
+
+            var part = parts_[part_];
+            var count = Math.min(length, part.length() - position_);
+            part.getChars(position_, position_ + count, buffer, offset);
+            position_ += count;
+            return count;
+        }
+
+        public void close() {
+        }
+    }
 }
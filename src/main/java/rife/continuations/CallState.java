@@ -4,6 +4,9 @@
  */
 package rife.continuations;
 
+import java.io.Serial;
+import java.io.Serializable;
+
 /**
  * Contains the state of a call continuation.
  * <p>The only really important property is the continuation ID, which should
@@ -17,7 +20,9 @@ package rife.continuations;
  * @author Geert Bevin (gbevin[remove] at uwyn dot com)
  * @since 1.0
  */
-public class CallState {
+public class CallState implements Serializable {
+    @Serial private static final long serialVersionUID = -1954298617245380932L;
+
     private final String continuationId_;
     private final Object state_;
 
@@ -14,6 +14,15 @@ package rife.continuations;
  * @since 1.0
  */
 public interface ContinuationConfigInstrument {
+    /**
+     * The system property that enables the capture of the local variables
+     * when continuations pause, instead of when the variables are stored.
+     *
+     * @see #captureLocalsOnPause
+     * @since 1.9.2
+     */
+    String CAPTURE_LOCALS_ON_PAUSE_PROPERTY = "rife.continuations.captureLocalsOnPause";
+
     /**
      * The name of the interface that will indicate that a class should be
      * instrumented for continuations functionalities, for instance
@@ -154,4 +163,26 @@ public interface ContinuationConfigInstrument {
     default String getAnswerMethodName() {
         return null;
     }
-}
\ No newline at end of file
+
+    /**
+     * Indicates whether the local variables of the entry method should only
+     * be captured when the continuation pauses, steps back or calls.
+     * <p>By default, every store of a local variable is also performed on the
+     * local state of the continuation, which slows down tight loops in the
+     * entry method. When the locals are captured on pause, the code in
+     * between the continuation methods runs at the speed of regular code.
+     * <p>Methods with exception handlers, or with local variables that aren't
+     * assigned with the same type on all code paths that lead to a pause,
+     * keep capturing each store.
+     * <p>This defaults to the value of the
+     * {@value #CAPTURE_LOCALS_ON_PAUSE_PROPERTY} system property.
+     *
+     * @return {@code true} if the local variables should only be captured
+     * when the continuation pauses; or
+     * <p>{@code false} if every store of a local variable should be captured
+     * @since 1.9.2
+     */
+    default boolean captureLocalsOnPause() {
+        return Boolean.getBoolean(CAPTURE_LOCALS_ON_PAUSE_PROPERTY);
+    }
+}
@@ -8,6 +8,8 @@ import rife.continuations.exceptions.ContinuableLocalVariableUncloneableExceptio
 import rife.tools.ExceptionUtils;
 import rife.tools.UniqueIDGenerator;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
@@ -22,16 +24,21 @@ import java.util.logging.Logger;
  * active continuations.
  * <p>Active continuations are managed in a {@link ContinuationManager} so that
  * they can be easily retrieved.
+ * <p>A paused continuation context can be serialized when its continuable
+ * and its local state are serializable, see
+ * {@link ContinuationContextSerializer}.
  *
  * @author Geert Bevin (gbevin[remove] at uwyn dot com)
  * @see ContinuationManager
  * @since 1.0
  */
-public class ContinuationContext implements Cloneable {
+public class ContinuationContext implements Cloneable, Serializable {
+    @Serial private static final long serialVersionUID = -3785432176583069238L;
+
     private static final ThreadLocal<ContinuationContext> ACTIVE_CONTEXT = new ThreadLocal<>();
     private static final ThreadLocal<WeakReference<ContinuationContext>> LAST_CONTEXT = new ThreadLocal<>();
 
-    private final transient ContinuationManager manager_;
+    private transient ContinuationManager manager_;
 
     private Object continuable_ = null;
     private CallState createdCallState_ = null;
@@ -429,6 +436,26 @@ public class ContinuationContext implements Cloneable {
         }
     }
 
+    void restore(ContinuationManager manager) {
+        writeLock_.lock();
+        try {
+            // a restored continuation starts a new expiration period
+            manager_ = manager;
+            start_ = System.currentTimeMillis();
+        } finally {
+            writeLock_.unlock();
+        }
+    }
+
+    void setStart(long start) {
+        writeLock_.lock();
+        try {
+            start_ = start;
+        } finally {
+            writeLock_.unlock();
+        }
+    }
+
     private void resetStart() {
         writeLock_.lock();
         try {
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.continuations;
+
+import java.io.*;
+
+/**
+ * Serializes paused continuation contexts to bytes and restores them into
+ * a {@link ContinuationManager}, so that they can be kept outside the
+ * memory of the application or survive a restart.
+ * <p>The continuable and all the objects in the local state of the
+ * continuation have to be serializable. Objects that can't be serialized,
+ * like the environment in which a continuable executes, can be replaced
+ * during serialization and resolved again during deserialization by
+ * overriding {@link #replaceObject} and {@link #resolveObject}.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public class ContinuationContextSerializer {
+    private final ClassLoader classLoader_;
+
+    /**
+     * Creates a new serializer.
+     *
+     * @param classLoader the class loader that will be used to resolve the
+     *                    classes of the deserialized continuables; or
+     *                    {@code null} to use the class loader of this class
+     * @since 1.9.2
+     */
+    public ContinuationContextSerializer(ClassLoader classLoader) {
+        if (null == classLoader) {
+            classLoader = getClass().getClassLoader();
+        }
+        classLoader_ = classLoader;
+    }
+
+    /**
+     * Serializes a continuation context.
+     *
+     * @param context the continuation context that will be serialized
+     * @return the serialized bytes of the continuation context
+     * @throws IOException when the continuation context couldn't be
+     *                     serialized, for instance because an object of its state isn't
+     *                     serializable
+     * @since 1.9.2
+     */
+    public byte[] serialize(ContinuationContext context)
+    throws IOException {
+        if (null == context) throw new IllegalArgumentException("context can't be null");
+
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ReplacingOutputStream(bytes)) {
+            out.writeObject(context);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a continuation context and registers it with a
+     * continuation manager.
+     * <p>The restored continuation context keeps its ID and starts a new
+     * expiration period.
+     *
+     * @param bytes   the serialized bytes of the continuation context
+     * @param manager the continuation manager to which the continuation
+     *                context will be added
+     * @return the restored continuation context
+     * @throws IOException            when the bytes couldn't be deserialized
+     * @throws ClassNotFoundException when a class of the continuation context
+     *                                couldn't be found
+     * @since 1.9.2
+     */
+    public ContinuationContext deserialize(byte[] bytes, ContinuationManager manager)
+    throws IOException, ClassNotFoundException {
+        if (null == bytes) throw new IllegalArgumentException("bytes can't be null");
+        if (null == manager) throw new IllegalArgumentException("manager can't be null");
+
+        ContinuationContext context;
+        try (var in = new ResolvingInputStream(new ByteArrayInputStream(bytes))) {
+            context = (ContinuationContext) in.readObject();
+        }
+
+        context.restore(manager);
+        manager.addContext(context);
+
+        return context;
+    }
+
+    /**
+     * Replaces an object of the continuation state during serialization.
+     * <p>The default implementation doesn't replace any object.
+     *
+     * @param object the object that will be serialized
+     * @return the object that should be serialized instead
+     * @see #resolveObject
+     * @since 1.9.2
+     */
+    protected Object replaceObject(Object object) {
+        return object;
+    }
+
+    /**
+     * Resolves an object of the continuation state during deserialization,
+     * this is typically used to restore objects that were replaced by
+     * {@link #replaceObject}.
+     * <p>The default implementation doesn't resolve any object.
+     *
+     * @param object the object that was deserialized
+     * @return the object that should be used instead
+     * @see #replaceObject
+     * @since 1.9.2
+     */
+    protected Object resolveObject(Object object) {
+        return object;
+    }
+
+    private class ReplacingOutputStream extends ObjectOutputStream {
+        private ReplacingOutputStream(OutputStream out)
+        throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        protected Object replaceObject(Object object) {
+            return ContinuationContextSerializer.this.replaceObject(object);
+        }
+    }
+
+    private class ResolvingInputStream extends ObjectInputStream {
+        private ResolvingInputStream(InputStream in)
+        throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        protected Class<?> resolveClass(ObjectStreamClass description)
+        throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(description.getName(), false, classLoader_);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(description);
+            }
+        }
+
+        protected Object resolveObject(Object object) {
+            return ContinuationContextSerializer.this.resolveObject(object);
+        }
+    }
+}
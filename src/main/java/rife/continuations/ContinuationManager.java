@@ -4,14 +4,19 @@
  */
 package rife.continuations;
 
+import rife.tools.ExceptionUtils;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
 
 /**
  * Manages a collection of {@code ContinuationContext} instances.
@@ -20,6 +25,10 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * for RIFE2's web engine. It's up to you to provide an API to your users if
  * you want them to be able to interact with the appropriate continuations
  * manager.
+ * <p>To bound the memory that's used by paused continuations, a
+ * {@link ContinuationSpill} can be set up to move the contexts that have
+ * been idle for a while into compressed snapshots. These are restored
+ * transparently when they're retrieved again.
  *
  * @author Geert Bevin (gbevin[remove] at uwyn dot com)
  * @see ContinuationManager
@@ -28,6 +37,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class ContinuationManager {
     private final Map<String, ContinuationContext> contexts_;
     private final ContinuationConfigRuntime config_;
+    private volatile ContinuationSpill spill_ = null;
 
     private final ReadWriteLock lock_ = new ReentrantReadWriteLock();
     final Lock readLock_ = lock_.readLock();
@@ -57,6 +67,48 @@ public class ContinuationManager {
         return config_;
     }
 
+    /**
+     * Sets the spill that holds the snapshots of idle paused continuations.
+     *
+     * @param spill the spill that will be used; or
+     *              {@code null} to keep all paused continuations in memory
+     * @return this continuation manager
+     * @see #setSpill
+     * @see #getSpill
+     * @since 1.9.2
+     */
+    public ContinuationManager spill(ContinuationSpill spill) {
+        setSpill(spill);
+        return this;
+    }
+
+    /**
+     * Sets the spill that holds the snapshots of idle paused continuations.
+     *
+     * @param spill the spill that will be used; or
+     *              {@code null} to keep all paused continuations in memory
+     * @see #spill
+     * @see #getSpill
+     * @since 1.9.2
+     */
+    public void setSpill(ContinuationSpill spill) {
+        spill_ = spill;
+    }
+
+    /**
+     * Retrieves the spill that holds the snapshots of idle paused
+     * continuations.
+     *
+     * @return the spill of this manager; or
+     * <p>{@code null} if all paused continuations are kept in memory
+     * @see #spill
+     * @see #setSpill
+     * @since 1.9.2
+     */
+    public ContinuationSpill getSpill() {
+        return spill_;
+    }
+
     /**
      * Checks if a particular continuation context is expired.
      *
@@ -108,6 +160,11 @@ public class ContinuationManager {
         } finally {
             writeLock_.unlock();
         }
+
+        var spill = spill_;
+        if (spill != null) {
+            spill.remove(id);
+        }
     }
 
     /**
@@ -174,6 +231,27 @@ public class ContinuationManager {
             readLock_.unlock();
         }
 
+        var spill = spill_;
+        if (null == context &&
+            spill != null &&
+            id != null) {
+            try {
+                context = spill.restore(id, this);
+            } catch (IOException | ClassNotFoundException e) {
+                Logger.getLogger("rife.continuations").severe("Unable to restore the continuation '" + id + "'\n" + ExceptionUtils.getExceptionStackTrace(e));
+            }
+
+            // another thread could have restored the context in the meantime
+            if (null == context) {
+                readLock_.lock();
+                try {
+                    context = contexts_.get(id);
+                } finally {
+                    readLock_.unlock();
+                }
+            }
+        }
+
         if (context != null) {
             if (isExpired(context)) {
                 context = null;
@@ -183,6 +261,73 @@ public class ContinuationManager {
         return context;
     }
 
+    /**
+     * Moves the paused continuation contexts that have been idle for longer
+     * than the idle time of the spill into compressed snapshots.
+     * <p>This is done regularly while continuations are resumed, but can
+     * also be called explicitly, for instance from a scheduled task.
+     * Nothing is done when no spill has been set up.
+     *
+     * @see #spill
+     * @since 1.9.2
+     */
+    public void spillIdleContexts() {
+        var spill = spill_;
+        if (null == spill) {
+            return;
+        }
+
+        spill.purge(this);
+
+        var idle_ids = new HashSet<String>();
+        var idle_contexts = new ArrayList<ContinuationContext>();
+        readLock_.lock();
+        try {
+            for (var context : contexts_.values()) {
+                if (context != null &&
+                    context.isPaused() &&
+                    !isExpired(context) &&
+                    spill.isIdle(context)) {
+                    idle_ids.add(context.getId());
+                    if (!spill.isUnserializable(context.getId())) {
+                        idle_contexts.add(context);
+                    }
+                }
+            }
+        } finally {
+            readLock_.unlock();
+        }
+
+        // the contexts that couldn't be serialized are only remembered while they're idle
+        spill.retainUnserializable(idle_ids);
+
+        for (var context : idle_contexts) {
+            var id = context.getId();
+            try {
+                spill.store(context);
+            } catch (IOException e) {
+                // contexts that can't be serialized are kept in memory
+                continue;
+            }
+
+            boolean resumed;
+            writeLock_.lock();
+            try {
+                // the context could have been resumed while it was being stored
+                resumed = contexts_.get(id) != context || !context.isPaused();
+                if (!resumed) {
+                    contexts_.remove(id);
+                }
+            } finally {
+                writeLock_.unlock();
+            }
+
+            if (resumed) {
+                spill.remove(id);
+            }
+        }
+    }
+
     private ContinuationContext reuseContext(ContinuationContext context) {
         contexts_.remove(context.getId());
         context.resetId();
@@ -210,6 +355,7 @@ public class ContinuationManager {
     private class PurgeContinuations extends Thread {
         public void run() {
             purge();
+            spillIdleContexts();
         }
 
         private void purge() {
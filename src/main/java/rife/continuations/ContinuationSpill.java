@@ -0,0 +1,553 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.continuations;
+
+import rife.tools.ExceptionUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Holds compressed snapshots of paused continuation contexts that have
+ * been idle for a while, so that they don't keep their object graphs in
+ * memory.
+ * <p>A spill is set up with {@link ContinuationManager#spill}. Paused
+ * contexts that have been idle for longer than {@link #getIdleTime} are
+ * serialized with a {@link ContinuationContextSerializer}, compressed and
+ * stored outside the heap. They're transparently restored when they're
+ * retrieved from their manager again.
+ * <p>The total size of the snapshots that are kept in memory is bounded by
+ * {@link #getMemoryLimit}. When this limit is exceeded, the oldest snapshots
+ * are moved to files in {@link #getDirectory}. When no directory is set,
+ * the snapshots are kept in memory regardless of the limit, unless
+ * {@link #discardExcess discarding} has been explicitly enabled, the
+ * oldest snapshots are then discarded as if their continuations expired.
+ * <p>The continuables and all the objects in the local state of the
+ * continuations have to be serializable, the contexts that can't be
+ * serialized are simply kept in memory and aren't serialized again while
+ * they stay paused.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see ContinuationManager#spill
+ * @since 1.9.2
+ */
+public class ContinuationSpill {
+    public static final long DEFAULT_IDLE_TIME = 1000L * 60;
+    public static final long DEFAULT_MEMORY_LIMIT = 1024L * 1024 * 64;
+
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    private final ContinuationContextSerializer serializer_;
+    private long idleTime_ = DEFAULT_IDLE_TIME;
+    private long memoryLimit_ = DEFAULT_MEMORY_LIMIT;
+    private File directory_ = null;
+    private boolean discardExcess_ = false;
+
+    private final Map<String, Snapshot> snapshots_ = new LinkedHashMap<>();
+    private final Set<String> restoring_ = new HashSet<>();
+    private final Set<String> unserializable_ = new HashSet<>();
+    private long memorySize_ = 0;
+    private long fileSequence_ = 0;
+
+    /**
+     * Creates a new spill.
+     *
+     * @param serializer the serializer that will be used to create and
+     *                   restore the snapshots
+     * @since 1.9.2
+     */
+    public ContinuationSpill(ContinuationContextSerializer serializer) {
+        if (null == serializer) throw new IllegalArgumentException("serializer can't be null");
+
+        serializer_ = serializer;
+    }
+
+    /**
+     * Sets the time after which paused continuations are spilled.
+     *
+     * @param idleTime the idle time in milliseconds
+     * @return this spill instance
+     * @see #setIdleTime
+     * @see #getIdleTime
+     * @since 1.9.2
+     */
+    public ContinuationSpill idleTime(long idleTime) {
+        setIdleTime(idleTime);
+        return this;
+    }
+
+    /**
+     * Sets the time after which paused continuations are spilled.
+     *
+     * @param idleTime the idle time in milliseconds
+     * @see #idleTime
+     * @see #getIdleTime
+     * @since 1.9.2
+     */
+    public void setIdleTime(long idleTime) {
+        if (idleTime < 0) throw new IllegalArgumentException("idleTime can't be negative");
+
+        idleTime_ = idleTime;
+    }
+
+    /**
+     * Retrieves the time after which paused continuations are spilled.
+     *
+     * @return the idle time in milliseconds
+     * @see #idleTime
+     * @see #setIdleTime
+     * @since 1.9.2
+     */
+    public long getIdleTime() {
+        return idleTime_;
+    }
+
+    /**
+     * Sets the maximum total size of the snapshots that are kept in memory.
+     *
+     * @param memoryLimit the memory limit in bytes
+     * @return this spill instance
+     * @see #setMemoryLimit
+     * @see #getMemoryLimit
+     * @since 1.9.2
+     */
+    public ContinuationSpill memoryLimit(long memoryLimit) {
+        setMemoryLimit(memoryLimit);
+        return this;
+    }
+
+    /**
+     * Sets the maximum total size of the snapshots that are kept in memory.
+     *
+     * @param memoryLimit the memory limit in bytes
+     * @see #memoryLimit
+     * @see #getMemoryLimit
+     * @since 1.9.2
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        if (memoryLimit < 0) throw new IllegalArgumentException("memoryLimit can't be negative");
+
+        synchronized (this) {
+            memoryLimit_ = memoryLimit;
+        }
+        enforceMemoryLimit();
+    }
+
+    /**
+     * Retrieves the maximum total size of the snapshots that are kept in
+     * memory.
+     *
+     * @return the memory limit in bytes
+     * @see #memoryLimit
+     * @see #setMemoryLimit
+     * @since 1.9.2
+     */
+    public long getMemoryLimit() {
+        return memoryLimit_;
+    }
+
+    /**
+     * Sets the directory in which the snapshots are stored when the memory
+     * limit is exceeded.
+     *
+     * @param directory the snapshot directory; or
+     *                  {@code null} if the snapshots should stay in memory
+     * @return this spill instance
+     * @see #setDirectory
+     * @see #getDirectory
+     * @since 1.9.2
+     */
+    public ContinuationSpill directory(File directory) {
+        setDirectory(directory);
+        return this;
+    }
+
+    /**
+     * Sets the directory in which the snapshots are stored when the memory
+     * limit is exceeded.
+     *
+     * @param directory the snapshot directory; or
+     *                  {@code null} if the snapshots should stay in memory
+     * @see #directory
+     * @see #getDirectory
+     * @since 1.9.2
+     */
+    public void setDirectory(File directory) {
+        if (directory != null) {
+            directory.mkdirs();
+        }
+
+        synchronized (this) {
+            directory_ = directory;
+        }
+    }
+
+    /**
+     * Retrieves the directory in which the snapshots are stored when the
+     * memory limit is exceeded.
+     *
+     * @return the snapshot directory; or
+     * <p>{@code null} if the snapshots stay in memory
+     * @see #directory
+     * @see #setDirectory
+     * @since 1.9.2
+     */
+    public synchronized File getDirectory() {
+        return directory_;
+    }
+
+    /**
+     * Sets whether the oldest snapshots are discarded when the memory limit
+     * is exceeded and no directory is set.
+     * <p>The continuations of discarded snapshots can't be resumed anymore,
+     * as if they expired. This is disabled by default.
+     *
+     * @param discardExcess {@code true} if the oldest snapshots should be
+     *                      discarded; or
+     *                      {@code false} if they should stay in memory
+     * @return this spill instance
+     * @see #setDiscardExcess
+     * @see #isDiscardExcess
+     * @since 1.9.2
+     */
+    public ContinuationSpill discardExcess(boolean discardExcess) {
+        setDiscardExcess(discardExcess);
+        return this;
+    }
+
+    /**
+     * Sets whether the oldest snapshots are discarded when the memory limit
+     * is exceeded and no directory is set.
+     *
+     * @param discardExcess {@code true} if the oldest snapshots should be
+     *                      discarded; or
+     *                      {@code false} if they should stay in memory
+     * @see #discardExcess
+     * @see #isDiscardExcess
+     * @since 1.9.2
+     */
+    public void setDiscardExcess(boolean discardExcess) {
+        synchronized (this) {
+            discardExcess_ = discardExcess;
+        }
+        enforceMemoryLimit();
+    }
+
+    /**
+     * Indicates whether the oldest snapshots are discarded when the memory
+     * limit is exceeded and no directory is set.
+     *
+     * @return {@code true} if the oldest snapshots are discarded; or
+     * <p>{@code false} if they stay in memory
+     * @see #discardExcess
+     * @see #setDiscardExcess
+     * @since 1.9.2
+     */
+    public synchronized boolean isDiscardExcess() {
+        return discardExcess_;
+    }
+
+    /**
+     * Retrieves the number of snapshots that are currently held, both in
+     * memory and on disk.
+     *
+     * @return the number of snapshots
+     * @since 1.9.2
+     */
+    public synchronized int getSnapshotCount() {
+        return snapshots_.size();
+    }
+
+    /**
+     * Retrieves the total size of the snapshots that are currently held in
+     * memory.
+     *
+     * @return the memory size in bytes
+     * @since 1.9.2
+     */
+    public synchronized long getMemorySize() {
+        return memorySize_;
+    }
+
+    boolean isIdle(ContinuationContext context) {
+        return context.getStart() <= System.currentTimeMillis() - idleTime_;
+    }
+
+    synchronized boolean isUnserializable(String id) {
+        return unserializable_.contains(id);
+    }
+
+    synchronized void retainUnserializable(Set<String> ids) {
+        unserializable_.retainAll(ids);
+    }
+
+    void store(ContinuationContext context)
+    throws IOException {
+        var id = context.getId();
+
+        byte[] serialized;
+        try {
+            serialized = serializer_.serialize(context);
+        } catch (IOException e) {
+            // remember the context so that it's not serialized again during each spill
+            synchronized (this) {
+                unserializable_.add(id);
+            }
+            throw e;
+        }
+
+        var bytes = new ByteArrayOutputStream();
+        var deflater = new Deflater(Deflater.BEST_SPEED);
+        try (var out = new DeflaterOutputStream(bytes, deflater)) {
+            out.write(serialized);
+        } finally {
+            deflater.end();
+        }
+
+        var compressed = bytes.toByteArray();
+        var buffer = ByteBuffer.allocateDirect(compressed.length);
+        buffer.put(compressed).flip();
+
+        File obsolete_file = null;
+        synchronized (this) {
+            // the snapshots are ordered from oldest to newest
+            var previous = snapshots_.remove(id);
+            if (previous != null) {
+                obsolete_file = discard(previous);
+            }
+            snapshots_.put(id, new Snapshot(id, context.getStart(), buffer));
+            memorySize_ += compressed.length;
+        }
+        delete(obsolete_file);
+
+        enforceMemoryLimit();
+    }
+
+    ContinuationContext restore(String id, ContinuationManager manager)
+    throws IOException, ClassNotFoundException {
+        Snapshot snapshot;
+        byte[] compressed = null;
+        File file = null;
+        synchronized (this) {
+            // only one thread restores a particular snapshot, the others
+            // find the restored context in the manager afterwards
+            while (restoring_.contains(id)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+
+            snapshot = snapshots_.get(id);
+            if (null == snapshot) {
+                return null;
+            }
+            restoring_.add(id);
+
+            if (snapshot.buffer_ != null) {
+                compressed = new byte[snapshot.buffer_.remaining()];
+                snapshot.buffer_.duplicate().get(compressed);
+            } else {
+                file = snapshot.file_;
+            }
+        }
+
+        try {
+            if (null == compressed) {
+                try {
+                    compressed = Files.readAllBytes(file.toPath());
+                } catch (NoSuchFileException e) {
+                    // the snapshot was removed in the meantime
+                    return null;
+                }
+            }
+
+            byte[] bytes;
+            try (var in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+                bytes = in.readAllBytes();
+            }
+
+            // the snapshot is kept when the context can't be deserialized
+            var context = serializer_.deserialize(bytes, manager);
+            // a spilled continuation keeps its original expiration period
+            context.setStart(snapshot.start_);
+
+            // the snapshot is only removed once the context is part of
+            // the manager, so that other threads always find either of them
+            boolean removed;
+            File obsolete_file = null;
+            synchronized (this) {
+                removed = snapshot.removed_;
+                if (snapshots_.get(id) == snapshot) {
+                    snapshots_.remove(id);
+                    obsolete_file = discard(snapshot);
+                }
+            }
+            delete(obsolete_file);
+
+            if (removed) {
+                // the continuation was removed or purged while it was restored
+                manager.removeContext(id);
+                return null;
+            }
+
+            return context;
+        } finally {
+            synchronized (this) {
+                restoring_.remove(id);
+                notifyAll();
+            }
+        }
+    }
+
+    void remove(String id) {
+        File obsolete_file;
+        synchronized (this) {
+            unserializable_.remove(id);
+
+            var snapshot = snapshots_.remove(id);
+            if (null == snapshot) {
+                return;
+            }
+            snapshot.removed_ = true;
+            obsolete_file = discard(snapshot);
+        }
+        delete(obsolete_file);
+    }
+
+    void purge(ContinuationManager manager) {
+        var expiration = System.currentTimeMillis() - manager.getConfigRuntime().getContinuationDuration();
+        var obsolete_files = new ArrayList<File>();
+        synchronized (this) {
+            var it = snapshots_.values().iterator();
+            while (it.hasNext()) {
+                var snapshot = it.next();
+                if (snapshot.start_ <= expiration) {
+                    it.remove();
+                    snapshot.removed_ = true;
+                    obsolete_files.add(discard(snapshot));
+                }
+            }
+        }
+
+        for (var file : obsolete_files) {
+            delete(file);
+        }
+    }
+
+    private File discard(Snapshot snapshot) {
+        if (snapshot.buffer_ != null) {
+            memorySize_ -= snapshot.buffer_.capacity();
+        }
+
+        return snapshot.file_;
+    }
+
+    private static void delete(File file) {
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private void enforceMemoryLimit() {
+        File directory;
+        var moved = new LinkedHashMap<Snapshot, File>();
+        synchronized (this) {
+            directory = directory_;
+            if (null == directory &&
+                !discardExcess_) {
+                return;
+            }
+
+            // the snapshots that are being written are already accounted for
+            var excess = memorySize_ - memoryLimit_;
+            for (var snapshot : snapshots_.values()) {
+                if (snapshot.writing_) {
+                    excess -= snapshot.buffer_.capacity();
+                }
+            }
+
+            // the snapshots are ordered from oldest to newest
+            var it = snapshots_.values().iterator();
+            while (excess > 0 && it.hasNext()) {
+                var snapshot = it.next();
+                if (null == snapshot.buffer_ ||
+                    snapshot.writing_) {
+                    continue;
+                }
+
+                excess -= snapshot.buffer_.capacity();
+                if (null == directory) {
+                    it.remove();
+                    snapshot.removed_ = true;
+                    discard(snapshot);
+                } else {
+                    snapshot.writing_ = true;
+                    moved.put(snapshot, new File(directory, snapshot.id_ + "-" + (++fileSequence_) + SNAPSHOT_EXTENSION));
+                }
+            }
+        }
+
+        for (var entry : moved.entrySet()) {
+            var snapshot = entry.getKey();
+            var file = entry.getValue();
+
+            // the buffer of a snapshot doesn't change while it's being written
+            var compressed = new byte[snapshot.buffer_.remaining()];
+            snapshot.buffer_.duplicate().get(compressed);
+
+            var written = false;
+            try {
+                Files.write(file.toPath(), compressed);
+                written = true;
+            } catch (IOException e) {
+                // the snapshot stays in memory when it can't be written
+                Logger.getLogger("rife.continuations").warning(ExceptionUtils.getExceptionStackTrace(e));
+            }
+
+            boolean obsolete;
+            synchronized (this) {
+                snapshot.writing_ = false;
+                obsolete = snapshots_.get(snapshot.id_) != snapshot;
+                if (written && !obsolete) {
+                    memorySize_ -= snapshot.buffer_.capacity();
+                    snapshot.buffer_ = null;
+                    snapshot.file_ = file;
+                }
+            }
+
+            if (written && obsolete) {
+                delete(file);
+            }
+        }
+    }
+
+    private static class Snapshot {
+        private final String id_;
+        private final long start_;
+        private ByteBuffer buffer_;
+        private File file_ = null;
+        private boolean writing_ = false;
+        private boolean removed_ = false;
+
+        private Snapshot(String id, long start, ByteBuffer buffer) {
+            id_ = id;
+            start_ = start;
+            buffer_ = buffer;
+        }
+    }
+}
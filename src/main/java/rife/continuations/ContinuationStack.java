@@ -7,6 +7,8 @@ package rife.continuations;
 import rife.continuations.instrument.ContinuationDebug;
 import rife.tools.ObjectUtils;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.util.Arrays;
 import java.util.logging.Level;
@@ -18,7 +20,9 @@ import java.util.logging.Level;
  *
  * @since 1.0
  */
-public class ContinuationStack {
+public class ContinuationStack implements Serializable {
+    @Serial private static final long serialVersionUID = 4170651482375264819L;
+
     static final int NONE = 0;
     static final int INTEGER = 1;
     static final int LONG = 2;
@@ -9,6 +9,8 @@ import rife.continuations.instrument.ContinuableDetector;
 import rife.continuations.instrument.ContinuationsAgent;
 import rife.continuations.instrument.ContinuationsBytecodeTransformer;
 import rife.instrument.ClassBytesProvider;
+import rife.instrument.ClassHierarchy;
+import rife.instrument.TransformedClassCache;
 import rife.tools.ClassBytesLoader;
 
 /**
@@ -18,6 +20,9 @@ import rife.tools.ClassBytesLoader;
  * application you should probably create your own or at least read over
  * the source code of this one. It's even better to not use a custom
  * classloader and only rely on the {@link ContinuationsAgent}.
+ * <p>The transformed classes are persisted across restarts when the
+ * {@value TransformedClassCache#PROPERTY_CACHE_DIRECTORY} system property
+ * is set.
  *
  * @author Geert Bevin (gbevin[remove] at uwyn dot com)
  * @since 1.0
@@ -26,6 +31,8 @@ public class BasicContinuableClassLoader extends ClassLoader implements ClassByt
     private final ContinuationConfigInstrument config_;
     private final ClassBytesLoader bytesLoader_;
     private final ContinuableDetector continuableDetector_;
+    private final TransformedClassCache cache_;
+    private final String cacheConfiguration_;
 
     /**
      * Creates a new classloader instance with the context classloader as
@@ -53,6 +60,20 @@ public class BasicContinuableClassLoader extends ClassLoader implements ClassByt
         config_ = config;
         bytesLoader_ = new ClassBytesLoader(getParent());
         continuableDetector_ = new ContinuableDetector(config_, this);
+        cache_ = TransformedClassCache.fromSystemProperty();
+        cacheConfiguration_ = BasicContinuableClassLoader.class.getName() + ',' +
+                              config_.getClass().getName() + ',' +
+                              config_.getContinuableMarkerInterfaceName() + ',' +
+                              config_.getContinuableSupportClassName() + ',' +
+                              config_.getEntryMethodName() + ',' +
+                              config_.getEntryMethodDescriptor() + ',' +
+                              config_.getPauseMethodName() + ',' +
+                              config_.getStepBackMethodName() + ',' +
+                              config_.getCallMethodName() + ',' +
+                              config_.getCallMethodReturnTypeName() + ',' +
+                              config_.getCallMethodDescriptor() + ',' +
+                              config_.getAnswerMethodName() + ',' +
+                              config_.captureLocalsOnPause();
     }
 
     public byte[] getClassBytes(String className, boolean reloadAutomatically)
@@ -77,7 +98,14 @@ public class BasicContinuableClassLoader extends ClassLoader implements ClassByt
                 }
 
                 if (continuableDetector_.detect(bytes, false)) {
-                    var resume_bytes = ContinuationsBytecodeTransformer.transformIntoResumableBytes(config_, bytes, name);
+                    byte[] resume_bytes;
+                    if (null == cache_) {
+                        resume_bytes = ContinuationsBytecodeTransformer.transformIntoResumableBytes(config_, bytes, name);
+                    } else {
+                        resume_bytes = cache_.transform(cacheConfiguration_, name.replace('.', '/'), bytes,
+                            ClassHierarchy.instance(this), n -> getClassBytes(n, false),
+                            b -> ContinuationsBytecodeTransformer.transformIntoResumableBytes(config_, b, name));
+                    }
 
                     if (resume_bytes != null) {
                         bytes = resume_bytes;
@@ -19,6 +19,11 @@ import java.util.logging.Level;
  * @since 1.0
  */
 public abstract class ContinuationsBytecodeTransformer {
+    // the engine and workflow transformers receive the same bytes for classes
+    // that aren't continuable, they share the parsed reader of the last class
+    private static final ThreadLocal<ClassReader> LAST_READER = new ThreadLocal<>();
+    private static final ThreadLocal<byte[]> LAST_BYTES = new ThreadLocal<>();
+
     /**
      * Perform the class transformation.
      * <p>If the class doesn't implement the marker interface that is set up
@@ -40,21 +45,25 @@ public abstract class ContinuationsBytecodeTransformer {
         byte[] resumable_bytes = null;
         var reader_flags = ClassReader.SKIP_FRAMES;
         try {
+            // the same reader is used for all the passes, it only parses
+            // the constant pool once
+            var reader = getReader(rawBytes);
+
             ContinuationDebug.LOGGER.finest("METRICS:");
-            var metrics_reader = new ClassReader(rawBytes);
+            var metrics_reader = reader;
             var metrics_visitor = new MetricsClassVisitor(configInstrument, classname);
             metrics_reader.accept(metrics_visitor, reader_flags);
             ContinuationDebug.LOGGER.finest("\n");
 
             if (metrics_visitor.makeResumable()) {
                 ContinuationDebug.LOGGER.finest("TYPES:");
-                var types_reader = new ClassReader(rawBytes);
+                var types_reader = reader;
                 var types_visitor = new TypesClassVisitor(configInstrument, metrics_visitor, classname);
                 types_reader.accept(types_visitor, reader_flags);
                 ContinuationDebug.LOGGER.finest("\n");
 
                 ContinuationDebug.LOGGER.finest("SOURCE:");
-                var resumable_reader = new ClassReader(rawBytes);
+                var resumable_reader = reader;
                 var resumable_writer = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
                 ClassVisitor resumable_visitor = new ResumableClassAdapter(configInstrument, metrics_visitor, types_visitor, classname, resumable_writer);
                 resumable_reader.accept(resumable_visitor, reader_flags);
@@ -74,4 +83,14 @@ public abstract class ContinuationsBytecodeTransformer {
 
         return resumable_bytes;
     }
+
+    private static ClassReader getReader(byte[] bytes) {
+        var reader = LAST_READER.get();
+        if (null == reader || LAST_BYTES.get() != bytes) {
+            reader = new ClassReader(bytes);
+            LAST_READER.set(reader);
+            LAST_BYTES.set(bytes);
+        }
+        return reader;
+    }
 }
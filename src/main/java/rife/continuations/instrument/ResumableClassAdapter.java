@@ -66,12 +66,13 @@ class ResumableClassAdapter extends ClassVisitor {
             entryMethodDesc_.equals(desc)) {
             if (adapt_) {
                 if (!metrics_.makeResumable()) {
-                    return new ResumableMethodAdapter(config_, null, classVisitor_.visitMethod(access, name, desc, signature, exceptions), className_, false, -1, 0);
+                    return new ResumableMethodAdapter(config_, null, classVisitor_.visitMethod(access, name, desc, signature, exceptions), className_, false, false, -1, 0);
                 } else {
-                    return new ResumableMethodAdapter(config_, types_, classVisitor_.visitMethod(access, name, desc, signature, exceptions), className_, true, metrics_.getMaxLocals(), metrics_.getPauseCount());
+                    var capture_on_pause = config_.captureLocalsOnPause() && types_.areLocalsCapturableOnPause();
+                    return new ResumableMethodAdapter(config_, types_, classVisitor_.visitMethod(access, name, desc, signature, exceptions), className_, true, capture_on_pause, metrics_.getMaxLocals(), metrics_.getPauseCount());
                 }
             } else {
-                return new ResumableMethodAdapter(config_, null, null, null, false, -1, 0);
+                return new ResumableMethodAdapter(config_, null, null, null, false, false, -1, 0);
             }
         }
 
@@ -22,6 +22,7 @@ class ResumableMethodAdapter extends MethodVisitor implements Opcodes {
     private final String className_;
     private final boolean visit_;
     private final boolean adapt_;
+    private final boolean captureOnPause_;
 
     private int contextIndex_ = -1;
     private int callTargetIndex_ = -1;
@@ -47,7 +48,7 @@ class ResumableMethodAdapter extends MethodVisitor implements Opcodes {
         }
     }
 
-    ResumableMethodAdapter(ContinuationConfigInstrument config, TypesClassVisitor types, MethodVisitor methodVisitor, String className, boolean adapt, int maxLocals, int pauseCount) {
+    ResumableMethodAdapter(ContinuationConfigInstrument config, TypesClassVisitor types, MethodVisitor methodVisitor, String className, boolean adapt, boolean captureOnPause, int maxLocals, int pauseCount) {
         super(ASM9);
 
         config_ = config;
@@ -56,6 +57,7 @@ class ResumableMethodAdapter extends MethodVisitor implements Opcodes {
         className_ = className;
         visit_ = (methodVisitor_ != null);
         adapt_ = adapt;
+        captureOnPause_ = captureOnPause;
         contextIndex_ = maxLocals;
         callTargetIndex_ = contextIndex_ + 1;
         answerIndex_ = callTargetIndex_ + 1;
@@ -156,7 +158,16 @@ class ResumableMethodAdapter extends MethodVisitor implements Opcodes {
                 if (var > maxLocalIndex_) {
                     maxLocalIndex_ = var;
                 }
+            }
 
+            // when the locals are captured on pause, the stores run as
+            // regular code
+            if (!captureOnPause_ &&
+                (opcode == ISTORE ||
+                 opcode == LSTORE ||
+                 opcode == FSTORE ||
+                 opcode == DSTORE ||
+                 opcode == ASTORE)) {
                 // prepare the arguments of the context storage method
 
                 // get a reference to the context object
@@ -247,6 +258,7 @@ class ResumableMethodAdapter extends MethodVisitor implements Opcodes {
                     var stack = context.getStackClone();
                     debugMessage("CONT: pause : saving operand stack");
                     saveOperandStack(stack);
+                    captureLocalStack(context);
 
                     debugMessage("CONT: pause : storing resume label");
                     // get a reference to the context object
@@ -295,6 +307,7 @@ class ResumableMethodAdapter extends MethodVisitor implements Opcodes {
                     var stack = context.getStackClone();
                     debugMessage("CONT: stepBack : saving operand stack");
                     saveOperandStack(stack);
+                    captureLocalStack(context);
 
                     // generate the stepBack exception
                     debugMessage("CONT: stepBack : throwing step-back exception");
@@ -334,6 +347,7 @@ class ResumableMethodAdapter extends MethodVisitor implements Opcodes {
                     stack.pop();
                     debugMessage("CONT: call : saving operand stack");
                     saveOperandStack(stack);
+                    captureLocalStack(context);
 
                     debugMessage("CONT: call : storing resume label");
                     // get a reference to the context object
@@ -431,6 +445,56 @@ class ResumableMethodAdapter extends MethodVisitor implements Opcodes {
         }
     }
 
+    /**
+     * Capture the local variable stack when the locals aren't stored in
+     * the context object as they change
+     */
+    private void captureLocalStack(TypesContext context) {
+        if (!captureOnPause_) {
+            return;
+        }
+
+        debugMessage("CONT: capturing local stack");
+        for (var i = 1; i <= maxLocalIndex_; i++) {
+            if (!context.hasVar(i)) {
+                continue;
+            }
+
+            var type = context.getVar(i);
+            if (TypesContext.TYPE_NULL.equals(type)) {
+                // null references are restored without the context object
+                continue;
+            }
+
+            methodVisitor_.visitVarInsn(ALOAD, contextIndex_);
+            methodVisitor_.visitMethodInsn(INVOKEVIRTUAL, "rife/continuations/ContinuationContext", "getLocalVars", "()Lrife/continuations/ContinuationStack;", false);
+            addIntegerConst(i);
+
+            switch (context.getVarType(i)) {
+                case Type.INT -> {
+                    methodVisitor_.visitVarInsn(ILOAD, i);
+                    methodVisitor_.visitMethodInsn(INVOKEVIRTUAL, "rife/continuations/ContinuationStack", "storeInt", "(II)V", false);
+                }
+                case Type.LONG -> {
+                    methodVisitor_.visitVarInsn(LLOAD, i);
+                    methodVisitor_.visitMethodInsn(INVOKEVIRTUAL, "rife/continuations/ContinuationStack", "storeLong", "(IJ)V", false);
+                }
+                case Type.FLOAT -> {
+                    methodVisitor_.visitVarInsn(FLOAD, i);
+                    methodVisitor_.visitMethodInsn(INVOKEVIRTUAL, "rife/continuations/ContinuationStack", "storeFloat", "(IF)V", false);
+                }
+                case Type.DOUBLE -> {
+                    methodVisitor_.visitVarInsn(DLOAD, i);
+                    methodVisitor_.visitMethodInsn(INVOKEVIRTUAL, "rife/continuations/ContinuationStack", "storeDouble", "(ID)V", false);
+                }
+                default -> {
+                    methodVisitor_.visitVarInsn(ALOAD, i);
+                    methodVisitor_.visitMethodInsn(INVOKEVIRTUAL, "rife/continuations/ContinuationStack", "storeReference", "(ILjava/lang/Object;)V", false);
+                }
+            }
+        }
+    }
+
     /**
      * Restore the local variable stack, first the computation
      * types of category 1 and afterward those of category 2
@@ -746,6 +810,12 @@ class ResumableMethodAdapter extends MethodVisitor implements Opcodes {
                 maxLocalIndex_ = var;
             }
 
+            // when the locals are captured on pause, the increment runs as
+            // regular code
+            if (captureOnPause_) {
+                return;
+            }
+
             // prepare the arguments of the context storage method
 
             // get a reference to the context object
@@ -19,6 +19,7 @@ class TypesClassVisitor extends ClassVisitor {
 
     private TypesContext[] pauseContexts_ = null;
     private TypesContext[] labelContexts_ = null;
+    private boolean localsCapturableOnPause_ = false;
     private int pauseContextCounter_ = 0;
     private int labelContextCounter_ = 0;
 
@@ -44,6 +45,14 @@ class TypesClassVisitor extends ClassVisitor {
         return pauseContexts_[pauseContextCounter_++];
     }
 
+    void setLocalsCapturableOnPause(boolean capturable) {
+        localsCapturableOnPause_ = capturable;
+    }
+
+    boolean areLocalsCapturableOnPause() {
+        return localsCapturableOnPause_;
+    }
+
     void setLabelContexts(TypesContext[] labelContexts) {
         labelContexts_ = labelContexts;
     }
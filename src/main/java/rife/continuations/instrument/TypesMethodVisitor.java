@@ -22,6 +22,9 @@ class TypesMethodVisitor extends MethodVisitor implements Opcodes {
     private static final int T_INT = 10;
     private static final int T_LONG = 11;
 
+    // a variable that is assigned with different types depending on the path
+    private static final String TYPE_CONFLICT = "CONFLICT";
+
     private final ContinuationConfigInstrument config_;
     private final TypesClassVisitor classVisitor_;
     private final String className_;
@@ -809,6 +812,89 @@ class TypesMethodVisitor extends MethodVisitor implements Opcodes {
 
         classVisitor_.setPauseContexts(pauseContexts_);
         classVisitor_.setLabelContexts(labelContexts_);
+        classVisitor_.setLocalsCapturableOnPause(tryCatchHandlers_.isEmpty() && areLocalsDefiniteOnPause());
+    }
+
+    /**
+     * Checks that the local variables that are restored at each pause are
+     * assigned with the same type on all the code paths that lead to it.
+     * <p>The pause contexts are collected by following a single path, the
+     * variables can then only be read at the pause when no other path can
+     * leave them unassigned.
+     */
+    private boolean areLocalsDefiniteOnPause() {
+        // forward analysis of the variables that are assigned on all the
+        // paths into each node
+        var entry_assignments = new HashMap<TypesNode, Map<Integer, String>>();
+        entry_assignments.put(rootNode_, new HashMap<>());
+        var to_process = new ArrayDeque<TypesNode>();
+        to_process.add(rootNode_);
+        while (!to_process.isEmpty()) {
+            var node = to_process.poll();
+            var exit_assignments = new HashMap<>(entry_assignments.get(node));
+            exit_assignments.putAll(node.getAssignments());
+
+            var following_nodes = new ArrayList<TypesNode>();
+            for (var successor = node.getSuccessors(); successor != null; successor = successor.getNextSuccessor()) {
+                var successor_node = labelMapping_.get(successor.getLabel());
+                if (successor_node != null) {
+                    following_nodes.add(successor_node);
+                }
+            }
+            if (node.getFollowingNode() != null) {
+                following_nodes.add(node.getFollowingNode());
+            }
+
+            for (var following_node : following_nodes) {
+                var current = entry_assignments.get(following_node);
+                var merged = mergeAssignments(current, exit_assignments);
+                if (!merged.equals(current)) {
+                    entry_assignments.put(following_node, merged);
+                    to_process.add(following_node);
+                }
+            }
+        }
+
+        for (var entry : entry_assignments.entrySet()) {
+            for (var pause : entry.getKey().getPauseAssignments().entrySet()) {
+                var definite = new HashMap<>(entry.getValue());
+                definite.putAll(pause.getValue());
+
+                var context = pauseContexts_[pause.getKey()];
+                for (var var : context.getVars().entrySet()) {
+                    var type = definite.get(var.getKey());
+                    if (null == type || !type.equals(var.getValue())) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static Map<Integer, String> mergeAssignments(Map<Integer, String> current, Map<Integer, String> assignments) {
+        if (null == current) {
+            return new HashMap<>(assignments);
+        }
+
+        var merged = new HashMap<Integer, String>();
+        for (var entry : current.entrySet()) {
+            var type = entry.getValue();
+            var other_type = assignments.get(entry.getKey());
+            if (null == other_type) {
+                continue;
+            }
+
+            // null can be assigned to any reference type
+            if (TypesContext.TYPE_NULL.equals(type)) {
+                type = other_type;
+            } else if (!TypesContext.TYPE_NULL.equals(other_type) && !type.equals(other_type)) {
+                type = TYPE_CONFLICT;
+            }
+            merged.put(entry.getKey(), type);
+        }
+        return merged;
     }
 
     private void processInstructions(TypesNode node) {
@@ -857,6 +943,7 @@ class TypesMethodVisitor extends MethodVisitor implements Opcodes {
 
                     context.pop();
                     context.setVar(instruction.getArgument(), type);
+                    node.assignVar(instruction.getArgument(), type);
                     if (exception_context != null) {
                         exception_context.setVar(instruction.getArgument(), type);
                         exception_context = null;
@@ -1065,6 +1152,7 @@ class TypesMethodVisitor extends MethodVisitor implements Opcodes {
                     if (ContinuationDebug.LOGGER.isLoggable(Level.FINEST))
                         ContinuationDebug.LOGGER.finest(repeat("  ", node.getLevel()) + "PAUSE " + instruction.getArgument());
                     pauseContexts_[instruction.getArgument()] = context.clone(node);
+                    node.markPause(instruction.getArgument());
                     break;
                 case TypesOpcode.LABEL: {
                     if (ContinuationDebug.LOGGER.isLoggable(Level.FINEST))
@@ -8,12 +8,16 @@ import rife.asm.Label;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 class TypesNode {
     static final int REGULAR = 0;
     static final int EXCEPTION = 1;
 
     private final ArrayList<TypesInstruction> instructions_ = new ArrayList<>();
+    private final Map<Integer, String> assignments_ = new HashMap<>();
+    private final Map<Integer, Map<Integer, String>> pauseAssignments_ = new HashMap<>();
 
     private TypesNode followingNode_ = null;
     private boolean isSuccessor_ = false;
@@ -35,6 +39,23 @@ class TypesNode {
         return instructions_;
     }
 
+    void assignVar(int var, String type) {
+        assignments_.put(var, type);
+    }
+
+    Map<Integer, String> getAssignments() {
+        return assignments_;
+    }
+
+    void markPause(int pause) {
+        // remember the variables that were assigned in this node before the pause
+        pauseAssignments_.put(pause, new HashMap<>(assignments_));
+    }
+
+    Map<Integer, Map<Integer, String>> getPauseAssignments() {
+        return pauseAssignments_;
+    }
+
     void setSort(int sort) {
         sort_ = sort;
     }
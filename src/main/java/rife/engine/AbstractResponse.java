@@ -12,6 +12,7 @@ import rife.template.Template;
 import rife.tools.HttpUtils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -33,11 +34,13 @@ public abstract class AbstractResponse implements Response {
     protected String contentType_ = null;
     protected Element lastElement_ = null;
     protected boolean textBufferEnabled_ = true;
+    protected boolean compressionEnabled_ = true;
     protected ArrayList<CharSequence> textBuffer_ = null;
     protected OutputStream responseOutputStream_ = null;
     protected ByteArrayOutputStream gzipByteOutputStream_ = null;
     protected GZIPOutputStream gzipOutputStream_ = null;
     protected OutputStream outputStream_ = null;
+    protected long bytesWritten_ = 0;
 
     /**
      * This method needs to be implemented by the extending back-end class and
@@ -125,6 +128,14 @@ public abstract class AbstractResponse implements Response {
         return textBufferEnabled_;
     }
 
+    public void enableCompression(boolean enabled) {
+        compressionEnabled_ = enabled;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled_;
+    }
+
     public void print(Template template)
     throws EngineException {
         if (null == template) return;
@@ -291,6 +302,19 @@ public abstract class AbstractResponse implements Response {
         }
     }
 
+    /**
+     * Retrieves the number of bytes that have been sent to the output
+     * stream of the back-end response.
+     * <p>Content that is still in the text buffer or that is being
+     * compressed isn't counted until it has been written out.
+     *
+     * @return the number of bytes that have been written
+     * @since 1.9.2
+     */
+    public long getBytesWritten() {
+        return bytesWritten_;
+    }
+
     public OutputStream getOutputStream()
     throws EngineException {
         ensureOutputStream();
@@ -303,13 +327,14 @@ public abstract class AbstractResponse implements Response {
         if (null == outputStream_) {
             if (null == responseOutputStream_) {
                 try {
-                    responseOutputStream_ = _getOutputStream();
+                    responseOutputStream_ = new CountingOutputStream(_getOutputStream());
 
                     if (contentType_ != null) {
                         String content_type = HttpUtils.extractMimeTypeFromContentType(contentType_);
 
                         // check if the content type should be gzip encoded
-                        if (RifeConfig.engine().getGzipCompression() &&
+                        if (compressionEnabled_ &&
+                            RifeConfig.engine().getGzipCompression() &&
                             RifeConfig.engine().getGzipCompressionTypes().contains(content_type)) {
                             String accept_encoding = request_.getHeader("Accept-Encoding");
                             if (accept_encoding != null &&
@@ -331,4 +356,24 @@ public abstract class AbstractResponse implements Response {
             }
         }
     }
+
+    private class CountingOutputStream extends FilterOutputStream {
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b)
+        throws IOException {
+            out.write(b);
+            bytesWritten_ += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        throws IOException {
+            out.write(b, off, len);
+            bytesWritten_ += len;
+        }
+    }
 }
@@ -21,7 +21,10 @@ import rife.tools.BeanUtils;
 import rife.tools.StringUtils;
 import rife.tools.exceptions.BeanUtilsException;
 
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.util.*;
@@ -39,11 +42,95 @@ public class Context {
     public static final double DEFAULT_DOUBLE = 0.0d;
     public static final float DEFAULT_FLOAT = 0.0f;
 
+    // the template fields of element classes are only looked up once, since
+    // continuations of the same element class are typically resumed very often,
+    // a ClassValue stores the handles with the element class itself so that
+    // they're released together with its class loader, for instance when
+    // the element classes are reloaded
+    private static final ClassValue<VarHandle[]> TEMPLATE_FIELDS = new ClassValue<>() {
+        protected VarHandle[] computeValue(Class<?> type) {
+            var handles = new ArrayList<VarHandle>();
+            try {
+                Class<?> klass = type;
+                while (klass != null && klass != Element.class) {
+                    MethodHandles.Lookup lookup = null;
+                    for (var field : klass.getDeclaredFields()) {
+                        if (Modifier.isStatic(field.getModifiers()) ||
+                            Modifier.isFinal(field.getModifiers()) ||
+                            Modifier.isTransient(field.getModifiers()) ||
+                            !Template.class.isAssignableFrom(field.getType())) {
+                            continue;
+                        }
+
+                        if (null == lookup) {
+                            lookup = MethodHandles.privateLookupIn(klass, MethodHandles.lookup());
+                        }
+                        handles.add(lookup.unreflectVarHandle(field));
+                    }
+
+                    klass = klass.getSuperclass();
+                }
+            } catch (IllegalAccessException e) {
+                throw new EngineException("Unable to access the template fields of element '" + type.getName() + "'", e);
+            }
+
+            return handles.toArray(new VarHandle[0]);
+        }
+    };
+
+    /**
+     * Status code (201) indicating the request succeeded and created a new resource on the server.
+     *
+     * @since 1.9.2
+     */
+    public static final int SC_CREATED = 201;
+
+    /**
+     * Status code (204) indicating that the request succeeded but that there was no new information to return.
+     *
+     * @since 1.9.2
+     */
+    public static final int SC_NO_CONTENT = 204;
+
     /**
      * Status code (304) indicating that a conditional GET operation found that the resource was available and not modified.
      */
     public static final int SC_NOT_MODIFIED = 304;
 
+    /**
+     * Status code (400) indicating the request sent by the client was syntactically incorrect.
+     *
+     * @since 1.9.2
+     */
+    public static final int SC_BAD_REQUEST = 400;
+
+    /**
+     * Status code (404) indicating that the requested resource is not available.
+     *
+     * @since 1.9.2
+     */
+    public static final int SC_NOT_FOUND = 404;
+
+    /**
+     * Status code (409) indicating that the request could not be completed due to a conflict with the current state of the resource.
+     *
+     * @since 1.9.2
+     */
+    public static final int SC_CONFLICT = 409;
+
+    /**
+     * Status code (413) indicating that the server is refusing to process the request because the request entity is larger than the server is willing or able to process.
+     *
+     * @since 1.9.2
+     */
+    public static final int SC_REQUEST_ENTITY_TOO_LARGE = 413;
+
+    /**
+     * Status code (415) indicating that the server is refusing to service the request because the entity of the request is in a format not supported by the requested resource for the requested method.
+     *
+     * @since 1.9.2
+     */
+    public static final int SC_UNSUPPORTED_MEDIA_TYPE = 415;
 
     /**
      * Status code (500) indicating an error inside the HTTP server which prevented it from fulfilling the request.
@@ -57,6 +144,7 @@ public class Context {
     private final RouteMatch routeMatch_;
     private final Map<String, String[]> parametersIn_;
     private Map<String, String[]> parametersOut_;
+    private String webappRootUrl_ = null;
     private Throwable engineException_;
 
     private Route processedRoute_ = null;
@@ -101,13 +189,13 @@ public class Context {
 
         try {
             for (var before_route : route.router().before_) {
-                processElement(before_route);
+                processElement(before_route, ProcessingPhase.BEFORE);
             }
 
-            processElement(route);
+            processElement(route, ProcessingPhase.ELEMENT);
 
             for (var after_route : route.router().after_) {
-                processElement(after_route);
+                processElement(after_route, ProcessingPhase.AFTER);
             }
         } catch (RespondException ignored) {
             // processing is over, just send the current response
@@ -118,7 +206,33 @@ public class Context {
         }
     }
 
-    void processElement(Route route)
+    void processElement(Route route, ProcessingPhase phase)
+    throws Exception {
+        var probe = ProcessingProbe.start(site_.processingMonitor_, response_);
+        if (null == probe) {
+            processElement(route);
+            return;
+        }
+
+        Throwable exception = null;
+        try {
+            processElement(route);
+        } catch (Throwable e) {
+            exception = e;
+            throw e;
+        } finally {
+            probe.finish(matchedRoute(), route, phase, exception);
+        }
+    }
+
+    private Route matchedRoute() {
+        if (null == routeMatch_) {
+            return null;
+        }
+        return routeMatch_.route();
+    }
+
+    private void processElement(Route route)
     throws Exception {
         parametersOut_ = null;
 
@@ -188,41 +302,27 @@ public class Context {
     throws Exception {
         var local_stack = continuationContext.getLocalStack();
         for (int i = 0; i < local_stack.getReferenceStackSize(); ++i) {
-            var reference = local_stack.getReference(i);
-            if (reference instanceof Template t) {
-                t.removeGeneratedValues();
-                t.setAttribute(Context.class.getName(), this);
+            if (local_stack.getReference(i) instanceof Template t) {
+                refreshTemplate(t);
             }
         }
         var local_vars = continuationContext.getLocalVars();
         for (int i = 0; i < local_vars.getReferenceStackSize(); ++i) {
-            var reference = local_vars.getReference(i);
-            if (reference instanceof Template t) {
-                t.removeGeneratedValues();
-                t.setAttribute(Context.class.getName(), this);
+            if (local_vars.getReference(i) instanceof Template t) {
+                refreshTemplate(t);
             }
         }
 
         var continuable = continuationContext.getContinuable();
-        Class klass = continuable.getClass();
-        while (klass != null && klass != Element.class) {
-            for (var field : klass.getDeclaredFields()) {
-                field.setAccessible(true);
-
-                if (Modifier.isStatic(field.getModifiers()) ||
-                    Modifier.isFinal(field.getModifiers()) ||
-                    Modifier.isTransient(field.getModifiers())) {
-                    continue;
-                }
-
-                if (Template.class.isAssignableFrom(field.getType())) {
-                    var t = (Template) field.get(continuable);
-                    t.removeGeneratedValues();
-                    t.setAttribute(Context.class.getName(), this);
-                }
-            }
+        for (var handle : TEMPLATE_FIELDS.get(continuable.getClass())) {
+            refreshTemplate((Template) handle.get(continuable));
+        }
+    }
 
-            klass = klass.getSuperclass();
+    private void refreshTemplate(Template template) {
+        if (template != null) {
+            template.removeGeneratedValues();
+            template.setAttribute(Context.class.getName(), this);
         }
     }
 
@@ -451,6 +551,25 @@ public class Context {
      * @since 1.0
      */
     public void print(Template template)
+    throws TemplateException {
+        var probe = ProcessingProbe.start(site_.processingMonitor_, response_);
+        if (null == probe) {
+            printTemplate(template);
+            return;
+        }
+
+        Throwable exception = null;
+        try {
+            printTemplate(template);
+        } catch (Throwable e) {
+            exception = e;
+            throw e;
+        } finally {
+            probe.finish(matchedRoute(), processedRoute_, ProcessingPhase.TEMPLATE, exception);
+        }
+    }
+
+    private void printTemplate(Template template)
     throws TemplateException {
         if (template != null && !template.hasAttribute(Context.class.getName())) {
             template.setAttribute(Context.class.getName(), this);
@@ -795,7 +914,11 @@ public class Context {
      * @since 1.0
      */
     public String webappRootUrl() {
-        return webappRootUrl(-1);
+        // the root URL of the active request doesn't change, it's only built once
+        if (null == webappRootUrl_) {
+            webappRootUrl_ = webappRootUrl(-1);
+        }
+        return webappRootUrl_;
     }
 
     /**
@@ -1738,6 +1861,18 @@ public class Context {
         return request_.getBodyAsBytes();
     }
 
+    /**
+     * Retrieves the body of this context's request as a stream, without
+     * reading it into memory first.
+     *
+     * @return the stream of the request body
+     * @see #bodyAsBytes()
+     * @since 1.9.2
+     */
+    public InputStream bodyAsStream() {
+        return request_.getBodyAsStream();
+    }
+
     /**
      * Retrieves the list of uploaded file names.
      *
@@ -2566,7 +2701,39 @@ public class Context {
      * @since 1.0
      */
     public void flush() {
-        response_.flush();
+        var probe = ProcessingProbe.start(site_.processingMonitor_, response_);
+        if (null == probe) {
+            response_.flush();
+            return;
+        }
+
+        Throwable exception = null;
+        try {
+            response_.flush();
+        } catch (Throwable e) {
+            exception = e;
+            throw e;
+        } finally {
+            probe.finish(matchedRoute(), processedRoute_, ProcessingPhase.FLUSH, exception);
+        }
+    }
+
+    void closeResponse() {
+        var probe = ProcessingProbe.start(site_.processingMonitor_, response_);
+        if (null == probe) {
+            response_.close();
+            return;
+        }
+
+        Throwable exception = null;
+        try {
+            response_.close();
+        } catch (Throwable e) {
+            exception = e;
+            throw e;
+        } finally {
+            probe.finish(matchedRoute(), processedRoute_, ProcessingPhase.CLOSE, exception);
+        }
     }
 
     /**
@@ -2582,6 +2749,26 @@ public class Context {
         return response_.getOutputStream();
     }
 
+    /**
+     * Sets up the response to stream Server-Sent Events to the client.
+     * <p>
+     * This sets the {@code text/event-stream} content type, disables the
+     * text buffer and response compression, and sends the response headers
+     * immediately. Each event that is sent afterwards will be flushed to
+     * the client right away.
+     * <p>
+     * The event stream stays open until the element finishes processing,
+     * it's recommended to enable virtual threads in the {@link Server}
+     * when many concurrent subscribers are expected.
+     *
+     * @return the {@code EventStream} to send events with
+     * @see EventStream
+     * @since 1.9.2
+     */
+    public EventStream eventStream() {
+        return new EventStream(this);
+    }
+
     /**
      * Sets the content type of the response being sent to the client.
      *
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine;
+
+import rife.engine.exceptions.EngineException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Streams Server-Sent Events to the client of the current request.
+ * <p>
+ * An event stream is obtained through {@link Context#eventStream()}, which
+ * sets up the response with the {@code text/event-stream} content type,
+ * disables the text buffer and response compression, and prevents caching
+ * by intermediate proxies. Each event is flushed to the client immediately.
+ * <p>
+ * The stream stays open for as long as the element keeps running, so an
+ * element typically loops while {@link #isOpen()} returns {@code true}, or
+ * hands a queue of events to {@link #relay(BlockingQueue, Duration)}. When
+ * the client disconnects, the next write will fail and the stream will be
+ * marked as closed.
+ * <p>
+ * Since each subscriber occupies a request thread while it's connected, it's
+ * recommended to {@link Server#enabledVirtualThreads(boolean) enable virtual threads}
+ * when many clients are expected to be subscribed at the same time. Writes
+ * are guarded by a {@code ReentrantLock} rather than {@code synchronized}
+ * blocks to not pin the carrier thread of a virtual thread.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see Context#eventStream()
+ * @see ServerSentEvent
+ * @since 1.9.2
+ */
+public class EventStream {
+    public static final String CONTENT_TYPE = "text/event-stream";
+    public static final String HEADER_LAST_EVENT_ID = "Last-Event-ID";
+
+    private final Response response_;
+    private final String lastEventId_;
+    private final ReentrantLock lock_ = new ReentrantLock();
+    private volatile boolean open_ = true;
+
+    EventStream(Context context) {
+        response_ = context.response();
+        lastEventId_ = context.header(HEADER_LAST_EVENT_ID);
+
+        response_.enableCompression(false);
+        response_.setContentType(CONTENT_TYPE);
+        response_.setHeader("Cache-Control", "no-cache, no-transform");
+        response_.setHeader("X-Accel-Buffering", "no");
+        response_.enableTextBuffer(false);
+
+        // commit the response headers right away so that the client knows
+        // the stream has been established
+        write(":\n\n");
+    }
+
+    /**
+     * Retrieves the identifier of the last event that the client received
+     * before it reconnected.
+     *
+     * @return the value of the {@code Last-Event-ID} request header; or
+     * {@code null} if this is a new subscription
+     * @since 1.9.2
+     */
+    public String lastEventId() {
+        return lastEventId_;
+    }
+
+    /**
+     * Indicates whether this event stream is still open.
+     * <p>
+     * A stream is closed either explicitly through {@link #close()}, or
+     * when writing to the client failed because it disconnected.
+     *
+     * @return {@code true} if the stream is open; or
+     * {@code false} otherwise
+     * @since 1.9.2
+     */
+    public boolean isOpen() {
+        return open_;
+    }
+
+    /**
+     * Instructs the client how long to wait before reconnecting after the
+     * connection was lost.
+     *
+     * @param milliseconds the reconnection time in milliseconds
+     * @return {@code true} if the instruction was sent; or
+     * {@code false} if the stream is closed
+     * @since 1.9.2
+     */
+    public boolean retry(long milliseconds) {
+        return write("retry: " + milliseconds + "\n\n");
+    }
+
+    /**
+     * Sends an unnamed event to the client.
+     *
+     * @param data the data of the event
+     * @return {@code true} if the event was sent; or
+     * {@code false} if the stream is closed
+     * @since 1.9.2
+     */
+    public boolean send(String data) {
+        return send(new ServerSentEvent(data));
+    }
+
+    /**
+     * Sends a named event to the client.
+     *
+     * @param event the name of the event type
+     * @param data  the data of the event
+     * @return {@code true} if the event was sent; or
+     * {@code false} if the stream is closed
+     * @since 1.9.2
+     */
+    public boolean send(String event, String data) {
+        return send(new ServerSentEvent(event, data));
+    }
+
+    /**
+     * Sends an event to the client.
+     *
+     * @param event the event to send
+     * @return {@code true} if the event was sent; or
+     * {@code false} if the stream is closed
+     * @since 1.9.2
+     */
+    public boolean send(ServerSentEvent event) {
+        if (null == event) {
+            return open_;
+        }
+
+        return write(event.format());
+    }
+
+    /**
+     * Sends a comment line to the client, which will be ignored by the
+     * browser's {@code EventSource}.
+     *
+     * @param comment the comment to send
+     * @return {@code true} if the comment was sent; or
+     * {@code false} if the stream is closed
+     * @since 1.9.2
+     */
+    public boolean comment(String comment) {
+        if (null == comment) {
+            comment = "";
+        }
+
+        return write(": " + comment.replace("\r", "").replace("\n", " ") + "\n\n");
+    }
+
+    /**
+     * Sends a heartbeat to the client.
+     * <p>
+     * Heartbeats keep intermediate proxies from closing idle connections
+     * and are also the only way to detect that a client disconnected while
+     * no events are being sent.
+     *
+     * @return {@code true} if the heartbeat was sent; or
+     * {@code false} if the stream is closed
+     * @since 1.9.2
+     */
+    public boolean heartbeat() {
+        return write(":\n\n");
+    }
+
+    /**
+     * Relays events from a queue to the client until the stream is closed
+     * or the current thread is interrupted.
+     * <p>
+     * When no event arrived during the heartbeat interval, a heartbeat is
+     * sent to detect disconnected clients.
+     *
+     * @param events            the queue that provides the events to send
+     * @param heartbeatInterval the maximum time to wait for an event before
+     *                          sending a heartbeat
+     * @since 1.9.2
+     */
+    public void relay(BlockingQueue<ServerSentEvent> events, Duration heartbeatInterval) {
+        var interval = heartbeatInterval.toMillis();
+        try {
+            while (open_) {
+                var event = events.poll(interval, TimeUnit.MILLISECONDS);
+                if (null == event) {
+                    heartbeat();
+                } else {
+                    send(event);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Closes this event stream, no more events will be sent afterwards.
+     * <p>
+     * The underlying response will be closed by the engine once the element
+     * finished processing.
+     *
+     * @since 1.9.2
+     */
+    public void close() {
+        open_ = false;
+    }
+
+    private boolean write(String text) {
+        if (!open_) {
+            return false;
+        }
+
+        lock_.lock();
+        try {
+            var out = response_.getOutputStream();
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            return true;
+        } catch (IOException | EngineException e) {
+            // the client disconnected
+            open_ = false;
+            return false;
+        } finally {
+            lock_.unlock();
+        }
+    }
+}
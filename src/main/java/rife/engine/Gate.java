@@ -110,17 +110,33 @@ public class Gate {
             return false;
         }
 
+        // serve cached routes through the site's response cache
+        var cache_policy = site_.getCachePolicy(match.route());
+        if (cache_policy != null && ResponseCache.isCacheable(request)) {
+            final var gate_url = gateUrl;
+            var key = ResponseCache.buildKey(cache_policy, gateUrl, elementUrl, request);
+            return site_.responseCache_.handle(cache_policy, key, request, response,
+                r -> processRequest(gate_url, request, r, match));
+        }
+
+        return processRequest(gateUrl, request, response, match);
+    }
+
+    private boolean processRequest(String gateUrl, Request request, Response response, RouteMatch match) {
         var context = new Context(gateUrl, site_, request, response, match);
         try {
             context.process();
-            response.close();
+            context.closeResponse();
         } catch (RedirectException e) {
             response.sendRedirect(e.getUrl());
         } catch (DeferException e) {
             return false;
         } catch (Throwable e) {
+            if (response instanceof ResponseCapture capture) {
+                capture.preventStoring();
+            }
             handleRequestException(e, context);
-            response.close();
+            context.closeResponse();
         }
 
         return true;
@@ -160,7 +176,7 @@ public class Gate {
         var exception_route = router.getExceptionRoute();
         if (exception_route != null) {
             try {
-                c.processElement(exception_route);
+                c.processElement(exception_route, ProcessingPhase.EXCEPTION);
                 return;
             } catch (Exception ignored) {
             }
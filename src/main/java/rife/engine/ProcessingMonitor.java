@@ -0,0 +1,42 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine;
+
+/**
+ * Receives measurements of the request processing of a site.
+ * <p>
+ * A monitor is registered with {@link Site#processingMonitor(ProcessingMonitor)}
+ * and will be called after each element, template print, flush and response
+ * close. The monitor is called on the request thread, implementations should
+ * be thread-safe and return quickly.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see rife.engine.metrics.ProcessingMetrics
+ * @since 1.9.2
+ */
+public interface ProcessingMonitor {
+    /**
+     * Indicates whether the bytes allocated by the request thread should be
+     * measured.
+     * <p>
+     * This relies on the allocation tracking of the {@code ThreadMXBean} of
+     * the JVM and will report {@code -1} when it's not supported.
+     *
+     * @return {@code true} if allocations should be measured; or
+     * {@code false} otherwise
+     * @since 1.9.2
+     */
+    default boolean measureAllocations() {
+        return false;
+    }
+
+    /**
+     * Called when a processing phase has been measured.
+     *
+     * @param sample the measurement
+     * @since 1.9.2
+     */
+    void processed(ProcessingSample sample);
+}
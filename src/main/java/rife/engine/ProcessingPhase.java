@@ -0,0 +1,43 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine;
+
+/**
+ * The phases of the request processing that are reported to a
+ * {@link ProcessingMonitor}.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public enum ProcessingPhase {
+    /**
+     * An element that is processed before the route's element.
+     */
+    BEFORE,
+    /**
+     * The element of the route.
+     */
+    ELEMENT,
+    /**
+     * An element that is processed after the route's element.
+     */
+    AFTER,
+    /**
+     * The element that handles an exception that occurred during the request.
+     */
+    EXCEPTION,
+    /**
+     * The processing and printing of a template.
+     */
+    TEMPLATE,
+    /**
+     * An explicit flush of the response.
+     */
+    FLUSH,
+    /**
+     * The closing of the response, which sends any buffered content to the client.
+     */
+    CLOSE
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine;
+
+import rife.tools.exceptions.ControlFlowRuntimeException;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures a single processing phase and reports it to a {@link ProcessingMonitor}.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+class ProcessingProbe {
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = obtainThreadMXBean();
+
+    private final ProcessingMonitor monitor_;
+    private final Response response_;
+    private final long startNanos_;
+    private final long startBytes_;
+    private final long startAllocated_;
+
+    private static com.sun.management.ThreadMXBean obtainThreadMXBean() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean &&
+                bean.isThreadAllocatedMemorySupported()) {
+                if (!bean.isThreadAllocatedMemoryEnabled()) {
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                }
+                return bean;
+            }
+        } catch (UnsupportedOperationException | SecurityException ignored) {
+            // allocation tracking isn't available
+        }
+        return null;
+    }
+
+    private ProcessingProbe(ProcessingMonitor monitor, Response response) {
+        monitor_ = monitor;
+        response_ = response;
+        startBytes_ = bytesWritten(response);
+        startAllocated_ = allocatedBytes(monitor);
+        startNanos_ = System.nanoTime();
+    }
+
+    /**
+     * Starts measuring a phase.
+     *
+     * @param monitor  the monitor to report to
+     * @param response the response that is being written to
+     * @return the probe; or {@code null} when no monitor is active
+     */
+    static ProcessingProbe start(ProcessingMonitor monitor, Response response) {
+        if (null == monitor) {
+            return null;
+        }
+
+        return new ProcessingProbe(monitor, response);
+    }
+
+    void finish(Route route, Route element, ProcessingPhase phase, Throwable exception) {
+        var duration = System.nanoTime() - startNanos_;
+        var allocated = -1L;
+        if (startAllocated_ >= 0) {
+            allocated = allocatedBytes(monitor_) - startAllocated_;
+        }
+
+        Class<? extends Throwable> exception_type = null;
+        if (exception != null && !(exception instanceof ControlFlowRuntimeException)) {
+            exception_type = exception.getClass();
+        }
+
+        monitor_.processed(new ProcessingSample(route, element, phase, duration,
+            bytesWritten(response_) - startBytes_, allocated, exception_type));
+    }
+
+    private static long bytesWritten(Response response) {
+        if (response instanceof AbstractResponse abstract_response) {
+            return abstract_response.getBytesWritten();
+        }
+        return 0;
+    }
+
+    private static long allocatedBytes(ProcessingMonitor monitor) {
+        if (null == THREAD_MX_BEAN || !monitor.measureAllocations()) {
+            return -1;
+        }
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
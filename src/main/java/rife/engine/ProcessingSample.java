@@ -0,0 +1,69 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine;
+
+/**
+ * A measurement of one phase of the processing of a request.
+ *
+ * @param route          the route that was matched for the request
+ * @param element        the route of the element that was being processed,
+ *                       this is the same as {@code route} unless a before,
+ *                       after or exception element was processed
+ * @param phase          the phase that was measured
+ * @param durationNanos  the duration of the phase in nanoseconds
+ * @param bytesWritten   the number of bytes that were sent to the client
+ *                       during the phase, buffered content is only counted
+ *                       when it's flushed
+ * @param allocatedBytes the number of bytes that were allocated by the
+ *                       thread during the phase; or {@code -1} if allocation
+ *                       tracking isn't enabled
+ * @param exception      the type of the exception that interrupted the
+ *                       phase; or {@code null} if it completed normally
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see ProcessingMonitor
+ * @since 1.9.2
+ */
+public record ProcessingSample(Route route, Route element, ProcessingPhase phase,
+                               long durationNanos, long bytesWritten, long allocatedBytes,
+                               Class<? extends Throwable> exception) {
+    /**
+     * Retrieves a name for the matched route that can be used to group
+     * measurements.
+     *
+     * @return the path of the route; or
+     * the name of the element class if the route has no path
+     * @since 1.9.2
+     */
+    public String routeName() {
+        return nameOf(route);
+    }
+
+    /**
+     * Retrieves a name for the processed element that can be used to group
+     * measurements.
+     *
+     * @return the path of the element's route; or
+     * the name of the element class if the route has no path
+     * @since 1.9.2
+     */
+    public String elementName() {
+        return nameOf(element);
+    }
+
+    private static String nameOf(Route route) {
+        if (null == route) {
+            return "";
+        }
+        var path = route.path();
+        if (path != null && !path.isEmpty()) {
+            return path;
+        }
+        var element_class = route.getElementClass();
+        if (element_class != null) {
+            return element_class.getName();
+        }
+        return "";
+    }
+}
@@ -9,6 +9,8 @@ import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.Locale;
 import java.util.Map;
@@ -54,6 +56,19 @@ public interface Request {
      */
     byte[] getBodyAsBytes();
 
+    /**
+     * Retrieves the body of this request as a stream.
+     * <p>The body can only be read once, either as a stream or through
+     * the other body methods.
+     *
+     * @return the stream of the request body
+     * @see #getBodyAsBytes()
+     * @since 1.9.2
+     */
+    default InputStream getBodyAsStream() {
+        return new ByteArrayInputStream(getBodyAsBytes());
+    }
+
     /**
      * Retrieves the files that were uploaded in this request.
      *
@@ -62,6 +62,29 @@ public interface Response {
      */
     boolean isTextBufferEnabled();
 
+    /**
+     * Enables or disables the compression of the response content.
+     * <p>Compression is enabled by default and will be applied when it's
+     * configured for the content type and supported by the client. Since
+     * compressed content is only sent to the client when the response is
+     * closed, it should be disabled for streaming responses.
+     * <p>This has to be called before any content was written.
+     *
+     * @param enabled {@code true} to enable compression; or
+     *                <p>{@code false} to disable it
+     * @since 1.9.2
+     */
+    void enableCompression(boolean enabled);
+
+    /**
+     * Indicates whether the compression of the response content is enabled.
+     *
+     * @return {@code true} when compression is enabled; or
+     * <p>{@code false} when it is disabled.
+     * @since 1.9.2
+     */
+    boolean isCompressionEnabled();
+
     /**
      * Prints the content of a template to the request text output.
      *
@@ -0,0 +1,390 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine;
+
+import rife.config.RifeConfig;
+import rife.engine.exceptions.EngineException;
+import rife.tools.HttpUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-memory cache of rendered responses for routes that have been
+ * declared with a {@link ResponseCachePolicy}.
+ * <p>
+ * Each site has one response cache that is bounded by the total number of
+ * bytes of the stored content and evicts the least recently used entries
+ * when it grows beyond that size. When gzip compression is enabled for the
+ * content type of a response, a compressed version is stored alongside the
+ * uncompressed content so that it doesn't have to be compressed again for
+ * every request.
+ * <p>
+ * Concurrent requests for the same missing entry are coalesced, only the
+ * first request renders the response while the others wait for it to be
+ * stored. When a policy allows stale content to be served while it's
+ * being revalidated, the first request after expiration renders a new
+ * response while the others are served the stale one.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see Router#cache(Route, ResponseCachePolicy)
+ * @since 1.9.2
+ */
+public class ResponseCache {
+    public static final long DEFAULT_MAXIMUM_SIZE = 64L * 1024 * 1024;
+    public static final long DEFAULT_COALESCING_TIMEOUT = 10000L;
+
+    private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String HEADER_VARY = "Vary";
+    private static final String GZIP = "gzip";
+
+    record Entry(String contentType, List<ResponseCapture.Header> headers, byte[] content, byte[] gzipContent,
+                 long expires, long staleUntil, AtomicBoolean revalidating) {
+        long size() {
+            var size = (long) content.length;
+            if (gzipContent != null) {
+                size += gzipContent.length;
+            }
+            for (var header : headers) {
+                size += header.name().length() + header.value().length();
+            }
+            return size;
+        }
+    }
+
+    private final ReentrantLock lock_ = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries_ = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Entry>> inFlight_ = new ConcurrentHashMap<>();
+    private final AtomicLong hits_ = new AtomicLong();
+    private final AtomicLong misses_ = new AtomicLong();
+    private long size_ = 0;
+    private long maximumSize_ = DEFAULT_MAXIMUM_SIZE;
+    private long coalescingTimeout_ = DEFAULT_COALESCING_TIMEOUT;
+
+    /**
+     * Sets the maximum number of bytes of content that this cache will hold.
+     *
+     * @param size the maximum size in bytes
+     * @return this {@code ResponseCache} instance
+     * @since 1.9.2
+     */
+    public ResponseCache maximumSize(long size) {
+        lock_.lock();
+        try {
+            maximumSize_ = size;
+            evict();
+        } finally {
+            lock_.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Retrieves the maximum number of bytes of content that this cache will hold.
+     *
+     * @return the maximum size in bytes
+     * @since 1.9.2
+     */
+    public long maximumSize() {
+        return maximumSize_;
+    }
+
+    /**
+     * Sets how long a request waits for another request that is rendering
+     * the same response, before rendering it itself.
+     *
+     * @param milliseconds the timeout in milliseconds
+     * @return this {@code ResponseCache} instance
+     * @since 1.9.2
+     */
+    public ResponseCache coalescingTimeout(long milliseconds) {
+        coalescingTimeout_ = milliseconds;
+        return this;
+    }
+
+    /**
+     * Retrieves the number of bytes of content that this cache currently holds.
+     *
+     * @return the size in bytes
+     * @since 1.9.2
+     */
+    public long size() {
+        lock_.lock();
+        try {
+            return size_;
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of requests that were served from this cache.
+     *
+     * @return the number of hits
+     * @since 1.9.2
+     */
+    public long hits() {
+        return hits_.get();
+    }
+
+    /**
+     * Retrieves the number of requests that had to be rendered because
+     * no usable cached response was available.
+     *
+     * @return the number of misses
+     * @since 1.9.2
+     */
+    public long misses() {
+        return misses_.get();
+    }
+
+    /**
+     * Removes all the responses from this cache.
+     *
+     * @since 1.9.2
+     */
+    public void clear() {
+        lock_.lock();
+        try {
+            entries_.clear();
+            size_ = 0;
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    static boolean isCacheable(Request request) {
+        var method = request.getMethod();
+        return method == RequestMethod.GET || method == RequestMethod.HEAD;
+    }
+
+    static String buildKey(ResponseCachePolicy policy, String gateUrl, String elementUrl, Request request) {
+        // a HEAD response has no body, it can't be replayed for a GET request
+        var key = new StringBuilder(request.getMethod().name())
+            .append('\u0000').append(gateUrl)
+            .append('\u0000').append(elementUrl);
+        var parameters = request.getParameters();
+        for (var name : policy.parameters()) {
+            key.append('\u0000').append(name).append('=');
+            var values = parameters.get(name);
+            if (values != null) {
+                key.append(String.join("\u0001", values));
+            }
+        }
+        for (var name : policy.headers()) {
+            key.append('\u0000').append(name).append(':');
+            var value = request.getHeader(name);
+            if (value != null) {
+                key.append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    boolean handle(ResponseCachePolicy policy, String key, Request request, Response response, Function<Response, Boolean> processor) {
+        var now = System.currentTimeMillis();
+        var entry = get(key);
+        Entry revalidated = null;
+        if (entry != null) {
+            if (now < entry.expires()) {
+                hits_.incrementAndGet();
+                send(entry, request, response);
+                return true;
+            }
+
+            // serve the stale entry while one request revalidates it
+            if (now < entry.staleUntil()) {
+                if (!entry.revalidating().compareAndSet(false, true)) {
+                    hits_.incrementAndGet();
+                    send(entry, request, response);
+                    return true;
+                }
+                revalidated = entry;
+            }
+        }
+
+        try {
+            return render(policy, key, request, response, processor, now);
+        } finally {
+            // the stale entry can be revalidated again by later requests,
+            // whichever way this one ended
+            if (revalidated != null) {
+                revalidated.revalidating().set(false);
+            }
+        }
+    }
+
+    private boolean render(ResponseCachePolicy policy, String key, Request request, Response response, Function<Response, Boolean> processor, long now) {
+        misses_.incrementAndGet();
+
+        var future = new CompletableFuture<Entry>();
+        var existing = inFlight_.putIfAbsent(key, future);
+        if (existing != null) {
+            // another request is rendering the same response
+            try {
+                var coalesced = existing.get(coalescingTimeout_, TimeUnit.MILLISECONDS);
+                if (coalesced != null) {
+                    send(coalesced, request, response);
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException ignored) {
+                // fall through and render the response directly
+            }
+
+            return processor.apply(response);
+        }
+
+        Entry stored = null;
+        try {
+            var capture = new ResponseCapture(request, response);
+            var handled = processor.apply(capture);
+            if (!handled) {
+                return false;
+            }
+
+            // the headers have already been forwarded by the capture,
+            // only the content remains to be sent
+            var content = capture.getContent();
+            if (capture.isCacheable()) {
+                stored = createEntry(policy, capture, content, now);
+                put(key, stored);
+                sendContent(stored, request, response);
+            } else {
+                // the response isn't cached, it's compressed like any
+                // other response
+                if (request.getMethod() != RequestMethod.HEAD) {
+                    writeOutput(response, content);
+                }
+                response.close();
+            }
+
+            return true;
+        } finally {
+            inFlight_.remove(key, future);
+            future.complete(stored);
+        }
+    }
+
+    private Entry createEntry(ResponseCachePolicy policy, ResponseCapture capture, byte[] content, long now) {
+        byte[] gzip_content = null;
+        var content_type = capture.getContentType();
+        if (content_type != null &&
+            RifeConfig.engine().getGzipCompression() &&
+            RifeConfig.engine().getGzipCompressionTypes().contains(HttpUtils.extractMimeTypeFromContentType(content_type))) {
+            try {
+                var bytes = new ByteArrayOutputStream();
+                try (var gzip = new GZIPOutputStream(bytes)) {
+                    gzip.write(content);
+                }
+                gzip_content = bytes.toByteArray();
+            } catch (IOException e) {
+                throw new EngineException(e);
+            }
+        }
+
+        var expires = now + policy.timeToLive().toMillis();
+        return new Entry(content_type, List.copyOf(capture.getHeaders()), content, gzip_content,
+            expires, expires + policy.staleWhileRevalidate().toMillis(), new AtomicBoolean(false));
+    }
+
+    private Entry get(String key) {
+        lock_.lock();
+        try {
+            return entries_.get(key);
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        var size = entry.size();
+        lock_.lock();
+        try {
+            if (size > maximumSize_) {
+                return;
+            }
+
+            var previous = entries_.put(key, entry);
+            if (previous != null) {
+                size_ -= previous.size();
+            }
+            size_ += size;
+            evict();
+        } finally {
+            lock_.unlock();
+        }
+    }
+
+    private void evict() {
+        var it = entries_.entrySet().iterator();
+        while (size_ > maximumSize_ && it.hasNext()) {
+            size_ -= it.next().getValue().size();
+            it.remove();
+        }
+    }
+
+    private static void send(Entry entry, Request request, Response response) {
+        if (entry.contentType() != null) {
+            response.setContentType(entry.contentType());
+        }
+        for (var header : entry.headers()) {
+            if (header.add()) {
+                response.addHeader(header.name(), header.value());
+            } else {
+                response.setHeader(header.name(), header.value());
+            }
+        }
+
+        sendContent(entry, request, response);
+    }
+
+    private static void sendContent(Entry entry, Request request, Response response) {
+        var content = entry.content();
+        if (entry.gzipContent() != null) {
+            response.addHeader(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+
+            var accept_encoding = request.getHeader(HEADER_ACCEPT_ENCODING);
+            if (accept_encoding != null &&
+                accept_encoding.contains(GZIP)) {
+                response.addHeader(HEADER_CONTENT_ENCODING, GZIP);
+                content = entry.gzipContent();
+            }
+        }
+
+        writeContent(request, response, content);
+    }
+
+    private static void writeContent(Request request, Response response, byte[] content) {
+        // the cached content is sent as it was captured or compressed
+        response.enableCompression(false);
+        response.setContentLength(content.length);
+        if (request.getMethod() != RequestMethod.HEAD) {
+            writeOutput(response, content);
+        }
+        response.close();
+    }
+
+    private static void writeOutput(Response response, byte[] content) {
+        if (content.length > 0) {
+            try {
+                response.getOutputStream().write(content);
+            } catch (IOException e) {
+                // don't do anything, the client has probably
+                // closed the connection
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Describes how the responses of a route should be cached by the
+ * {@link ResponseCache} of the site.
+ * <p>
+ * The cache key always contains the path and the path info of the request,
+ * additional request parameters and headers can be selected to be part of
+ * the key when the response varies with them.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see Router#cache(Route, ResponseCachePolicy)
+ * @since 1.9.2
+ */
+public class ResponseCachePolicy {
+    private final Duration timeToLive_;
+    private Duration staleWhileRevalidate_ = Duration.ZERO;
+    private List<String> parameters_ = List.of();
+    private List<String> headers_ = List.of();
+
+    /**
+     * Creates a new cache policy.
+     *
+     * @param timeToLive how long a cached response is considered to be fresh
+     * @since 1.9.2
+     */
+    public ResponseCachePolicy(Duration timeToLive) {
+        if (null == timeToLive) throw new IllegalArgumentException("timeToLive can't be null");
+
+        timeToLive_ = timeToLive;
+    }
+
+    /**
+     * Sets the duration after expiration during which the stale cached
+     * response will still be served while a single request renders a new one.
+     *
+     * @param duration the stale duration
+     * @return this {@code ResponseCachePolicy} instance
+     * @since 1.9.2
+     */
+    public ResponseCachePolicy staleWhileRevalidate(Duration duration) {
+        if (null == duration) throw new IllegalArgumentException("duration can't be null");
+
+        staleWhileRevalidate_ = duration;
+        return this;
+    }
+
+    /**
+     * Sets the names of the request parameters that should be part of the
+     * cache key.
+     *
+     * @param names the names of the parameters
+     * @return this {@code ResponseCachePolicy} instance
+     * @since 1.9.2
+     */
+    public ResponseCachePolicy parameters(String... names) {
+        parameters_ = List.of(names);
+        return this;
+    }
+
+    /**
+     * Sets the names of the request headers that should be part of the
+     * cache key.
+     *
+     * @param names the names of the headers
+     * @return this {@code ResponseCachePolicy} instance
+     * @since 1.9.2
+     */
+    public ResponseCachePolicy headers(String... names) {
+        headers_ = List.of(names);
+        return this;
+    }
+
+    /**
+     * Retrieves how long a cached response is considered to be fresh.
+     *
+     * @return the time to live
+     * @since 1.9.2
+     */
+    public Duration timeToLive() {
+        return timeToLive_;
+    }
+
+    /**
+     * Retrieves the duration during which stale cached responses will be
+     * served while a new one is rendered.
+     *
+     * @return the stale duration
+     * @since 1.9.2
+     */
+    public Duration staleWhileRevalidate() {
+        return staleWhileRevalidate_;
+    }
+
+    /**
+     * Retrieves the names of the request parameters that are part of the
+     * cache key.
+     *
+     * @return the list of parameter names
+     * @since 1.9.2
+     */
+    public List<String> parameters() {
+        return parameters_;
+    }
+
+    /**
+     * Retrieves the names of the request headers that are part of the
+     * cache key.
+     *
+     * @return the list of header names
+     * @since 1.9.2
+     */
+    public List<String> headers() {
+        return headers_;
+    }
+}
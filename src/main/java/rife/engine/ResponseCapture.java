@@ -0,0 +1,193 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
+import rife.engine.exceptions.EngineException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Response that forwards everything to another response, except for the
+ * content, which is collected in memory so that it can be stored in the
+ * {@link ResponseCache}.
+ * <p>
+ * The headers that are set are recorded so that they can be replayed
+ * when the cached response is served. Setting cookies, sending errors or
+ * redirects and changing the status code make the response uncacheable.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+class ResponseCapture extends AbstractResponse {
+    private static final int SC_OK = 200;
+
+    record Header(String name, String value, boolean add) {
+    }
+
+    private final Response response_;
+    private final ByteArrayOutputStream content_ = new ByteArrayOutputStream();
+    private final List<Header> headers_ = new ArrayList<>();
+    private boolean cacheable_ = true;
+
+    ResponseCapture(Request request, Response response) {
+        super(request);
+
+        response_ = response;
+
+        // the content will be compressed by the cache, if applicable
+        compressionEnabled_ = false;
+    }
+
+    boolean isCacheable() {
+        return cacheable_;
+    }
+
+    void preventStoring() {
+        cacheable_ = false;
+    }
+
+    byte[] getContent() {
+        return content_.toByteArray();
+    }
+
+    List<Header> getHeaders() {
+        return headers_;
+    }
+
+    @Override
+    protected void _setContentType(String contentType) {
+        response_.setContentType(contentType);
+    }
+
+    @Override
+    protected OutputStream _getOutputStream() {
+        return content_;
+    }
+
+    @Override
+    public PrintWriter getWriter()
+    throws IOException {
+        // content written through the writer bypasses the capture
+        preventStoring();
+        return response_.getWriter();
+    }
+
+    @Override
+    public void setLocale(Locale locale) {
+        response_.setLocale(locale);
+    }
+
+    @Override
+    public Locale getLocale() {
+        return response_.getLocale();
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return response_.getCharacterEncoding();
+    }
+
+    @Override
+    public void setContentLength(int length)
+    throws EngineException {
+        // the content length is determined by the cache when the content is sent
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        preventStoring();
+        response_.addCookie(cookie);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        headers_.add(new Header(name, value, true));
+        response_.addHeader(name, value);
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        preventStoring();
+        response_.addDateHeader(name, date);
+    }
+
+    @Override
+    public void addIntHeader(String name, int integer) {
+        addHeader(name, String.valueOf(integer));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return response_.containsHeader(name);
+    }
+
+    @Override
+    public void sendError(int statusCode)
+    throws EngineException {
+        preventStoring();
+        response_.sendError(statusCode);
+    }
+
+    @Override
+    public void sendError(int statusCode, String message)
+    throws EngineException {
+        preventStoring();
+        response_.sendError(statusCode, message);
+    }
+
+    @Override
+    public void sendRedirect(String location)
+    throws EngineException {
+        preventStoring();
+        response_.sendRedirect(location);
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        // date headers are typically tied to the moment of rendering
+        preventStoring();
+        response_.setDateHeader(name, date);
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        headers_.removeIf(h -> h.name().equalsIgnoreCase(name));
+        headers_.add(new Header(name, value, false));
+        response_.setHeader(name, value);
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void setStatus(int statusCode) {
+        if (statusCode != SC_OK) {
+            preventStoring();
+        }
+        response_.setStatus(statusCode);
+    }
+
+    @Override
+    public String encodeURL(String url) {
+        return response_.encodeURL(url);
+    }
+
+    @Override
+    public HttpServletResponse getHttpServletResponse() {
+        // direct access to the servlet response bypasses the capture
+        preventStoring();
+        return response_.getHttpServletResponse();
+    }
+}
@@ -22,6 +22,7 @@ abstract class RouteAnnotated implements Route {
     protected final PathInfoHandling pathInfoHandling_;
     protected final Class<? extends Element> elementClass_;
     protected List<Field> fields_ = null;
+    protected Boolean outParameters_ = null;
 
     RouteAnnotated(Router router, RequestMethod[] methods, String path, PathInfoHandling pathInfoHandling, Class<? extends Element> elementClass) {
         router_ = router;
@@ -109,6 +110,26 @@ abstract class RouteAnnotated implements Route {
         return fields;
     }
 
+    boolean hasAnnotatedOutParameters() {
+        if (outParameters_ != null) {
+            return outParameters_;
+        }
+
+        var result = false;
+        for (var field : getAnnotatedFields()) {
+            if ((field.isAnnotationPresent(Parameter.class) &&
+                 shouldProcessOutFlow(field.getAnnotation(Parameter.class).flow())) ||
+                (field.isAnnotationPresent(ParametersBean.class) &&
+                 shouldProcessOutFlow(field.getAnnotation(ParametersBean.class).flow()))) {
+                result = true;
+                break;
+            }
+        }
+
+        outParameters_ = result;
+        return result;
+    }
+
     static Map<String, String[]> getAnnotatedOutParameters(Context context) {
         try {
             var parameters = new LinkedHashMap<String, String[]>();
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine;
+
+import rife.tools.StringUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The parts of the URLs of a route that don't depend on the request, they
+ * are computed once when the site is deployed and reused by every
+ * {@link UrlBuilder} that targets the route.
+ *
+ * @param path          the route path without its leading slash
+ * @param inParameters  the names of the parameters that the route accepts
+ *                      from annotated output parameters
+ * @param pathInfoMap   {@code true} if the route maps parameters to its path info; or
+ *                      {@code false} otherwise
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+record RouteUrlTemplate(String path, Set<String> inParameters, boolean pathInfoMap) {
+    static RouteUrlTemplate create(Route route) {
+        var path = StringUtils.stripFromFront(route.path(), "/");
+
+        var in_params = new HashSet<String>();
+        in_params.add(SpecialParameters.CONT_ID);
+
+        // input parameters
+        if (route instanceof RouteAnnotated annotated) {
+            in_params.addAll(annotated.getAnnotatedInParameters());
+        }
+
+        // path info parameters
+        var path_info_map = route.pathInfoHandling().type() == PathInfoType.MAP;
+        if (path_info_map) {
+            for (var mapping : route.pathInfoHandling().mappings()) {
+                in_params.addAll(mapping.parameters());
+            }
+        }
+
+        return new RouteUrlTemplate(path, Set.copyOf(in_params), path_info_map);
+    }
+}
@@ -9,6 +9,7 @@ import rife.ioc.HierarchicalProperties;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.time.Duration;
 import java.util.*;
 import java.util.function.Supplier;
 
@@ -25,6 +26,7 @@ public class Router {
     final Map<String, List<Route>> routes_ = new HashMap<>();
     final Map<String, List<Route>> pathInfoRoutes_ = new HashMap<>();
     final Map<String, Route> fallbackRoutes_ = new HashMap<>();
+    final Map<Route, ResponseCachePolicy> cachePolicies_ = new IdentityHashMap<>();
     final List<Router> groups_ = new ArrayList<>();
     Route exceptionRoute_ = null;
     Router parent_ = null;
@@ -53,6 +55,10 @@ public class Router {
         }
 
         deployed_ = true;
+
+        if (null == parent_ && this instanceof Site site) {
+            site.prepareUrlTemplates();
+        }
     }
 
     void ensurePreDeployment() {
@@ -1598,6 +1604,57 @@ public class Router {
         return route;
     }
 
+    /**
+     * Caches the responses of a route for a certain duration.
+     * <p>
+     * Only successful responses to {@code GET} and {@code HEAD} requests
+     * that don't set cookies are stored in the {@link Site#responseCache()
+     * response cache} of the site. The cache key is built from the path and
+     * the path info of the request.
+     *
+     * @param route      the route whose responses should be cached
+     * @param timeToLive how long a cached response is considered to be fresh
+     * @return the route that will be cached
+     * @see #cache(Route, ResponseCachePolicy)
+     * @since 1.9.2
+     */
+    public final Route cache(Route route, Duration timeToLive) {
+        return cache(route, new ResponseCachePolicy(timeToLive));
+    }
+
+    /**
+     * Caches the responses of a route according to a cache policy.
+     * <p>
+     * Only successful responses to {@code GET} and {@code HEAD} requests
+     * that don't set cookies are stored in the {@link Site#responseCache()
+     * response cache} of the site. The cache key is built from the path and
+     * the path info of the request, as well as the parameters and headers
+     * that are selected by the policy.
+     *
+     * @param route  the route whose responses should be cached
+     * @param policy the policy that describes how the route should be cached
+     * @return the route that will be cached
+     * @see #cache(Route, Duration)
+     * @since 1.9.2
+     */
+    public final Route cache(Route route, ResponseCachePolicy policy) {
+        ensurePreDeployment();
+        cachePolicies_.put(route, policy);
+        return route;
+    }
+
+    ResponseCachePolicy getCachePolicy(Route route) {
+        var router = route.router();
+        while (router != null) {
+            var policy = router.cachePolicies_.get(route);
+            if (policy != null) {
+                return policy;
+            }
+            router = router.parent_;
+        }
+        return null;
+    }
+
     /**
      * Registers a class element as the route for handling exceptions
      *
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine;
+
+/**
+ * A single event that can be sent to the client through an {@link EventStream}.
+ * <p>
+ * Both the {@code id} and the {@code event} name are optional and can be
+ * {@code null}, the {@code data} can span multiple lines.
+ *
+ * @param id    the identifier of the event, which will be sent back by the
+ *              client as the {@code Last-Event-ID} header when it reconnects
+ * @param event the name of the event type
+ * @param data  the data of the event
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see EventStream
+ * @since 1.9.2
+ */
+public record ServerSentEvent(String id, String event, String data) {
+    /**
+     * Creates an unnamed event without an identifier.
+     *
+     * @param data the data of the event
+     * @since 1.9.2
+     */
+    public ServerSentEvent(String data) {
+        this(null, null, data);
+    }
+
+    /**
+     * Creates a named event without an identifier.
+     *
+     * @param event the name of the event type
+     * @param data  the data of the event
+     * @since 1.9.2
+     */
+    public ServerSentEvent(String event, String data) {
+        this(null, event, data);
+    }
+
+    /**
+     * Formats this event according to the {@code text/event-stream} format.
+     *
+     * @return the wire representation of this event
+     * @since 1.9.2
+     */
+    public String format() {
+        var result = new StringBuilder();
+        if (id != null) {
+            result.append("id: ").append(stripNewlines(id)).append('\n');
+        }
+        if (event != null) {
+            result.append("event: ").append(stripNewlines(event)).append('\n');
+        }
+        if (data != null) {
+            for (var line : data.split("\r\n|\r|\n", -1)) {
+                result.append("data: ").append(line).append('\n');
+            }
+        }
+        result.append('\n');
+        return result.toString();
+    }
+
+    private static String stripNewlines(String value) {
+        return value.replace("\r", "").replace("\n", "");
+    }
+}
@@ -12,7 +12,10 @@ import rife.tools.StringUtils;
 import rife.workflow.Workflow;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -31,6 +34,9 @@ public class Site extends Router {
     public final int RND = new Random().nextInt();
 
     final ContinuationManager continuationManager_ = new ContinuationManager(new EngineContinuationConfigRuntime(this));
+    final ResponseCache responseCache_ = new ResponseCache();
+    ProcessingMonitor processingMonitor_ = null;
+    final Map<Route, RouteUrlTemplate> urlTemplates_ = new ConcurrentHashMap<>();
 
     private Config config_ = new Config();
 
@@ -97,6 +103,34 @@ public class Site extends Router {
         return resolvePathInfoUrl(request, url, pathInfo);
     }
 
+    void prepareUrlTemplates() {
+        for (var routes : routes_.values()) {
+            prepareUrlTemplates(routes);
+        }
+        for (var routes : pathInfoRoutes_.values()) {
+            prepareUrlTemplates(routes);
+        }
+        prepareUrlTemplates(fallbackRoutes_.values());
+    }
+
+    private void prepareUrlTemplates(Collection<Route> routes) {
+        for (var route : routes) {
+            urlTemplates_.put(route, RouteUrlTemplate.create(route));
+        }
+    }
+
+    /**
+     * Retrieves the URL template of a route, routes that weren't part of
+     * the site when it was deployed get their template created on first use.
+     *
+     * @param route the route to retrieve the URL template for
+     * @return the route's URL template
+     * @since 1.9.2
+     */
+    RouteUrlTemplate urlTemplate(Route route) {
+        return urlTemplates_.computeIfAbsent(route, RouteUrlTemplate::create);
+    }
+
     private static boolean routeHandlesMethod(Route route, RequestMethod method) {
         if (route.methods() == null) {
             return true;
@@ -256,6 +290,44 @@ public class Site extends Router {
         return new Workflow(executor, properties_);
     }
 
+    /**
+     * Returns the cache that stores the responses of the routes that
+     * have been declared as cached.
+     *
+     * @return this site's response cache
+     * @see Router#cache(Route, ResponseCachePolicy)
+     * @since 1.9.2
+     */
+    public ResponseCache responseCache() {
+        return responseCache_;
+    }
+
+    /**
+     * Sets the monitor that will receive the measurements of the request
+     * processing of this site.
+     * <p>
+     * When no monitor is set, the request processing isn't measured.
+     *
+     * @param monitor the monitor to use; or {@code null} to disable monitoring
+     * @see rife.engine.metrics.ProcessingMetrics
+     * @since 1.9.2
+     */
+    public void processingMonitor(ProcessingMonitor monitor) {
+        processingMonitor_ = monitor;
+    }
+
+    /**
+     * Retrieves the monitor that receives the measurements of the request
+     * processing of this site.
+     *
+     * @return this site's processing monitor; or
+     * {@code null} if no monitor was set
+     * @since 1.9.2
+     */
+    public ProcessingMonitor processingMonitor() {
+        return processingMonitor_;
+    }
+
     /**
      * Returns this site's config instance.
      *
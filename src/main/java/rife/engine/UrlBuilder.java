@@ -7,10 +7,8 @@ package rife.engine;
 import rife.tools.Convert;
 import rife.tools.StringUtils;
 
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * {@code UrlBuilder} helps creating valid URLs that automatically
@@ -36,7 +34,8 @@ public class UrlBuilder {
         public void appendQueryParameters(StringBuilder url) {
             // generate the query parameters that are available
             if (!parameters.isEmpty()) {
-                var query_parameters = new StringBuilder("?");
+                var start = url.length();
+                url.append('?');
 
                 for (var parameter_entry : parameters.entrySet()) {
                     var parameter_name = parameter_entry.getKey();
@@ -45,21 +44,19 @@ public class UrlBuilder {
                         continue;
                     }
 
-                    if (query_parameters.length() > 1) {
-                        query_parameters.append("&");
+                    if (url.length() > start + 1) {
+                        url.append('&');
                     }
 
                     for (var i = 0; i < parameter_values.length; i++) {
-                        query_parameters.append(StringUtils.encodeUrl(parameter_name));
-                        query_parameters.append("=");
-                        query_parameters.append(StringUtils.encodeUrl(parameter_values[i]));
+                        url.append(StringUtils.encodeUrl(parameter_name));
+                        url.append('=');
+                        url.append(StringUtils.encodeUrl(parameter_values[i]));
                         if (i + 1 < parameter_values.length) {
-                            query_parameters.append("&");
+                            url.append('&');
                         }
                     }
                 }
-
-                url.append(query_parameters);
             }
         }
 
@@ -88,6 +85,10 @@ public class UrlBuilder {
         }
     }
 
+    private static final int BUILDER_CAPACITY = 256;
+    private static final int BUILDER_MAXIMUM_CAPACITY = 8192;
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(BUILDER_CAPACITY));
+
     private final Context context_;
     private final String rootUrl_;
     private final Route route_;
@@ -197,14 +198,88 @@ public class UrlBuilder {
      * @since 1.0
      */
     public Segments generateSegments() {
+        var template = urlTemplate();
+        var parameters = collectParameters(template);
+
         final var path = new StringBuilder(rootUrl_);
+        appendPath(path, template, parameters);
+
+        return new Segments(path.toString(), parameters, generateFragment());
+    }
+
+    /**
+     * Generates the string version for the current state of the {@code UrlBuilder}.
+     *
+     * @return the string of the URL that's being built
+     * @since 1.0
+     */
+    public String toString() {
+        var template = urlTemplate();
+
+        // the route has no path info mapping and there are no parameters
+        // to pass on, the URL only consists of the route path
+        if (isStaticUrl(template)) {
+            var fragment = generateFragment();
+            if (fragment.isEmpty()) {
+                return rootUrl_.concat(template.path());
+            }
+            return builder().append(rootUrl_).append(template.path()).append(fragment).toString();
+        }
+
+        var parameters = collectParameters(template);
+        var fragment = generateFragment();
+
+        final var url = builder().append(rootUrl_);
+        appendPath(url, template, parameters);
+        new Segments(null, parameters, fragment).appendQueryParameters(url);
+        url.append(fragment);
+
+        return url.toString();
+    }
+
+    private static StringBuilder builder() {
+        var builder = BUILDER.get();
+        // don't hold on to builders that have grown for exceptionally long URLs
+        if (builder.capacity() > BUILDER_MAXIMUM_CAPACITY) {
+            builder = new StringBuilder(BUILDER_CAPACITY);
+            BUILDER.set(builder);
+        }
+        builder.setLength(0);
+        return builder;
+    }
 
-        path.append(StringUtils.stripFromFront(route_.path(), "/"));
+    private RouteUrlTemplate urlTemplate() {
+        if (context_ != null) {
+            return context_.site().urlTemplate(route_);
+        }
+        if (route_.router() != null) {
+            return route_.router().site().urlTemplate(route_);
+        }
+        return RouteUrlTemplate.create(route_);
+    }
+
+    private boolean isStaticUrl(RouteUrlTemplate template) {
+        return null == pathInfo_ &&
+               parameters_.isEmpty() &&
+               !template.pathInfoMap() &&
+               context_.parametersOut().isEmpty() &&
+               !hasAnnotatedOutParameters();
+    }
 
+    private boolean hasAnnotatedOutParameters() {
+        if (!(context_.route() instanceof RouteAnnotated)) {
+            return false;
+        }
+
+        return context_.hasContinuationId() ||
+               (context_.processedRoute() instanceof RouteAnnotated route && route.hasAnnotatedOutParameters());
+    }
+
+    private Map<String, String[]> collectParameters(RouteUrlTemplate template) {
         var parameters = new LinkedHashMap<String, String[]>();
 
         // detect which parameters are annotation for output and input and retrieve those that correspond
-        if (context_.route() instanceof RouteAnnotated) {
+        if (hasAnnotatedOutParameters()) {
             var out_params = RouteAnnotated.getAnnotatedOutParameters(context_);
             if (context_.hasContinuationId()) {
                 // only add the continuation ID if the route is going to the same element class
@@ -214,22 +289,8 @@ public class UrlBuilder {
                 }
             }
 
-            Set<String> in_params = new HashSet<>();
-            in_params.add(SpecialParameters.CONT_ID);
-
-            // input parameters
-            if (route_ instanceof RouteAnnotated route) {
-                in_params.addAll(route.getAnnotatedInParameters());
-            }
-
-            // path info parameters
-            if (route_.pathInfoHandling().type() == PathInfoType.MAP) {
-                for (var mapping : route_.pathInfoHandling().mappings()) {
-                    in_params.addAll(mapping.parameters());
-                }
-            }
             // retain the appropriate output parameters
-            out_params.keySet().retainAll(in_params);
+            out_params.keySet().retainAll(template.inParameters());
 
             parameters.putAll(out_params);
         }
@@ -240,6 +301,12 @@ public class UrlBuilder {
         // use all the explicitly provided parameters
         parameters.putAll(parameters_);
 
+        return parameters;
+    }
+
+    private void appendPath(StringBuilder path, RouteUrlTemplate template, Map<String, String[]> parameters) {
+        path.append(template.path());
+
         // handle an explicit path info
         if (pathInfo_ != null) {
             if (path.charAt(path.length() - 1) != '/') {
@@ -248,12 +315,14 @@ public class UrlBuilder {
             path.append(StringUtils.encodeUrl(pathInfo_, "/~"));
         }
         // handle path info mapping
-        else if (route_.pathInfoHandling().type() == PathInfoType.MAP) {
+        else if (template.pathInfoMap()) {
             for (var mapping : route_.pathInfoHandling().mappings()) {
                 if (parameters.keySet().containsAll(mapping.parameters())) {
                     var parameters_it = mapping.parameters().iterator();
 
-                    var builder = new StringBuilder();
+                    // the path info is appended in place and separated
+                    // from the path afterwards, when needed
+                    var path_info_start = path.length();
                     String parameter_name;
                     String[] parameter_value;
                     for (var segment : mapping.segments()) {
@@ -279,48 +348,29 @@ public class UrlBuilder {
                             }
 
                             // add the url-encoded parameter value to the path info
-                            builder.append(StringUtils.encodeUrl(parameter_value[0]));
+                            path.append(StringUtils.encodeUrl(parameter_value[0]));
                             parameters.remove(parameter_name);
                         } else {
-                            builder.append(segment.text());
+                            path.append(segment.text());
                         }
                     }
 
-                    // append the new path info
-                    var path_info = builder.toString();
-                    if (!path_info.isEmpty()) {
-                        if (path_info.charAt(0) != '/' && path.charAt(path.length() - 1) != '/') {
-                            path.append('/');
-                        }
-                        path.append(path_info);
+                    if (path.length() > path_info_start &&
+                        path.charAt(path_info_start) != '/' &&
+                        path.charAt(path_info_start - 1) != '/') {
+                        path.insert(path_info_start, '/');
                     }
 
                     break;
                 }
             }
         }
+    }
 
-        var fragment = "";
+    private String generateFragment() {
         if (fragment_ != null) {
-            fragment = "#" + StringUtils.encodeUrl(fragment_);
+            return "#" + StringUtils.encodeUrl(fragment_);
         }
-
-        return new Segments(path.toString(), parameters, fragment);
-    }
-
-    /**
-     * Generates the string version for the current state of the {@code UrlBuilder}.
-     *
-     * @return the string of the URL that's being built
-     * @since 1.0
-     */
-    public String toString() {
-        var segments = generateSegments();
-
-        final var url = new StringBuilder(segments.path);
-        segments.appendQueryParameters(url);
-        url.append(segments.fragment);
-
-        return url.toString();
+        return "";
     }
 }
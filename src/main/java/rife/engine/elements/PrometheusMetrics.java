@@ -0,0 +1,47 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine.elements;
+
+import rife.engine.Context;
+import rife.engine.Element;
+import rife.engine.metrics.ProcessingMetrics;
+
+/**
+ * Standard element that exposes the collected request processing metrics
+ * in the Prometheus text exposition format.
+ * <p>
+ * For example:
+ * <pre>
+ * var metrics = new ProcessingMetrics();
+ * processingMonitor(metrics);
+ * get("/metrics", new PrometheusMetrics(metrics));
+ * </pre>
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see ProcessingMetrics
+ * @since 1.9.2
+ */
+public class PrometheusMetrics implements Element {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=UTF-8";
+
+    private final ProcessingMetrics metrics_;
+
+    /**
+     * Constructs the element with the metrics to expose.
+     *
+     * @param metrics the metrics registry
+     * @since 1.9.2
+     */
+    public PrometheusMetrics(ProcessingMetrics metrics) {
+        metrics_ = metrics;
+    }
+
+    public void process(Context c)
+    throws Exception {
+        c.preventCaching();
+        c.setContentType(CONTENT_TYPE);
+        c.print(metrics_.toPrometheus());
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values with a bounded relative error.
+ * <p>
+ * Similar to HDR histograms, each power of two range is divided into a
+ * fixed number of linear sub-buckets, which keeps the relative error of the
+ * reported values within about 6% while only using a few kilobytes of memory.
+ * Values larger than {@link #MAXIMUM_VALUE} are recorded in the highest bucket.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAXIMUM_BITS = 40;
+
+    /**
+     * The largest value that can be distinguished, in nanoseconds this is about 18 minutes.
+     */
+    public static final long MAXIMUM_VALUE = (1L << MAXIMUM_BITS) - 1;
+
+    private static final int BUCKET_COUNT = bucketIndex(MAXIMUM_VALUE) + 1;
+
+    private final AtomicLongArray buckets_ = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count_ = new LongAdder();
+    private final LongAdder sum_ = new LongAdder();
+    private final AtomicLong max_ = new AtomicLong();
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        var shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        var shift = index / SUB_BUCKET_COUNT - 1;
+        var sub_bucket = (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT);
+        return ((sub_bucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value to record, negative values are recorded as {@code 0}
+     * @since 1.9.2
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        buckets_.incrementAndGet(bucketIndex(Math.min(value, MAXIMUM_VALUE)));
+        count_.increment();
+        sum_.add(value);
+        max_.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Retrieves the number of recorded values.
+     *
+     * @return the count
+     * @since 1.9.2
+     */
+    public long count() {
+        return count_.sum();
+    }
+
+    /**
+     * Retrieves the sum of all recorded values.
+     *
+     * @return the sum
+     * @since 1.9.2
+     */
+    public long sum() {
+        return sum_.sum();
+    }
+
+    /**
+     * Retrieves the largest recorded value.
+     *
+     * @return the maximum
+     * @since 1.9.2
+     */
+    public long max() {
+        return max_.get();
+    }
+
+    /**
+     * Retrieves the number of recorded values that are smaller than or equal
+     * to a value, within the precision of the histogram.
+     * <p>
+     * The bucket that contains the value is counted in full, values that were
+     * recorded in the same bucket but are slightly larger are thus included.
+     *
+     * @param value the upper bound
+     * @return the cumulative count
+     * @since 1.9.2
+     */
+    public long countAtOrBelow(long value) {
+        if (value < 0) {
+            return 0;
+        }
+
+        var last = bucketIndex(Math.min(value, MAXIMUM_VALUE));
+        var result = 0L;
+        for (var i = 0; i <= last; i++) {
+            result += buckets_.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the value below which a percentage of the recorded values fall.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 100}
+     * @return the value at the percentile, within the precision of the histogram
+     * @since 1.9.2
+     */
+    public long valueAtPercentile(double percentile) {
+        var total = 0L;
+        var counts = new long[BUCKET_COUNT];
+        for (var i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets_.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        var target = Math.max(1, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        var cumulative = 0L;
+        for (var i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return Math.min(bucketUpperBound(i), max());
+            }
+        }
+        return max();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine.metrics;
+
+import rife.engine.ProcessingMonitor;
+import rife.engine.ProcessingPhase;
+import rife.engine.ProcessingSample;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory registry of request processing metrics, grouped by route
+ * and processing phase.
+ * <p>
+ * Register an instance with {@link rife.engine.Site#processingMonitor}
+ * and expose it through the {@link rife.engine.elements.PrometheusMetrics}
+ * element or by inspecting the collected {@link #phases() phase metrics}.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public class ProcessingMetrics implements ProcessingMonitor {
+    /**
+     * The default upper bounds in seconds of the histogram buckets that are exposed in the Prometheus format.
+     */
+    public static final double[] DEFAULT_BUCKETS = {0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    /**
+     * The metrics of one phase of one route.
+     *
+     * @param route          the name of the route
+     * @param phase          the processing phase
+     * @param durations      the histogram of the durations in nanoseconds
+     * @param bytesWritten   the total number of bytes written
+     * @param allocatedBytes the total number of bytes allocated
+     * @param exceptions     the number of exceptions by exception class name
+     * @since 1.9.2
+     */
+    public record PhaseMetrics(String route, ProcessingPhase phase, LatencyHistogram durations,
+                               LongAdder bytesWritten, LongAdder allocatedBytes, Map<String, LongAdder> exceptions) {
+    }
+
+    private record Key(String route, ProcessingPhase phase) {
+    }
+
+    private final boolean measureAllocations_;
+    private final ConcurrentHashMap<Key, PhaseMetrics> phases_ = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new metrics registry that doesn't measure allocations.
+     *
+     * @since 1.9.2
+     */
+    public ProcessingMetrics() {
+        this(false);
+    }
+
+    /**
+     * Creates a new metrics registry.
+     *
+     * @param measureAllocations {@code true} if the bytes allocated by the
+     *                           request threads should be measured; or
+     *                           {@code false} otherwise
+     * @since 1.9.2
+     */
+    public ProcessingMetrics(boolean measureAllocations) {
+        measureAllocations_ = measureAllocations;
+    }
+
+    public boolean measureAllocations() {
+        return measureAllocations_;
+    }
+
+    public void processed(ProcessingSample sample) {
+        var metrics = phases_.computeIfAbsent(new Key(sample.routeName(), sample.phase()),
+            k -> new PhaseMetrics(k.route(), k.phase(), new LatencyHistogram(), new LongAdder(), new LongAdder(), new ConcurrentHashMap<>()));
+        metrics.durations().record(sample.durationNanos());
+        metrics.bytesWritten().add(sample.bytesWritten());
+        if (sample.allocatedBytes() > 0) {
+            metrics.allocatedBytes().add(sample.allocatedBytes());
+        }
+        if (sample.exception() != null) {
+            metrics.exceptions().computeIfAbsent(sample.exception().getName(), k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Retrieves the metrics of all the phases that have been measured,
+     * sorted by route name and phase.
+     *
+     * @return the list of phase metrics
+     * @since 1.9.2
+     */
+    public List<PhaseMetrics> phases() {
+        var result = new ArrayList<>(phases_.values());
+        result.sort(Comparator.comparing(PhaseMetrics::route).thenComparing(PhaseMetrics::phase));
+        return result;
+    }
+
+    /**
+     * Retrieves the metrics of one phase of a route.
+     *
+     * @param route the name of the route
+     * @param phase the processing phase
+     * @return the phase metrics; or
+     * {@code null} if this phase of the route hasn't been measured
+     * @since 1.9.2
+     */
+    public PhaseMetrics phase(String route, ProcessingPhase phase) {
+        return phases_.get(new Key(route, phase));
+    }
+
+    /**
+     * Removes all the collected metrics.
+     *
+     * @since 1.9.2
+     */
+    public void clear() {
+        phases_.clear();
+    }
+
+    /**
+     * Formats the collected metrics in the Prometheus text exposition format
+     * with the {@link #DEFAULT_BUCKETS default buckets}.
+     *
+     * @return the formatted metrics
+     * @since 1.9.2
+     */
+    public String toPrometheus() {
+        return toPrometheus(DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Formats the collected metrics in the Prometheus text exposition format.
+     *
+     * @param buckets the upper bounds in seconds of the histogram buckets
+     * @return the formatted metrics
+     * @since 1.9.2
+     */
+    public String toPrometheus(double[] buckets) {
+        var phases = phases();
+        var out = new StringBuilder();
+
+        out.append("# HELP rife_processing_duration_seconds Duration of the request processing phases.\n");
+        out.append("# TYPE rife_processing_duration_seconds histogram\n");
+        for (var metrics : phases) {
+            var labels = labels(metrics);
+            var histogram = metrics.durations();
+            for (var bucket : buckets) {
+                out.append("rife_processing_duration_seconds_bucket{").append(labels)
+                    .append(",le=\"").append(bucket).append("\"} ")
+                    .append(histogram.countAtOrBelow((long) (bucket * 1_000_000_000L))).append('\n');
+            }
+            out.append("rife_processing_duration_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ").append(histogram.count()).append('\n');
+            out.append("rife_processing_duration_seconds_sum{").append(labels).append("} ").append(histogram.sum() / 1_000_000_000.0).append('\n');
+            out.append("rife_processing_duration_seconds_count{").append(labels).append("} ").append(histogram.count()).append('\n');
+        }
+
+        out.append("# HELP rife_processing_bytes_written_total Bytes sent to the client during the request processing phases.\n");
+        out.append("# TYPE rife_processing_bytes_written_total counter\n");
+        for (var metrics : phases) {
+            out.append("rife_processing_bytes_written_total{").append(labels(metrics)).append("} ").append(metrics.bytesWritten().sum()).append('\n');
+        }
+
+        if (measureAllocations_) {
+            out.append("# HELP rife_processing_allocated_bytes_total Bytes allocated during the request processing phases.\n");
+            out.append("# TYPE rife_processing_allocated_bytes_total counter\n");
+            for (var metrics : phases) {
+                out.append("rife_processing_allocated_bytes_total{").append(labels(metrics)).append("} ").append(metrics.allocatedBytes().sum()).append('\n');
+            }
+        }
+
+        out.append("# HELP rife_processing_exceptions_total Exceptions thrown during the request processing phases.\n");
+        out.append("# TYPE rife_processing_exceptions_total counter\n");
+        for (var metrics : phases) {
+            var exceptions = new TreeMap<>(metrics.exceptions());
+            for (var exception : exceptions.entrySet()) {
+                out.append("rife_processing_exceptions_total{").append(labels(metrics))
+                    .append(",exception=\"").append(escapeLabel(exception.getKey())).append("\"} ")
+                    .append(exception.getValue().sum()).append('\n');
+            }
+        }
+
+        return out.toString();
+    }
+
+    private static String labels(PhaseMetrics metrics) {
+        return "route=\"" + escapeLabel(metrics.route()) + "\",phase=\"" + metrics.phase().name().toLowerCase() + "\"";
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.instrument;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Decides which classes are excluded from bytecode instrumentation.
+ * <p>The decision is made through an index of package and class name
+ * prefixes, which is organized as a tree of package segments. A class
+ * name is only walked once, segment by segment, and the longest prefix
+ * that matches it decides whether it's excluded or included.
+ * <p>By default, the classes of the JDK, of common libraries and of RIFE2
+ * itself are excluded. Applications can limit the instrumentation to their
+ * own packages with the {@value #PROPERTY_INCLUDE} system property, all
+ * the classes that don't match an included prefix are then excluded.
+ * Additional prefixes can be excluded with the {@value #PROPERTY_EXCLUDE}
+ * system property. Both properties contain comma-separated package or
+ * class name prefixes, for example:
+ * <pre>-Drife.instrument.include=com.example.app.,com.example.shared.</pre>
+ * <p>The same lists can also be provided as arguments of the
+ * {@link RifeAgent}, for example:
+ * <pre>-javaagent:rife2-[version]-agent.jar=include=com.example.app.;exclude=com.example.app.generated.</pre>
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public class ClassExclusions {
+    public static final String PROPERTY_INCLUDE = "rife.instrument.include";
+    public static final String PROPERTY_EXCLUDE = "rife.instrument.exclude";
+
+    private static final String[] DEFAULT_EXCLUDED = {
+        "apple/security/",
+        "jakarta/",
+        "java/",
+        "javax/",
+        "jdk/",
+        "com/esotericsoftware/",
+        "com/google/",
+        "com/mysql/",
+        "com/sun/",
+        "net/rubygrapefruit/",
+        "net/sourceforge/htmlunit/",
+        "oracle/",
+        "org/antlr/",
+        "org/apache/",
+        "org/apiguardian/",
+        "org/eclipse/jetty/",
+        "org/hamcrest/",
+        "org/h2/",
+        "org/hsqldb/",
+        "org/gradle/",
+        "org/junit/",
+        "org/opentest4j/",
+        "org/postgresql/",
+        "org/slf4j/",
+        "org/xml/",
+        "org/w3c/",
+        "sun/",
+        "worker/org/gradle/",
+        "rife/"};
+    private static final String[] DEFAULT_INCLUDED = {
+        "rife/Hello",
+        "rife/models/",
+        "rife/engine/continuations/Test"};
+
+    private static volatile ClassExclusions instance_ = null;
+
+    private final Node root_ = new Node();
+
+    private static class Node {
+        private final List<String> segments_ = new ArrayList<>();
+        private final List<Node> children_ = new ArrayList<>();
+        private final List<String> namePrefixes_ = new ArrayList<>();
+        private final List<Boolean> nameDecisions_ = new ArrayList<>();
+        private Boolean excluded_ = null;
+
+        private Node child(String segment) {
+            var index = segments_.indexOf(segment);
+            if (index != -1) {
+                return children_.get(index);
+            }
+
+            var child = new Node();
+            segments_.add(segment);
+            children_.add(child);
+            return child;
+        }
+
+        // matches the segment in place, without creating a substring of the
+        // class name, the number of children of each node is small
+        private Node find(String className, int start, int end) {
+            var length = end - start;
+            for (var i = 0; i < segments_.size(); i++) {
+                var segment = segments_.get(i);
+                if (segment.length() == length &&
+                    className.regionMatches(start, segment, 0, length)) {
+                    return children_.get(i);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Creates a new index with the default exclusions, and the provided
+     * includes and excludes.
+     *
+     * @param included the package or class name prefixes that should be
+     *                 instrumented, when this isn't empty all the other
+     *                 classes are excluded; or {@code null} if all classes
+     *                 that aren't excluded should be instrumented
+     * @param excluded the additional package or class name prefixes that
+     *                 should be excluded; or {@code null} if only the default
+     *                 exclusions apply
+     * @since 1.9.2
+     */
+    public ClassExclusions(Collection<String> included, Collection<String> excluded) {
+        root_.excluded_ = included != null && !included.isEmpty();
+
+        for (var prefix : DEFAULT_EXCLUDED) {
+            add(prefix, true);
+        }
+        for (var prefix : DEFAULT_INCLUDED) {
+            add(prefix, false);
+        }
+        if (included != null) {
+            for (var prefix : included) {
+                add(prefix, false);
+            }
+        }
+        if (excluded != null) {
+            for (var prefix : excluded) {
+                add(prefix, true);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the shared index that is used by all the transformers.
+     * <p>The index is created from the system properties the first time
+     * it's used, unless it has been {@link #configure configured} before.
+     *
+     * @return the shared index
+     * @since 1.9.2
+     */
+    public static ClassExclusions instance() {
+        var instance = instance_;
+        if (null == instance) {
+            synchronized (ClassExclusions.class) {
+                instance = instance_;
+                if (null == instance) {
+                    instance = new ClassExclusions(
+                        parsePrefixes(System.getProperty(PROPERTY_INCLUDE)),
+                        parsePrefixes(System.getProperty(PROPERTY_EXCLUDE)));
+                    instance_ = instance;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Replaces the shared index with one that combines the system
+     * properties and the provided prefixes.
+     *
+     * @param included the comma-separated prefixes that should be
+     *                 instrumented, in addition to those of the system property;
+     *                 or {@code null}
+     * @param excluded the comma-separated prefixes that should be excluded,
+     *                 in addition to those of the system property; or
+     *                 {@code null}
+     * @since 1.9.2
+     */
+    public static void configure(String included, String excluded) {
+        var included_list = parsePrefixes(System.getProperty(PROPERTY_INCLUDE));
+        included_list.addAll(parsePrefixes(included));
+        var excluded_list = parsePrefixes(System.getProperty(PROPERTY_EXCLUDE));
+        excluded_list.addAll(parsePrefixes(excluded));
+
+        synchronized (ClassExclusions.class) {
+            instance_ = new ClassExclusions(included_list, excluded_list);
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of package or class name prefixes.
+     *
+     * @param prefixes the prefixes in the dotted or in the internal bytecode
+     *                 naming format; or {@code null}
+     * @return the list of prefixes in the internal bytecode naming format
+     * @since 1.9.2
+     */
+    public static List<String> parsePrefixes(String prefixes) {
+        var result = new ArrayList<String>();
+        if (null == prefixes) {
+            return result;
+        }
+
+        for (var prefix : prefixes.split(",")) {
+            prefix = prefix.trim();
+            if (!prefix.isEmpty()) {
+                result.add(prefix.replace('.', '/'));
+            }
+        }
+        return result;
+    }
+
+    private void add(String prefix, boolean excluded) {
+        var node = root_;
+        var start = 0;
+        int slash;
+        while ((slash = prefix.indexOf('/', start)) != -1) {
+            node = node.child(prefix.substring(start, slash));
+            start = slash + 1;
+        }
+
+        if (start == prefix.length()) {
+            node.excluded_ = excluded;
+        } else {
+            // prefixes that don't end with a package separator match the
+            // start of the class names in the package of their node
+            var name_prefix = prefix.substring(start);
+            var index = node.namePrefixes_.indexOf(name_prefix);
+            if (index != -1) {
+                node.nameDecisions_.set(index, excluded);
+            } else {
+                node.namePrefixes_.add(name_prefix);
+                node.nameDecisions_.add(excluded);
+            }
+        }
+    }
+
+    /**
+     * Indicates whether a class is excluded from instrumentation.
+     *
+     * @param className the name of the class in the internal bytecode
+     *                  naming format
+     * @return {@code true} if the class is excluded; or
+     * <p>{@code false} otherwise
+     * @since 1.9.2
+     */
+    public boolean isExcluded(String className) {
+        var node = root_;
+        boolean result = node.excluded_;
+        var start = 0;
+        while (true) {
+            var slash = className.indexOf('/', start);
+
+            // the class name prefixes of a node are longer than its package,
+            // the longest one that matches decides
+            if (!node.namePrefixes_.isEmpty()) {
+                var length = 0;
+                for (var i = 0; i < node.namePrefixes_.size(); i++) {
+                    var name_prefix = node.namePrefixes_.get(i);
+                    if (name_prefix.length() > length &&
+                        className.startsWith(name_prefix, start)) {
+                        length = name_prefix.length();
+                        result = node.nameDecisions_.get(i);
+                    }
+                }
+            }
+
+            if (-1 == slash) {
+                return result;
+            }
+
+            node = node.find(className, start, slash);
+            if (null == node) {
+                return result;
+            }
+            if (node.excluded_ != null) {
+                result = node.excluded_;
+            }
+            start = slash + 1;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.instrument;
+
+import rife.asm.ClassReader;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes the class hierarchy that is analyzed during bytecode
+ * instrumentation, so that the bytes of a parent class are only retrieved
+ * and parsed once for all the classes and all the detections that need it.
+ * <p>Each class loader, or other provider of class bytes, has its own
+ * hierarchy that is released when the class loader is garbage collected.
+ * Bytes providers that are created for a single class can
+ * {@link #share share} the hierarchy of their class loader.
+ * Only the header of the classes is parsed, which is their super class and
+ * the interfaces they implement directly.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public class ClassHierarchy {
+    private static final String OBJECT_INTERNAL_NAME = "java/lang/Object";
+
+    private static final Map<Object, ClassHierarchy> HIERARCHIES = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Map<Object, ClassLoader> SHARED_OWNERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Retrieves the bytes of classes that are part of the hierarchy.
+     *
+     * @since 1.9.2
+     */
+    @FunctionalInterface
+    public interface BytesResolver {
+        /**
+         * Retrieves the bytes of a class.
+         *
+         * @param internalName the name of the class in the internal bytecode
+         *                     naming format
+         * @return the bytes of the class; or
+         * <p>{@code null} if the class couldn't be found
+         * @throws ClassNotFoundException when an error occurred while
+         *                                retrieving the bytes
+         * @since 1.9.2
+         */
+        byte[] getClassBytes(String internalName)
+        throws ClassNotFoundException;
+    }
+
+    /**
+     * The header of a class.
+     *
+     * @param superName  the internal name of the super class; or
+     *                   {@code null} for {@code java.lang.Object}
+     * @param interfaces the internal names of the interfaces that are
+     *                   directly implemented
+     * @since 1.9.2
+     */
+    public record ClassHeader(String superName, String[] interfaces) {
+        /**
+         * Parses the header of a class.
+         *
+         * @param bytes the bytes of the class
+         * @return the header of the class
+         * @since 1.9.2
+         */
+        public static ClassHeader parse(byte[] bytes) {
+            // the reader only parses the constant pool until the header is accessed
+            var reader = new ClassReader(bytes);
+            return new ClassHeader(reader.getSuperName(), reader.getInterfaces());
+        }
+
+        /**
+         * Indicates whether the class directly implements an interface.
+         *
+         * @param interfaceName the internal name of the interface
+         * @return {@code true} if the interface is directly implemented; or
+         * <p>{@code false} otherwise
+         * @since 1.9.2
+         */
+        public boolean hasInterface(String interfaceName) {
+            for (var name : interfaces) {
+                if (name.equals(interfaceName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final ConcurrentHashMap<String, ClassHeader> headers_ = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Boolean> implementations_ = new ConcurrentHashMap<>();
+
+    /**
+     * Retrieves the class hierarchy of a class loader or another provider
+     * of class bytes.
+     *
+     * @param owner the class loader or the bytes provider
+     * @return the class hierarchy of the owner
+     * @since 1.9.2
+     */
+    public static ClassHierarchy instance(Object owner) {
+        if (null == owner) throw new IllegalArgumentException("owner can't be null");
+
+        var loader = SHARED_OWNERS.get(owner);
+        if (loader != null) {
+            owner = loader;
+        }
+
+        return HIERARCHIES.computeIfAbsent(owner, k -> new ClassHierarchy());
+    }
+
+    /**
+     * Makes a bytes provider use the class hierarchy of a class loader.
+     * <p>This should be used for bytes providers that are created for each
+     * class, their hierarchy would otherwise only be memoized for a single
+     * class. The association is released when the bytes provider is
+     * garbage collected.
+     *
+     * @param owner  the bytes provider
+     * @param loader the class loader whose hierarchy should be used
+     * @since 1.9.2
+     */
+    public static void share(Object owner, ClassLoader loader) {
+        if (null == owner) throw new IllegalArgumentException("owner can't be null");
+        if (null == loader) throw new IllegalArgumentException("loader can't be null");
+
+        SHARED_OWNERS.put(owner, loader);
+    }
+
+    /**
+     * Retrieves the header of a class.
+     *
+     * @param internalName the name of the class in the internal bytecode
+     *                     naming format
+     * @param resolver     the resolver that will be used if the class isn't
+     *                     known yet
+     * @return the header of the class; or
+     * <p>{@code null} if the class couldn't be found
+     * @throws ClassNotFoundException when an error occurred while
+     *                                retrieving the bytes of the class
+     * @since 1.9.2
+     */
+    public ClassHeader getHeader(String internalName, BytesResolver resolver)
+    throws ClassNotFoundException {
+        var header = headers_.get(internalName);
+        if (null == header) {
+            var bytes = resolver.getClassBytes(internalName);
+            if (null == bytes) {
+                return null;
+            }
+            header = ClassHeader.parse(bytes);
+            headers_.put(internalName, header);
+        }
+        return header;
+    }
+
+    /**
+     * Indicates whether a class or one of its super classes directly
+     * implements an interface.
+     *
+     * @param internalName  the name of the class in the internal bytecode
+     *                      naming format
+     * @param interfaceName the internal name of the interface
+     * @param resolver      the resolver that will be used for the classes
+     *                      that aren't known yet
+     * @return {@code true} if the interface is implemented; or
+     * <p>{@code false} otherwise
+     * @throws ClassNotFoundException when an error occurred while
+     *                                retrieving the bytes of a class
+     * @since 1.9.2
+     */
+    public boolean implementsInterface(String internalName, String interfaceName, BytesResolver resolver)
+    throws ClassNotFoundException {
+        if (null == internalName ||
+            OBJECT_INTERNAL_NAME.equals(internalName)) {
+            return false;
+        }
+
+        var key = internalName + ' ' + interfaceName;
+        var result = implementations_.get(key);
+        if (null == result) {
+            var header = getHeader(internalName, resolver);
+            result = header != null &&
+                     (header.hasInterface(interfaceName) ||
+                      implementsInterface(header.superName(), interfaceName, resolver));
+            implementations_.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all the memoized classes, this should be used when classes
+     * have been reloaded.
+     *
+     * @since 1.9.2
+     */
+    public void clear() {
+        headers_.clear();
+        implementations_.clear();
+    }
+}
@@ -41,6 +41,9 @@ public class ClassInterfaceDetector {
 
     /**
      * Perform the detection.
+     * <p>The hierarchy of the parent classes is memoized for the bytes
+     * provider, or for the class loader it {@link ClassHierarchy#share shares}
+     * its hierarchy with, unless the class should be automatically reloaded.
      *
      * @param bytes        the bytecode of the class that is being analyzed
      * @param doAutoReload indicator if the class should be automatically
@@ -50,6 +53,24 @@ public class ClassInterfaceDetector {
      * <p>{@code false} otherwise
      */
     public boolean detect(byte[] bytes, boolean doAutoReload)
+    throws ClassNotFoundException {
+        if (doAutoReload) {
+            return detectUncached(bytes);
+        }
+
+        var header = ClassHierarchy.ClassHeader.parse(bytes);
+        if (null == header.superName()) {
+            return false;
+        }
+        if (header.hasInterface(interfaceNameInternal_)) {
+            return true;
+        }
+
+        return ClassHierarchy.instance(bytesProvider_).implementsInterface(header.superName(), interfaceNameInternal_,
+            name -> bytesProvider_.getClassBytes(name.replace('/', '.'), false));
+    }
+
+    private boolean detectUncached(byte[] bytes)
     throws ClassNotFoundException {
         DetectionClassVisitor visitor = new DetectionClassVisitor();
         ClassReader detection_reader = null;
@@ -69,7 +90,7 @@ public class ClassInterfaceDetector {
 
             // get the parent's class' bytecode
             if (!visitor.isClassOrInterface()) {
-                bytes = bytesProvider_.getClassBytes(visitor.getSuperName(), doAutoReload);
+                bytes = bytesProvider_.getClassBytes(visitor.getSuperName(), true);
             }
         }
 
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.instrument;
+
+import rife.continuations.ContinuationConfigInstrument;
+
+import java.io.IOException;
+import java.lang.instrument.IllegalClassFormatException;
+import java.security.ProtectionDomain;
+import java.util.List;
+
+/**
+ * A bytecode transformer that chains several transformers as a single
+ * pipeline.
+ * <p>The check that excludes core packages and classes that were
+ * instrumented ahead of time is only performed once for each class, and
+ * the bytes that are produced by a transformer are handed directly to the
+ * next one.
+ * <p>The transformed classes can be persisted in a
+ * {@link TransformedClassCache}, so that they are reused the next time the
+ * application starts up.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public class CombinedTransformer extends RifeTransformer {
+    private final TransformedClassCache cache_;
+    private final List<RifeTransformer> transformers_;
+    private final String configuration_;
+
+    /**
+     * Creates a new combined transformer.
+     *
+     * @param transformers the transformers that will be applied in order
+     * @since 1.9.2
+     */
+    public CombinedTransformer(RifeTransformer... transformers) {
+        this(null, transformers);
+    }
+
+    /**
+     * Creates a new combined transformer that caches the transformed
+     * classes.
+     *
+     * @param cache        the cache of the transformed classes; or
+     *                     {@code null} if the classes shouldn't be cached
+     * @param transformers the transformers that will be applied in order
+     * @since 1.9.2
+     */
+    public CombinedTransformer(TransformedClassCache cache, RifeTransformer... transformers) {
+        if (null == transformers) throw new IllegalArgumentException("transformers can't be null");
+
+        cache_ = cache;
+        transformers_ = List.of(transformers);
+
+        // the transformers and their order describe the transformation
+        var configuration = new StringBuilder(CombinedTransformer.class.getName());
+        for (var transformer : transformers_) {
+            configuration.append(',').append(transformer.getClass().getName());
+        }
+        configuration.append(',').append(ContinuationConfigInstrument.CAPTURE_LOCALS_ON_PAUSE_PROPERTY)
+            .append('=').append(Boolean.getBoolean(ContinuationConfigInstrument.CAPTURE_LOCALS_ON_PAUSE_PROPERTY));
+        configuration_ = configuration.toString();
+    }
+
+    protected byte[] transformRife(ClassLoader loader, String classNameInternal, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer)
+    throws IllegalClassFormatException {
+        if (null == cache_) {
+            return transformAll(loader, classNameInternal, classBeingRedefined, protectionDomain, classfileBuffer);
+        }
+
+        // classes of the bootstrap class loader have no resolvable hierarchy
+        ClassHierarchy hierarchy = null;
+        ClassHierarchy.BytesResolver resolver = null;
+        if (loader != null) {
+            hierarchy = ClassHierarchy.instance(loader);
+            resolver = name -> {
+                try (var stream = loader.getResourceAsStream(name + ".class")) {
+                    return null == stream ? null : stream.readAllBytes();
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            };
+        }
+
+        return cache_.transform(configuration_, classNameInternal, classfileBuffer, hierarchy, resolver,
+            bytes -> transformAll(loader, classNameInternal, classBeingRedefined, protectionDomain, bytes));
+    }
+
+    private byte[] transformAll(ClassLoader loader, String classNameInternal, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer)
+    throws IllegalClassFormatException {
+        var result = classfileBuffer;
+        for (var transformer : transformers_) {
+            var transformed = transformer.transformRife(loader, classNameInternal, classBeingRedefined, protectionDomain, result);
+            if (transformed != null) {
+                result = transformed;
+            }
+        }
+        return result;
+    }
+}
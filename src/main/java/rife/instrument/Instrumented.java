@@ -0,0 +1,23 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.instrument;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks classes that have been instrumented ahead of time by the
+ * {@link RifeInstrumenter}.
+ * <p>The {@link RifeAgent} doesn't analyze or transform the classes that
+ * carry this marker anymore. It's only present in the bytecode and isn't
+ * retained at runtime.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Instrumented {
+}
@@ -25,7 +25,12 @@ public class LazyLoadTransformer extends RifeTransformer {
         boolean is_constrained = false;
 
         try {
-            is_constrained = new ConstrainedDetector(new ClassBytesLoader(loader)).isConstrained(classname_dotted_interned, classfileBuffer);
+            var bytes_loader = new ClassBytesLoader(loader);
+            // memoize the analyzed hierarchy for all the classes of the loader
+            if (loader != null) {
+                ClassHierarchy.share(bytes_loader, loader);
+            }
+            is_constrained = new ConstrainedDetector(bytes_loader).isConstrained(classname_dotted_interned, classfileBuffer);
 
             if (is_constrained) {
                 return LazyLoadAccessorsBytecodeTransformer.addLazyLoadToBytes(classfileBuffer);
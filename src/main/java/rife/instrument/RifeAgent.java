@@ -15,6 +15,13 @@ import java.lang.instrument.Instrumentation;
  * <pre>java -javaagent:/path/to/rife2-agent-[version].jar com.your.mainClass</pre>
  * <p>The agent is packaged in its own jar file which should correspond to the
  * RIFE2 version that you are using in your application.
+ * <p>Classes that were instrumented ahead of time by the
+ * {@link RifeInstrumenter} are skipped by the agent.
+ * <p>The packages that are instrumented can be limited with agent
+ * arguments or system properties, as described in {@link ClassExclusions}.
+ * <p>The transformed classes can be persisted across restarts by setting
+ * the {@value TransformedClassCache#PROPERTY_CACHE_DIRECTORY} system
+ * property, as described in {@link TransformedClassCache}.
  *
  * @author Geert Bevin (gbevin[remove] at uwyn dot com)
  * @since 1.0
@@ -25,11 +32,48 @@ public class RifeAgent {
     public static void premain(String agentArguments, Instrumentation instrumentation) {
         System.getProperties().setProperty(AGENT_ACTIVE_PROPERTY, String.valueOf(true));
 
-        instrumentation.addTransformer(new InitialTransformer());
-        instrumentation.addTransformer(new EngineContinuationsTransformer());
-        instrumentation.addTransformer(new WorkflowContinuationsTransformer());
-        instrumentation.addTransformer(new MetaDataTransformer());
-        instrumentation.addTransformer(new LazyLoadTransformer());
-        instrumentation.addTransformer(new FinalTransformer());
+        configureExclusions(agentArguments);
+
+        instrumentation.addTransformer(createTransformer());
+    }
+
+    private static void configureExclusions(String agentArguments) {
+        if (null == agentArguments || agentArguments.isBlank()) {
+            return;
+        }
+
+        // the arguments are semicolon-separated include and exclude lists
+        String included = null;
+        String excluded = null;
+        for (var argument : agentArguments.split(";")) {
+            argument = argument.trim();
+            if (argument.startsWith("include=")) {
+                included = argument.substring("include=".length());
+            } else if (argument.startsWith("exclude=")) {
+                excluded = argument.substring("exclude=".length());
+            }
+        }
+        ClassExclusions.configure(included, excluded);
+    }
+
+    /**
+     * Creates the transformer that performs all the instrumentation of the
+     * agent in a single pipeline.
+     * <p>The transformed classes are cached when the
+     * {@value TransformedClassCache#PROPERTY_CACHE_DIRECTORY} system property
+     * is set.
+     *
+     * @return the combined transformer
+     * @since 1.9.2
+     */
+    public static CombinedTransformer createTransformer() {
+        return new CombinedTransformer(
+            TransformedClassCache.fromSystemProperty(),
+            new InitialTransformer(),
+            new EngineContinuationsTransformer(),
+            new WorkflowContinuationsTransformer(),
+            new MetaDataTransformer(),
+            new LazyLoadTransformer(),
+            new FinalTransformer());
     }
 }
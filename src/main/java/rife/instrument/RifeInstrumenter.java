@@ -0,0 +1,349 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.instrument;
+
+import rife.asm.ClassReader;
+import rife.asm.ClassVisitor;
+import rife.asm.ClassWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.instrument.IllegalClassFormatException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import static rife.asm.Opcodes.ASM9;
+
+/**
+ * Performs the bytecode instrumentation of the {@link RifeAgent} ahead of
+ * time on compiled classes, so that it doesn't have to happen while the
+ * application starts up.
+ * <p>The continuations, meta-data and lazy-load transformations are
+ * applied to all the classes that the agent would transform, and the
+ * classes that were modified by any of them are marked as
+ * {@link Instrumented}. The agent skips marked classes without analyzing
+ * them, it can still be used for the classes that weren't instrumented
+ * ahead of time. Classes that weren't modified are left untouched.
+ * <p>The classes are analyzed with a class loader that should be able to
+ * load the classes that are instrumented as well as all their
+ * dependencies.
+ * <p>The instrumenter can also be executed from the command line, for
+ * example from a build tool:
+ * <pre>java -cp rife2-[version].jar:[dependencies] rife.instrument.RifeInstrumenter -cp [dependencies] build/main build/instrumented</pre>
+ * <p>The source can be a directory with class files or a jar file, the
+ * destination can be the same as the source to instrument in place.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public class RifeInstrumenter {
+    public static final String MARKER_DESCRIPTOR = "L" + Instrumented.class.getName().replace('.', '/') + ";";
+
+    private static final byte[] MARKER_BYTES = MARKER_DESCRIPTOR.getBytes(StandardCharsets.UTF_8);
+    private static final String CLASS_SUFFIX = ".class";
+
+    private final ClassLoader classLoader_;
+    private final CombinedTransformer transformer_;
+
+    /**
+     * Creates a new instrumenter.
+     *
+     * @param classLoader the class loader that will be used to analyze the
+     *                    instrumented classes
+     * @since 1.9.2
+     */
+    public RifeInstrumenter(ClassLoader classLoader) {
+        if (null == classLoader) throw new IllegalArgumentException("classLoader can't be null");
+
+        classLoader_ = classLoader;
+
+        // the transformations are applied in the same order as the agent
+        transformer_ = new CombinedTransformer(
+            new EngineContinuationsTransformer(),
+            new WorkflowContinuationsTransformer(),
+            new MetaDataTransformer(),
+            new LazyLoadTransformer());
+    }
+
+    /**
+     * Indicates whether the bytecode of a class has been marked as
+     * instrumented ahead of time.
+     * <p>This only looks for the marker in the constant pool of the class
+     * and doesn't parse the bytecode.
+     *
+     * @param bytes the bytecode of the class
+     * @return {@code true} if the class was instrumented ahead of time; or
+     * <p>{@code false} otherwise
+     * @since 1.9.2
+     */
+    public static boolean isInstrumented(byte[] bytes) {
+        if (null == bytes) {
+            return false;
+        }
+
+        // the marker descriptor is stored as a utf8 constant, preceded by
+        // its tag and its length
+        var length = MARKER_BYTES.length;
+        var last = bytes.length - length;
+        outer:
+        for (var i = 3; i <= last; i++) {
+            if (bytes[i] != MARKER_BYTES[0] ||
+                bytes[i - 3] != 1 ||
+                bytes[i - 2] != (byte) (length >>> 8) ||
+                bytes[i - 1] != (byte) length) {
+                continue;
+            }
+            for (var j = 1; j < length; j++) {
+                if (bytes[i + j] != MARKER_BYTES[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Instruments the bytecode of a single class.
+     *
+     * @param classNameInternal the name of the class in the internal bytecode
+     *                          naming format
+     * @param bytes             the bytecode of the class
+     * @return the instrumented and marked bytecode; or
+     * <p>the original bytecode if the class is excluded from instrumentation,
+     * was already instrumented, wasn't modified by any transformation or
+     * couldn't be instrumented
+     * @since 1.9.2
+     */
+    public byte[] instrument(String classNameInternal, byte[] bytes) {
+        if (null == classNameInternal) throw new IllegalArgumentException("classNameInternal can't be null");
+        if (null == bytes) throw new IllegalArgumentException("bytes can't be null");
+
+        if (classNameInternal.endsWith("module-info") ||
+            classNameInternal.endsWith("package-info") ||
+            RifeTransformer.isExcluded(classNameInternal) ||
+            isInstrumented(bytes)) {
+            return bytes;
+        }
+
+        byte[] result;
+        try {
+            result = transformer_.transform(classLoader_, classNameInternal, null, null, bytes);
+        } catch (IllegalClassFormatException e) {
+            // leave the class to the agent
+            return bytes;
+        }
+
+        // only the classes that were modified are marked, so that
+        // they're the only ones that are counted and rewritten
+        if (null == result ||
+            result == bytes ||
+            Arrays.equals(result, bytes)) {
+            return bytes;
+        }
+
+        return mark(result);
+    }
+
+    /**
+     * Instruments all the classes of a directory.
+     *
+     * @param source      the directory with the compiled classes
+     * @param destination the directory where the instrumented classes will
+     *                    be written, the other files are copied as-is; this
+     *                    can be the source directory
+     * @return the number of classes that were modified by the instrumentation
+     * @throws IOException when an error occurred while reading or writing
+     *                     the classes
+     * @since 1.9.2
+     */
+    public int instrumentDirectory(File source, File destination)
+    throws IOException {
+        if (null == source) throw new IllegalArgumentException("source can't be null");
+        if (null == destination) throw new IllegalArgumentException("destination can't be null");
+        if (!source.isDirectory()) throw new IllegalArgumentException("source '" + source + "' isn't a directory");
+
+        var source_path = source.toPath();
+        var destination_path = destination.toPath();
+        var in_place = Files.isSameFile(source_path, Files.createDirectories(destination_path));
+
+        List<Path> files;
+        try (var walk = Files.walk(source_path)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+
+        var count = 0;
+        for (var file : files) {
+            var relative = source_path.relativize(file);
+            var target = destination_path.resolve(relative);
+            var name = relative.toString().replace(File.separatorChar, '/');
+            if (!name.endsWith(CLASS_SUFFIX)) {
+                if (!in_place) {
+                    Files.createDirectories(target.getParent());
+                    Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                continue;
+            }
+
+            var bytes = Files.readAllBytes(file);
+            var instrumented = instrument(name.substring(0, name.length() - CLASS_SUFFIX.length()), bytes);
+            if (instrumented != bytes) {
+                count++;
+            }
+            if (instrumented != bytes || !in_place) {
+                Files.createDirectories(target.getParent());
+                Files.write(target, instrumented);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Instruments all the classes of a jar file.
+     *
+     * @param source      the jar file with the compiled classes
+     * @param destination the jar file that will be written with the
+     *                    instrumented classes, the other entries are copied
+     *                    as-is; this can be the source jar file
+     * @return the number of classes that were modified by the instrumentation
+     * @throws IOException when an error occurred while reading or writing
+     *                     the jar files
+     * @since 1.9.2
+     */
+    public int instrumentJar(File source, File destination)
+    throws IOException {
+        if (null == source) throw new IllegalArgumentException("source can't be null");
+        if (null == destination) throw new IllegalArgumentException("destination can't be null");
+
+        var destination_path = destination.getAbsoluteFile().toPath();
+        Files.createDirectories(destination_path.getParent());
+
+        // the jar is written to a temporary file first so that it can replace
+        // the source jar
+        var count = 0;
+        var tmp = Files.createTempFile(destination_path.getParent(), ".", ".jar");
+        try {
+            try (var jar = new JarFile(source);
+                 var out = new JarOutputStream(Files.newOutputStream(tmp))) {
+                var entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    var entry = entries.nextElement();
+
+                    byte[] bytes;
+                    try (var in = jar.getInputStream(entry)) {
+                        bytes = in.readAllBytes();
+                    }
+
+                    var name = entry.getName();
+                    if (!entry.isDirectory() &&
+                        name.endsWith(CLASS_SUFFIX) &&
+                        !name.startsWith("META-INF/")) {
+                        var instrumented = instrument(name.substring(0, name.length() - CLASS_SUFFIX.length()), bytes);
+                        if (instrumented != bytes) {
+                            count++;
+                            bytes = instrumented;
+                        }
+                    }
+
+                    var out_entry = new JarEntry(name);
+                    out_entry.setTime(entry.getTime());
+                    out.putNextEntry(out_entry);
+                    out.write(bytes);
+                    out.closeEntry();
+                }
+            }
+
+            Files.move(tmp, destination_path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        return count;
+    }
+
+    private static byte[] mark(byte[] bytes) {
+        // the reader is provided to the writer so that the unchanged parts of
+        // the class are copied without being processed
+        var reader = new ClassReader(bytes);
+        var writer = new ClassWriter(reader, 0);
+        reader.accept(new ClassVisitor(ASM9, writer) {
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                super.visit(version, access, name, signature, superName, interfaces);
+                var annotation = super.visitAnnotation(MARKER_DESCRIPTOR, false);
+                if (annotation != null) {
+                    annotation.visitEnd();
+                }
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Instruments a directory or a jar file from the command line.
+     * <p>The arguments are an optional {@code -cp} option with the
+     * classpath of the dependencies of the instrumented classes, the source
+     * directory or jar file and an optional destination, which is the source
+     * when it's not provided.
+     *
+     * @param arguments the command line arguments
+     * @throws Exception when an error occurred during the instrumentation
+     * @since 1.9.2
+     */
+    public static void main(String[] arguments)
+    throws Exception {
+        var classpath = new ArrayList<URL>();
+        var paths = new ArrayList<File>();
+        for (var i = 0; i < arguments.length; i++) {
+            if (("-cp".equals(arguments[i]) || "-classpath".equals(arguments[i])) &&
+                i + 1 < arguments.length) {
+                for (var entry : arguments[++i].split(File.pathSeparator)) {
+                    if (!entry.isEmpty()) {
+                        classpath.add(toUrl(new File(entry)));
+                    }
+                }
+            } else {
+                paths.add(new File(arguments[i]));
+            }
+        }
+
+        if (paths.isEmpty() || paths.size() > 2) {
+            System.err.println("Usage: java " + RifeInstrumenter.class.getName() + " [-cp classpath] source [destination]");
+            System.exit(1);
+        }
+
+        var source = paths.get(0);
+        var destination = paths.size() > 1 ? paths.get(1) : source;
+        classpath.add(0, toUrl(source));
+
+        try (var loader = new URLClassLoader(classpath.toArray(new URL[0]), RifeInstrumenter.class.getClassLoader())) {
+            var instrumenter = new RifeInstrumenter(loader);
+            int count;
+            if (source.isDirectory()) {
+                count = instrumenter.instrumentDirectory(source, destination);
+            } else {
+                count = instrumenter.instrumentJar(source, destination);
+            }
+            System.out.println("Instrumented " + count + " classes from " + source + " into " + destination);
+        }
+    }
+
+    private static URL toUrl(File file)
+    throws MalformedURLException {
+        return file.getAbsoluteFile().toURI().toURL();
+    }
+}
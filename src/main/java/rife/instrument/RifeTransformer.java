@@ -19,46 +19,31 @@ import java.security.ProtectionDomain;
 public abstract class RifeTransformer implements ClassFileTransformer {
     public final byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer)
     throws IllegalClassFormatException {
-        if (className.startsWith("apple/security/") ||
-            className.startsWith("jakarta/") ||
-            className.startsWith("java/") ||
-            className.startsWith("javax/") ||
-            className.startsWith("jdk/") ||
-            (className.startsWith("com/") &&
-             (className.startsWith("com/esotericsoftware/") ||
-              className.startsWith("com/google/") ||
-              className.startsWith("com/mysql/") ||
-              className.startsWith("com/sun/"))) ||
-            className.startsWith("net/rubygrapefruit/") ||
-            className.startsWith("net/sourceforge/htmlunit/") ||
-            className.startsWith("oracle/") ||
-            (className.startsWith("org/") &&
-             (className.startsWith("org/antlr/") ||
-              className.startsWith("org/apache/") ||
-              className.startsWith("org/apiguardian/") ||
-              className.startsWith("org/eclipse/jetty/") ||
-              className.startsWith("org/hamcrest/") ||
-              className.startsWith("org/h2/") ||
-              className.startsWith("org/hsqldb/") ||
-              className.startsWith("org/gradle/") ||
-              className.startsWith("org/junit/") ||
-              className.startsWith("org/opentest4j/") ||
-              className.startsWith("org/postgresql/") ||
-              className.startsWith("org/slf4j/") ||
-              className.startsWith("org/xml/") ||
-              className.startsWith("org/w3c/"))) ||
-            className.startsWith("sun/") ||
-            className.startsWith("worker/org/gradle/") ||
-            (className.startsWith("rife/") &&
-             !className.startsWith("rife/Hello") &&
-             !className.startsWith("rife/models/") &&
-             !className.startsWith("rife/engine/continuations/Test"))) {
+        // classes that were instrumented ahead of time don't need to be analyzed again
+        if (isExcluded(className) ||
+            RifeInstrumenter.isInstrumented(classfileBuffer)) {
             return classfileBuffer;
         }
 
         return transformRife(loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
     }
 
+    /**
+     * Indicates whether a class is part of a core package and will not be
+     * transformed.
+     * <p>This uses the {@link ClassExclusions} index that is shared by all
+     * the transformers.
+     *
+     * @param className the name of the class in the internal bytecode
+     *                  naming format
+     * @return {@code true} if the class is excluded from transformation; or
+     * <p>{@code false} otherwise
+     * @since 1.9.2
+     */
+    public static boolean isExcluded(String className) {
+        return ClassExclusions.instance().isExcluded(className);
+    }
+
     /**
      * This transform method will only be called when the class is not part of
      * a core package.
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.instrument;
+
+import rife.Version;
+import rife.tools.ExceptionUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.logging.Logger;
+
+/**
+ * Persists the bytecode of transformed classes on disk, so that classes
+ * that didn't change don't have to be transformed again each time the
+ * application starts up.
+ * <p>The cache is opt-in and is activated by setting the
+ * {@value #PROPERTY_CACHE_DIRECTORY} system property to the directory
+ * where the transformed classes will be stored, for example:
+ * <pre>-Drife.instrument.cache=$HOME/.cache/rife2/instrument</pre>
+ * <p>The directory should only be writable by the user that runs the
+ * application, since the cached classes are loaded as they're found.
+ * <p>Each transformed class is stored under a hash of its original
+ * bytecode, its name, the configuration of the transformation, the
+ * bytecode of its {@code MetaData} class and the headers of its super
+ * classes, since those decide how a class is transformed. Modified
+ * classes are thus never served from the cache.
+ * <p>The hash also includes the build of the transformers, which is
+ * identified by the content of the RIFE2 jar file, or by the names, sizes
+ * and modification times of the files of a RIFE2 classes directory. When
+ * the build can't be identified, nothing is cached. The classes are also
+ * stored in a separate directory for each RIFE2 version, the directories
+ * of other versions are never read and can be removed.
+ * <p>The cache is best-effort, any error while reading or writing it is
+ * logged and the class is then simply transformed.
+ *
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public class TransformedClassCache {
+    public static final String PROPERTY_CACHE_DIRECTORY = "rife.instrument.cache";
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String OBJECT_INTERNAL_NAME = "java/lang/Object";
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String META_DATA_SUFFIX = "MetaData";
+
+    private final Path directory_;
+    private final String build_;
+
+    // the build is only identified once, when the first cache is created
+    private static class Build {
+        private static final String HASH = identifyBuild();
+    }
+
+    /**
+     * Performs the transformation of a class when it isn't cached.
+     *
+     * @param <E> the type of exception that can be thrown by the
+     *            transformation
+     * @since 1.9.2
+     */
+    @FunctionalInterface
+    public interface Transformation<E extends Exception> {
+        /**
+         * Transforms the bytecode of a class.
+         *
+         * @param bytes the original bytecode
+         * @return the transformed bytecode; or
+         * <p>{@code null} or the original bytecode if the class wasn't
+         * transformed
+         * @throws E when an error occurred during the transformation
+         * @since 1.9.2
+         */
+        byte[] transform(byte[] bytes)
+        throws E;
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param directory the directory where the transformed classes will be
+     *                  stored, it will be created if it doesn't exist
+     * @since 1.9.2
+     */
+    public TransformedClassCache(File directory) {
+        this(directory, Build.HASH);
+    }
+
+    TransformedClassCache(File directory, String build) {
+        if (null == directory) throw new IllegalArgumentException("directory can't be null");
+
+        build_ = build;
+
+        var version = Version.getVersion();
+        if (null == version || version.isBlank()) {
+            version = "unknown";
+        }
+        directory_ = directory.toPath().resolve(version.replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    /**
+     * Creates a cache from the {@value #PROPERTY_CACHE_DIRECTORY} system
+     * property.
+     *
+     * @return the cache; or
+     * <p>{@code null} if the system property isn't set
+     * @since 1.9.2
+     */
+    public static TransformedClassCache fromSystemProperty() {
+        var directory = System.getProperty(PROPERTY_CACHE_DIRECTORY);
+        if (null == directory || directory.isBlank()) {
+            return null;
+        }
+
+        return new TransformedClassCache(new File(directory));
+    }
+
+    /**
+     * Retrieves the directory where the transformed classes of the current
+     * RIFE2 version are stored.
+     *
+     * @return the directory of the cache
+     * @since 1.9.2
+     */
+    public File getDirectory() {
+        return directory_.toFile();
+    }
+
+    /**
+     * Retrieves the transformed bytecode of a class from the cache, or
+     * transforms it and stores the result in the cache.
+     *
+     * @param configuration  a description of the configuration of the
+     *                       transformation, different configurations are cached
+     *                       separately
+     * @param internalName   the name of the class in the internal bytecode
+     *                       naming format
+     * @param bytes          the original bytecode of the class
+     * @param hierarchy      the class hierarchy that will be used to retrieve
+     *                       the headers of the super classes; or {@code null} if
+     *                       the super classes can't be resolved
+     * @param resolver       the resolver that will be used for the super classes
+     *                       that aren't known yet by the hierarchy
+     * @param transformation the transformation that will be performed when
+     *                       the class isn't cached
+     * @param <E>            the type of exception that can be thrown by the
+     *                       transformation
+     * @return the transformed bytecode; or
+     * <p>the original bytecode if the class wasn't transformed
+     * @throws E when an error occurred during the transformation
+     * @since 1.9.2
+     */
+    public <E extends Exception> byte[] transform(String configuration, String internalName, byte[] bytes, ClassHierarchy hierarchy, ClassHierarchy.BytesResolver resolver, Transformation<E> transformation)
+    throws E {
+        if (null == configuration) throw new IllegalArgumentException("configuration can't be null");
+        if (null == internalName) throw new IllegalArgumentException("internalName can't be null");
+        if (null == bytes) throw new IllegalArgumentException("bytes can't be null");
+        if (null == transformation) throw new IllegalArgumentException("transformation can't be null");
+
+        Path file = null;
+        try {
+            if (build_ != null) {
+                file = getFile(configuration, internalName, bytes, hierarchy, resolver);
+            }
+        } catch (Exception e) {
+            // the super classes couldn't be resolved, don't cache this class
+            Logger.getLogger("rife.instrument").fine("Unable to resolve the hierarchy of '" + internalName + "'\n" + ExceptionUtils.getExceptionStackTrace(e));
+        }
+
+        if (file != null && Files.isRegularFile(file)) {
+            try {
+                var cached = Files.readAllBytes(file);
+                // an empty file indicates that the class wasn't transformed
+                if (0 == cached.length) {
+                    return bytes;
+                }
+                return cached;
+            } catch (IOException e) {
+                Logger.getLogger("rife.instrument").warning("Unable to read the cached class '" + file + "'\n" + ExceptionUtils.getExceptionStackTrace(e));
+            }
+        }
+
+        var result = transformation.transform(bytes);
+        if (null == result) {
+            result = bytes;
+        }
+
+        if (file != null) {
+            store(file, result == bytes ? new byte[0] : result);
+        }
+
+        return result;
+    }
+
+    private Path getFile(String configuration, String internalName, byte[] bytes, ClassHierarchy hierarchy, ClassHierarchy.BytesResolver resolver)
+    throws ClassNotFoundException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        update(digest, build_);
+        update(digest, configuration);
+        update(digest, internalName);
+        digest.update(bytes);
+
+        // the meta data class is merged into the class that it belongs to,
+        // its bytecode or its absence is part of the key
+        var meta_data = null == resolver ? null : resolver.getClassBytes(internalName + META_DATA_SUFFIX);
+        if (null == meta_data) {
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+            digest.update(meta_data);
+        }
+
+        // the transformation can depend on the interfaces that are implemented
+        // by the super classes, their headers are part of the key
+        if (hierarchy != null && resolver != null) {
+            var super_name = ClassHierarchy.ClassHeader.parse(bytes).superName();
+            while (super_name != null &&
+                   !OBJECT_INTERNAL_NAME.equals(super_name)) {
+                update(digest, super_name);
+                var header = hierarchy.getHeader(super_name, resolver);
+                if (null == header) {
+                    break;
+                }
+                for (var name : header.interfaces()) {
+                    update(digest, name);
+                }
+                super_name = header.superName();
+            }
+        }
+
+        var hash = HexFormat.of().formatHex(digest.digest());
+        return directory_.resolve(hash.substring(0, 2)).resolve(hash.substring(2) + CLASS_SUFFIX);
+    }
+
+    private static String identifyBuild() {
+        try {
+            var source = TransformedClassCache.class.getProtectionDomain().getCodeSource();
+            if (null == source || null == source.getLocation()) {
+                return null;
+            }
+
+            var location = Path.of(source.getLocation().toURI());
+            var digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            if (Files.isRegularFile(location)) {
+                try (var in = new DigestInputStream(Files.newInputStream(location), digest)) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            } else if (Files.isDirectory(location)) {
+                // the classes of a development build aren't read, their
+                // attributes change when they're compiled again
+                try (var walk = Files.walk(location)) {
+                    for (var file : walk.filter(Files::isRegularFile).sorted().toList()) {
+                        var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        update(digest, location.relativize(file).toString());
+                        update(digest, attributes.size() + ":" + attributes.lastModifiedTime().toMillis());
+                    }
+                }
+            } else {
+                return null;
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            Logger.getLogger("rife.instrument").warning("Unable to identify the build of the transformers, the transformed classes won't be cached\n" + ExceptionUtils.getExceptionStackTrace(e));
+            return null;
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static void store(Path file, byte[] bytes) {
+        try {
+            // the class is written to a temporary file first so that other
+            // processes never read a partial class
+            var parent = Files.createDirectories(file.getParent());
+            var tmp = Files.createTempFile(parent, ".", CLASS_SUFFIX);
+            try {
+                Files.write(tmp, bytes);
+                try {
+                    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            Logger.getLogger("rife.instrument").warning("Unable to store the cached class '" + file + "'\n" + ExceptionUtils.getExceptionStackTrace(e));
+        }
+    }
+}
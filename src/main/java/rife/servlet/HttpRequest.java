@@ -16,7 +16,9 @@ import rife.engine.exceptions.EngineException;
 import rife.tools.FileUtils;
 import rife.tools.StringUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.Enumeration;
 import java.util.LinkedHashMap;
@@ -95,6 +97,19 @@ public class HttpRequest implements Request {
         return bodyAsBytes_;
     }
 
+    @Override
+    public InputStream getBodyAsStream() {
+        if (bodyAsBytes_ != null) {
+            return new ByteArrayInputStream(bodyAsBytes_);
+        }
+
+        try {
+            return request_.getInputStream();
+        } catch (IOException e) {
+            throw new EngineException(e);
+        }
+    }
+
     @Override
     public Map<String, UploadedFile[]> getFiles() {
         return files_;
@@ -4,15 +4,26 @@
  */
 package rife.workflow;
 
+import java.io.Serial;
+import java.io.Serializable;
+
 /**
  * Events cause work to be resumed when they are waiting for the event type.
+ * <p>An event can have a key that correlates it with specific work, it
+ * then only resumes the work that is waiting for the {@link EventKey} with
+ * the same type and key.
+ * <p>The type, the key and the data of an event have to be serializable when it's
+ * used with a durable workflow.
  *
  * @rife.apiNote The workflow engine is still in an ALPHA EXPERIMENTAL STAGE and might change.
  * @author Geert Bevin (gbevin[remove] at uwyn dot com)
  * @since 1.0
  */
-public class Event {
+public class Event implements Serializable {
+    @Serial private static final long serialVersionUID = 5107243586126329847L;
+
     private final Object type_;
+    private final Object key_;
     private final Object data_;
 
     /**
@@ -23,7 +34,21 @@ public class Event {
      * @since 1.0
      */
     public Event(final Object type, final Object data) {
+        this(type, null, data);
+    }
+
+    /**
+     * Creates a new event with a key that correlates it with specific work.
+     *
+     * @param type the type of the event
+     * @param key  the key of the event; or {@code null} if the event isn't
+     *             correlated with specific work
+     * @param data the data that has to be sent along with the event
+     * @since 1.9.2
+     */
+    public Event(final Object type, final Object key, final Object data) {
         type_ = type;
+        key_ = key;
         data_ = data;
     }
 
@@ -37,6 +62,31 @@ public class Event {
         return type_;
     }
 
+    /**
+     * Returns the key that correlates this event with specific work.
+     *
+     * @return this event's key; or
+     * <p>{@code null} if this event isn't correlated with specific work
+     * @since 1.9.2
+     */
+    public Object getKey() {
+        return key_;
+    }
+
+    /**
+     * Retrieves the event key that this event is routed with.
+     *
+     * @return the {@link EventKey} of this event's type and key; or
+     * <p>this event's type if it doesn't have a key
+     * @since 1.9.2
+     */
+    public Object getRoutingKey() {
+        if (null == key_) {
+            return type_;
+        }
+        return new EventKey(type_, key_);
+    }
+
     /**
      * Returns the data that was sent along with this event.
      *
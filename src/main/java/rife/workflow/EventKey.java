@@ -0,0 +1,37 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.workflow;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Correlates an event type with a key, so that work can pause for the
+ * events of that type that are meant for it.
+ * <p>Work pauses for a keyed event by providing an event key to
+ * {@link Work#pauseForEvent}, and is only resumed by events with the same
+ * type and key:
+ * <pre>
+ * var event = pauseForEvent(new EventKey(OrderEvents.PAID, orderId));
+ * </pre>
+ * <pre>
+ * workflow.trigger(OrderEvents.PAID, orderId, payment);
+ * </pre>
+ * <p>Work that pauses for the type alone isn't resumed by keyed events,
+ * and the other way around.
+ * <p>The type and the key have to be serializable when they're used with a
+ * durable workflow.
+ *
+ * @param type the type of the event
+ * @param key  the key that correlates the event with the work
+ * @rife.apiNote The workflow engine is still in an ALPHA EXPERIMENTAL STAGE and might change.
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see Event#getKey
+ * @see Workflow#trigger(Object, Object, Object)
+ * @since 1.9.2
+ */
+public record EventKey(Object type, Object key) implements Serializable {
+    @Serial private static final long serialVersionUID = -3824616735392087144L;
+}
@@ -0,0 +1,19 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.workflow;
+
+/**
+ * Work that is paused for an event type and that is persisted in a
+ * {@link WorkflowStore}.
+ *
+ * @param continuationId the ID of the continuation of the paused work
+ * @param type           the event type the work is paused for
+ * @param continuation   the serialized continuation of the paused work
+ * @rife.apiNote The workflow engine is still in an ALPHA EXPERIMENTAL STAGE and might change.
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public record PausedWork(String continuationId, Object type, byte[] continuation) {
+}
@@ -35,8 +35,12 @@ public interface Work {
      * Pause until a particular event type is triggered in the workflow.
      * <p>When an event is triggered with a suitable type, is will be returned
      * through this method call.
+     * <p>Work can wait for the events that are meant for it alone by
+     * providing an {@link EventKey} as type, it's then only woken up by
+     * events with the same type and key.
      *
-     * @param type the event type to wait for.
+     * @param type the event type to wait for, or the {@link EventKey} of
+     *             the keyed events to wait for
      * @return the event that woke up the work
      * @since 1.0
      */
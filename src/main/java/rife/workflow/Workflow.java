@@ -7,19 +7,28 @@ package rife.workflow;
 import rife.continuations.CallState;
 import rife.continuations.CloneableContinuable;
 import rife.continuations.ContinuationConfigInstrument;
+import rife.continuations.ContinuationConfigRuntime;
+import rife.continuations.ContinuationContext;
+import rife.continuations.ContinuationContextSerializer;
 import rife.continuations.basic.BasicContinuableRunner;
 import rife.continuations.basic.CallTargetRetriever;
+import rife.continuations.exceptions.MissingActiveContinuationConfigRuntimeException;
 import rife.ioc.HierarchicalProperties;
+import rife.tools.ExceptionUtils;
 import rife.workflow.config.ContinuationInstrument;
+import rife.workflow.exceptions.WorkflowStoreException;
 
-import java.util.HashSet;
-import java.util.Queue;
-import java.util.Set;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
 
 /**
  * Runs work and dispatches events to work that is paused.
@@ -27,33 +36,68 @@ import java.util.concurrent.locks.ReentrantLock;
  * thread for itself. When a workflow is used, you should take the
  * necessary steps to keep the application running for as long as you need the
  * work to be available.
+ * <p>Events resume all the work that is paused for their type, unless they
+ * have a key. Keyed events are delivered directly to the work that is paused
+ * for their {@link EventKey}, without waking up any other work.
+ * <p>A workflow can be made durable by providing a {@link WorkflowStore}.
+ * The paused work and the pending events are then persisted in the store
+ * instead of being kept in memory, and survive a restart of the
+ * application when a new workflow is created with the same store. The work
+ * and its local state then have to be serializable, references to the
+ * workflow itself are restored automatically.
+ * <p>Paused work is resumed in batches of {@link #getDispatchBatchSize}, each
+ * batch being executed as a single task. The number of batches that are
+ * executing at the same time can be limited with
+ * {@link #setMaxActiveDispatches}, threads that trigger events outside the
+ * work of this workflow then wait until a batch finishes.
+ * <p>The work is executed by the {@link WorkflowExecutors#defaultExecutor()
+ * default executor}, unless another one is provided. The activity of the
+ * workflow can be monitored through {@link #getMetrics} and
+ * {@link #addMetricsListener}.
  *
  * @rife.apiNote The workflow engine is still in an ALPHA EXPERIMENTAL STAGE and might change.
  * @author Geert Bevin (gbevin[remove] at uwyn dot com)
  * @since 1.0
  */
 public class Workflow {
+    public static final int DEFAULT_DISPATCH_BATCH_SIZE = 100;
+
     private static final ContinuationConfigInstrument CONFIG_INSTRUMENT = new ContinuationInstrument();
+    private static final ThreadLocal<Boolean> EXECUTING_WORK = new ThreadLocal<>();
 
     private final HierarchicalProperties properties_;
     private final ExecutorService workExecutor_;
     private final BasicContinuableRunner runner_;
+    private final WorkflowStore store_;
+    private final ContinuationContextSerializer serializer_;
     private final ConcurrentMap<Object, Set<String>> eventsMapping_;
     private final ConcurrentMap<Object, Queue<Event>> pendingEvents_;
+    private final ConcurrentMap<Object, TypeLock> typeLocks_;
     private final Set<EventListener> listeners_;
+    private final Set<WorkflowMetricsListener> metricsListeners_;
     private final Lock workLock_ = new ReentrantLock();
     private final Condition workFinished_ = workLock_.newCondition();
     private final Condition workPaused_ = workLock_.newCondition();
+    private final Condition dispatchAvailable_ = workLock_.newCondition();
     private final AtomicLong activeWorkAndPauseCount_ = new AtomicLong();
     private final AtomicLong activePauseCount_ = new AtomicLong();
+    private final AtomicLong queuedWorkCount_ = new AtomicLong();
+    private final LongAdder resumedWorkCount_ = new LongAdder();
+    private final LongAdder resumeLatencyTotal_ = new LongAdder();
+    private final LongAccumulator resumeLatencyMax_ = new LongAccumulator(Math::max, 0);
+    private int activeDispatches_ = 0;
+
+    private volatile int dispatchBatchSize_ = DEFAULT_DISPATCH_BATCH_SIZE;
+    private volatile int maxActiveDispatches_ = Integer.MAX_VALUE;
 
     /**
-     * Creates a new workflow instance with a cached thread pool.
+     * Creates a new workflow instance with the
+     * {@link WorkflowExecutors#defaultExecutor() default executor}.
      *
      * @since 1.0
      */
     public Workflow() {
-        this(Executors.newCachedThreadPool());
+        this(WorkflowExecutors.defaultExecutor());
     }
 
     /**
@@ -73,7 +117,19 @@ public class Workflow {
      * @since 1.0
      */
     public Workflow(HierarchicalProperties properties) {
-        this(Executors.newCachedThreadPool(), properties);
+        this(WorkflowExecutors.defaultExecutor(), properties);
+    }
+
+    /**
+     * Creates a new durable workflow instance with the
+     * {@link WorkflowExecutors#defaultExecutor() default executor}.
+     *
+     * @param store the store that persists the paused work and pending
+     *              events
+     * @since 1.9.2
+     */
+    public Workflow(WorkflowStore store) {
+        this(WorkflowExecutors.defaultExecutor(), HierarchicalProperties.createSystemInstance(), store);
     }
 
     /**
@@ -84,6 +140,26 @@ public class Workflow {
      * @since 1.0
      */
     public Workflow(ExecutorService executor, HierarchicalProperties properties) {
+        this(executor, properties, null);
+    }
+
+    /**
+     * Creates a new workflow instance that is durable when a store is
+     * provided.
+     * <p>The work that is paused in the store is counted as paused work of
+     * this workflow, it's resumed when the events it waits for are
+     * triggered.
+     *
+     * @param executor   the executor to use for running the work
+     * @param properties the parent hierarchical properties
+     * @param store      the store that persists the paused work and pending
+     *                   events; or {@code null} if they should be kept in memory
+     * @throws WorkflowStoreException when the paused work couldn't be
+     *                                counted in the store
+     * @since 1.9.2
+     */
+    public Workflow(ExecutorService executor, HierarchicalProperties properties, WorkflowStore store)
+    throws WorkflowStoreException {
         properties_ = new HierarchicalProperties().parent(properties);
 
         runner_ = new BasicContinuableRunner(CONFIG_INSTRUMENT, new Class[]{Workflow.class}) {
@@ -99,10 +175,26 @@ public class Workflow {
         runner_.setCloneContinuations(false);
         runner_.setCallTargetRetriever(new EventTypeCallTargetRetriever());
 
+        store_ = store;
+        serializer_ = new WorkflowSerializer();
         eventsMapping_ = new ConcurrentHashMap<>();
         pendingEvents_ = new ConcurrentHashMap<>();
+        typeLocks_ = new ConcurrentHashMap<>();
         workExecutor_ = executor;
         listeners_ = new CopyOnWriteArraySet<>();
+        metricsListeners_ = new CopyOnWriteArraySet<>();
+
+        if (store_ != null) {
+            var paused = store_.countPausedWork();
+            activeWorkAndPauseCount_.set(paused);
+            activePauseCount_.set(paused);
+
+            // work that was being resumed when the application stopped is
+            // paused again, the events that resumed it are triggered again
+            for (var event : store_.takeRecoveredEvents()) {
+                trigger(event);
+            }
+        }
     }
 
     /**
@@ -124,7 +216,7 @@ public class Workflow {
      */
     public Workflow start(final Class<? extends Work> klass) {
         activeWorkAndPauseCount_.incrementAndGet();
-        workExecutor_.submit(() -> {
+        workExecutor_.submit(() -> executeWork(() -> {
             try {
                 runner_.start(klass);
 
@@ -133,7 +225,7 @@ public class Workflow {
             } catch (Throwable e) {
                 throw new RuntimeException(e);
             }
-        });
+        }));
 
         return this;
     }
@@ -147,7 +239,7 @@ public class Workflow {
      */
     public Workflow start(Work work) {
         activeWorkAndPauseCount_.incrementAndGet();
-        workExecutor_.submit(() -> {
+        workExecutor_.submit(() -> executeWork(() -> {
             try {
                 runner_.start(work);
 
@@ -156,7 +248,7 @@ public class Workflow {
             } catch (Throwable e) {
                 throw new RuntimeException(e);
             }
-        });
+        }));
 
         return this;
     }
@@ -187,11 +279,28 @@ public class Workflow {
         inform(new Event(type, data));
     }
 
+    /**
+     * Convenience method that informs about an event in a workflow that is
+     * correlated with specific work.
+     *
+     * @param type the type of the event
+     * @param key  the key that correlates the event with the work
+     * @param data the data that will be sent with the event
+     * @see EventKey
+     * @see #inform(Event)
+     * @since 1.9.2
+     */
+    public void inform(Object type, Object key, Object data) {
+        inform(new Event(type, key, data));
+    }
+
     /**
      * Informs about an event that wakes up work if it is paused for
      * the event type.
      * <p>If events are informed about and no work is ready to consume them,
      * they will be lost. This is different from events being triggered.
+     * <p>An event with a key only wakes up the work that is paused for the
+     * {@link EventKey} with the same type and key.
      *
      * @param event the event
      * @see #trigger(Object)
@@ -228,11 +337,29 @@ public class Workflow {
         trigger(new Event(type, data));
     }
 
+    /**
+     * Convenience method that triggers an event in a workflow that is
+     * correlated with specific work.
+     *
+     * @param type the type of the event
+     * @param key  the key that correlates the event with the work
+     * @param data the data that will be sent with the event
+     * @see EventKey
+     * @see #trigger(Event)
+     * @since 1.9.2
+     */
+    public void trigger(Object type, Object key, Object data) {
+        trigger(new Event(type, key, data));
+    }
+
     /**
      * Triggers an event that wakes up work that is paused for the event
      * type.
      * <p>If events are triggered, and no work is ready to consume them,
      * they will be queued up until the first available work arrives.
+     * <p>An event with a key only wakes up the work that is paused for the
+     * {@link EventKey} with the same type and key, and is queued up for that
+     * key alone.
      *
      * @param event the event
      * @see #trigger(Object)
@@ -246,44 +373,209 @@ public class Workflow {
     private void handleEvent(final Event event, boolean schedulePending) {
         if (null == event) return;
 
-        // retrieve the continuation IDs of the work that is paused for
-        // the type of the event
+        // keyed events are only delivered to the work that waits for their
+        // key, without waking up the other work of the same type
+        var routing_key = event.getRoutingKey();
+
+        if (null == store_) {
+            // retrieve the continuation IDs of the work that is paused for
+            // the routing key of the event
+            var ids_to_resume = takeWaitingWork(routing_key);
+
+            if (ids_to_resume.isEmpty()) {
+                if (schedulePending) {
+                    // couldn't find any continuations to resume, add the event as pending
+                    pendingEvents_.compute(routing_key, (eventKey, events) -> {
+                        if (events == null) events = new ConcurrentLinkedQueue<>();
+                        events.add(event);
+                        return events;
+                    });
+                }
+            } else {
+                // resume all the continuations that are paused for the routing key
+                dispatch(ids_to_resume, event);
+            }
+        } else {
+            handleDurableEvent(event, routing_key, schedulePending);
+        }
 
+        // notify all the event listeners that a new event has been triggered
+        listeners_.forEach(listener -> listener.eventTriggered(event));
+
+        signalWhenAllWorkFinished();
+    }
+
+    private void handleDurableEvent(final Event event, final Object routingKey, boolean schedulePending) {
+        List<String> ids_to_resume;
+        var lock = acquireTypeLock(routingKey);
+        try {
+            synchronized (lock) {
+                // work that couldn't be stored is waiting in memory
+                ids_to_resume = takeWaitingWork(routingKey);
+
+                // the event is persisted with the claim, so that the work is
+                // resumed again when the application stops before it completes
+                var stored_ids = store_.takePausedWork(routingKey, event);
+                if (!stored_ids.isEmpty()) {
+                    int delta = -stored_ids.size();
+                    activeWorkAndPauseCount_.addAndGet(delta);
+                    activePauseCount_.addAndGet(delta);
+                    ids_to_resume.addAll(stored_ids);
+                }
+
+                if (ids_to_resume.isEmpty()) {
+                    if (schedulePending) {
+                        store_.addPendingEvent(event);
+                    }
+                    return;
+                }
+            }
+        } finally {
+            releaseTypeLock(routingKey);
+        }
+
+        dispatch(ids_to_resume, event);
+    }
+
+    private List<String> takeWaitingWork(Object type) {
         // first obtain the collection for this event's type
-        final Set<String> ids_to_resume = new HashSet<>();
-        eventsMapping_.compute(event.getType(), (eventType, ids) -> {
+        final List<String> ids_to_resume = new ArrayList<>();
+        eventsMapping_.compute(type, (eventType, ids) -> {
             if (ids != null) {
                 synchronized (ids) {
                     ids_to_resume.addAll(ids);
                     int delta = -ids.size();
                     activeWorkAndPauseCount_.addAndGet(delta);
                     activePauseCount_.addAndGet(delta);
-                    ids.clear();
                 }
             }
-            return ids;
+            // the mapping is removed so that it doesn't remain for each
+            // distinct key
+            return null;
         });
+        return ids_to_resume;
+    }
 
-        if (ids_to_resume.isEmpty()) {
-            if (schedulePending) {
-                // couldn't find any continuations to resume, add the event as pending
-                pendingEvents_.compute(event.getType(), (eventType, events) -> {
-                    if (events == null) events = new ConcurrentLinkedQueue<>();
-                    events.add(event);
-                    return events;
-                });
-            }
-        } else {
-            // resume all the continuations that are paused for the event type
-            for (var id : ids_to_resume) {
-                answer(id, event);
-            }
+    private TypeLock acquireTypeLock(Object type) {
+        return typeLocks_.compute(type, (t, lock) -> {
+            if (null == lock) lock = new TypeLock();
+            lock.users_++;
+            return lock;
+        });
+    }
+
+    private void releaseTypeLock(Object type) {
+        // the lock is removed when no other thread uses it, the work and the
+        // events of the type are kept by the store
+        typeLocks_.computeIfPresent(type, (t, lock) -> --lock.users_ == 0 ? null : lock);
+    }
+
+    /**
+     * Sets the maximum number of paused work that is resumed by a single
+     * task of the executor.
+     *
+     * @param size the size of the dispatch batches
+     * @return this workflow instance
+     * @see #setDispatchBatchSize
+     * @see #getDispatchBatchSize
+     * @since 1.9.2
+     */
+    public Workflow dispatchBatchSize(int size) {
+        setDispatchBatchSize(size);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of paused work that is resumed by a single
+     * task of the executor.
+     *
+     * @param size the size of the dispatch batches
+     * @see #dispatchBatchSize
+     * @see #getDispatchBatchSize
+     * @since 1.9.2
+     */
+    public void setDispatchBatchSize(int size) {
+        if (size < 1) throw new IllegalArgumentException("size should be at least 1");
+
+        dispatchBatchSize_ = size;
+    }
+
+    /**
+     * Retrieves the maximum number of paused work that is resumed by a
+     * single task of the executor.
+     * <p>This defaults to {@value #DEFAULT_DISPATCH_BATCH_SIZE}.
+     *
+     * @return the size of the dispatch batches
+     * @see #dispatchBatchSize
+     * @see #setDispatchBatchSize
+     * @since 1.9.2
+     */
+    public int getDispatchBatchSize() {
+        return dispatchBatchSize_;
+    }
+
+    /**
+     * Sets the maximum number of dispatch batches that can be executing at
+     * the same time.
+     *
+     * @param max the maximum number of active dispatch batches
+     * @return this workflow instance
+     * @see #setMaxActiveDispatches
+     * @see #getMaxActiveDispatches
+     * @since 1.9.2
+     */
+    public Workflow maxActiveDispatches(int max) {
+        setMaxActiveDispatches(max);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of dispatch batches that can be executing at
+     * the same time.
+     * <p>When this maximum is reached, threads that trigger events and that
+     * aren't executing work of this workflow wait until a batch finishes.
+     *
+     * @param max the maximum number of active dispatch batches
+     * @see #maxActiveDispatches
+     * @see #getMaxActiveDispatches
+     * @since 1.9.2
+     */
+    public void setMaxActiveDispatches(int max) {
+        if (max < 1) throw new IllegalArgumentException("max should be at least 1");
+
+        maxActiveDispatches_ = max;
+
+        workLock_.lock();
+        try {
+            dispatchAvailable_.signalAll();
+        } finally {
+            workLock_.unlock();
         }
+    }
 
-        // notify all the event listeners that a new event has been triggered
-        listeners_.forEach(listener -> listener.eventTriggered(event));
+    /**
+     * Retrieves the maximum number of dispatch batches that can be executing
+     * at the same time.
+     * <p>This is unlimited by default.
+     *
+     * @return the maximum number of active dispatch batches
+     * @see #maxActiveDispatches
+     * @see #setMaxActiveDispatches
+     * @since 1.9.2
+     */
+    public int getMaxActiveDispatches() {
+        return maxActiveDispatches_;
+    }
 
-        signalWhenAllWorkFinished();
+    /**
+     * Retrieves the store that persists the paused work and pending events.
+     *
+     * @return this workflow's store; or
+     * <p>{@code null} if this workflow isn't durable
+     * @since 1.9.2
+     */
+    public WorkflowStore getStore() {
+        return store_;
     }
 
     /**
@@ -355,6 +647,52 @@ public class Workflow {
         listeners_.remove(listener);
     }
 
+    /**
+     * Adds a new metrics listener.
+     *
+     * @param listener the metrics listener that will be added
+     * @see #removeMetricsListener
+     * @since 1.9.2
+     */
+    public void addMetricsListener(final WorkflowMetricsListener listener) {
+        if (null == listener) {
+            return;
+        }
+        metricsListeners_.add(listener);
+    }
+
+    /**
+     * Removes a metrics listener.
+     *
+     * @param listener the metrics listener that will be removed
+     * @see #addMetricsListener
+     * @since 1.9.2
+     */
+    public void removeMetricsListener(final WorkflowMetricsListener listener) {
+        if (null == listener) {
+            return;
+        }
+
+        metricsListeners_.remove(listener);
+    }
+
+    /**
+     * Retrieves a snapshot of the metrics of this workflow.
+     * <p>The counts are read one after the other while work executes, they
+     * can be slightly inconsistent with each other.
+     *
+     * @return the current metrics
+     * @since 1.9.2
+     */
+    public WorkflowMetrics getMetrics() {
+        var queued = queuedWorkCount_.get();
+        var paused = activePauseCount_.get();
+        var active = Math.max(0, activeWorkAndPauseCount_.get() - paused - queued);
+        var resumed = resumedWorkCount_.sum();
+        var average = 0 == resumed ? Duration.ZERO : Duration.ofNanos(resumeLatencyTotal_.sum() / resumed);
+        return new WorkflowMetrics(queued, active, paused, resumed, average, Duration.ofNanos(resumeLatencyMax_.get()));
+    }
+
     private void signalWhenAllWorkFinished() {
         workLock_.lock();
         try {
@@ -375,33 +713,187 @@ public class Workflow {
         }
     }
 
-    private void answer(final String id, final Object callAnswer) {
-        if (null == id) return;
-        activeWorkAndPauseCount_.incrementAndGet();
-        workExecutor_.submit(() -> {
+    private void dispatch(final List<String> ids, final Event event) {
+        var batch_size = dispatchBatchSize_;
+        for (var i = 0; i < ids.size(); i += batch_size) {
+            var batch = List.copyOf(ids.subList(i, Math.min(ids.size(), i + batch_size)));
+
+            acquireDispatch();
+            activeWorkAndPauseCount_.addAndGet(batch.size());
+            queuedWorkCount_.addAndGet(batch.size());
+            metricsListeners_.forEach(listener -> listener.workDispatched(this, batch.size()));
+
+            var dispatched = System.nanoTime();
+            workExecutor_.submit(() -> executeWork(() -> resumeBatch(batch, event, dispatched)));
+        }
+    }
+
+    private void resumeBatch(final List<String> ids, final Event event, final long dispatched) {
+        try {
+            for (var id : ids) {
+                try {
+                    queuedWorkCount_.decrementAndGet();
+                    recordResume(System.nanoTime() - dispatched);
+
+                    resume(id, event);
+                } catch (Throwable e) {
+                    Logger.getLogger("rife.workflow").severe("Unable to resume work '" + id + "'\n" + ExceptionUtils.getExceptionStackTrace(e));
+                } finally {
+                    activeWorkAndPauseCount_.decrementAndGet();
+                    signalWhenAllWorkFinished();
+                }
+            }
+        } finally {
+            releaseDispatch();
+        }
+    }
+
+    private void executeWork(Runnable task) {
+        // an executor can run the task in the calling thread, which could
+        // already be executing work whose continuation state is preserved
+        var nested = Boolean.TRUE.equals(EXECUTING_WORK.get());
+        var active_context = ContinuationContext.getActiveContext();
+        ContinuationConfigRuntime active_config = null;
+        if (nested) {
             try {
-                runner_.answer(id, callAnswer);
+                active_config = ContinuationConfigRuntime.getActiveConfigRuntime();
+            } catch (MissingActiveContinuationConfigRuntimeException e) {
+                // the work isn't executing its continuable
+            }
+        }
 
-                activeWorkAndPauseCount_.decrementAndGet();
-                signalWhenAllWorkFinished();
-            } catch (Throwable e) {
-                throw new RuntimeException(e);
+        EXECUTING_WORK.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            if (nested) {
+                ContinuationContext.setActiveContext(active_context);
+                if (active_config != null) {
+                    ContinuationConfigRuntime.setActiveConfigRuntime(active_config);
+                }
+            } else {
+                EXECUTING_WORK.remove();
             }
+        }
+    }
+
+    private void recordResume(long latency) {
+        resumedWorkCount_.increment();
+        resumeLatencyTotal_.add(latency);
+        resumeLatencyMax_.accumulate(latency);
+
+        if (!metricsListeners_.isEmpty()) {
+            var duration = Duration.ofNanos(latency);
+            metricsListeners_.forEach(listener -> listener.workResumed(this, duration));
+        }
+    }
+
+    private void resume(final String id, final Object callAnswer)
+    throws Throwable {
+        if (store_ != null) {
+            // restore the continuation of stored work in the manager
+            var continuation = store_.retrievePausedWork(id);
+            if (continuation != null) {
+                serializer_.deserialize(continuation, runner_.getManager());
+            }
+        }
+
+        runner_.answer(id, callAnswer);
+
+        if (store_ != null) {
+            store_.completePausedWork(id);
+        }
+    }
+
+    private void acquireDispatch() {
+        workLock_.lock();
+        try {
+            // work that triggers events is never blocked since the batches
+            // that it would wait for could depend on it
+            if (!Boolean.TRUE.equals(EXECUTING_WORK.get())) {
+                while (activeDispatches_ >= maxActiveDispatches_) {
+                    try {
+                        dispatchAvailable_.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            activeDispatches_++;
+        } finally {
+            workLock_.unlock();
+        }
+    }
+
+    private void releaseDispatch() {
+        workLock_.lock();
+        try {
+            activeDispatches_--;
+            dispatchAvailable_.signal();
+        } finally {
+            workLock_.unlock();
+        }
+    }
+
+    private void registerWaitingWork(Object type, String id) {
+        // keeps track of the continuation ID for this event type
+        eventsMapping_.compute(type, (eventType, ids) -> {
+            if (ids == null) ids = new HashSet<>();
+            synchronized (ids) {
+                ids.add(id);
+                activeWorkAndPauseCount_.incrementAndGet();
+                activePauseCount_.incrementAndGet();
+            }
+            return ids;
         });
     }
 
+    private void pauseDurably(Object type, String id) {
+        Event pending_event;
+        var lock = acquireTypeLock(type);
+        try {
+            synchronized (lock) {
+                pending_event = store_.takePendingEvent(type);
+
+                var manager = runner_.getManager();
+                var context = manager.getContext(id);
+                if (pending_event != null || null == context) {
+                    registerWaitingWork(type, id);
+                } else {
+                    try {
+                        store_.addPausedWork(new PausedWork(id, type, serializer_.serialize(context)));
+
+                        // the paused work doesn't stay in memory
+                        manager.removeContext(id);
+                        activeWorkAndPauseCount_.incrementAndGet();
+                        activePauseCount_.incrementAndGet();
+                    } catch (IOException | WorkflowStoreException e) {
+                        Logger.getLogger("rife.workflow").severe("Unable to store work that paused for '" + type + "', it is kept in memory\n" + ExceptionUtils.getExceptionStackTrace(e));
+                        registerWaitingWork(type, id);
+                    }
+                }
+            }
+        } finally {
+            releaseTypeLock(type);
+        }
+
+        signalThatWorkIsPaused();
+
+        // the work is in memory when an event is pending, trigger it
+        if (pending_event != null) {
+            trigger(pending_event);
+        }
+    }
+
     private class EventTypeCallTargetRetriever implements CallTargetRetriever {
         public CloneableContinuable getCallTarget(Object type, CallState state) {
-            // keeps track of the continuation ID for this event type
-            eventsMapping_.compute(type, (eventType, ids) -> {
-                if (ids == null) ids = new HashSet<>();
-                synchronized (ids) {
-                    ids.add(state.getContinuationId());
-                    activeWorkAndPauseCount_.incrementAndGet();
-                    activePauseCount_.incrementAndGet();
-                }
-                return ids;
-            });
+            if (store_ != null) {
+                pauseDurably(type, state.getContinuationId());
+                return null;
+            }
+
+            registerWaitingWork(type, state.getContinuationId());
 
             signalThatWorkIsPaused();
 
@@ -409,7 +901,9 @@ public class Workflow {
             final var pending_event = new Event[1];
             pendingEvents_.computeIfPresent(type, (evenType, events) -> {
                 pending_event[0] = events.poll();
-                return events;
+                // drained queues are removed so that they don't remain for
+                // each distinct key
+                return events.isEmpty() ? null : events;
             });
             if (pending_event[0] != null) {
                 trigger(pending_event[0]);
@@ -418,4 +912,35 @@ public class Workflow {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    private static class TypeLock {
+        // only changed while the lock's mapping is computed
+        private int users_ = 0;
+    }
+
+    private enum WorkflowReference {
+        INSTANCE
+    }
+
+    private class WorkflowSerializer extends ContinuationContextSerializer {
+        private WorkflowSerializer() {
+            super(runner_.getClassLoader());
+        }
+
+        protected Object replaceObject(Object object) {
+            // the workflow isn't serialized with the work, it's restored
+            // as the workflow that resumes the work
+            if (object == Workflow.this) {
+                return WorkflowReference.INSTANCE;
+            }
+            return object;
+        }
+
+        protected Object resolveObject(Object object) {
+            if (object == WorkflowReference.INSTANCE) {
+                return Workflow.this;
+            }
+            return object;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.workflow;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.*;
+
+/**
+ * Provides the executor strategies that can be used to run the work of a
+ * {@link Workflow}.
+ * <p>The default executor is an unbounded cached thread pool. Resuming a
+ * large number of paused work at once then creates as many platform
+ * threads. The other strategies either use virtual threads or bound the
+ * number of threads or their parallelism, they have to be provided
+ * explicitly when a workflow is created.
+ *
+ * @rife.apiNote The workflow engine is still in an ALPHA EXPERIMENTAL STAGE and might change.
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public final class WorkflowExecutors {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final MethodHandle VIRTUAL_THREAD_PER_TASK = lookupVirtualThreadPerTask();
+
+    private WorkflowExecutors() {
+    }
+
+    private static MethodHandle lookupVirtualThreadPerTask() {
+        // virtual threads are only available from Java 21 onwards
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indicates whether the Java runtime supports virtual threads.
+     *
+     * @return {@code true} if virtual threads are supported; or
+     * <p>{@code false} otherwise
+     * @since 1.9.2
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_PER_TASK != null;
+    }
+
+    /**
+     * Creates the default executor of a workflow.
+     * <p>This is an unbounded cached thread pool, which never runs work in
+     * the thread that submits it.
+     *
+     * @return the default executor
+     * @since 1.9.2
+     */
+    public static ExecutorService defaultExecutor() {
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @return the virtual thread executor
+     * @throws UnsupportedOperationException when the Java runtime doesn't
+     *                                       support virtual threads
+     * @see #isVirtualThreadSupported
+     * @since 1.9.2
+     */
+    public static ExecutorService virtualThreadPerTask() {
+        if (!isVirtualThreadSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this Java runtime.");
+        }
+
+        try {
+            return (ExecutorService) VIRTUAL_THREAD_PER_TASK.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a fork-join executor with a bounded parallelism.
+     * <p>Only the number of threads that are actively executing tasks is
+     * bounded. The pool can start additional threads to compensate for
+     * threads that are blocked, so the total number of threads can exceed
+     * the parallelism.
+     *
+     * @param parallelism the target number of threads that actively execute
+     *                    tasks
+     * @return the fork-join executor
+     * @since 1.9.2
+     */
+    public static ExecutorService boundedForkJoin(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("parallelism should be at least 1");
+
+        // the paused work is resumed in submission order
+        return new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    /**
+     * Creates an executor with a bounded number of threads and a bounded
+     * queue, that executes the tasks in the submitting thread when the
+     * queue is full.
+     * <p>This naturally slows down the threads that trigger events when
+     * the work can't keep up.
+     * <p>Work that triggers events can then resume other work nested in its
+     * own thread. The workflow preserves the active continuation context of
+     * that thread, but the continuable runner doesn't support nested runs
+     * in every situation, so this executor is opt-in and should be tested
+     * with the work of the application.
+     *
+     * @param threads       the maximum number of threads that execute tasks
+     * @param queueCapacity the maximum number of tasks that wait for a thread
+     * @return the caller-runs executor
+     * @since 1.9.2
+     */
+    public static ExecutorService callerRuns(int threads, int queueCapacity) {
+        if (threads < 1) throw new IllegalArgumentException("threads should be at least 1");
+        if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity should be at least 1");
+
+        var executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.workflow;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of the metrics of a {@link Workflow}.
+ *
+ * @param queuedWork           the number of paused work that has been
+ *                             dispatched to be resumed but isn't executing yet
+ * @param activeWork           the number of work that is executing
+ * @param pausedWork           the number of work that is paused for events
+ * @param resumedWork          the total number of work that was resumed
+ * @param averageResumeLatency the average time between the dispatch of paused
+ *                             work and the start of its resumption
+ * @param maxResumeLatency     the longest time between the dispatch of paused
+ *                             work and the start of its resumption
+ * @rife.apiNote The workflow engine is still in an ALPHA EXPERIMENTAL STAGE and might change.
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see Workflow#getMetrics
+ * @since 1.9.2
+ */
+public record WorkflowMetrics(long queuedWork, long activeWork, long pausedWork, long resumedWork,
+                              Duration averageResumeLatency, Duration maxResumeLatency) {
+}
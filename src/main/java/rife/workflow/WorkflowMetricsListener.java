@@ -0,0 +1,42 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.workflow;
+
+import java.time.Duration;
+
+/**
+ * This interface allows classes to register themselves to receive
+ * notifications about the execution of work in a {@link Workflow}, for
+ * instance to monitor it.
+ * <p>Metrics listeners have to be registered through
+ * {@link Workflow#addMetricsListener}. They're called from the threads that
+ * execute the work and should return quickly.
+ *
+ * @rife.apiNote The workflow engine is still in an ALPHA EXPERIMENTAL STAGE and might change.
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public interface WorkflowMetricsListener {
+    /**
+     * Called when paused work was dispatched to be resumed.
+     *
+     * @param workflow the workflow that dispatched the work
+     * @param count    the number of paused work that was dispatched
+     * @since 1.9.2
+     */
+    default void workDispatched(Workflow workflow, int count) {
+    }
+
+    /**
+     * Called when paused work starts to be resumed.
+     *
+     * @param workflow the workflow that resumes the work
+     * @param latency  the time between the dispatch of the work and the
+     *                 start of its resumption
+     * @since 1.9.2
+     */
+    default void workResumed(Workflow workflow, Duration latency) {
+    }
+}
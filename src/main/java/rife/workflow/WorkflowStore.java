@@ -0,0 +1,144 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.workflow;
+
+import rife.workflow.exceptions.WorkflowStoreException;
+
+import java.util.List;
+
+/**
+ * Persists the paused work and the pending events of a durable
+ * {@link Workflow}, so that they don't have to be kept in memory and
+ * survive a restart of the application.
+ * <p>The event types, the event data and the paused work have to be
+ * serializable for them to be stored.
+ * <p>Work that pauses for a keyed event uses its {@link EventKey} as event
+ * type, and a keyed event is pending for the {@link Event#getRoutingKey
+ * routing key} of the event, so that it's only taken by the work that
+ * waits for its key.
+ * <p>Paused work is taken from the store in two phases: it's first taken
+ * to be resumed and is only removed when it has been resumed
+ * successfully. The event that resumes the work is persisted together
+ * with it. Work that was taken but not completed, for instance because
+ * the application stopped, should be made available again when the store
+ * is opened, and its event should then be provided by
+ * {@link #takeRecoveredEvents} so that the work is resumed again.
+ *
+ * @rife.apiNote The workflow engine is still in an ALPHA EXPERIMENTAL STAGE and might change.
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @see rife.workflow.stores.FileWorkflowStore
+ * @since 1.9.2
+ */
+public interface WorkflowStore {
+    /**
+     * Adds work that is paused for an event type.
+     *
+     * @param work the paused work
+     * @throws WorkflowStoreException when an error occurred while storing
+     *                                the work
+     * @since 1.9.2
+     */
+    void addPausedWork(PausedWork work)
+    throws WorkflowStoreException;
+
+    /**
+     * Takes all the work that is paused for an event type so that it can be
+     * resumed.
+     * <p>Work that is paused for the event type afterwards isn't taken.
+     * <p>The event is persisted with the taken work until all of it has been
+     * {@link #completePausedWork completed}.
+     *
+     * @param type  the event type
+     * @param event the event that resumes the work
+     * @return the continuation IDs of the taken work; or
+     * <p>an empty list if no work is paused for the event type
+     * @throws WorkflowStoreException when an error occurred while taking
+     *                                the work
+     * @see #retrievePausedWork
+     * @see #completePausedWork
+     * @since 1.9.2
+     */
+    List<String> takePausedWork(Object type, Event event)
+    throws WorkflowStoreException;
+
+    /**
+     * Retrieves the serialized continuation of work that was taken.
+     *
+     * @param continuationId the continuation ID of the taken work
+     * @return the serialized continuation; or
+     * <p>{@code null} if the work wasn't taken
+     * @throws WorkflowStoreException when an error occurred while retrieving
+     *                                the work
+     * @see #takePausedWork
+     * @since 1.9.2
+     */
+    byte[] retrievePausedWork(String continuationId)
+    throws WorkflowStoreException;
+
+    /**
+     * Removes paused work that was taken, after it has been resumed.
+     *
+     * @param continuationId the continuation ID of the paused work
+     * @throws WorkflowStoreException when an error occurred while removing
+     *                                the work
+     * @see #takePausedWork
+     * @since 1.9.2
+     */
+    void completePausedWork(String continuationId)
+    throws WorkflowStoreException;
+
+    /**
+     * Counts the work that is paused.
+     *
+     * @return the number of paused work
+     * @throws WorkflowStoreException when an error occurred while counting
+     *                                the work
+     * @since 1.9.2
+     */
+    long countPausedWork()
+    throws WorkflowStoreException;
+
+    /**
+     * Adds an event that was triggered while no work was paused for its
+     * type.
+     *
+     * @param event the pending event
+     * @throws WorkflowStoreException when an error occurred while storing
+     *                                the event
+     * @since 1.9.2
+     */
+    void addPendingEvent(Event event)
+    throws WorkflowStoreException;
+
+    /**
+     * Takes the oldest pending event of an event type.
+     *
+     * @param type the event type, which is an {@link EventKey} for keyed
+     *             events
+     * @return the pending event; or
+     * <p>{@code null} if no event is pending for the event type
+     * @throws WorkflowStoreException when an error occurred while taking
+     *                                the event
+     * @since 1.9.2
+     */
+    Event takePendingEvent(Object type)
+    throws WorkflowStoreException;
+
+    /**
+     * Takes the events of the work that was taken but not completed when
+     * the store was last used.
+     * <p>This work is paused again when the store is opened, and the events
+     * are triggered again by the workflow so that it's resumed. Work that
+     * paused for the same event type in the meantime is resumed too.
+     *
+     * @return the recovered events; or
+     * <p>an empty list if no work was recovered
+     * @throws WorkflowStoreException when an error occurred while taking
+     *                                the events
+     * @since 1.9.2
+     */
+    List<Event> takeRecoveredEvents()
+    throws WorkflowStoreException;
+}
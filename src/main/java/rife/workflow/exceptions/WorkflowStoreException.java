@@ -0,0 +1,23 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.workflow.exceptions;
+
+import java.io.Serial;
+
+public class WorkflowStoreException extends RuntimeException {
+    @Serial private static final long serialVersionUID = -2871538467790152247L;
+
+    public WorkflowStoreException(String message) {
+        super(message, null);
+    }
+
+    public WorkflowStoreException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public WorkflowStoreException(Throwable cause) {
+        super(cause);
+    }
+}
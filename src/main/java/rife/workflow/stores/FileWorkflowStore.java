@@ -0,0 +1,446 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.workflow.stores;
+
+import rife.workflow.Event;
+import rife.workflow.PausedWork;
+import rife.workflow.WorkflowStore;
+import rife.workflow.exceptions.WorkflowStoreException;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores the paused work and the pending events of a durable workflow as
+ * files in a local directory.
+ * <p>Each event type has its own sub-directory, named after a hash of the
+ * serialized type. Keyed events and the work that waits for them use the
+ * {@link rife.workflow.EventKey} as type. All the work that is paused for
+ * a type is taken at once by moving its directory, the work itself is only
+ * read when it's resumed. The event that resumes the work is written into
+ * the directory before it's moved, and is removed with the last work.
+ * <p>Files are written to a temporary file first and then moved in place,
+ * so that a crash never leaves partial work behind.
+ * <p>Work and events that were taken but not completed are made available
+ * again when the store is opened, the events of the taken work are then
+ * pending again and provided by {@link #takeRecoveredEvents}.
+ *
+ * @rife.apiNote The workflow engine is still in an ALPHA EXPERIMENTAL STAGE and might change.
+ * @author Geert Bevin (gbevin[remove] at uwyn dot com)
+ * @since 1.9.2
+ */
+public class FileWorkflowStore implements WorkflowStore {
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String PAUSED_DIRECTORY = "paused";
+    private static final String RESUMING_DIRECTORY = "resuming";
+    private static final String PENDING_DIRECTORY = "pending";
+    private static final String WORK_SUFFIX = ".work";
+    private static final String EVENT_SUFFIX = ".event";
+    private static final String TAKEN_SUFFIX = ".taken";
+    private static final char SEPARATOR = '-';
+
+    private final Path paused_;
+    private final Path resuming_;
+    private final Path pending_;
+    private final AtomicLong sequence_;
+    private final Map<String, Path> claimed_ = new ConcurrentHashMap<>();
+    private final List<Path> recovered_ = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Opens a store in a directory, the directory is created if it doesn't
+     * exist yet.
+     *
+     * @param directory the directory of the store
+     * @throws WorkflowStoreException when the directory couldn't be
+     *                                prepared
+     * @since 1.9.2
+     */
+    public FileWorkflowStore(File directory)
+    throws WorkflowStoreException {
+        if (null == directory) throw new IllegalArgumentException("directory can't be null");
+
+        var root = directory.toPath();
+        paused_ = root.resolve(PAUSED_DIRECTORY);
+        resuming_ = root.resolve(RESUMING_DIRECTORY);
+        pending_ = root.resolve(PENDING_DIRECTORY);
+
+        try {
+            Files.createDirectories(paused_);
+            Files.createDirectories(resuming_);
+            Files.createDirectories(pending_);
+
+            recover();
+
+            sequence_ = new AtomicLong(Math.max(System.currentTimeMillis() * 1000, lastSequence() + 1));
+        } catch (IOException e) {
+            throw new WorkflowStoreException("Unable to open the workflow store in '" + directory + "'.", e);
+        }
+    }
+
+    public void addPausedWork(PausedWork work)
+    throws WorkflowStoreException {
+        if (null == work) throw new IllegalArgumentException("work can't be null");
+
+        try {
+            var directory = Files.createDirectories(paused_.resolve(typeKey(work.type())));
+            write(directory.resolve(work.continuationId() + WORK_SUFFIX), work.continuation());
+        } catch (IOException e) {
+            throw new WorkflowStoreException("Unable to store the paused work '" + work.continuationId() + "'.", e);
+        }
+    }
+
+    public List<String> takePausedWork(Object type, Event event)
+    throws WorkflowStoreException {
+        if (null == event) throw new IllegalArgumentException("event can't be null");
+
+        var result = new ArrayList<String>();
+        var type_key = typeKey(type);
+        var directory = paused_.resolve(type_key);
+        if (!Files.isDirectory(directory)) {
+            return result;
+        }
+
+        try {
+            // the event is moved together with the work, a crash before the
+            // move leaves it behind in the directory, which recovery handles
+            try {
+                write(directory.resolve(eventName()), serialize(event));
+            } catch (NoSuchFileException e) {
+                return result;
+            }
+
+            // moving the directory claims all the work at once, work that is
+            // paused afterwards goes into a new directory
+            var claimed = resuming_.resolve(type_key + SEPARATOR + sequence_.getAndIncrement());
+            try {
+                Files.move(directory, claimed, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                return result;
+            }
+
+            try (var files = Files.newDirectoryStream(claimed, "*" + WORK_SUFFIX)) {
+                for (var file : files) {
+                    var name = file.getFileName().toString();
+                    var id = name.substring(0, name.length() - WORK_SUFFIX.length());
+                    claimed_.put(id, file);
+                    result.add(id);
+                }
+            }
+        } catch (IOException e) {
+            throw new WorkflowStoreException("Unable to take the paused work of type '" + type + "'.", e);
+        }
+
+        return result;
+    }
+
+    public byte[] retrievePausedWork(String continuationId)
+    throws WorkflowStoreException {
+        if (null == continuationId) throw new IllegalArgumentException("continuationId can't be null");
+
+        var file = claimed_.get(continuationId);
+        if (null == file) {
+            return null;
+        }
+
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new WorkflowStoreException("Unable to retrieve the paused work '" + continuationId + "'.", e);
+        }
+    }
+
+    public void completePausedWork(String continuationId)
+    throws WorkflowStoreException {
+        if (null == continuationId) throw new IllegalArgumentException("continuationId can't be null");
+
+        var file = claimed_.remove(continuationId);
+        if (null == file) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(file);
+
+            // the event of the claim is removed with its last work
+            var claim = file.getParent();
+            try (var remaining = Files.newDirectoryStream(claim, "*" + WORK_SUFFIX)) {
+                if (remaining.iterator().hasNext()) {
+                    return;
+                }
+            }
+            try (var events = Files.newDirectoryStream(claim, "*" + EVENT_SUFFIX)) {
+                for (var event : events) {
+                    Files.deleteIfExists(event);
+                }
+            }
+            try {
+                Files.deleteIfExists(claim);
+            } catch (DirectoryNotEmptyException e) {
+                // other work of the same claim is still being resumed
+            }
+        } catch (NoSuchFileException e) {
+            // another thread completed the last work of the claim
+        } catch (IOException e) {
+            throw new WorkflowStoreException("Unable to complete the paused work '" + continuationId + "'.", e);
+        }
+    }
+
+    public long countPausedWork()
+    throws WorkflowStoreException {
+        try (var files = Files.walk(paused_)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(WORK_SUFFIX)).count();
+        } catch (IOException e) {
+            throw new WorkflowStoreException("Unable to count the paused work.", e);
+        }
+    }
+
+    public void addPendingEvent(Event event)
+    throws WorkflowStoreException {
+        if (null == event) throw new IllegalArgumentException("event can't be null");
+
+        try {
+            // keyed events are pending for their key alone
+            var type_key = typeKey(event.getRoutingKey());
+            var name = eventName();
+            var bytes = serialize(event);
+            try {
+                write(Files.createDirectories(pending_.resolve(type_key)).resolve(name), bytes);
+            } catch (NoSuchFileException e) {
+                // the directory was removed since it was empty, create it again
+                write(Files.createDirectories(pending_.resolve(type_key)).resolve(name), bytes);
+            }
+        } catch (IOException e) {
+            throw new WorkflowStoreException("Unable to store the pending event of type '" + event.getType() + "'.", e);
+        }
+    }
+
+    public Event takePendingEvent(Object type)
+    throws WorkflowStoreException {
+        var directory = pending_.resolve(typeKey(type));
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+
+        try {
+            // the sequence numbers in the names order the events
+            List<Path> files;
+            try (var stream = Files.list(directory)) {
+                files = stream.filter(file -> file.getFileName().toString().endsWith(EVENT_SUFFIX)).sorted().toList();
+            }
+
+            for (var i = 0; i < files.size(); i++) {
+                var file = files.get(i);
+                var taken = file.resolveSibling(file.getFileName() + TAKEN_SUFFIX);
+                try {
+                    Files.move(file, taken, StandardCopyOption.ATOMIC_MOVE);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+
+                try {
+                    return (Event) deserialize(Files.readAllBytes(taken));
+                } finally {
+                    Files.deleteIfExists(taken);
+                    if (i == files.size() - 1) {
+                        deleteIfEmpty(directory);
+                    }
+                }
+            }
+
+            deleteIfEmpty(directory);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new WorkflowStoreException("Unable to take a pending event of type '" + type + "'.", e);
+        }
+
+        return null;
+    }
+
+    public List<Event> takeRecoveredEvents()
+    throws WorkflowStoreException {
+        var result = new ArrayList<Event>();
+        synchronized (recovered_) {
+            try {
+                for (var file : recovered_) {
+                    // the event could already have been taken by work that paused
+                    var taken = file.resolveSibling(file.getFileName() + TAKEN_SUFFIX);
+                    try {
+                        Files.move(file, taken, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (NoSuchFileException e) {
+                        continue;
+                    }
+
+                    try {
+                        result.add((Event) deserialize(Files.readAllBytes(taken)));
+                    } finally {
+                        Files.deleteIfExists(taken);
+                        deleteIfEmpty(file.getParent());
+                    }
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                throw new WorkflowStoreException("Unable to take the recovered events.", e);
+            }
+            recovered_.clear();
+        }
+
+        return result;
+    }
+
+    private String eventName() {
+        // the sequence numbers in the names order the events
+        return String.format("%019d", sequence_.getAndIncrement()) + EVENT_SUFFIX;
+    }
+
+    private static void deleteIfEmpty(Path directory)
+    throws IOException {
+        // the directories of the types without pending events are removed,
+        // they would otherwise accumulate for each distinct key
+        try {
+            Files.deleteIfExists(directory);
+        } catch (DirectoryNotEmptyException e) {
+            // other events are still pending or being taken
+        }
+    }
+
+    private void recover()
+    throws IOException {
+        // work that was being resumed when the application stopped is paused again
+        try (var claims = Files.newDirectoryStream(resuming_)) {
+            for (var claim : claims) {
+                var name = claim.getFileName().toString();
+                var separator = name.indexOf(SEPARATOR);
+                if (!Files.isDirectory(claim) || -1 == separator) {
+                    continue;
+                }
+
+                var type_key = name.substring(0, separator);
+                var directory = Files.createDirectories(paused_.resolve(type_key));
+                var events = new ArrayList<Path>();
+                var work_count = 0;
+                try (var files = Files.newDirectoryStream(claim)) {
+                    for (var file : files) {
+                        if (file.getFileName().toString().endsWith(EVENT_SUFFIX)) {
+                            events.add(file);
+                        } else {
+                            Files.move(file, directory.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                            work_count++;
+                        }
+                    }
+                }
+
+                // the event is only delivered again when work of the claim
+                // didn't complete
+                for (var event : events) {
+                    if (work_count > 0) {
+                        recoverEvent(type_key, event);
+                    } else {
+                        Files.delete(event);
+                    }
+                }
+                Files.delete(claim);
+            }
+        }
+
+        // events that were written for a claim that never happened
+        try (var directories = Files.newDirectoryStream(paused_)) {
+            for (var directory : directories) {
+                if (!Files.isDirectory(directory)) {
+                    continue;
+                }
+                try (var events = Files.newDirectoryStream(directory, "*" + EVENT_SUFFIX)) {
+                    for (var event : events) {
+                        recoverEvent(directory.getFileName().toString(), event);
+                    }
+                }
+            }
+        }
+
+        try (var files = Files.walk(pending_)) {
+            for (var file : files.filter(file -> file.getFileName().toString().endsWith(TAKEN_SUFFIX)).toList()) {
+                var name = file.getFileName().toString();
+                Files.move(file, file.resolveSibling(name.substring(0, name.length() - TAKEN_SUFFIX.length())), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private void recoverEvent(String typeKey, Path event)
+    throws IOException {
+        var target = Files.createDirectories(pending_.resolve(typeKey)).resolve(event.getFileName());
+        Files.move(event, target, StandardCopyOption.REPLACE_EXISTING);
+        recovered_.add(target);
+    }
+
+    private long lastSequence()
+    throws IOException {
+        try (var files = Files.walk(pending_)) {
+            return files
+                .map(file -> file.getFileName().toString())
+                .filter(name -> name.endsWith(EVENT_SUFFIX))
+                .mapToLong(name -> Long.parseLong(name.substring(0, name.length() - EVENT_SUFFIX.length())))
+                .max()
+                .orElse(0);
+        }
+    }
+
+    private static String typeKey(Object type)
+    throws WorkflowStoreException {
+        // the serialized form of a type is stable across restarts, unlike its hash code
+        try {
+            var digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            return HexFormat.of().formatHex(digest.digest(serialize(type)), 0, 16);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new WorkflowStoreException("Unable to serialize the event type '" + type + "'.", e);
+        }
+    }
+
+    private static void write(Path file, byte[] bytes)
+    throws IOException {
+        var tmp = Files.createTempFile(file.getParent(), ".", ".tmp");
+        try {
+            Files.write(tmp, bytes);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static byte[] serialize(Object object)
+    throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes)
+    throws IOException, ClassNotFoundException {
+        try (var in = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+            protected Class<?> resolveClass(ObjectStreamClass description)
+            throws IOException, ClassNotFoundException {
+                // the event data can be of application classes
+                try {
+                    return Class.forName(description.getName(), false, Thread.currentThread().getContextClassLoader());
+                } catch (ClassNotFoundException e) {
+                    return super.resolveClass(description);
+                }
+            }
+        }) {
+            return in.readObject();
+        }
+    }
+}
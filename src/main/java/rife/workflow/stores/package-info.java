@@ -0,0 +1,13 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+
+/**
+ * Provides store implementations that persist the paused work and the
+ * pending events of a durable workflow.
+ *
+ * @rife.apiNote The workflow engine is still in an ALPHA EXPERIMENTAL STAGE and might change.
+ * @since 1.9.2
+ */
+package rife.workflow.stores;
@@ -10,14 +10,20 @@ import org.junit.jupiter.params.provider.ArgumentsSource;
 import rife.cmf.Content;
 import rife.cmf.ContentRepository;
 import rife.cmf.MimeType;
+import rife.cmf.dam.contentmanagers.ContentInfoCache;
+import rife.cmf.dam.contentmanagers.ContentLocation;
 import rife.cmf.dam.contentmanagers.DatabaseContentFactory;
 import rife.cmf.dam.contentmanagers.exceptions.InstallContentErrorException;
 import rife.cmf.dam.contentmanagers.exceptions.UnknownContentRepositoryException;
+import rife.cmf.dam.contentmanagers.exceptions.UntrackedTransactionException;
 import rife.cmf.dam.contentstores.DatabaseImageStoreFactory;
 import rife.cmf.dam.contentstores.DatabaseRawStoreFactory;
 import rife.cmf.dam.contentstores.DatabaseTextStoreFactory;
 import rife.cmf.dam.exceptions.ContentManagerException;
+import rife.cmf.format.ImageFormatter;
 import rife.database.Datasource;
+import rife.database.DbQueryManager;
+import rife.database.DbTransactionUser;
 import rife.database.TestDatasources;
 import rife.resources.ResourceFinderClasspath;
 import rife.tools.FileUtils;
@@ -26,6 +32,8 @@ import rife.tools.exceptions.FileUtilsErrorException;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -662,6 +670,32 @@ public class TestContentManager {
         }
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testDeleteContentImageVariants(Datasource datasource)
+    throws Exception {
+        setup(datasource);
+        try {
+            var image_resource_gif = ResourceFinderClasspath.instance().getResource("uwyn.gif");
+            var data_image_gif = FileUtils.readBytes(image_resource_gif);
+
+            var manager = DatabaseContentFactory.instance(datasource);
+
+            var content = new Content(MimeType.IMAGE_PNG, data_image_gif)
+                .attribute(ImageFormatter.ContentAttribute.VARIANTS, "thumbnail=10x10;small=20x");
+            assertTrue(manager.storeContent("/imagecontent", content, null));
+            assertNotNull(manager.getContentInfo("/imagecontent/thumbnail"));
+            assertNotNull(manager.getContentInfo("/imagecontent/small"));
+
+            assertTrue(manager.deleteContent("/imagecontent"));
+            assertNull(manager.getContentInfo("/imagecontent"));
+            assertNull(manager.getContentInfo("/imagecontent/thumbnail"));
+            assertNull(manager.getContentInfo("/imagecontent/small"));
+        } finally {
+            tearDown(datasource);
+        }
+    }
+
     @ParameterizedTest
     @ArgumentsSource(TestDatasources.class)
     void testDeleteContentText(Datasource datasource) {
@@ -812,6 +846,174 @@ public class TestContentManager {
         }
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testGetContentInfoCached(Datasource datasource) {
+        setup(datasource);
+        var manager = DatabaseContentFactory.instance(datasource);
+        var invalidated = new ArrayList<String>();
+        var cache = new ContentInfoCache(10).notifier((repository, path) -> invalidated.add(repository + ":" + path));
+        manager.contentInfoCache(cache);
+        try {
+            assertNull(manager.getContentInfo("/textcontent"));
+            assertEquals(0, cache.size());
+
+            manager.storeContent("/textcontent", new Content(MimeType.APPLICATION_XHTML, "<p>some text</p>")
+                .fragment(true)
+                .name("mytext.html"), null);
+            assertEquals(List.of(ContentRepository.DEFAULT + ":/textcontent"), invalidated);
+
+            var info1a = manager.getContentInfo("/textcontent");
+            var info1b = manager.getContentInfo("/textcontent/mytext.html");
+            assertEquals(0, info1a.getVersion());
+            assertEquals(0, info1b.getVersion());
+            assertEquals(2, cache.size());
+            assertNotSame(info1a, manager.getContentInfo("/textcontent"));
+            assertEquals(info1a.getContentId(), manager.getContentInfo("/textcontent").getContentId());
+            assertEquals(info1b.getContentId(), manager.getContentInfo("/textcontent/mytext.html").getContentId());
+            info1a.setVersion(5);
+            info1a.setName("changed.html");
+            assertEquals(0, manager.getContentInfo("/textcontent").getVersion());
+            assertEquals("mytext.html", manager.getContentInfo("/textcontent").getName());
+            assertTrue(manager.hasContentData("/textcontent"));
+            assertTrue(cache.getHits() >= 3);
+            assertTrue(cache.getHitRate() > 0);
+
+            manager.storeContent("/othercontent", new Content(MimeType.APPLICATION_XHTML, "<p>other text</p>")
+                .fragment(true), null);
+            assertEquals(2, cache.size());
+
+            manager.storeContent("/textcontent", new Content(MimeType.APPLICATION_XHTML, "<p>some other text</p>")
+                .fragment(true)
+                .name("mytext.html"), null);
+            assertEquals(0, cache.size());
+            assertEquals(1, manager.getContentInfo("/textcontent").getVersion());
+            assertEquals(1, manager.getContentInfo("/textcontent/mytext.html").getVersion());
+
+            assertTrue(manager.deleteContent("/textcontent"));
+            assertEquals(0, cache.size());
+            assertNull(manager.getContentInfo("/textcontent"));
+            assertNull(manager.getContentInfo("/textcontent/mytext.html"));
+
+            cache.put(new ContentLocation(ContentRepository.DEFAULT, "/othercontent"), manager.getContentInfo("/othercontent"), cache.getGeneration());
+            var generation = cache.getGeneration();
+            cache.applyInvalidation(ContentRepository.DEFAULT, "/othercontent");
+            assertEquals(0, cache.size());
+            assertFalse(cache.put(new ContentLocation(ContentRepository.DEFAULT, "/othercontent"), info1a, generation));
+            assertEquals(4, invalidated.size());
+        } finally {
+            manager.contentInfoCache(null);
+            tearDown(datasource);
+        }
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testGetContentInfoCachedInTransaction(Datasource datasource) {
+        setup(datasource);
+        var manager = DatabaseContentFactory.instance(datasource);
+        var cache = new ContentInfoCache(10);
+        manager.contentInfoCache(cache);
+        try {
+            ContentTransaction.execute(new DbQueryManager(datasource), new DbTransactionUser<>() {
+                public Object useTransaction()
+                throws InnerClassException {
+                    manager.storeContent("/textcontent", new Content(MimeType.APPLICATION_XHTML, "<p>some text</p>")
+                        .fragment(true), null);
+                    assertEquals(0, manager.getContentInfo("/textcontent").getVersion());
+                    // uncommitted content info isn't cached
+                    assertEquals(0, cache.size());
+                    return null;
+                }
+            });
+
+            assertEquals(0, cache.size());
+            assertEquals(0, manager.getContentInfo("/textcontent").getVersion());
+            assertEquals(1, cache.size());
+
+            // content info that is read during a rolled back transaction
+            // doesn't end up in the cache either
+            assertThrows(RuntimeException.class, () -> ContentTransaction.execute(new DbQueryManager(datasource), new DbTransactionUser<>() {
+                public Object useTransaction()
+                throws InnerClassException {
+                    manager.storeContent("/textcontent", new Content(MimeType.APPLICATION_XHTML, "<p>other text</p>")
+                        .fragment(true), null);
+                    assertEquals(1, manager.getContentInfo("/textcontent").getVersion());
+                    throw new RuntimeException("rollback");
+                }
+            }));
+            assertEquals(0, cache.size());
+            assertEquals(0, manager.getContentInfo("/textcontent").getVersion());
+        } finally {
+            manager.contentInfoCache(null);
+            tearDown(datasource);
+        }
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testGetContentInfoCachedUntrackedTransaction(Datasource datasource) {
+        setup(datasource);
+        var manager = DatabaseContentFactory.instance(datasource);
+        manager.contentInfoCache(new ContentInfoCache(10));
+        try {
+            assertThrows(UntrackedTransactionException.class, () -> new DbQueryManager(datasource).inTransaction(new DbTransactionUser<>() {
+                public Object useTransaction()
+                throws InnerClassException {
+                    return manager.storeContent("/textcontent", new Content(MimeType.APPLICATION_XHTML, "<p>some text</p>")
+                        .fragment(true), null);
+                }
+            }));
+            assertNull(manager.getContentInfo("/textcontent"));
+
+            manager.contentInfoCache(null);
+            new DbQueryManager(datasource).inTransaction(new DbTransactionUser<>() {
+                public Object useTransaction()
+                throws InnerClassException {
+                    return manager.storeContent("/textcontent", new Content(MimeType.APPLICATION_XHTML, "<p>some text</p>")
+                        .fragment(true), null);
+                }
+            });
+            assertNotNull(manager.getContentInfo("/textcontent"));
+        } finally {
+            manager.contentInfoCache(null);
+            tearDown(datasource);
+        }
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testContentInfoCacheIndex(Datasource datasource) {
+        setup(datasource);
+        var manager = DatabaseContentFactory.instance(datasource);
+        var cache = new ContentInfoCache(2);
+        manager.contentInfoCache(cache);
+        try {
+            manager.storeContent("/textcontent", new Content(MimeType.APPLICATION_XHTML, "<p>some text</p>")
+                .fragment(true)
+                .name("mytext.html"), null);
+            manager.storeContent("/othercontent", new Content(MimeType.APPLICATION_XHTML, "<p>other text</p>")
+                .fragment(true), null);
+
+            manager.getContentInfo("/textcontent");
+            manager.getContentInfo("/textcontent/mytext.html");
+            assertEquals(2, cache.size());
+
+            // the evicted location is no longer indexed
+            manager.getContentInfo("/othercontent");
+            assertEquals(2, cache.size());
+            cache.applyInvalidation(ContentRepository.DEFAULT, "/textcontent");
+            assertEquals(1, cache.size());
+            cache.applyInvalidation("otherrepository", "/othercontent");
+            assertEquals(1, cache.size());
+            cache.applyInvalidation(ContentRepository.DEFAULT, "/othercontent");
+            assertEquals(0, cache.size());
+        } finally {
+            manager.contentInfoCache(null);
+            tearDown(datasource);
+        }
+    }
+
     @ParameterizedTest
     @ArgumentsSource(TestDatasources.class)
     void testGetContentInfoName(Datasource datasource) {
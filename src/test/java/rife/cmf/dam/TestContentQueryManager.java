@@ -13,6 +13,7 @@ import rife.cmf.dam.exceptions.*;
 import rife.config.RifeConfig;
 import rife.database.Datasource;
 import rife.database.DbQueryManager;
+import rife.database.DbTransactionUser;
 import rife.database.TestDatasources;
 import rife.database.queries.Select;
 import rife.database.querymanagers.generic.GenericQueryManagerFactory;
@@ -23,6 +24,10 @@ import rife.tools.exceptions.FileUtilsErrorException;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -927,6 +932,128 @@ public class TestContentQueryManager {
         }
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testSaveOrdinalConcurrently(Datasource datasource)
+    throws Exception {
+        setup(datasource);
+        try {
+            var manager = new ContentQueryManager<>(datasource, Ordered.class);
+            manager.install();
+            try {
+                var executor = Executors.newFixedThreadPool(4);
+                try {
+                    var futures = new ArrayList<Future<Integer>>();
+                    for (var i = 0; i < 20; i++) {
+                        var name = "content " + i;
+                        futures.add(executor.submit(() -> manager.save(new Ordered().name(name))));
+                    }
+
+                    var gqm = GenericQueryManagerFactory.instance(datasource, Ordered.class);
+                    var priorities = new HashSet<Integer>();
+                    for (var future : futures) {
+                        priorities.add(gqm.restore(future.get()).getPriority());
+                    }
+                    assertEquals(20, priorities.size());
+                } finally {
+                    executor.shutdown();
+                }
+            } finally {
+                manager.remove();
+            }
+        } finally {
+            tearDown(datasource);
+        }
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testSaveOrdinalConcurrentlyInTransaction(Datasource datasource)
+    throws Exception {
+        setup(datasource);
+        try {
+            var manager = new ContentQueryManager<>(datasource, Ordered.class);
+            manager.install();
+            try {
+                var executor = Executors.newFixedThreadPool(4);
+                try {
+                    var futures = new ArrayList<Future<int[]>>();
+                    for (var i = 0; i < 10; i++) {
+                        var name = "content " + i;
+                        futures.add(executor.submit(() -> manager.inTransaction(new DbTransactionUser<int[], Object>() {
+                            public int[] useTransaction()
+                            throws InnerClassException {
+                                var id1 = manager.save(new Ordered().name(name + "a"));
+                                // the first row isn't committed yet when the second one is saved
+                                Thread.yield();
+                                var id2 = manager.save(new Ordered().name(name + "b"));
+                                return new int[]{id1, id2};
+                            }
+                        })));
+                    }
+
+                    var gqm = GenericQueryManagerFactory.instance(datasource, Ordered.class);
+                    var priorities = new HashSet<Integer>();
+                    for (var future : futures) {
+                        for (var id : future.get()) {
+                            priorities.add(gqm.restore(id).getPriority());
+                        }
+                    }
+                    assertEquals(20, priorities.size());
+                } finally {
+                    executor.shutdown();
+                }
+            } finally {
+                manager.remove();
+            }
+        } finally {
+            tearDown(datasource);
+        }
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testSaveOrdinalInsertLockTransactions(Datasource datasource) {
+        setup(datasource);
+        try {
+            var manager = new ContentQueryManager<>(datasource, Ordered.class);
+            manager.install();
+            try {
+                var ordinals = new OrdinalManager(datasource, manager.getTable(), "priority");
+
+                // the insert lock is held until a tracked transaction completes
+                manager.inTransaction(new DbTransactionUser<Object, Object>() {
+                    public Object useTransaction()
+                    throws InnerClassException {
+                        manager.save(new Ordered().name("content a"));
+                        assertTrue(ordinals.isInsertLockHeldByCurrentThread());
+                        manager.save(new Ordered().name("content b"));
+                        assertTrue(ordinals.isInsertLockHeldByCurrentThread());
+                        return null;
+                    }
+                });
+                assertFalse(ordinals.isInsertLockHeldByCurrentThread());
+
+                // a plain database transaction can't be tracked, the lock
+                // is already released when save returns
+                new DbQueryManager(datasource).inTransaction(new DbTransactionUser<Object, Object>() {
+                    public Object useTransaction()
+                    throws InnerClassException {
+                        manager.save(new Ordered().name("content c"));
+                        assertFalse(ordinals.isInsertLockHeldByCurrentThread());
+                        return null;
+                    }
+                });
+
+                assertEquals(0, OrdinalManager.countInsertLocks());
+            } finally {
+                manager.remove();
+            }
+        } finally {
+            tearDown(datasource);
+        }
+    }
+
     @ParameterizedTest
     @ArgumentsSource(TestDatasources.class)
     void testDeleteOrdinalRestricted(Datasource datasource) {
@@ -1807,6 +1934,55 @@ public class TestContentQueryManager {
         }
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testRestoreAutoRetrievedBatch(Datasource datasource)
+    throws Exception {
+        setup(datasource);
+        try {
+            var manager = new ContentQueryManager<>(datasource, ContentImageAutoRetrieved.class);
+            manager.install();
+            try {
+                var image_resource_gif = ResourceFinderClasspath.instance().getResource("uwyn.gif");
+                var data_image_gif = FileUtils.readBytes(image_resource_gif);
+
+                for (var i = 0; i < 3; i++) {
+                    manager.save(new ContentImageAutoRetrieved()
+                        .name("the content name " + i)
+                        .image(data_image_gif));
+                }
+
+                var image_resource_png = ResourceFinderClasspath.instance().getResource("uwyn.png");
+                var data_image_png = FileUtils.readBytes(image_resource_png);
+
+                var restored = manager.restore(manager.getRestoreQuery().orderBy("id"));
+                assertEquals(3, restored.size());
+                for (var i = 0; i < 3; i++) {
+                    assertEquals("the content name " + i, restored.get(i).getName());
+                    assertArrayEquals(data_image_png, restored.get(i).getImage());
+                }
+
+                manager.deferAutoRetrieved(true);
+                assertTrue(manager.isAutoRetrievedDeferred());
+
+                var deferred = manager.restore(manager.getRestoreQuery().orderBy("id"));
+                assertEquals(3, deferred.size());
+                for (var bean : deferred) {
+                    assertNull(bean.getImage());
+                }
+
+                manager.restoreAutoRetrievedContent(deferred.subList(0, 2));
+                assertArrayEquals(data_image_png, deferred.get(0).getImage());
+                assertArrayEquals(data_image_png, deferred.get(1).getImage());
+                assertNull(deferred.get(2).getImage());
+            } finally {
+                manager.remove();
+            }
+        } finally {
+            tearDown(datasource);
+        }
+    }
+
     @ParameterizedTest
     @ArgumentsSource(TestDatasources.class)
     void testRestore(Datasource datasource)
@@ -11,6 +11,9 @@ import rife.database.TestDatasources;
 import rife.database.querymanagers.generic.GenericQueryManager;
 import rife.database.querymanagers.generic.GenericQueryManagerFactory;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TestOrdinalManager {
@@ -320,6 +323,63 @@ public class TestOrdinalManager {
         }
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testTightenDuplicates(Datasource datasource) {
+        setup(datasource);
+        try {
+            var ordered1 = orderedManager_.save(new Ordered().name("ordered 1").priority(3));
+            var ordered2 = orderedManager_.save(new Ordered().name("ordered 2").priority(7));
+            var ordered3 = orderedManager_.save(new Ordered().name("ordered 3").priority(7));
+            var ordered4 = orderedManager_.save(new Ordered().name("ordered 4").priority(12));
+
+            assertTrue(ordinalManager_.tighten());
+            assertEquals(0, orderedManager_.restore(ordered1).getPriority());
+            var priority2 = orderedManager_.restore(ordered2).getPriority();
+            var priority3 = orderedManager_.restore(ordered3).getPriority();
+            assertTrue(priority2 >= 1 && priority2 <= 2);
+            assertTrue(priority3 >= 1 && priority3 <= 2);
+            assertEquals(3, orderedManager_.restore(ordered4).getPriority());
+        } finally {
+            tearDown();
+        }
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testInsertLock(Datasource datasource)
+    throws Exception {
+        setup(datasource);
+        try {
+            var other = new OrdinalManager(datasource, orderedManager_.getTable(), "priority");
+            assertTrue(ordinalManager_.lockInsert(1, TimeUnit.SECONDS));
+            try {
+                assertTrue(other.isInsertLockHeldByCurrentThread());
+                assertFalse(ordinalRestrictedManager_.isInsertLockHeldByCurrentThread());
+
+                var executor = Executors.newSingleThreadExecutor();
+                try {
+                    assertFalse(executor.submit(() -> other.lockInsert(10, TimeUnit.MILLISECONDS)).get());
+                    assertTrue(executor.submit(() -> {
+                        var locked = ordinalRestrictedManager_.lockInsert(1, TimeUnit.SECONDS);
+                        ordinalRestrictedManager_.unlockInsert();
+                        return locked;
+                    }).get());
+                } finally {
+                    executor.shutdown();
+                }
+            } finally {
+                other.unlockInsert();
+            }
+
+            assertFalse(ordinalManager_.isInsertLockHeldByCurrentThread());
+            assertEquals(0, OrdinalManager.countInsertLocks());
+            assertThrows(IllegalMonitorStateException.class, () -> ordinalManager_.unlockInsert());
+        } finally {
+            tearDown();
+        }
+    }
+
     @ParameterizedTest
     @ArgumentsSource(TestDatasources.class)
     void testObtainInsertOrdinal(Datasource datasource) {
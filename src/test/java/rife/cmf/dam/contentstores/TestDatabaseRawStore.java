@@ -17,7 +17,10 @@ import rife.cmf.dam.contentmanagers.DatabaseContentInfo;
 import rife.cmf.dam.contentstores.exceptions.*;
 import rife.config.RifeConfig;
 import rife.database.Datasource;
+import rife.database.DbQueryManager;
 import rife.database.TestDatasources;
+import rife.database.queries.CreateTable;
+import rife.database.queries.DropTable;
 import rife.database.queries.Insert;
 import rife.database.queries.Select;
 import rife.tools.FileUtils;
@@ -26,9 +29,13 @@ import rife.tools.exceptions.FileUtilsErrorException;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -385,6 +392,71 @@ public class TestDatabaseRawStore {
         }
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testStoreContentDataChunkBatches(Datasource datasource) {
+        setup(datasource);
+        var store = DatabaseRawStoreFactory.instance(datasource);
+        try {
+            final var id = new int[]{1};
+            final var manager = DatabaseContentFactory.instance(datasource);
+            final var insert = new Insert(datasource)
+                .into(RifeConfig.cmf().getTableContentInfo())
+                .fieldParameter("version")
+                .fieldParameter("repositoryId");
+            if ("org.apache.derby.jdbc.EmbeddedDriver".equals(datasource.getAliasedDriver())) {
+                insert.fieldsParametersExcluded(DatabaseContentInfo.class, new String[]{"contentId"});
+            } else {
+                insert.fieldsParameters(DatabaseContentInfo.class);
+            }
+            if ("com.mysql.cj.jdbc.Driver".equals(datasource.getAliasedDriver())) {
+                insert.fieldParameter("created");
+            }
+            manager.executeUpdate(insert, statement -> {
+                var content_info = new DatabaseContentInfo();
+                if (!"org.apache.derby.jdbc.EmbeddedDriver".equals(datasource.getAliasedDriver())) {
+                    content_info.setContentId(id[0]);
+                }
+                content_info.setFragment(false);
+                content_info.setPath("/testpath");
+                content_info.setMimeType(MimeType.RAW.toString());
+                content_info.setCreated(new Timestamp(new Date().getTime()));
+                statement
+                    .setInt("version", 1)
+                    .setInt("repositoryId", manager.executeGetFirstInt(new Select(datasource)
+                        .from(RifeConfig.cmf().getTableContentRepository())
+                        .field("repositoryId")
+                        .where("name", "=", ContentRepository.DEFAULT)))
+                    .setBean(content_info);
+            });
+
+            final var raw = getSmallRaw();
+
+            // 62 chunks, sent in batches of 7 with a partial last batch
+            store.chunkSize(1000).batchSize(7);
+            assertEquals(1000, store.getChunkSize());
+            assertEquals(7, store.getBatchSize());
+
+            var content = new Content(MimeType.RAW, raw);
+            assertTrue(store.storeContentData(id[0], content, null));
+            assertEquals(raw.length, store.getSize(id[0]));
+
+            store.useContentData(id[0], new ContentDataUserWithoutResult() {
+                public void useContentData(Object contentData)
+                throws InnerClassException {
+                    try {
+                        assertArrayEquals(raw, FileUtils.readBytes((InputStream) contentData));
+                    } catch (FileUtilsErrorException e) {
+                        throwException(e);
+                    }
+                }
+            });
+        } finally {
+            store.chunkSize(DatabaseRawStore.DEFAULT_CHUNK_SIZE).batchSize(DatabaseRawStore.DEFAULT_BATCH_SIZE);
+            tearDown(datasource);
+        }
+    }
+
     @ParameterizedTest
     @ArgumentsSource(TestDatasources.class)
     void testStoreContentDataContentEmpty(Datasource datasource) {
@@ -820,6 +892,145 @@ public class TestDatabaseRawStore {
         }
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testDeleteContentDataDeduplicated(Datasource datasource) {
+        setup(datasource);
+        try {
+            var manager = DatabaseContentFactory.instance(datasource);
+
+            final var raw = getSmallRaw();
+
+            assertTrue(manager.storeContent("/rawdata1", new Content(MimeType.RAW, new ByteArrayInputStream(raw)), null));
+            assertTrue(manager.storeContent("/rawdata2", new Content(MimeType.RAW, new ByteArrayInputStream(raw)), null));
+            assertTrue(manager.storeContent("/rawdata3", new Content(MimeType.RAW, new ByteArrayInputStream(raw)), null));
+            var id1 = manager.getContentInfo("/rawdata1").getContentId();
+            var id2 = manager.getContentInfo("/rawdata2").getContentId();
+            var id3 = manager.getContentInfo("/rawdata3").getContentId();
+
+            // identical data is only stored once
+            var count_chunks = new Select(datasource)
+                .from(RifeConfig.cmf().getTableContentStoreRawChunk())
+                .field("count(*)");
+            var chunk_count = manager.executeGetFirstInt(count_chunks);
+            assertTrue(chunk_count > 0);
+
+            var store = DatabaseRawStoreFactory.instance(datasource);
+            assertEquals((raw.length + store.getChunkSize() - 1) / store.getChunkSize(), chunk_count);
+
+            final var verify = new ContentDataUserWithoutResult() {
+                public void useContentData(Object contentData)
+                throws InnerClassException {
+                    try {
+                        assertArrayEquals(raw, FileUtils.readBytes((InputStream) contentData));
+                    } catch (FileUtilsErrorException e) {
+                        throwException(e);
+                    }
+                }
+            };
+
+            // deleting the content that holds the chunks hands them over
+            assertTrue(store.deleteContentData(id1));
+            assertFalse(store.hasContentData(id1));
+            assertEquals(chunk_count, manager.executeGetFirstInt(count_chunks));
+            store.useContentData(id2, verify);
+            store.useContentData(id3, verify);
+            assertEquals(raw.length, store.getSize(id3));
+
+            assertTrue(store.deleteContentData(id3));
+            assertEquals(chunk_count, manager.executeGetFirstInt(count_chunks));
+            store.useContentData(id2, verify);
+
+            // the chunks are removed with the last reference
+            assertTrue(store.deleteContentData(id2));
+            assertEquals(0, manager.executeGetFirstInt(count_chunks));
+            assertFalse(store.deleteContentData(id2));
+        } finally {
+            tearDown(datasource);
+        }
+    }
+
+    private static boolean isRequiredColumn(DbQueryManager manager, String table, String column)
+    throws SQLException {
+        var metadata = manager.getConnection().getMetaData();
+        for (var name : new LinkedHashSet<>(List.of(table, table.toUpperCase(), table.toLowerCase()))) {
+            try (var columns = metadata.getColumns(null, null, name, null)) {
+                while (columns.next()) {
+                    if (column.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                        return DatabaseMetaData.columnNoNulls == columns.getInt("NULLABLE");
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testUpgrade(Datasource datasource)
+    throws SQLException {
+        setup(datasource);
+        try {
+            var manager = DatabaseContentFactory.instance(datasource);
+            var store = DatabaseRawStoreFactory.instance(datasource);
+            assertFalse(manager.upgrade());
+
+            final var raw = getSmallRaw();
+            assertTrue(manager.storeContent("/rawdata1", new Content(MimeType.RAW, new ByteArrayInputStream(raw)), null));
+            var id1 = manager.getContentInfo("/rawdata1").getContentId();
+
+            // recreate the info table without the data references, like
+            // it was installed by an earlier version
+            manager.executeUpdate(new DropTable(datasource)
+                .table(RifeConfig.cmf().getTableContentStoreRawInfo()));
+            manager.executeUpdate(new CreateTable(datasource)
+                .table(RifeConfig.cmf().getTableContentStoreRawInfo())
+                .column("contentId", int.class, CreateTable.NOTNULL)
+                .column("contentSize", int.class, CreateTable.NOTNULL)
+                .primaryKey(("PK_" + RifeConfig.cmf().getTableContentStoreRawInfo()).toUpperCase(), "contentId"));
+            manager.executeUpdate(new Insert(datasource)
+                .into(RifeConfig.cmf().getTableContentStoreRawInfo())
+                .field("contentId", id1)
+                .field("contentSize", raw.length));
+
+            assertTrue(manager.upgrade());
+            assertFalse(store.upgrade());
+
+            // the upgraded structure is identical to a new installation
+            assertTrue(isRequiredColumn(manager, RifeConfig.cmf().getTableContentStoreRawInfo(), "dataId"));
+            assertTrue(isRequiredColumn(manager, RifeConfig.cmf().getTableContentStoreRawInfo(), "refCount"));
+
+            final var verify = new ContentDataUserWithoutResult() {
+                public void useContentData(Object contentData)
+                throws InnerClassException {
+                    try {
+                        assertArrayEquals(raw, FileUtils.readBytes((InputStream) contentData));
+                    } catch (FileUtilsErrorException e) {
+                        throwException(e);
+                    }
+                }
+            };
+            store.useContentData(id1, verify);
+            assertEquals(raw.length, store.getSize(id1));
+
+            // content that was stored before the upgrade isn't deduplicated
+            var count_chunks = new Select(datasource)
+                .from(RifeConfig.cmf().getTableContentStoreRawChunk())
+                .field("count(*)");
+            var chunk_count = manager.executeGetFirstInt(count_chunks);
+            assertTrue(manager.storeContent("/rawdata2", new Content(MimeType.RAW, new ByteArrayInputStream(raw)), null));
+            var id2 = manager.getContentInfo("/rawdata2").getContentId();
+            assertEquals(chunk_count * 2, manager.executeGetFirstInt(count_chunks));
+            store.useContentData(id2, verify);
+
+            assertTrue(store.deleteContentData(id1));
+            assertEquals(chunk_count, manager.executeGetFirstInt(count_chunks));
+            store.useContentData(id2, verify);
+        } finally {
+            tearDown(datasource);
+        }
+    }
+
     @ParameterizedTest
     @ArgumentsSource(TestDatasources.class)
     void testRetrieveSize(Datasource datasource) {
@@ -20,6 +20,8 @@ import rife.database.TestDatasources;
 import rife.database.queries.Insert;
 import rife.database.queries.Select;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.util.Date;
 
@@ -167,6 +169,110 @@ public class TestDatabaseTextStore {
         }
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testStoreContentDataXhtmlStream(Datasource datasource) {
+        setup(datasource);
+        try {
+            final var id = new int[]{1};
+            final var manager = DatabaseContentFactory.instance(datasource);
+            final var insert = new Insert(datasource)
+                .into(RifeConfig.cmf().getTableContentInfo())
+                .fieldParameter("version")
+                .fieldParameter("repositoryId");
+            if ("org.apache.derby.jdbc.EmbeddedDriver".equals(datasource.getAliasedDriver())) {
+                insert.fieldsParametersExcluded(DatabaseContentInfo.class, new String[]{"contentId"});
+            } else {
+                insert.fieldsParameters(DatabaseContentInfo.class);
+            }
+            if ("com.mysql.cj.jdbc.Driver".equals(datasource.getAliasedDriver())) {
+                insert.fieldParameter("created");
+            }
+            manager.executeUpdate(insert, statement -> {
+                var content_info = new DatabaseContentInfo();
+                if (!"org.apache.derby.jdbc.EmbeddedDriver".equals(datasource.getAliasedDriver())) {
+                    content_info.setContentId(id[0]);
+                }
+                content_info.setFragment(false);
+                content_info.setPath("/testpath");
+                content_info.setMimeType(MimeType.APPLICATION_XHTML.toString());
+                content_info.setCreated(new Timestamp(new Date().getTime()));
+                statement
+                    .setInt("version", 1)
+                    .setInt("repositoryId", manager.executeGetFirstInt(new Select(datasource)
+                        .from(RifeConfig.cmf().getTableContentRepository())
+                        .field("repositoryId")
+                        .where("name", "=", ContentRepository.DEFAULT)))
+                    .setBean(content_info);
+            });
+
+            final var data = "<i>cool beans</i><p>hôt <a href=\"http://uwyn.com\">chili</a></p>".repeat(1000);
+
+            var store = DatabaseTextStoreFactory.instance(datasource);
+            var content = new Content(MimeType.APPLICATION_XHTML, new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8))).fragment(true);
+            assertTrue(store.storeContentData(id[0], content, null));
+
+            store.useContentData(id[0], contentData -> {
+                var data_encoded = "<i>cool beans</i><p>h&ocirc;t <a href=\"http://uwyn.com\">chili</a></p>".repeat(1000);
+                assertEquals(data_encoded, contentData);
+            });
+        } finally {
+            tearDown(datasource);
+        }
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testStoreContentDataStreamUnformatted(Datasource datasource) {
+        setup(datasource);
+        try {
+            final var id = new int[]{1};
+            final var manager = DatabaseContentFactory.instance(datasource);
+            final var insert = new Insert(datasource)
+                .into(RifeConfig.cmf().getTableContentInfo())
+                .fieldParameter("version")
+                .fieldParameter("repositoryId");
+            if ("org.apache.derby.jdbc.EmbeddedDriver".equals(datasource.getAliasedDriver())) {
+                insert.fieldsParametersExcluded(DatabaseContentInfo.class, new String[]{"contentId"});
+            } else {
+                insert.fieldsParameters(DatabaseContentInfo.class);
+            }
+            if ("com.mysql.cj.jdbc.Driver".equals(datasource.getAliasedDriver())) {
+                insert.fieldParameter("created");
+            }
+            manager.executeUpdate(insert, statement -> {
+                var content_info = new DatabaseContentInfo();
+                if (!"org.apache.derby.jdbc.EmbeddedDriver".equals(datasource.getAliasedDriver())) {
+                    content_info.setContentId(id[0]);
+                }
+                content_info.setFragment(false);
+                content_info.setPath("/testpath");
+                content_info.setMimeType(MimeType.APPLICATION_XHTML.toString());
+                content_info.setCreated(new Timestamp(new Date().getTime()));
+                statement
+                    .setInt("version", 1)
+                    .setInt("repositoryId", manager.executeGetFirstInt(new Select(datasource)
+                        .from(RifeConfig.cmf().getTableContentRepository())
+                        .field("repositoryId")
+                        .where("name", "=", ContentRepository.DEFAULT)))
+                    .setBean(content_info);
+            });
+
+            final var data = "<i>cool beans</i><p>hôt <a href=\"http://uwyn.com\">chili</a></p>".repeat(1000);
+
+            var store = DatabaseTextStoreFactory.instance(datasource);
+            var content = new Content(MimeType.APPLICATION_XHTML, new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)))
+                .fragment(true)
+                .attribute("unformatted", true);
+            assertTrue(store.storeContentData(id[0], content, null));
+
+            assertEquals(data.getBytes(StandardCharsets.UTF_8).length, store.getSize(id[0]));
+            store.useContentData(id[0], contentData -> assertEquals(data, contentData));
+        } finally {
+            tearDown(datasource);
+        }
+    }
+
     @ParameterizedTest
     @ArgumentsSource(TestDatasources.class)
     void testStoreContentDataXhtmlLarge(Datasource datasource) {
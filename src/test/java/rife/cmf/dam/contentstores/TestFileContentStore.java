@@ -0,0 +1,288 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.dam.contentstores;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+import rife.cmf.Content;
+import rife.cmf.ContentInfo;
+import rife.cmf.MimeType;
+import rife.cmf.dam.ContentTransaction;
+import rife.cmf.dam.contentmanagers.DatabaseContent;
+import rife.cmf.dam.contentmanagers.DatabaseContentFactory;
+import rife.cmf.dam.contentstores.exceptions.InstallContentStoreErrorException;
+import rife.cmf.dam.contentstores.exceptions.RemoveContentStoreErrorException;
+import rife.database.Datasource;
+import rife.database.DbTransactionUser;
+import rife.database.TestDatasources;
+import rife.engine.Site;
+import rife.test.MockConversation;
+import rife.tools.InnerClassException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFileContentStore {
+    private File directory_;
+    private FileContentStore store_;
+
+    private byte[] getRaw() {
+        var size = 60 * 1024; // 60kb
+        var binary = new byte[size];
+        for (var i = 0; i < size; i++) {
+            binary[i] = (byte) (i % 127);
+        }
+
+        return binary;
+    }
+
+    private long countBlobs()
+    throws IOException {
+        try (var paths = Files.walk(directory_.toPath().resolve("blobs"))) {
+            return paths.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private DatabaseContent createManager(Datasource datasource)
+    throws ReflectiveOperationException {
+        // a separate content manager, the shared one keeps the data in the database
+        var manager = DatabaseContentFactory.instance(datasource).getClass()
+            .getConstructor(Datasource.class).newInstance(datasource);
+        store_.remove();
+        manager.contentStore(store_);
+        manager.install();
+        return manager;
+    }
+
+    @BeforeEach
+    public void setup()
+    throws IOException {
+        directory_ = Files.createTempDirectory("filecontentstore").toFile();
+        store_ = new FileContentStore(directory_, MimeType.RAW, MimeType.TEXT_PLAIN);
+        store_.install();
+    }
+
+    @AfterEach
+    public void tearDown()
+    throws IOException {
+        try (var paths = Files.walk(directory_.toPath())) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    void testInstallError() {
+        assertThrows(InstallContentStoreErrorException.class, () -> store_.install());
+    }
+
+    @Test
+    void testRemove() {
+        assertTrue(store_.remove());
+        assertThrows(RemoveContentStoreErrorException.class, () -> store_.remove());
+        assertTrue(store_.install());
+    }
+
+    @Test
+    void testGetSupportedMimeTypes() {
+        assertEquals(2, store_.getSupportedMimeTypes().size());
+        assertTrue(store_.getSupportedMimeTypes().contains(MimeType.RAW));
+        assertTrue(store_.getSupportedMimeTypes().contains(MimeType.TEXT_PLAIN));
+    }
+
+    @Test
+    void testGetContentType() {
+        var info = new ContentInfo();
+        info.setMimeType(MimeType.TEXT_PLAIN.toString());
+        assertEquals("text/plain; charset=UTF-8", store_.getContentType(info));
+
+        info.setMimeType(MimeType.IMAGE_PNG.toString());
+        assertNull(store_.getContentType(info));
+    }
+
+    @Test
+    void testStoreContentDataRaw() {
+        var raw = getRaw();
+        var content = new Content(MimeType.RAW, new ByteArrayInputStream(raw));
+        assertTrue(store_.storeContentData(2, content, null));
+
+        assertTrue(store_.hasContentData(2));
+        assertEquals(raw.length, store_.getSize(2));
+        store_.useContentData(2, contentData -> {
+            assertTrue(contentData instanceof InputStream);
+            try {
+                assertArrayEquals(raw, ((InputStream) contentData).readAllBytes());
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    void testStoreContentDataText() {
+        var text = "this is some text content ⇒ with unicode";
+        var content = new Content(MimeType.TEXT_PLAIN, text);
+        assertTrue(store_.storeContentData(3, content, null));
+
+        assertEquals(text.length(), store_.getSize(3));
+        assertEquals(text, store_.useContentDataResult(3, contentData -> contentData));
+    }
+
+    @Test
+    void testStoreContentDataReplace() {
+        assertTrue(store_.storeContentData(4, new Content(MimeType.TEXT_PLAIN, "first"), null));
+        assertTrue(store_.storeContentData(4, new Content(MimeType.TEXT_PLAIN, "second"), null));
+
+        assertEquals("second", store_.useContentDataResult(4, contentData -> contentData));
+    }
+
+    @Test
+    void testStoreContentDataDeduplicated()
+    throws IOException {
+        var raw = getRaw();
+        assertTrue(store_.storeContentData(5, new Content(MimeType.RAW, new ByteArrayInputStream(raw)), null));
+        assertTrue(store_.storeContentData(6, new Content(MimeType.RAW, new ByteArrayInputStream(raw)), null));
+        assertEquals(1, countBlobs());
+
+        assertTrue(store_.deleteContentData(5));
+        assertFalse(store_.hasContentData(5));
+        assertEquals(-1, store_.getSize(5));
+        assertTrue(store_.hasContentData(6));
+        assertEquals(1, countBlobs());
+
+        assertTrue(store_.deleteContentData(6));
+        assertEquals(0, countBlobs());
+    }
+
+    @Test
+    void testDeleteContentDataUnknown() {
+        assertFalse(store_.deleteContentData(7));
+    }
+
+    @Test
+    void testUseContentDataUnknown() {
+        assertNull(store_.useContentDataResult(8, contentData -> contentData));
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testDatabaseContent(Datasource datasource)
+    throws Exception {
+        var manager = createManager(datasource);
+        try {
+            var raw = getRaw();
+            assertTrue(manager.storeContent("/rawdata", new Content(MimeType.RAW, new ByteArrayInputStream(raw)), null));
+            assertTrue(manager.hasContentData("/rawdata"));
+            assertEquals(raw.length, manager.getContentInfo("/rawdata").getSize());
+            manager.useContentData("/rawdata", contentData -> {
+                try {
+                    assertArrayEquals(raw, ((InputStream) contentData).readAllBytes());
+                } catch (IOException e) {
+                    fail(e);
+                }
+            });
+            assertEquals(1, countBlobs());
+
+            assertTrue(manager.storeContent("/rawdata", new Content(MimeType.TEXT_PLAIN, "some text"), null));
+            assertEquals("some text", manager.useContentDataResult("/rawdata", contentData -> contentData));
+            assertEquals(2, countBlobs());
+
+            assertTrue(manager.deleteContent("/rawdata"));
+            assertNull(manager.getContentInfo("/rawdata"));
+            assertEquals(0, countBlobs());
+        } finally {
+            manager.remove();
+        }
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testDatabaseContentRollback(Datasource datasource)
+    throws Exception {
+        var manager = createManager(datasource);
+        try {
+            var raw = getRaw();
+
+            // the data that was written is released again on rollback
+            ContentTransaction.execute(manager, new DbTransactionUser<>() {
+                public Object useTransaction()
+                throws InnerClassException {
+                    assertTrue(manager.storeContent("/rawdata", new Content(MimeType.RAW, new ByteArrayInputStream(raw)), null));
+                    try {
+                        assertEquals(1, countBlobs());
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                    rollback();
+                    return null;
+                }
+            });
+            assertNull(manager.getContentInfo("/rawdata"));
+            assertEquals(0, countBlobs());
+
+            // the data is only deleted once the deletion is committed
+            assertTrue(manager.storeContent("/rawdata", new Content(MimeType.RAW, new ByteArrayInputStream(raw)), null));
+            ContentTransaction.execute(manager, new DbTransactionUser<>() {
+                public Object useTransaction()
+                throws InnerClassException {
+                    assertTrue(manager.deleteContent("/rawdata"));
+                    try {
+                        assertEquals(1, countBlobs());
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                    rollback();
+                    return null;
+                }
+            });
+            assertTrue(manager.hasContentData("/rawdata"));
+            assertEquals(raw.length, manager.getContentInfo("/rawdata").getSize());
+            assertEquals(1, countBlobs());
+        } finally {
+            manager.remove();
+        }
+    }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testServeContentData(Datasource datasource)
+    throws Exception {
+        var manager = createManager(datasource);
+        try {
+            var raw = getRaw();
+            manager.storeContent("/rawdata", new Content(MimeType.RAW, new ByteArrayInputStream(raw)).name("mycoollib.so"), null);
+            manager.storeContent("/textdata", new Content(MimeType.TEXT_PLAIN, "some text ⇒ served"), null);
+
+            var conversation = new MockConversation(new Site() {
+                public void setup() {
+                    get("/raw", c -> manager.serveContentData(c, "/rawdata"));
+                    get("/text", c -> manager.serveContentData(c, "/textdata"));
+                }
+            });
+
+            var response = conversation.doRequest("http://localhost/raw");
+            assertEquals(200, response.getStatus());
+            assertEquals("application/octet-stream", response.getContentType());
+            assertEquals(raw.length, response.getContentLength());
+            assertArrayEquals(raw, response.getBytes());
+
+            response = conversation.doRequest("http://localhost/text");
+            assertEquals("text/plain; charset=UTF-8", response.getContentType());
+            assertEquals("some text ⇒ served", response.getText());
+        } finally {
+            manager.remove();
+        }
+    }
+}
@@ -4,6 +4,7 @@
  */
 package rife.cmf.dam.elements;
 
+import com.gargoylesoftware.htmlunit.HttpMethod;
 import com.gargoylesoftware.htmlunit.UnexpectedPage;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebRequest;
@@ -13,10 +14,16 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ArgumentsSource;
 import rife.cmf.Content;
 import rife.cmf.MimeType;
+import rife.cmf.dam.ContentDataUserWithoutResult;
 import rife.cmf.dam.ContentImage;
 import rife.cmf.dam.ContentQueryManager;
+import rife.cmf.dam.ContentRaw;
+import rife.cmf.dam.ResumableUploads;
 import rife.cmf.dam.contentmanagers.DatabaseContentFactory;
+import rife.cmf.dam.contentmanagers.ImageResizing;
+import rife.cmf.elements.ResumableUpload;
 import rife.cmf.elements.ServeContent;
+import rife.cmf.loader.ImageContentLoader;
 import rife.config.RifeConfig;
 import rife.database.Datasource;
 import rife.database.TestDatasources;
@@ -25,13 +32,23 @@ import rife.engine.Site;
 import rife.engine.TestServerRunner;
 import rife.resources.ResourceFinderClasspath;
 import rife.tools.FileUtils;
+import rife.tools.InnerClassException;
+import rife.tools.exceptions.FileUtilsErrorException;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static rife.cmf.format.ImageFormatter.ContentAttribute.HIDPI;
 
 public class TestElements {
@@ -40,6 +57,15 @@ public class TestElements {
         DatabaseContentFactory.instance(datasource).install();
     }
 
+    private void deleteDirectory(Path directory)
+    throws Exception {
+        try (var paths = Files.walk(directory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
     public void tearDown(Datasource datasource) {
         try {
             DatabaseContentFactory.instance(datasource).remove();
@@ -131,6 +157,70 @@ public class TestElements {
         }
     }
 
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testServeContentImageResized(Datasource datasource)
+    throws Exception {
+        RifeConfig.engine().setPassThroughSuffixes(Collections.emptySet());
+        setup(datasource);
+        var cache_dir = Files.createTempDirectory("imageresizing");
+        try {
+            var manager = DatabaseContentFactory.instance(datasource);
+
+            var image_resource_png = ResourceFinderClasspath.instance().getResource("uwyn.png");
+            var data_image_png = FileUtils.readBytes(image_resource_png);
+
+            var content = new Content(MimeType.IMAGE_PNG, data_image_png).name("uwyn.png");
+            manager.storeContent("/imagepng", content, null);
+
+            var resizing = new ImageResizing(cache_dir.toFile())
+                .widths(20, 640)
+                .formats(MimeType.IMAGE_PNG, MimeType.IMAGE_JPEG);
+
+            try (final var server = new TestServerRunner(new Site() {
+                public void setup() {
+                    get("/serve", PathInfoHandling.CAPTURE, new ServeContent(datasource).imageResizing(resizing));
+                }
+            })) {
+                try (final var webClient = new WebClient()) {
+                    webClient.getOptions().setThrowExceptionOnFailingStatusCode(false);
+
+                    byte[] data_image_resized = null;
+                    for (var i = 0; i < 2; i++) {
+                        UnexpectedPage page = webClient.getPage("http://localhost:8181/serve/imagepng?width=20");
+                        var response = page.getWebResponse();
+                        assertEquals(MimeType.IMAGE_PNG.toString(), response.getContentType());
+                        assertEquals("inline; filename=uwyn.png", response.getResponseHeaderValue("Content-Disposition"));
+                        var data = FileUtils.readBytes(response.getContentAsStream());
+                        assertEquals(data.length, response.getContentLength());
+                        if (data_image_resized != null) {
+                            assertArrayEquals(data_image_resized, data);
+                        }
+                        data_image_resized = data;
+                    }
+                    assertEquals(20, new ImageContentLoader().load(data_image_resized, false, null).data().getWidth(null));
+                    assertEquals(data_image_resized.length, resizing.size());
+
+                    UnexpectedPage page = webClient.getPage("http://localhost:8181/serve/imagepng?width=640&format=jpeg");
+                    var response = page.getWebResponse();
+                    assertEquals(MimeType.IMAGE_JPEG.toString(), response.getContentType());
+                    assertEquals("inline; filename=uwyn.jpeg", response.getResponseHeaderValue("Content-Disposition"));
+                    var loaded = new ImageContentLoader().load(FileUtils.readBytes(response.getContentAsStream()), false, null);
+                    assertEquals(640, loaded.data().getWidth(null));
+
+                    var bad_response = webClient.getPage("http://localhost:8181/serve/imagepng?width=21").getWebResponse();
+                    assertEquals(400, bad_response.getStatusCode());
+                    bad_response = webClient.getPage("http://localhost:8181/serve/imagepng?format=bmp").getWebResponse();
+                    assertEquals(400, bad_response.getStatusCode());
+                }
+            }
+        } finally {
+            deleteDirectory(cache_dir);
+            tearDown(datasource);
+            RifeConfig.engine().setPassThroughSuffixes(RifeConfig.EngineConfig.DEFAULT_PASS_THROUGH_SUFFIXES);
+        }
+    }
+
     @ParameterizedTest
     @ArgumentsSource(TestDatasources.class)
     void testServeContentText(Datasource datasource)
@@ -387,4 +477,92 @@ public class TestElements {
             RifeConfig.engine().setPassThroughSuffixes(RifeConfig.EngineConfig.DEFAULT_PASS_THROUGH_SUFFIXES);
         }
     }
+
+    @ParameterizedTest
+    @ArgumentsSource(TestDatasources.class)
+    void testResumableUpload(Datasource datasource)
+    throws Exception {
+        setup(datasource);
+        var directory = Files.createTempDirectory("uploads");
+        var manager = new ContentQueryManager<>(datasource, ContentRaw.class);
+        manager.install();
+        try {
+            var data = "0123456789".repeat(1000);
+            var uploads = new ResumableUploads(directory.toFile());
+            var committed = new AtomicInteger(-1);
+
+            try (final var server = new TestServerRunner(new Site() {
+                public void setup() {
+                    route("/upload", PathInfoHandling.CAPTURE, new ResumableUpload(uploads, (c, upload) -> {
+                        var bean = new ContentRaw().name(upload.metadata().get("filename"));
+                        var id = manager.save(bean);
+                        if (uploads.commit(upload.id(), manager, bean, "raw")) {
+                            committed.set(id);
+                        }
+                    }));
+                }
+            })) {
+                try (final var webClient = new WebClient()) {
+                    webClient.getOptions().setThrowExceptionOnFailingStatusCode(false);
+                    webClient.getOptions().setPrintContentOnFailingStatusCode(false);
+
+                    var request = new WebRequest(new URL("http://localhost:8181/upload"), HttpMethod.POST);
+                    request.setAdditionalHeader("Tus-Resumable", "1.0.0");
+                    request.setAdditionalHeader("Upload-Length", String.valueOf(data.length()));
+                    request.setAdditionalHeader("Upload-Metadata", "filename " + Base64.getEncoder().encodeToString("data.txt".getBytes(StandardCharsets.UTF_8)));
+                    var response = webClient.loadWebResponse(request);
+                    assertEquals(201, response.getStatusCode());
+                    var location = response.getResponseHeaderValue("Location");
+                    assertTrue(location.startsWith("http://localhost:8181/upload/"));
+
+                    request = new WebRequest(new URL(location), HttpMethod.PATCH);
+                    request.setAdditionalHeader("Content-Type", "application/offset+octet-stream");
+                    request.setAdditionalHeader("Upload-Offset", "0");
+                    request.setRequestBody(data.substring(0, 4000));
+                    response = webClient.loadWebResponse(request);
+                    assertEquals(204, response.getStatusCode());
+                    assertEquals("4000", response.getResponseHeaderValue("Upload-Offset"));
+                    assertEquals(-1, committed.get());
+
+                    request = new WebRequest(new URL(location), HttpMethod.HEAD);
+                    response = webClient.loadWebResponse(request);
+                    assertEquals("4000", response.getResponseHeaderValue("Upload-Offset"));
+                    assertEquals(String.valueOf(data.length()), response.getResponseHeaderValue("Upload-Length"));
+
+                    request = new WebRequest(new URL(location), HttpMethod.PATCH);
+                    request.setAdditionalHeader("Content-Type", "application/offset+octet-stream");
+                    request.setAdditionalHeader("Upload-Offset", "3000");
+                    request.setRequestBody(data.substring(3000));
+                    assertEquals(409, webClient.loadWebResponse(request).getStatusCode());
+
+                    request = new WebRequest(new URL(location), HttpMethod.PATCH);
+                    request.setAdditionalHeader("Content-Type", "application/offset+octet-stream");
+                    request.setAdditionalHeader("Upload-Offset", "4000");
+                    request.setRequestBody(data.substring(4000));
+                    response = webClient.loadWebResponse(request);
+                    assertEquals(204, response.getStatusCode());
+                    assertEquals(String.valueOf(data.length()), response.getResponseHeaderValue("Upload-Offset"));
+
+                    request = new WebRequest(new URL(location), HttpMethod.HEAD);
+                    assertEquals(404, webClient.loadWebResponse(request).getStatusCode());
+                }
+            }
+
+            assertTrue(committed.get() >= 0);
+            manager.getContentManager().useContentData(manager.buildCmfPath(committed.get(), "raw"), new ContentDataUserWithoutResult() {
+                public void useContentData(Object contentData)
+                throws InnerClassException {
+                    try {
+                        assertArrayEquals(data.getBytes(StandardCharsets.UTF_8), FileUtils.readBytes((InputStream) contentData));
+                    } catch (FileUtilsErrorException e) {
+                        throwException(e);
+                    }
+                }
+            });
+        } finally {
+            manager.remove();
+            deleteDirectory(directory);
+            tearDown(datasource);
+        }
+    }
 }
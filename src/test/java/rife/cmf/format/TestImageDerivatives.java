@@ -0,0 +1,98 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.cmf.format;
+
+import org.junit.jupiter.api.Test;
+import rife.cmf.MimeType;
+import rife.cmf.format.exceptions.InvalidImageVariantException;
+import rife.cmf.loader.ImageContentLoader;
+import rife.resources.ResourceFinderClasspath;
+import rife.tools.FileUtils;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestImageDerivatives {
+    @Test
+    void testParseVariants()
+    throws Exception {
+        var variants = ImageVariant.parse("thumbnail=120x120; medium=640x ;tall=x1200;");
+        assertEquals(3, variants.size());
+        assertEquals(new ImageVariant("thumbnail", 120, 120), variants.get(0));
+        assertEquals(new ImageVariant("medium", 640, -1), variants.get(1));
+        assertEquals(new ImageVariant("tall", -1, 1200), variants.get(2));
+
+        assertTrue(ImageVariant.parse(null).isEmpty());
+        assertEquals("/images/logo/thumbnail", variants.get(0).location("/images/logo"));
+    }
+
+    @Test
+    void testParseInvalidVariants() {
+        assertThrows(InvalidImageVariantException.class, () -> ImageVariant.parse("thumbnail"));
+        assertThrows(InvalidImageVariantException.class, () -> ImageVariant.parse("=120x120"));
+        assertThrows(InvalidImageVariantException.class, () -> ImageVariant.parse("thumbnail=x"));
+        assertThrows(InvalidImageVariantException.class, () -> ImageVariant.parse("thumbnail=AxB"));
+    }
+
+    @Test
+    void testDerive()
+    throws Exception {
+        var image_resource = ResourceFinderClasspath.instance().getResource("uwyn.png");
+        var loaded = new ImageContentLoader().load(FileUtils.readBytes(image_resource), false, null);
+
+        var derivatives = new ImageDerivatives(2).derive(loaded.data(), MimeType.IMAGE_PNG, List.of(
+            new ImageVariant("small", 20, -1),
+            new ImageVariant("medium", 640, -1),
+            new ImageVariant("box", 100, 100),
+            new ImageVariant("2x", 2560, -1))).get();
+
+        assertEquals(4, derivatives.size());
+
+        assertEquals("small", derivatives.get(0).variant().name());
+        assertEquals(20, derivatives.get(0).width());
+        assertEquals(6, derivatives.get(0).height());
+
+        assertEquals("medium", derivatives.get(1).variant().name());
+        assertEquals(640, derivatives.get(1).width());
+        assertEquals(203, derivatives.get(1).height());
+
+        assertEquals("box", derivatives.get(2).variant().name());
+        assertEquals(100, derivatives.get(2).width());
+        assertEquals(32, derivatives.get(2).height());
+
+        assertEquals("2x", derivatives.get(3).variant().name());
+        assertEquals(2560, derivatives.get(3).width());
+        assertEquals(812, derivatives.get(3).height());
+
+        for (var derivative : derivatives) {
+            var decoded = new ImageContentLoader().load(derivative.data(), false, null);
+            assertNotNull(decoded);
+            assertEquals(derivative.width(), decoded.data().getWidth(null));
+            assertEquals(derivative.height(), decoded.data().getHeight(null));
+        }
+    }
+
+    @Test
+    void testBaseStep() {
+        List<Image> steps = List.of(
+            new BufferedImage(4000, 2000, BufferedImage.TYPE_INT_RGB),
+            new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB),
+            new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB),
+            new BufferedImage(500, 250, BufferedImage.TYPE_INT_RGB),
+            new BufferedImage(250, 125, BufferedImage.TYPE_INT_RGB),
+            new BufferedImage(125, 63, BufferedImage.TYPE_INT_RGB));
+
+        assertEquals(5, ImageDerivatives.baseStep(steps, 120));
+        assertEquals(5, ImageDerivatives.baseStep(steps, 125));
+        assertEquals(4, ImageDerivatives.baseStep(steps, 126));
+        assertEquals(2, ImageDerivatives.baseStep(steps, 640));
+        assertEquals(0, ImageDerivatives.baseStep(steps, 2560));
+        assertEquals(0, ImageDerivatives.baseStep(steps, 8000));
+        assertEquals(0, ImageDerivatives.baseStep(steps.subList(0, 1), 120));
+    }
+}
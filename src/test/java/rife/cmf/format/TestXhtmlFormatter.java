@@ -14,6 +14,8 @@ import rife.cmf.loader.XhtmlContentLoader;
 import rife.cmf.transform.TextContentTransformer;
 import rife.tools.StringUtils;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -36,6 +38,17 @@ public class TestXhtmlFormatter {
         assertEquals(data, result);
     }
 
+    @Test
+    void testFormatStream()
+    throws Exception {
+        var data = "<i>cool beans</i><p>hôt <a href=\"http://uwyn.com\">chili</a></p>";
+        var content = new Content(MimeType.APPLICATION_XHTML, new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8))).fragment(true);
+        var formatter = new XhtmlFormatter();
+        var result = formatter.format(content, null);
+
+        assertEquals("<i>cool beans</i><p>h&ocirc;t <a href=\"http://uwyn.com\">chili</a></p>", result);
+    }
+
     @Test
     void testFormatInvalidDataType()
     throws Exception {
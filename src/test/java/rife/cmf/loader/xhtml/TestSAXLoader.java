@@ -7,6 +7,8 @@ package rife.cmf.loader.xhtml;
 import org.junit.jupiter.api.Test;
 import rife.cmf.MimeType;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -89,4 +91,43 @@ public class TestSAXLoader {
 
         assertNull(xhtml);
     }
+
+    @Test
+    void testLoadFromStreamSuccessFragment() {
+        var loader = new SAXLoader();
+        Set<String> errors = new HashSet<>();
+
+        var data = "<p>some <b>html</b> hére</p>";
+        var xhtml = loader.load(new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)), true, errors);
+
+        assertNotNull(xhtml);
+        assertEquals(xhtml.originalMimeType(), MimeType.APPLICATION_XHTML);
+        assertEquals(data, xhtml.data());
+        assertEquals(0, errors.size());
+    }
+
+    @Test
+    void testLoadFromStreamError() {
+        var loader = new SAXLoader();
+        Set<String> errors = new HashSet<>();
+
+        var xhtml = loader.load(new ByteArrayInputStream("<i><b>error</i>".getBytes(StandardCharsets.UTF_8)), true, errors);
+
+        assertNull(xhtml);
+        assertEquals(1, errors.size());
+    }
+
+    @Test
+    void testLoadReusesParsers() {
+        var loader = new SAXLoader();
+        for (var i = 0; i < 10; i++) {
+            Set<String> errors = new HashSet<>();
+            assertNull(loader.loadFromString("<i><b>error</i>", true, errors));
+            assertEquals(1, errors.size());
+
+            errors = new HashSet<>();
+            assertNotNull(loader.loadFromString("<p>some <b>html</b> here</p>", true, errors));
+            assertEquals(0, errors.size());
+        }
+    }
 }
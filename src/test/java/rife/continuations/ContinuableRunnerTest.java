@@ -13,7 +13,12 @@ public class ContinuableRunnerTest extends BasicContinuableRunner {
 
     public ContinuableRunnerTest()
     throws ClassNotFoundException {
-        super(CONFIG_INSTRUMENT, null, new BasicContinuableClassLoader(CONFIG_INSTRUMENT));
+        this(CONFIG_INSTRUMENT);
+    }
+
+    public ContinuableRunnerTest(ContinuationConfigInstrument configInstrument)
+    throws ClassNotFoundException {
+        super(configInstrument, null, new BasicContinuableClassLoader(configInstrument));
         Class.forName(ContinuableSupport.class.getName());
     }
 
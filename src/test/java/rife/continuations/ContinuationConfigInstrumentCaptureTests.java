@@ -0,0 +1,11 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.continuations;
+
+public class ContinuationConfigInstrumentCaptureTests extends ContinuationConfigInstrumentTests {
+    public boolean captureLocalsOnPause() {
+        return true;
+    }
+}
@@ -12,10 +12,21 @@ import static org.junit.jupiter.api.Assertions.*;
 public class TestCall {
     @Test
     void testSimpleCall()
+    throws Throwable {
+        simpleCall(new ContinuationConfigInstrumentTests());
+    }
+
+    @Test
+    void testSimpleCallCaptureLocalsOnPause()
+    throws Throwable {
+        simpleCall(new ContinuationConfigInstrumentCaptureTests());
+    }
+
+    private void simpleCall(ContinuationConfigInstrument config)
     throws Throwable {
         final var test_classes = new String[]{"TestCallSimpleCallSource", "TestCallSimpleCallInterfaceSource"};
         for (final var test_class : test_classes) {
-            var runner = new ContinuableRunnerTest();
+            var runner = new ContinuableRunnerTest(config);
 
             var id1 = runner.start(TestCall.class.getPackage().getName() + "." + test_class);
             assertNull(id1);
@@ -28,10 +39,21 @@ public class TestCall {
 
     @Test
     void testAnswerInOtherThread()
+    throws Throwable {
+        answerInOtherThread(new ContinuationConfigInstrumentTests());
+    }
+
+    @Test
+    void testAnswerInOtherThreadCaptureLocalsOnPause()
+    throws Throwable {
+        answerInOtherThread(new ContinuationConfigInstrumentCaptureTests());
+    }
+
+    private void answerInOtherThread(ContinuationConfigInstrument config)
     throws Throwable {
         final var test_classes = new String[]{"TestCallAnswerInOtherThreadCallSource", "TestCallAnswerInOtherThreadCallInterfaceSource"};
         for (final var test_class : test_classes) {
-            final var runner = new ContinuableRunnerTest();
+            final var runner = new ContinuableRunnerTest(config);
             final var continuables = new Object[2];
             final var ids = new String[2];
 
@@ -92,10 +114,21 @@ public class TestCall {
 
     @Test
     void testMultipleAnswersWithTryCatch()
+    throws Throwable {
+        multipleAnswersWithTryCatch(new ContinuationConfigInstrumentTests());
+    }
+
+    @Test
+    void testMultipleAnswersWithTryCatchCaptureLocalsOnPause()
+    throws Throwable {
+        multipleAnswersWithTryCatch(new ContinuationConfigInstrumentCaptureTests());
+    }
+
+    private void multipleAnswersWithTryCatch(ContinuationConfigInstrument config)
     throws Throwable {
         final var test_classes = new String[]{"TestCallMultipleAnswersWithTryCatchSource", "TestCallSimpleCallInterfaceSource"};
         for (final String test_class : test_classes) {
-            var runner = new ContinuableRunnerTest();
+            var runner = new ContinuableRunnerTest(config);
 
             var id1 = runner.start(TestCall.class.getPackage().getName() + "." + test_class);
             assertNull(id1);
@@ -66,12 +66,67 @@ public class TestPause {
         }
     }
 
+    @Test
+    void testPauseInWhileCaptureLocalsOnPause()
+    throws Throwable {
+        var config = new ContinuationConfigInstrumentCaptureTests();
+
+        final var test_classes = new String[]{"TestPauseInWhile", "TestPauseInWhileInterface"};
+        for (final var test_class : test_classes) {
+            var runner = new ContinuableRunnerTest(config);
+
+            var id = runner.start(TestPause.class.getPackage().getName() + "." + test_class);
+            for (var count : new int[]{5, 4, 3, 2, 1, -1}) {
+                assertNotNull(id);
+                assertEquals(count, runner.getManager().getContext(id).getLocalVars().getInt(1));
+                id = runner.resume(id);
+            }
+            assertNull(id);
+        }
+    }
+
     @Test
     void testPauseInWhileClones()
+    throws Throwable {
+        pauseInWhileClones(new ContinuationConfigInstrumentTests());
+    }
+
+    @Test
+    void testPauseInWhileClonesCaptureLocalsOnPause()
+    throws Throwable {
+        pauseInWhileClones(new ContinuationConfigInstrumentCaptureTests());
+    }
+
+    @Test
+    void testPauseLocalTypesCaptureLocalsOnPause()
+    throws Throwable {
+        // the local is assigned different types on different paths, each
+        // store has to be captured
+        var runner = new ContinuableRunnerTest(new ContinuationConfigInstrumentCaptureTests());
+        var id = runner.start(TestPause.class.getPackage().getName() + ".TestPauseLocalTypes");
+        assertNotNull(id);
+        assertNull(runner.resume(id));
+        var continuable = runner.getCurrentContinuable();
+        assertEquals("text", continuable.getClass().getMethod("getResult").invoke(continuable));
+    }
+
+    @Test
+    void testPauseTryCatchCaptureLocalsOnPause()
+    throws Throwable {
+        // exception handlers restore the locals from the captured stores
+        var runner = new ContinuableRunnerTest(new ContinuationConfigInstrumentCaptureTests());
+        var id = runner.start(TestPause.class.getPackage().getName() + ".TestPauseTryCatch");
+        assertNotNull(id);
+        assertNull(runner.resume(id));
+        var continuable = runner.getCurrentContinuable();
+        assertEquals(6, continuable.getClass().getMethod("getResult").invoke(continuable));
+    }
+
+    private void pauseInWhileClones(ContinuationConfigInstrument config)
     throws Throwable {
         final var test_classes = new String[]{"TestPauseInWhile", "TestPauseInWhileInterface"};
         for (final String test_class : test_classes) {
-            var runner = new ContinuableRunnerTest();
+            var runner = new ContinuableRunnerTest(config);
 
             var id1 = runner.start(TestPause.class.getPackage().getName() + "." + test_class);
             assertNotNull(id1);
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.continuations;
+
+public class TestPauseLocalTypes extends AbstractContinuableObject {
+    private String result_;
+
+    public String getResult() {
+        return result_;
+    }
+
+    public void execute() {
+        Object value;
+        if (System.currentTimeMillis() > 0) {
+            value = "text";
+        } else {
+            value = Integer.valueOf(1);
+        }
+
+        pause();
+
+        result_ = String.valueOf(value);
+    }
+}
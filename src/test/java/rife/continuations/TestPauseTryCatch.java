@@ -0,0 +1,27 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.continuations;
+
+public class TestPauseTryCatch extends AbstractContinuableObject {
+    private int result_;
+
+    public int getResult() {
+        return result_;
+    }
+
+    public void execute() {
+        int total;
+        try {
+            total = Integer.parseInt("5");
+        } catch (NumberFormatException e) {
+            total = -1;
+        }
+
+        pause();
+        total++;
+
+        result_ = total;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.continuations;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSpill {
+    private File directory_;
+
+    @BeforeEach
+    public void setup()
+    throws IOException {
+        directory_ = Files.createTempDirectory("continuationspill").toFile();
+    }
+
+    @AfterEach
+    public void tearDown()
+    throws IOException {
+        try (var paths = Files.walk(directory_.toPath())) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private ContinuationSpill createSpill(ContinuableRunnerTest runner) {
+        var spill = new ContinuationSpill(new ContinuationContextSerializer(runner.getClassLoader()))
+            .idleTime(0);
+        runner.getManager().spill(spill);
+        return spill;
+    }
+
+    @Test
+    void testSpillAndResume()
+    throws Throwable {
+        var runner = new ContinuableRunnerTest();
+        var spill = createSpill(runner);
+
+        var id1 = runner.start(TestPauseInWhileSerializable.class.getName());
+        assertNotNull(id1);
+        runner.getManager().spillIdleContexts();
+        assertEquals(1, spill.getSnapshotCount());
+        assertTrue(spill.getMemorySize() > 0);
+
+        var context1 = runner.getManager().getContext(id1);
+        assertNotNull(context1);
+        assertEquals(5, context1.getLocalVars().getInt(1));
+        assertEquals(0, spill.getSnapshotCount());
+        assertEquals(0, spill.getMemorySize());
+
+        runner.getManager().spillIdleContexts();
+        assertEquals(1, spill.getSnapshotCount());
+
+        var id2 = runner.resume(id1);
+        assertNotNull(id2);
+        assertNotEquals(id1, id2);
+        var context2 = runner.getManager().getContext(id2);
+        assertEquals(4, context2.getLocalVars().getInt(1));
+
+        var id = id2;
+        for (var count = 3; count > 0; count--) {
+            runner.getManager().spillIdleContexts();
+            id = runner.resume(id);
+            assertNotNull(id);
+            assertEquals(count, runner.getManager().getContext(id).getLocalVars().getInt(1));
+        }
+
+        runner.getManager().spillIdleContexts();
+        id = runner.resume(id);
+        assertNotNull(id);
+        assertEquals(-1, runner.getManager().getContext(id).getLocalVars().getInt(1));
+
+        runner.getManager().spillIdleContexts();
+        assertNull(runner.resume(id));
+    }
+
+    @Test
+    void testSpillNotSerializable()
+    throws Throwable {
+        var runner = new ContinuableRunnerTest();
+        var spill = createSpill(runner);
+
+        var id1 = runner.start(TestPauseInWhile.class.getName());
+        runner.getManager().spillIdleContexts();
+        assertEquals(0, spill.getSnapshotCount());
+        assertTrue(spill.isUnserializable(id1));
+
+        runner.getManager().spillIdleContexts();
+        assertEquals(0, spill.getSnapshotCount());
+        assertTrue(spill.isUnserializable(id1));
+
+        var id2 = runner.resume(id1);
+        assertNotNull(id2);
+        assertEquals(4, runner.getManager().getContext(id2).getLocalVars().getInt(1));
+
+        runner.getManager().spillIdleContexts();
+        assertFalse(spill.isUnserializable(id1));
+        assertTrue(spill.isUnserializable(id2));
+    }
+
+    @Test
+    void testSpillRestoreFailure()
+    throws Throwable {
+        var runner = new ContinuableRunnerTest();
+        var failing = new AtomicBoolean(true);
+        var spill = new ContinuationSpill(new ContinuationContextSerializer(runner.getClassLoader()) {
+            public ContinuationContext deserialize(byte[] bytes, ContinuationManager manager)
+            throws IOException, ClassNotFoundException {
+                if (failing.get()) {
+                    throw new IOException("restore failure");
+                }
+                return super.deserialize(bytes, manager);
+            }
+        }).idleTime(0);
+        runner.getManager().spill(spill);
+
+        var id1 = runner.start(TestPauseInWhileSerializable.class.getName());
+        runner.getManager().spillIdleContexts();
+        assertEquals(1, spill.getSnapshotCount());
+
+        assertNull(runner.getManager().getContext(id1));
+        assertEquals(1, spill.getSnapshotCount());
+        assertTrue(spill.getMemorySize() > 0);
+
+        failing.set(false);
+        var context1 = runner.getManager().getContext(id1);
+        assertNotNull(context1);
+        assertEquals(5, context1.getLocalVars().getInt(1));
+        assertEquals(0, spill.getSnapshotCount());
+    }
+
+    @Test
+    void testSpillMemoryLimitDiscard()
+    throws Throwable {
+        var runner = new ContinuableRunnerTest();
+        var spill = createSpill(runner).memoryLimit(0).discardExcess(true);
+
+        var id1 = runner.start(TestPauseInWhileSerializable.class.getName());
+        runner.getManager().spillIdleContexts();
+        assertEquals(0, spill.getSnapshotCount());
+        assertEquals(0, spill.getMemorySize());
+
+        assertNull(runner.getManager().getContext(id1));
+        assertNull(runner.resume(id1));
+    }
+
+    @Test
+    void testSpillMemoryLimitKept()
+    throws Throwable {
+        var runner = new ContinuableRunnerTest();
+        var spill = createSpill(runner).memoryLimit(0);
+        assertFalse(spill.isDiscardExcess());
+
+        var id1 = runner.start(TestPauseInWhileSerializable.class.getName());
+        runner.getManager().spillIdleContexts();
+        assertEquals(1, spill.getSnapshotCount());
+        assertTrue(spill.getMemorySize() > 0);
+
+        var id2 = runner.resume(id1);
+        assertNotNull(id2);
+        assertEquals(4, runner.getManager().getContext(id2).getLocalVars().getInt(1));
+        assertEquals(0, spill.getSnapshotCount());
+    }
+
+    @Test
+    void testSpillMemoryLimitDirectory()
+    throws Throwable {
+        var runner = new ContinuableRunnerTest();
+        var spill = createSpill(runner).memoryLimit(0).directory(directory_);
+
+        var id1 = runner.start(TestPauseInWhileSerializable.class.getName());
+        runner.getManager().spillIdleContexts();
+        assertEquals(1, spill.getSnapshotCount());
+        assertEquals(0, spill.getMemorySize());
+        assertEquals(1, directory_.list().length);
+
+        var id2 = runner.resume(id1);
+        assertNotNull(id2);
+        assertEquals(4, runner.getManager().getContext(id2).getLocalVars().getInt(1));
+        assertEquals(0, spill.getSnapshotCount());
+        assertEquals(0, directory_.list().length);
+    }
+
+    @Test
+    void testSpillRemove()
+    throws Throwable {
+        var runner = new ContinuableRunnerTest();
+        var spill = createSpill(runner).memoryLimit(0).directory(directory_);
+
+        var id1 = runner.start(TestPauseInWhileSerializable.class.getName());
+        runner.getManager().spillIdleContexts();
+        assertEquals(1, spill.getSnapshotCount());
+
+        runner.getManager().removeContext(id1);
+        assertEquals(0, spill.getSnapshotCount());
+        assertEquals(0, directory_.list().length);
+        assertNull(runner.resume(id1));
+    }
+}
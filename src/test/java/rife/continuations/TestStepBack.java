@@ -11,10 +11,21 @@ import static org.junit.jupiter.api.Assertions.*;
 public class TestStepBack {
     @Test
     void testStepBackInWhile()
+    throws Throwable {
+        stepBackInWhile(new ContinuationConfigInstrumentTests());
+    }
+
+    @Test
+    void testStepBackInWhileCaptureLocalsOnPause()
+    throws Throwable {
+        stepBackInWhile(new ContinuationConfigInstrumentCaptureTests());
+    }
+
+    private void stepBackInWhile(ContinuationConfigInstrument config)
     throws Throwable {
         final var test_classes = new String[]{"TestStepBackCounter", "TestStepBackCounterInterface"};
         for (final var test_class : test_classes) {
-            var runner = new ContinuableRunnerTest();
+            var runner = new ContinuableRunnerTest(config);
 
             var id1 = runner.start(TestStepBack.class.getPackage().getName() + "." + test_class);
             assertNotNull(id1);
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.continuations.instrument;
+
+import org.junit.jupiter.api.Test;
+import rife.asm.ClassReader;
+import rife.continuations.ContinuationConfigInstrumentCaptureTests;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTypesClassVisitor {
+    private static boolean areLocalsCapturableOnPause(String className)
+    throws IOException {
+        byte[] bytes;
+        try (var in = TestTypesClassVisitor.class.getClassLoader().getResourceAsStream(className.replace('.', '/') + ".class")) {
+            assertNotNull(in);
+            bytes = in.readAllBytes();
+        }
+
+        var config = new ContinuationConfigInstrumentCaptureTests();
+        var reader = new ClassReader(bytes);
+        var metrics_visitor = new MetricsClassVisitor(config, className);
+        reader.accept(metrics_visitor, ClassReader.SKIP_FRAMES);
+        assertTrue(metrics_visitor.makeResumable());
+
+        var types_visitor = new TypesClassVisitor(config, metrics_visitor, className);
+        reader.accept(types_visitor, ClassReader.SKIP_FRAMES);
+        return types_visitor.areLocalsCapturableOnPause();
+    }
+
+    @Test
+    void testLocalsCapturableOnPause()
+    throws Exception {
+        assertTrue(areLocalsCapturableOnPause("rife.continuations.TestPauseInWhile"));
+        assertTrue(areLocalsCapturableOnPause("rife.continuations.TestStepBackCounter"));
+    }
+
+    @Test
+    void testLocalsNotCapturableWithDifferentTypes()
+    throws Exception {
+        assertFalse(areLocalsCapturableOnPause("rife.continuations.TestPauseLocalTypes"));
+    }
+
+    @Test
+    void testLocalsNotCapturableWithExceptionHandler()
+    throws Exception {
+        assertFalse(areLocalsCapturableOnPause("rife.continuations.TestPauseTryCatch"));
+    }
+}
@@ -534,6 +534,34 @@ public class TestContinuations {
         }
     }
 
+    @Test
+    void testTemplateFields()
+    throws Exception {
+        try (final var server = new TestServerRunner(new Site() {
+            public void setup() {
+                route("/template_fields", TestTemplateFields::new);
+            }
+        })) {
+            try (final var webClient = new WebClient()) {
+                HtmlPage page = webClient.getPage("http://localhost:8181/template_fields");
+
+                assertEquals("0", page.getTitleText());
+                var form = page.getFormByName("getanswer");
+                assertNotNull(form);
+                form.getInputsByName("answer").get(0).setValueAttribute("21");
+                page = form.getInputsByName("submit").get(0).click();
+
+                assertEquals("21", page.getTitleText());
+                form = page.getFormByName("getanswer");
+                assertNotNull(form);
+                form.getInputsByName("answer").get(0).setValueAttribute("34");
+                page = form.getInputsByName("submit").get(0).click();
+
+                assertEquals("got a total of 55", page.getWebResponse().getContentAsString());
+            }
+        }
+    }
+
     @Test
     void testUniqueIDPerRequest()
     throws Exception {
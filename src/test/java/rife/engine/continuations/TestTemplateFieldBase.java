@@ -0,0 +1,12 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine.continuations;
+
+import rife.engine.Element;
+import rife.template.Template;
+
+public abstract class TestTemplateFieldBase implements Element {
+    protected Template template_;
+}
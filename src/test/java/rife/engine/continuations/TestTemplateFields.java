@@ -0,0 +1,26 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine.continuations;
+
+import rife.engine.Context;
+import rife.template.Template;
+
+public class TestTemplateFields extends TestTemplateFieldBase {
+    private Template unused_ = null;
+
+    public void process(Context c) {
+        template_ = c.template("engine_continuation_form_submission");
+
+        int total = 0;
+        while (total < 50) {
+            template_.setValue("subtotal", total);
+            c.print(template_);
+            c.pause();
+            total += c.parameterInt("answer", 0);
+        }
+
+        c.print("got a total of " + total + (null == unused_ ? "" : " and a template"));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.engine.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLatencyHistogram {
+    @Test
+    void testBuckets() {
+        var previous_index = 0;
+        for (long value = 1; value < 1_000_000; value++) {
+            var index = LatencyHistogram.bucketIndex(value);
+            if (index != previous_index) {
+                assertEquals(previous_index + 1, index);
+                assertEquals(value - 1, LatencyHistogram.bucketUpperBound(previous_index));
+                previous_index = index;
+            }
+        }
+    }
+
+    @Test
+    void testRecord() {
+        var histogram = new LatencyHistogram();
+        for (var i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-5);
+
+        assertEquals(1001, histogram.count());
+        assertEquals(500500000L, histogram.sum());
+        assertEquals(1000000L, histogram.max());
+        assertEquals(1000000L, histogram.valueAtPercentile(100));
+        assertEquals(500000L, histogram.valueAtPercentile(50), 500000L * 0.07);
+        assertEquals(990000L, histogram.valueAtPercentile(99), 990000L * 0.07);
+        assertEquals(500, histogram.countAtOrBelow(500000L), 500 * 0.07);
+    }
+
+    @Test
+    void testCountAtOrBelowWithinBucket() {
+        var histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.record(1010);
+        histogram.record(5000);
+
+        // 1000 and 1010 are both recorded in the bucket that ranges from 992 to 1023
+        assertEquals(LatencyHistogram.bucketIndex(992), LatencyHistogram.bucketIndex(1010));
+        assertEquals(1023, LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(1000)));
+        assertEquals(0, histogram.countAtOrBelow(991));
+        assertEquals(2, histogram.countAtOrBelow(1000));
+        assertEquals(2, histogram.countAtOrBelow(1005));
+        assertEquals(2, histogram.countAtOrBelow(1010));
+        assertEquals(3, histogram.countAtOrBelow(5000));
+        assertEquals(3, histogram.countAtOrBelow(Long.MAX_VALUE));
+        assertEquals(0, histogram.countAtOrBelow(-1));
+    }
+
+    @Test
+    void testEmpty() {
+        var histogram = new LatencyHistogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.valueAtPercentile(99));
+        assertEquals(0, histogram.countAtOrBelow(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.instrument;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestClassExclusions {
+    @Test
+    void testDefaults() {
+        var exclusions = new ClassExclusions(null, null);
+        assertTrue(exclusions.isExcluded("java/lang/String"));
+        assertTrue(exclusions.isExcluded("javax/sql/DataSource"));
+        assertTrue(exclusions.isExcluded("com/google/gson/Gson"));
+        assertTrue(exclusions.isExcluded("org/eclipse/jetty/server/Server"));
+        assertTrue(exclusions.isExcluded("worker/org/gradle/Worker"));
+        assertTrue(exclusions.isExcluded("rife/engine/Context"));
+        assertTrue(exclusions.isExcluded("rife/engine/continuations/Other"));
+
+        assertFalse(exclusions.isExcluded("Main"));
+        assertFalse(exclusions.isExcluded("com/example/Main"));
+        assertFalse(exclusions.isExcluded("org/example/Main"));
+        assertFalse(exclusions.isExcluded("org/eclipse/Other"));
+        assertFalse(exclusions.isExcluded("javaapp/Main"));
+        assertFalse(exclusions.isExcluded("worker/Main"));
+        assertFalse(exclusions.isExcluded("rife/HelloWorld"));
+        assertFalse(exclusions.isExcluded("rife/models/Person"));
+        assertFalse(exclusions.isExcluded("rife/engine/continuations/TestNoPause"));
+    }
+
+    @Test
+    void testIncluded() {
+        var exclusions = new ClassExclusions(ClassExclusions.parsePrefixes("com.example.app., org.example.Main"), null);
+        assertFalse(exclusions.isExcluded("com/example/app/Main"));
+        assertFalse(exclusions.isExcluded("com/example/app/beans/Person"));
+        assertFalse(exclusions.isExcluded("org/example/MainElement"));
+        assertFalse(exclusions.isExcluded("rife/models/Person"));
+
+        assertTrue(exclusions.isExcluded("com/example/other/Main"));
+        assertTrue(exclusions.isExcluded("com/example/Main"));
+        assertTrue(exclusions.isExcluded("org/example/Other"));
+        assertTrue(exclusions.isExcluded("java/lang/String"));
+        assertTrue(exclusions.isExcluded("Main"));
+    }
+
+    @Test
+    void testExcluded() {
+        var exclusions = new ClassExclusions(List.of("com/example/"), List.of("com/example/generated/", "com/example/Legacy", "rife/models/"));
+        assertFalse(exclusions.isExcluded("com/example/Main"));
+        assertFalse(exclusions.isExcluded("com/example/beans/Person"));
+
+        assertTrue(exclusions.isExcluded("com/example/generated/Person"));
+        assertTrue(exclusions.isExcluded("com/example/LegacyElement"));
+        assertTrue(exclusions.isExcluded("rife/models/Person"));
+    }
+
+    @Test
+    void testParsePrefixes() {
+        assertEquals(List.of(), ClassExclusions.parsePrefixes(null));
+        assertEquals(List.of(), ClassExclusions.parsePrefixes(" , "));
+        assertEquals(List.of("com/example/", "org/example/Main"), ClassExclusions.parsePrefixes("com.example., org/example/Main"));
+    }
+}
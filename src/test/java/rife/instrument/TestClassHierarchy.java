@@ -0,0 +1,48 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.instrument;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestClassHierarchy {
+    @Test
+    void testInstance() {
+        var owner = new Object();
+        assertSame(ClassHierarchy.instance(owner), ClassHierarchy.instance(owner));
+        assertNotSame(ClassHierarchy.instance(owner), ClassHierarchy.instance(new Object()));
+    }
+
+    @Test
+    void testShare()
+    throws Exception {
+        var loader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        var hierarchy = ClassHierarchy.instance(loader);
+
+        // each owner that shares the hierarchy reuses the memoized classes
+        var resolved = new AtomicInteger();
+        ClassHierarchy.BytesResolver resolver = name -> {
+            resolved.incrementAndGet();
+            try (var stream = loader.getResourceAsStream(name + ".class")) {
+                return null == stream ? null : stream.readAllBytes();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        };
+        for (var i = 0; i < 3; i++) {
+            var owner = new Object();
+            ClassHierarchy.share(owner, loader);
+            assertSame(hierarchy, ClassHierarchy.instance(owner));
+            assertTrue(ClassHierarchy.instance(owner).implementsInterface("java/util/ArrayList", "java/util/List", resolver));
+        }
+        assertEquals(1, resolved.get());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.instrument;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rife.asm.ClassWriter;
+import rife.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRifeInstrumenter {
+    private static final String CLASS_NAME = "rife/engine/continuations/TestNoPause";
+    private static final String PLAIN_CLASS_NAME = "rife/engine/continuations/TestPlainClass";
+
+    private File directory_;
+
+    @BeforeEach
+    public void setup()
+    throws IOException {
+        directory_ = Files.createTempDirectory("rifeinstrumenter").toFile();
+    }
+
+    @AfterEach
+    public void tearDown()
+    throws IOException {
+        try (var paths = Files.walk(directory_.toPath())) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private byte[] getClassBytes(String name)
+    throws IOException {
+        try (var in = getClass().getClassLoader().getResourceAsStream(name + ".class")) {
+            assertNotNull(in);
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] getPlainClassBytes() {
+        // a class that none of the transformations modifies
+        var writer = new ClassWriter(0);
+        writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, PLAIN_CLASS_NAME, null, "java/lang/Object", null);
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    @Test
+    void testInstrument()
+    throws Exception {
+        var bytes = getClassBytes(CLASS_NAME);
+        assertFalse(RifeInstrumenter.isInstrumented(bytes));
+
+        var instrumenter = new RifeInstrumenter(getClass().getClassLoader());
+        var instrumented = instrumenter.instrument(CLASS_NAME, bytes);
+        assertNotSame(bytes, instrumented);
+        assertTrue(RifeInstrumenter.isInstrumented(instrumented));
+
+        // classes are only instrumented once
+        assertSame(instrumented, instrumenter.instrument(CLASS_NAME, instrumented));
+        assertSame(instrumented, new FinalTransformer().transform(getClass().getClassLoader(), CLASS_NAME, null, null, instrumented));
+    }
+
+    @Test
+    void testInstrumentExcluded()
+    throws IOException {
+        var name = RifeInstrumenter.class.getName().replace('.', '/');
+        var bytes = getClassBytes(name);
+
+        var instrumenter = new RifeInstrumenter(getClass().getClassLoader());
+        assertSame(bytes, instrumenter.instrument(name, bytes));
+        assertFalse(RifeInstrumenter.isInstrumented(bytes));
+    }
+
+    @Test
+    void testInstrumentUnmodified() {
+        var bytes = getPlainClassBytes();
+
+        var instrumenter = new RifeInstrumenter(getClass().getClassLoader());
+        var instrumented = instrumenter.instrument(PLAIN_CLASS_NAME, bytes);
+        assertSame(bytes, instrumented);
+        assertFalse(RifeInstrumenter.isInstrumented(instrumented));
+    }
+
+    @Test
+    void testInstrumentDirectory()
+    throws IOException {
+        var source = new File(directory_, "source");
+        var destination = new File(directory_, "destination");
+        var class_file = new File(source, CLASS_NAME + ".class");
+        var resource_file = new File(source, "resource.txt");
+        Files.createDirectories(class_file.getParentFile().toPath());
+        Files.write(class_file.toPath(), getClassBytes(CLASS_NAME));
+        var plain_file = new File(source, PLAIN_CLASS_NAME + ".class");
+        Files.write(plain_file.toPath(), getPlainClassBytes());
+        Files.writeString(resource_file.toPath(), "resource");
+
+        var instrumenter = new RifeInstrumenter(getClass().getClassLoader());
+        assertEquals(1, instrumenter.instrumentDirectory(source, destination));
+        assertArrayEquals(getPlainClassBytes(), Files.readAllBytes(new File(destination, PLAIN_CLASS_NAME + ".class").toPath()));
+        assertTrue(RifeInstrumenter.isInstrumented(Files.readAllBytes(new File(destination, CLASS_NAME + ".class").toPath())));
+        assertEquals("resource", Files.readString(new File(destination, "resource.txt").toPath()));
+        assertFalse(RifeInstrumenter.isInstrumented(Files.readAllBytes(class_file.toPath())));
+
+        // instrumenting in place skips the classes that were already instrumented
+        assertEquals(1, instrumenter.instrumentDirectory(source, source));
+        assertTrue(RifeInstrumenter.isInstrumented(Files.readAllBytes(class_file.toPath())));
+        assertEquals(0, instrumenter.instrumentDirectory(source, source));
+    }
+
+    @Test
+    void testInstrumentJar()
+    throws IOException {
+        var jar_file = new File(directory_, "classes.jar");
+        try (var out = new JarOutputStream(Files.newOutputStream(jar_file.toPath()))) {
+            out.putNextEntry(new JarEntry(CLASS_NAME + ".class"));
+            out.write(getClassBytes(CLASS_NAME));
+            out.closeEntry();
+            out.putNextEntry(new JarEntry(PLAIN_CLASS_NAME + ".class"));
+            out.write(getPlainClassBytes());
+            out.closeEntry();
+            out.putNextEntry(new JarEntry("resource.txt"));
+            out.write("resource".getBytes());
+            out.closeEntry();
+        }
+
+        var instrumenter = new RifeInstrumenter(getClass().getClassLoader());
+        assertEquals(1, instrumenter.instrumentJar(jar_file, jar_file));
+
+        try (var jar = new JarFile(jar_file)) {
+            try (var in = jar.getInputStream(jar.getEntry(CLASS_NAME + ".class"))) {
+                assertTrue(RifeInstrumenter.isInstrumented(in.readAllBytes()));
+            }
+            try (var in = jar.getInputStream(jar.getEntry(PLAIN_CLASS_NAME + ".class"))) {
+                assertArrayEquals(getPlainClassBytes(), in.readAllBytes());
+            }
+            try (var in = jar.getInputStream(jar.getEntry("resource.txt"))) {
+                assertEquals("resource", new String(in.readAllBytes()));
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rife.instrument;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTransformedClassCache {
+    private static final String CLASS_NAME = "rife/engine/continuations/TestNoPause";
+
+    private File directory_;
+
+    @BeforeEach
+    public void setup()
+    throws IOException {
+        directory_ = Files.createTempDirectory("transformedclasscache").toFile();
+    }
+
+    @AfterEach
+    public void tearDown()
+    throws IOException {
+        try (var paths = Files.walk(directory_.toPath())) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private byte[] getClassBytes(String name)
+    throws IOException {
+        try (var in = getClass().getClassLoader().getResourceAsStream(name + ".class")) {
+            assertNotNull(in);
+            return in.readAllBytes();
+        }
+    }
+
+    private ClassHierarchy.BytesResolver getResolver() {
+        return name -> {
+            try (var in = getClass().getClassLoader().getResourceAsStream(name + ".class")) {
+                return null == in ? null : in.readAllBytes();
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        };
+    }
+
+    @Test
+    void testTransform()
+    throws Exception {
+        var bytes = getClassBytes(CLASS_NAME);
+        var transformed = new RifeInstrumenter(getClass().getClassLoader()).instrument(CLASS_NAME, bytes);
+        assertNotSame(bytes, transformed);
+
+        var cache = new TransformedClassCache(directory_);
+        var hierarchy = new ClassHierarchy();
+        var count = new AtomicInteger();
+        var result = cache.transform("config", CLASS_NAME, bytes, hierarchy, getResolver(), b -> {
+            count.incrementAndGet();
+            return transformed;
+        });
+        assertSame(transformed, result);
+        assertEquals(1, count.get());
+
+        // the transformation is reused by another cache on the same directory
+        var cache2 = new TransformedClassCache(directory_);
+        result = cache2.transform("config", CLASS_NAME, bytes.clone(), new ClassHierarchy(), getResolver(), b -> {
+            count.incrementAndGet();
+            return null;
+        });
+        assertArrayEquals(transformed, result);
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    void testTransformUnchanged()
+    throws Exception {
+        var bytes = getClassBytes(CLASS_NAME);
+        var cache = new TransformedClassCache(directory_);
+        var count = new AtomicInteger();
+
+        var result = cache.transform("config", CLASS_NAME, bytes, null, null, b -> {
+            count.incrementAndGet();
+            return null;
+        });
+        assertSame(bytes, result);
+        assertEquals(1, count.get());
+
+        result = cache.transform("config", CLASS_NAME, bytes, null, null, b -> {
+            count.incrementAndGet();
+            return new byte[]{1};
+        });
+        assertSame(bytes, result);
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    void testInvalidation()
+    throws Exception {
+        var bytes = getClassBytes(CLASS_NAME);
+        var cache = new TransformedClassCache(directory_);
+        var count = new AtomicInteger();
+        TransformedClassCache.Transformation<RuntimeException> transformation = b -> {
+            count.incrementAndGet();
+            return new byte[]{(byte) count.get()};
+        };
+
+        assertArrayEquals(new byte[]{1}, cache.transform("config", CLASS_NAME, bytes, null, null, transformation));
+        assertArrayEquals(new byte[]{1}, cache.transform("config", CLASS_NAME, bytes, null, null, transformation));
+
+        // another configuration
+        assertArrayEquals(new byte[]{2}, cache.transform("config2", CLASS_NAME, bytes, null, null, transformation));
+
+        // another class name
+        assertArrayEquals(new byte[]{3}, cache.transform("config", CLASS_NAME + "2", bytes, null, null, transformation));
+
+        // modified bytecode
+        var modified = bytes.clone();
+        modified[modified.length - 1] ^= 1;
+        assertArrayEquals(new byte[]{4}, cache.transform("config", CLASS_NAME, modified, null, null, transformation));
+
+        assertEquals(4, count.get());
+    }
+
+    @Test
+    void testInvalidationMetaData()
+    throws Exception {
+        var bytes = getClassBytes(CLASS_NAME);
+        var cache = new TransformedClassCache(directory_);
+        var count = new AtomicInteger();
+        TransformedClassCache.Transformation<RuntimeException> transformation = b -> {
+            count.incrementAndGet();
+            return new byte[]{(byte) count.get()};
+        };
+
+        var meta_data = new byte[][]{null};
+        var resolver = getResolver();
+        ClassHierarchy.BytesResolver meta_data_resolver = name -> {
+            if (name.equals(CLASS_NAME + "MetaData")) {
+                return meta_data[0];
+            }
+            return resolver.getClassBytes(name);
+        };
+
+        assertArrayEquals(new byte[]{1}, cache.transform("config", CLASS_NAME, bytes, new ClassHierarchy(), meta_data_resolver, transformation));
+        assertArrayEquals(new byte[]{1}, cache.transform("config", CLASS_NAME, bytes, new ClassHierarchy(), meta_data_resolver, transformation));
+
+        // a meta data class was added
+        meta_data[0] = new byte[]{1, 2, 3};
+        assertArrayEquals(new byte[]{2}, cache.transform("config", CLASS_NAME, bytes, new ClassHierarchy(), meta_data_resolver, transformation));
+        assertArrayEquals(new byte[]{2}, cache.transform("config", CLASS_NAME, bytes, new ClassHierarchy(), meta_data_resolver, transformation));
+
+        // the meta data class was modified
+        meta_data[0] = new byte[]{1, 2, 4};
+        assertArrayEquals(new byte[]{3}, cache.transform("config", CLASS_NAME, bytes, new ClassHierarchy(), meta_data_resolver, transformation));
+
+        // the meta data class was removed
+        meta_data[0] = null;
+        assertArrayEquals(new byte[]{1}, cache.transform("config", CLASS_NAME, bytes, new ClassHierarchy(), meta_data_resolver, transformation));
+
+        assertEquals(3, count.get());
+    }
+
+    @Test
+    void testInvalidationBuild()
+    throws Exception {
+        var bytes = getClassBytes(CLASS_NAME);
+        var count = new AtomicInteger();
+        TransformedClassCache.Transformation<RuntimeException> transformation = b -> {
+            count.incrementAndGet();
+            return new byte[]{(byte) count.get()};
+        };
+
+        assertArrayEquals(new byte[]{1}, new TransformedClassCache(directory_, "build1").transform("config", CLASS_NAME, bytes, null, null, transformation));
+        assertArrayEquals(new byte[]{1}, new TransformedClassCache(directory_, "build1").transform("config", CLASS_NAME, bytes, null, null, transformation));
+
+        // another build of the transformers
+        assertArrayEquals(new byte[]{2}, new TransformedClassCache(directory_, "build2").transform("config", CLASS_NAME, bytes, null, null, transformation));
+
+        // an unknown build isn't cached
+        var cache = new TransformedClassCache(directory_, null);
+        assertArrayEquals(new byte[]{3}, cache.transform("config", CLASS_NAME, bytes, null, null, transformation));
+        assertArrayEquals(new byte[]{4}, cache.transform("config", CLASS_NAME, bytes, null, null, transformation));
+
+        assertEquals(4, count.get());
+    }
+
+    @Test
+    void testFromSystemProperty() {
+        try {
+            System.clearProperty(TransformedClassCache.PROPERTY_CACHE_DIRECTORY);
+            assertNull(TransformedClassCache.fromSystemProperty());
+
+            System.setProperty(TransformedClassCache.PROPERTY_CACHE_DIRECTORY, directory_.getAbsolutePath());
+            var cache = TransformedClassCache.fromSystemProperty();
+            assertNotNull(cache);
+            assertEquals(directory_.getAbsoluteFile(), cache.getDirectory().getParentFile().getAbsoluteFile());
+        } finally {
+            System.clearProperty(TransformedClassCache.PROPERTY_CACHE_DIRECTORY);
+        }
+    }
+}
@@ -6,12 +6,16 @@ package rife.test;
 
 import org.junit.jupiter.api.Test;
 import rife.engine.*;
+import rife.engine.elements.PrometheusMetrics;
+import rife.engine.metrics.ProcessingMetrics;
 import rife.template.TemplateFactory;
 import rife.tools.IntegerUtils;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Calendar;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -650,4 +654,163 @@ public class TestMocksEngine {
         assertEquals("/seven", conversation.doRequest("/seven").getText());
         assertEquals("fallback1", conversation.doRequest("/sevens").getText());
     }
+
+    @Test
+    void testEventStream() {
+        var conversation = new MockConversation(new Site() {
+            public void setup() {
+                get("/events", c -> {
+                    var events = c.eventStream();
+                    events.retry(2000);
+                    events.send("first");
+                    events.send("update", "line1\nline2");
+                    events.send(new ServerSentEvent(events.lastEventId() + "-next", null, "data"));
+                    events.comment("done");
+                    events.close();
+                    assertFalse(events.send("ignored"));
+                });
+            }
+        });
+
+        var response = conversation.doRequest("http://localhost/events",
+            new MockRequest().header(EventStream.HEADER_LAST_EVENT_ID, "41"));
+        assertEquals(200, response.getStatus());
+        assertEquals("text/event-stream; charset=UTF-8", response.getContentType());
+        assertEquals("no-cache, no-transform", response.getHeader("Cache-Control"));
+        assertEquals("""
+            :
+
+            retry: 2000
+
+            data: first
+
+            event: update
+            data: line1
+            data: line2
+
+            id: 41-next
+            data: data
+
+            : done
+
+            """, response.getText());
+    }
+
+    @Test
+    void testResponseCache() {
+        var renders = new AtomicInteger();
+        var site = new Site() {
+            public void setup() {
+                cache(get("/cached", c -> {
+                    c.setContentType("text/plain");
+                    c.addHeader("X-Custom", "value");
+                    c.print("render " + renders.incrementAndGet() + " " + c.parameter("page"));
+                }), new ResponseCachePolicy(Duration.ofMinutes(1)).parameters("page"));
+                get("/uncached", c -> c.print("render " + renders.incrementAndGet()));
+            }
+        };
+        var conversation = new MockConversation(site);
+
+        var response = conversation.doRequest("http://localhost/cached?page=1");
+        assertEquals("render 1 1", response.getText());
+        assertEquals("text/plain; charset=UTF-8", response.getContentType());
+        assertEquals("value", response.getHeader("X-Custom"));
+
+        response = conversation.doRequest("http://localhost/cached?page=1&other=2");
+        assertEquals("render 1 1", response.getText());
+        assertEquals("text/plain; charset=UTF-8", response.getContentType());
+        assertEquals("value", response.getHeader("X-Custom"));
+
+        assertEquals("render 2 2", conversation.doRequest("http://localhost/cached?page=2").getText());
+        assertEquals("render 2 2", conversation.doRequest("http://localhost/cached?page=2").getText());
+        assertEquals("render 3", conversation.doRequest("http://localhost/uncached").getText());
+        assertEquals("render 4", conversation.doRequest("http://localhost/uncached").getText());
+
+        assertEquals(2, site.responseCache().hits());
+        assertEquals(2, site.responseCache().misses());
+
+        site.responseCache().clear();
+        assertEquals(0, site.responseCache().size());
+        assertEquals("render 5 1", conversation.doRequest("http://localhost/cached?page=1").getText());
+    }
+
+    @Test
+    void testResponseCacheHead() {
+        var renders = new AtomicInteger();
+        var site = new Site() {
+            public void setup() {
+                Element element = c -> c.print("render " + renders.incrementAndGet());
+                cache(get("/page", element), Duration.ofMinutes(1));
+                cache(head("/page", () -> element), Duration.ofMinutes(1));
+            }
+        };
+        var conversation = new MockConversation(site);
+
+        // the bodiless response of a HEAD request isn't replayed for GET
+        assertEquals("", conversation.doRequest("http://localhost/page", new MockRequest().method(RequestMethod.HEAD)).getText());
+        assertEquals("render 2", conversation.doRequest("http://localhost/page").getText());
+        assertEquals("render 2", conversation.doRequest("http://localhost/page").getText());
+        assertEquals(1, site.responseCache().hits());
+    }
+
+    @Test
+    void testResponseCacheUncacheable() {
+        var renders = new AtomicInteger();
+        var site = new Site() {
+            public void setup() {
+                cache(get("/cookie", c -> {
+                    c.addCookie(new CookieBuilder("name", "value"));
+                    c.print("render " + renders.incrementAndGet());
+                }), Duration.ofMinutes(1));
+                cache(get("/status", c -> {
+                    c.setStatus(404);
+                    c.print("render " + renders.incrementAndGet());
+                }), Duration.ofMinutes(1));
+            }
+        };
+        var conversation = new MockConversation(site);
+
+        assertEquals("render 1", conversation.doRequest("http://localhost/cookie").getText());
+        assertEquals("render 2", conversation.doRequest("http://localhost/cookie").getText());
+        var response = conversation.doRequest("http://localhost/status");
+        assertEquals(404, response.getStatus());
+        assertEquals("render 3", response.getText());
+        assertEquals("render 4", conversation.doRequest("http://localhost/status").getText());
+        assertEquals(0, site.responseCache().size());
+    }
+
+    @Test
+    void testProcessingMetrics() {
+        var metrics = new ProcessingMetrics();
+        var conversation = new MockConversation(new Site() {
+            public void setup() {
+                processingMonitor(metrics);
+                before(c -> c.setHeader("X-Before", "true"));
+                get("/metrics/text", c -> c.print("Just some text"));
+                get("/metrics/error", c -> {
+                    throw new IllegalStateException();
+                });
+                get("/metrics", new PrometheusMetrics(metrics));
+            }
+        });
+
+        assertEquals("Just some text", conversation.doRequest("http://localhost/metrics/text").getText());
+        conversation.doRequest("http://localhost/metrics/error");
+
+        var element = metrics.phase("/metrics/text", ProcessingPhase.ELEMENT);
+        assertEquals(1, element.durations().count());
+        assertEquals(1, metrics.phase("/metrics/text", ProcessingPhase.BEFORE).durations().count());
+        var close = metrics.phase("/metrics/text", ProcessingPhase.CLOSE);
+        assertEquals(1, close.durations().count());
+        assertEquals("Just some text".length(), close.bytesWritten().sum());
+        assertTrue(element.exceptions().isEmpty());
+        assertEquals(1, metrics.phase("/metrics/error", ProcessingPhase.ELEMENT).exceptions().get(IllegalStateException.class.getName()).sum());
+
+        var response = conversation.doRequest("http://localhost/metrics");
+        assertEquals("text/plain; version=0.0.4; charset=UTF-8", response.getContentType());
+        var text = response.getText();
+        assertTrue(text.contains("rife_processing_duration_seconds_count{route=\"/metrics/text\",phase=\"element\"} 1\n"));
+        assertTrue(text.contains("rife_processing_bytes_written_total{route=\"/metrics/text\",phase=\"close\"} 14\n"));
+        assertTrue(text.contains("rife_processing_exceptions_total{route=\"/metrics/error\",phase=\"element\",exception=\"java.lang.IllegalStateException\"} 1\n"));
+    }
 }
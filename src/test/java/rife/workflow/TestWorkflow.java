@@ -5,15 +5,25 @@
 package rife.workflow;
 
 import org.junit.jupiter.api.Test;
-import rifeworkflowtests.TestEventTypes;
-import rifeworkflowtests.WorkDep1;
-import rifeworkflowtests.WorkDep2;
-import rifeworkflowtests.WorkPauseType1;
+import rife.ioc.HierarchicalProperties;
+import rife.workflow.stores.FileWorkflowStore;
+import rifeworkflowtests.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class TestWorkflow {
     @Test
@@ -69,4 +79,251 @@ public class TestWorkflow {
 
         assertEquals(2, work.getEvent().getData());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDurableRestart()
+    throws Throwable {
+        var directory = Files.createTempDirectory("workflowstore");
+        try {
+            var store = new FileWorkflowStore(directory.toFile());
+            var wf = new Workflow(store);
+            wf.start(new WorkDurable());
+            wf.waitForPausedWork();
+            assertEquals(1, store.countPausedWork());
+
+            // the paused work is resumed by a new workflow on the same store
+            final var ended = new CountDownLatch(1);
+            final var sum = new AtomicInteger();
+            var store2 = new FileWorkflowStore(directory.toFile());
+            var wf2 = new Workflow(store2);
+            wf2.addListener(event -> {
+                if (TestEventTypes.END == event.getType()) {
+                    sum.set((Integer) event.getData());
+                    ended.countDown();
+                }
+            });
+            wf2.trigger(TestEventTypes.TYPE1, 1);
+            wf2.trigger(TestEventTypes.TYPE1, 2);
+            wf2.trigger(TestEventTypes.TYPE1, 3);
+            ended.await();
+            wf2.waitForNoWork();
+
+            assertEquals(6, sum.get());
+            assertEquals(0, store2.countPausedWork());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void testDurableRecovery()
+    throws Throwable {
+        var directory = Files.createTempDirectory("workflowstore");
+        try {
+            var store = new FileWorkflowStore(directory.toFile());
+            var wf = new Workflow(store);
+            wf.start(new WorkDurable());
+            wf.waitForPausedWork();
+
+            // the work is taken by an event, but the application stops
+            // before it's resumed
+            assertEquals(1, store.takePausedWork(TestEventTypes.TYPE1, new Event(TestEventTypes.TYPE1, 1)).size());
+            assertEquals(0, store.countPausedWork());
+
+            // the event is triggered again by a new workflow on the same store
+            final var ended = new CountDownLatch(1);
+            final var sum = new AtomicInteger();
+            var store2 = new FileWorkflowStore(directory.toFile());
+            assertEquals(1, store2.countPausedWork());
+            var wf2 = new Workflow(store2);
+            wf2.addListener(event -> {
+                if (TestEventTypes.END == event.getType()) {
+                    sum.set((Integer) event.getData());
+                    ended.countDown();
+                }
+            });
+            wf2.trigger(TestEventTypes.TYPE1, 2);
+            wf2.trigger(TestEventTypes.TYPE1, 3);
+            ended.await();
+            wf2.waitForNoWork();
+
+            assertEquals(6, sum.get());
+            assertEquals(0, store2.countPausedWork());
+            assertTrue(store2.takeRecoveredEvents().isEmpty());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void testDurablePendingEvent()
+    throws Throwable {
+        var directory = Files.createTempDirectory("workflowstore");
+        try {
+            new Workflow(new FileWorkflowStore(directory.toFile())).trigger(TestEventTypes.TYPE1, 5);
+
+            // the pending event is kept by the store
+            var wf = new Workflow(new FileWorkflowStore(directory.toFile()));
+            var work = new WorkPauseType1();
+            wf.start(work);
+            wf.waitForNoWork();
+
+            assertEquals(5, work.getEvent().getData());
+
+            // the directory of the taken event is removed
+            try (var files = Files.list(directory.resolve("pending"))) {
+                assertEquals(0, files.count());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void testDispatchBatches()
+    throws Throwable {
+        var wf = new Workflow()
+            .dispatchBatchSize(1)
+            .maxActiveDispatches(1);
+        assertEquals(1, wf.getDispatchBatchSize());
+        assertEquals(1, wf.getMaxActiveDispatches());
+        assertThrows(IllegalArgumentException.class, () -> wf.setDispatchBatchSize(0));
+        assertThrows(IllegalArgumentException.class, () -> wf.setMaxActiveDispatches(0));
+
+        var work = new WorkPauseType1();
+        wf.start(work);
+        wf.waitForPausedWork();
+
+        wf.trigger(TestEventTypes.TYPE1, 3);
+        wf.waitForNoWork();
+
+        assertEquals(3, work.getEvent().getData());
+    }
+
+    @Test
+    void testKeyedEvents()
+    throws Throwable {
+        final var all_ended = new CountDownLatch(3);
+        final var ended = new ConcurrentSkipListSet<String>();
+
+        var wf = new Workflow();
+        wf.addListener(event -> {
+            if (TestEventTypes.END == event.getType()) {
+                ended.add((String) event.getData());
+                all_ended.countDown();
+            }
+        });
+
+        // the pending event is only taken by the work with the same key
+        wf.trigger(TestEventTypes.TYPE1, "two", 2);
+
+        wf.start(new WorkKeyed("one"));
+        wf.start(new WorkKeyed("two"));
+        wf.start(new WorkKeyed("three"));
+        while (!ended.contains("two:two:2") || wf.getMetrics().pausedWork() < 2) {
+            Thread.sleep(10);
+        }
+
+        // unkeyed events don't wake up keyed work
+        wf.inform(TestEventTypes.TYPE1, 0);
+        assertEquals(2, wf.getMetrics().pausedWork());
+
+        wf.trigger(TestEventTypes.TYPE1, "three", 3);
+        wf.trigger(new Event(TestEventTypes.TYPE1, "one", 1));
+        all_ended.await();
+        wf.waitForNoWork();
+
+        assertEquals(Set.of("one:one:1", "two:two:2", "three:three:3"), ended);
+        assertEquals(3, wf.getMetrics().resumedWork());
+    }
+
+    @Test
+    void testExecutors()
+    throws Throwable {
+        // the default executor is the unbounded cached thread pool
+        var default_executor = WorkflowExecutors.defaultExecutor();
+        assertInstanceOf(ThreadPoolExecutor.class, default_executor);
+        assertEquals(Integer.MAX_VALUE, ((ThreadPoolExecutor) default_executor).getMaximumPoolSize());
+
+        var executors = new ArrayList<ExecutorService>();
+        executors.add(default_executor);
+        executors.add(WorkflowExecutors.boundedForkJoin(2));
+        executors.add(WorkflowExecutors.callerRuns(1, 1));
+        if (WorkflowExecutors.isVirtualThreadSupported()) {
+            executors.add(WorkflowExecutors.virtualThreadPerTask());
+        } else {
+            assertThrows(UnsupportedOperationException.class, WorkflowExecutors::virtualThreadPerTask);
+        }
+
+        for (var executor : executors) {
+            try {
+                final var all_ended = new CountDownLatch(2);
+                final var sum = new LongAdder();
+
+                var wf = new Workflow(executor, HierarchicalProperties.createSystemInstance());
+                wf.addListener(event -> {
+                    if (TestEventTypes.END == event.getType()) {
+                        sum.add((Integer) event.getData());
+                        all_ended.countDown();
+                    }
+                });
+
+                wf.start(new WorkDep1());
+                wf.start(WorkDep2.class);
+                all_ended.await();
+
+                assertEquals(45 + 90, sum.sum());
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void testMetrics()
+    throws Throwable {
+        final var dispatched = new AtomicInteger();
+        final var resumed = new AtomicInteger();
+
+        var wf = new Workflow();
+        wf.addMetricsListener(new WorkflowMetricsListener() {
+            public void workDispatched(Workflow workflow, int count) {
+                dispatched.addAndGet(count);
+            }
+
+            public void workResumed(Workflow workflow, Duration latency) {
+                resumed.incrementAndGet();
+            }
+        });
+
+        var work = new WorkPauseType1();
+        wf.start(work);
+        wf.waitForPausedWork();
+
+        var metrics = wf.getMetrics();
+        assertEquals(1, metrics.pausedWork());
+        assertEquals(0, metrics.resumedWork());
+        assertEquals(Duration.ZERO, metrics.averageResumeLatency());
+
+        wf.trigger(TestEventTypes.TYPE1, 1);
+        wf.waitForNoWork();
+
+        metrics = wf.getMetrics();
+        assertEquals(0, metrics.queuedWork());
+        assertEquals(0, metrics.activeWork());
+        assertEquals(0, metrics.pausedWork());
+        assertEquals(1, metrics.resumedWork());
+        assertTrue(metrics.maxResumeLatency().compareTo(metrics.averageResumeLatency()) >= 0);
+        assertEquals(1, dispatched.get());
+        assertEquals(1, resumed.get());
+    }
+
+    private static void delete(Path directory)
+    throws IOException {
+        try (var paths = Files.walk(directory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
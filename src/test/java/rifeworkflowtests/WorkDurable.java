@@ -0,0 +1,23 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rifeworkflowtests;
+
+import rife.workflow.Work;
+import rife.workflow.Workflow;
+
+import java.io.Serializable;
+
+public class WorkDurable implements Work, Serializable {
+    public void execute(Workflow workflow) {
+        var sum = 0;
+        for (var count = 0; count < 3; ++count) {
+            var event = pauseForEvent(TestEventTypes.TYPE1);
+
+            sum += (Integer) event.getData();
+        }
+
+        workflow.inform(TestEventTypes.END, sum);
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright 2001-2023 Geert Bevin (gbevin[remove] at uwyn dot com)
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ */
+package rifeworkflowtests;
+
+import rife.workflow.EventKey;
+import rife.workflow.Work;
+import rife.workflow.Workflow;
+
+public class WorkKeyed implements Work {
+    private final String key_;
+
+    public WorkKeyed(String key) {
+        key_ = key;
+    }
+
+    public void execute(Workflow workflow) {
+        var event = pauseForEvent(new EventKey(TestEventTypes.TYPE1, key_));
+
+        workflow.inform(TestEventTypes.END, key_ + ":" + event.getKey() + ":" + event.getData());
+    }
+}